@@ -0,0 +1,56 @@
+package com.github.ddth.queue;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous APIs to interact with queue.
+ *
+ * <p>
+ * Each method is the asynchronous counterpart of a {@link IQueue} method: it returns immediately and the returned
+ * {@link CompletableFuture} is completed with the result of the operation, or completed exceptionally with the
+ * {@link com.github.ddth.queue.utils.QueueException} the synchronous method would have thrown.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public interface IAsyncQueue<ID, DATA> extends IQueue<ID, DATA> {
+    /**
+     * Asynchronous version of {@link #queue(IQueueMessage)}.
+     *
+     * @param msg
+     * @return
+     */
+    CompletableFuture<Boolean> queueAsync(IQueueMessage<ID, DATA> msg);
+
+    /**
+     * Asynchronous version of {@link #requeue(IQueueMessage)}.
+     *
+     * @param msg
+     * @return
+     */
+    CompletableFuture<Boolean> requeueAsync(IQueueMessage<ID, DATA> msg);
+
+    /**
+     * Asynchronous version of {@link #requeueSilent(IQueueMessage)}.
+     *
+     * @param msg
+     * @return
+     */
+    CompletableFuture<Boolean> requeueSilentAsync(IQueueMessage<ID, DATA> msg);
+
+    /**
+     * Asynchronous version of {@link #finish(IQueueMessage)}.
+     *
+     * @param msg
+     * @return
+     */
+    CompletableFuture<Void> finishAsync(IQueueMessage<ID, DATA> msg);
+
+    /**
+     * Asynchronous version of {@link #take()}.
+     *
+     * @return future of the taken message, completed with {@code null} if queue is empty
+     */
+    CompletableFuture<IQueueMessage<ID, DATA>> takeAsync();
+}
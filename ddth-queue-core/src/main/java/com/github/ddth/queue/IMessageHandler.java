@@ -0,0 +1,20 @@
+package com.github.ddth.queue;
+
+/**
+ * API interface used to process messages taken from a queue.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @see com.github.ddth.queue.impl.QueueConsumerEngine
+ * @since 1.0.1
+ */
+public interface IMessageHandler<ID, DATA> {
+    /**
+     * Called when a message is taken from queue.
+     *
+     * @param msg
+     * @return {@code true} if the message has been successfully processed and should be removed from queue,
+     * {@code false} if the message should be re-queued
+     * @throws Exception any exception is treated as {@code false} (message is re-queued)
+     */
+    boolean handle(IQueueMessage<ID, DATA> msg) throws Exception;
+}
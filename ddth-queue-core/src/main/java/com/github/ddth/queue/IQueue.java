@@ -1,8 +1,15 @@
 package com.github.ddth.queue;
 
+import com.github.ddth.queue.OrphanMessagesPage.TimeIndexKey;
 import com.github.ddth.queue.utils.QueueException;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * APIs to interact with queue.
@@ -33,6 +40,14 @@ public interface IQueue<ID, DATA> {
      */
     int SIZE_NOT_SUPPORTED = -1;
 
+    /**
+     * Max back-off time (in milliseconds) between two polls of the default {@link #take(long, TimeUnit)}
+     * implementation.
+     *
+     * @since 1.0.1
+     */
+    long TAKE_MAX_BACKOFF_MS = 100;
+
     /**
      * Create a new, empty queue message.
      *
@@ -82,6 +97,40 @@ public interface IQueue<ID, DATA> {
      */
     boolean queue(IQueueMessage<ID, DATA> msg) throws QueueException;
 
+    /**
+     * Queue a batch of messages.
+     *
+     * <p>
+     * Implementation flow:
+     * <ul>
+     * <li>Put messages to tail of queue storage, in iteration order of the supplied collection.</li>
+     * </ul>
+     * </p>
+     *
+     * <p>
+     * Default implementation calls {@link #queue(IQueueMessage)} for each message. Queue implementations should
+     * override this method to put all messages to queue storage in as few round-trips as possible.
+     * </p>
+     *
+     * @param msgs
+     * @return status of each message (the same semantics as return value of {@link #queue(IQueueMessage)}), in
+     * iteration order of the supplied collection
+     * @throws QueueException.QueueIsFull                 if queue storage is full, can not take any more message
+     * @throws QueueException.CannotSerializeQueueMessage if one of the supplied messages can not be serialize
+     * @throws QueueException                             other queue exceptions
+     * @since 1.0.1
+     */
+    default boolean[] queueAll(Collection<? extends IQueueMessage<ID, DATA>> msgs) throws QueueException {
+        boolean[] result = new boolean[msgs != null ? msgs.size() : 0];
+        if (msgs != null) {
+            int i = 0;
+            for (IQueueMessage<ID, DATA> msg : msgs) {
+                result[i++] = queue(msg);
+            }
+        }
+        return result;
+    }
+
     /**
      * Re-queue a message.
      *
@@ -154,6 +203,26 @@ public interface IQueue<ID, DATA> {
      */
     void finish(IQueueMessage<ID, DATA> msg) throws QueueException;
 
+    /**
+     * Called when a batch of messages is done with.
+     *
+     * <p>
+     * Default implementation calls {@link #finish(IQueueMessage)} for each message. Queue implementations should
+     * override this method to clean-up all messages in as few round-trips as possible.
+     * </p>
+     *
+     * @param msgs
+     * @throws QueueException
+     * @since 1.0.1
+     */
+    default void finishAll(Collection<? extends IQueueMessage<ID, DATA>> msgs) throws QueueException {
+        if (msgs != null) {
+            for (IQueueMessage<ID, DATA> msg : msgs) {
+                finish(msg);
+            }
+        }
+    }
+
     /**
      * Take a message out of queue.
      *
@@ -179,6 +248,92 @@ public interface IQueue<ID, DATA> {
      */
     IQueueMessage<ID, DATA> take() throws QueueException;
 
+    /**
+     * Take a message out of queue, waiting up to the specified wait time if necessary for a message to become
+     * available.
+     *
+     * <p>
+     * Implementation flow: same as {@link #take()}, but blocks the caller until a message is available or the
+     * specified wait time elapses.
+     * </p>
+     *
+     * <p>
+     * Default implementation polls {@link #take()} with exponential back-off (starting at 1ms, capped at
+     * {@link #TAKE_MAX_BACKOFF_MS}). Queue implementations should override this method to wait for new messages
+     * natively.
+     * </p>
+     *
+     * @param timeout how long to wait before giving up, in units of {@code unit}
+     * @param unit    unit of the {@code timeout} parameter
+     * @return the taken message, or {@code null} if the specified wait time elapses before a message is available
+     * @throws QueueException.EphemeralIsFull               if ephemeral storage is full, can not put message to
+     *                                                      ephemeral storage
+     * @throws QueueException.CannotDeserializeQueueMessage if the queue message can not be deserialized
+     * @throws QueueException                               other queue exceptions (including interruption while
+     *                                                      waiting)
+     * @since 1.0.1
+     */
+    default IQueueMessage<ID, DATA> take(long timeout, TimeUnit unit) throws QueueException {
+        IQueueMessage<ID, DATA> msg = take();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long backoffMs = 1;
+        while (msg == null) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                return null;
+            }
+            try {
+                Thread.sleep(Math.min(backoffMs, remainingMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueueException(e);
+            }
+            backoffMs = Math.min(backoffMs * 2, TAKE_MAX_BACKOFF_MS);
+            msg = take();
+        }
+        return msg;
+    }
+
+    /**
+     * Take a batch of messages out of queue.
+     *
+     * <p>
+     * Implementation flow: same as {@link #take()}, but up to {@code maxMessages} messages are taken. Ephemeral
+     * storage semantics are the same as calling {@link #take()} {@code maxMessages} times: taken messages are written
+     * to ephemeral storage and the number of taken messages never makes ephemeral storage exceed its bound.
+     * </p>
+     *
+     * <p>
+     * Default implementation calls {@link #take()} repeatedly. Queue implementations should override this method to
+     * claim all messages in as few server operations as possible.
+     * </p>
+     *
+     * @param maxMessages max number of messages to take
+     * @return taken messages, in queue order; empty collection if queue is empty
+     * @throws QueueException.EphemeralIsFull               if ephemeral storage is full before any message could be
+     *                                                      taken
+     * @throws QueueException.CannotDeserializeQueueMessage if a queue message can not be deserialized
+     * @throws QueueException                               other queue exceptions
+     * @since 1.0.1
+     */
+    default Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        try {
+            for (int i = 0; i < maxMessages; i++) {
+                IQueueMessage<ID, DATA> msg = take();
+                if (msg == null) {
+                    break;
+                }
+                result.add(msg);
+            }
+        } catch (QueueException.EphemeralIsFull e) {
+            if (result.isEmpty()) {
+                throw e;
+            }
+        }
+        return result;
+    }
+
     /**
      * Get all orphan messages (messages that were left in ephemeral storage for
      * a long time).
@@ -195,6 +350,53 @@ public interface IQueue<ID, DATA> {
     Collection<IQueueMessage<ID, DATA>> getOrphanMessages(long thresholdTimestampMs)
             throws QueueException.OperationNotSupported;
 
+    /**
+     * Get one page of orphan messages, oldest first.
+     *
+     * <p>
+     * Default implementation fetches all orphan messages via {@link #getOrphanMessages(long)} and pages them in
+     * memory, ordered by queue timestamp. Queue implementations with a time index over ephemeral storage override this
+     * method so that the cost is proportional to the page size.
+     * </p>
+     *
+     * <p>
+     * The order and the continuation token are implementation-specific: "oldest" follows the implementation's own
+     * orphan criterion (e.g. Redis queues order by the time messages were taken), and a token is only meaningful to
+     * the queue instance type that issued it.
+     * </p>
+     *
+     * @param thresholdTimestampMs see {@link #getOrphanMessages(long)}
+     * @param limit                max number of messages to return
+     * @param continuationToken    token returned by the previous page, or {@code null} to fetch the first page
+     * @return
+     * @throws QueueException.OperationNotSupported
+     * @since 1.0.1
+     */
+    default OrphanMessagesPage<ID, DATA> getOrphanMessages(long thresholdTimestampMs, int limit,
+            String continuationToken) throws QueueException.OperationNotSupported {
+        TimeIndexKey after = TimeIndexKey.fromToken(continuationToken);
+        Collection<IQueueMessage<ID, DATA>> orphanMessages = getOrphanMessages(thresholdTimestampMs);
+        NavigableMap<TimeIndexKey, IQueueMessage<ID, DATA>> sorted = new TreeMap<>();
+        if (orphanMessages != null) {
+            for (IQueueMessage<ID, DATA> msg : orphanMessages) {
+                TimeIndexKey key = TimeIndexKey.of(msg);
+                if (after == null || key.compareTo(after) > 0) {
+                    sorted.put(key, msg);
+                }
+            }
+        }
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        TimeIndexKey lastKey = null;
+        for (Map.Entry<TimeIndexKey, IQueueMessage<ID, DATA>> entry : sorted.entrySet()) {
+            if (result.size() >= limit) {
+                return new OrphanMessagesPage<>(result, lastKey != null ? lastKey.toToken() : null);
+            }
+            result.add(entry.getValue());
+            lastKey = entry.getKey();
+        }
+        return new OrphanMessagesPage<>(result, null);
+    }
+
     /**
      * Get number of items currently in queue storage.
      *
@@ -0,0 +1,177 @@
+package com.github.ddth.queue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * One page of orphan messages, returned by {@link IQueue#getOrphanMessages(long, int, String)}.
+ *
+ * <p>Continuation tokens are opaque to callers. The default implementation (and queues with a time index over
+ * ephemeral storage) encode a {@link TimeIndexKey}; see {@link TimeIndexKey#fromToken(String)} and
+ * {@link TimeIndexKey#toToken()}.</p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class OrphanMessagesPage<ID, DATA> {
+    private final Collection<IQueueMessage<ID, DATA>> messages;
+    private final String continuationToken;
+
+    public OrphanMessagesPage(Collection<IQueueMessage<ID, DATA>> messages, String continuationToken) {
+        this.messages = messages != null ? messages : Collections.emptyList();
+        this.continuationToken = continuationToken;
+    }
+
+    /**
+     * Orphan messages of this page, oldest first (see {@link IQueue#getOrphanMessages(long, int, String)}).
+     *
+     * @return
+     */
+    public Collection<IQueueMessage<ID, DATA>> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Token to fetch the next page, {@code null} if this is the last page.
+     *
+     * @return
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Are there more pages?
+     *
+     * @return
+     */
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+
+    /**
+     * Position of a message in the order of orphan-message pages: by queue timestamp, then by message id.
+     *
+     * <p>Positions are encoded to/decoded from continuation tokens (format {@code <timestamp>:<L|S>:<id>}). Queue
+     * implementations also use them as keys of their time indexes over ephemeral storage.</p>
+     */
+    public final static class TimeIndexKey implements Comparable<TimeIndexKey> {
+        private final long timestamp;
+        private final Object id;
+
+        /**
+         * @param timestamp
+         * @param id        {@code null} sorts before any other id with the same timestamp
+         */
+        public TimeIndexKey(long timestamp, Object id) {
+            this.timestamp = timestamp;
+            this.id = id;
+        }
+
+        /**
+         * Build the key of a message.
+         *
+         * @param msg
+         * @return
+         */
+        public static TimeIndexKey of(IQueueMessage<?, ?> msg) {
+            Date queueTimestamp = msg.getQueueTimestamp();
+            return new TimeIndexKey(queueTimestamp != null ? queueTimestamp.getTime() : 0, msg.getId());
+        }
+
+        /**
+         * Decode a continuation token.
+         *
+         * @param token
+         * @return {@code null} if token is {@code null} or empty
+         * @throws IllegalArgumentException if token is malformed
+         */
+        public static TimeIndexKey fromToken(String token) {
+            if (token == null || token.isEmpty()) {
+                return null;
+            }
+            int p1 = token.indexOf(':');
+            int p2 = p1 > 0 ? token.indexOf(':', p1 + 1) : -1;
+            if (p2 != p1 + 2) {
+                throw new IllegalArgumentException("Invalid continuation token [" + token + "].");
+            }
+            try {
+                long timestamp = Long.parseLong(token.substring(0, p1));
+                String id = token.substring(p2 + 1);
+                switch (token.charAt(p1 + 1)) {
+                case 'L':
+                    return new TimeIndexKey(timestamp, Long.valueOf(id));
+                case 'S':
+                    return new TimeIndexKey(timestamp, id);
+                default:
+                    throw new IllegalArgumentException("Invalid continuation token [" + token + "].");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid continuation token [" + token + "].", e);
+            }
+        }
+
+        /**
+         * Encode this key to a continuation token.
+         *
+         * @return
+         */
+        public String toToken() {
+            return timestamp + (id instanceof Long ? ":L:" : ":S:") + (id != null ? id.toString() : "");
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Object getId() {
+            return id;
+        }
+
+        /**
+         * Ids are ordered: {@code null} first, then {@code Long}s (numerically), then anything else (by string value).
+         */
+        private static int compareIds(Object a, Object b) {
+            if (a == b) {
+                return 0;
+            }
+            if (a == null || b == null) {
+                return a == null ? -1 : 1;
+            }
+            boolean aIsLong = a instanceof Long, bIsLong = b instanceof Long;
+            if (aIsLong && bIsLong) {
+                return Long.compare((Long) a, (Long) b);
+            }
+            if (aIsLong || bIsLong) {
+                return aIsLong ? -1 : 1;
+            }
+            return a.toString().compareTo(b.toString());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int compareTo(TimeIndexKey other) {
+            int result = Long.compare(timestamp, other.timestamp);
+            return result != 0 ? result : compareIds(id, other.id);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TimeIndexKey && compareTo((TimeIndexKey) obj) == 0;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return Long.hashCode(timestamp) * 31 + (id != null ? id.toString().hashCode() : 0);
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.github.ddth.queue.impl;
 
+import com.github.ddth.queue.utils.QueueException;
+
+import java.util.function.IntSupplier;
+
 /**
  * Abstract ephemeral-support queue implementation.
  *
@@ -62,4 +66,26 @@ public abstract class AbstractEphemeralSupportQueue<ID, DATA> extends AbstractQu
         this.ephemeralMaxSize = ephemeralMaxSize;
         return this;
     }
+
+    /**
+     * Calculate number of messages that can be taken in one batch without exceeding ephemeral storage's bound.
+     *
+     * @param maxMessages       max number of messages requested by caller
+     * @param ephemeralSizeFunc to retrieve current size of ephemeral storage, only called if ephemeral storage is
+     *                          enabled and bounded
+     * @return number of messages that can be taken
+     * @throws QueueException.EphemeralIsFull if ephemeral storage is full
+     * @since 1.0.1
+     */
+    protected int ensureEphemeralCapacity(int maxMessages, IntSupplier ephemeralSizeFunc)
+            throws QueueException.EphemeralIsFull {
+        if (isEphemeralDisabled() || ephemeralMaxSize <= 0) {
+            return maxMessages;
+        }
+        int remaining = ephemeralMaxSize - ephemeralSizeFunc.getAsInt();
+        if (remaining <= 0) {
+            throw new QueueException.EphemeralIsFull(ephemeralMaxSize);
+        }
+        return Math.min(maxMessages, remaining);
+    }
 }
@@ -1,12 +1,26 @@
 package com.github.ddth.queue.impl;
 
 import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.OrphanMessagesPage;
+import com.github.ddth.queue.OrphanMessagesPage.TimeIndexKey;
+import com.github.ddth.queue.internal.utils.ConcurrentLongObjectMap;
 import com.github.ddth.queue.utils.QueueException;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Abstract queue implementation that uses in-memory ephemeral storage.
@@ -15,29 +29,186 @@ import java.util.concurrent.ConcurrentMap;
  * @since 1.0.0
  */
 public abstract class AbstractInmemEphemeralQueue<ID, DATA> extends AbstractEphemeralSupportQueue<ID, DATA> {
-    private ConcurrentMap<Object, IQueueMessage<ID, DATA>> ephemeralStorage;
+    /**
+     * In-memory ephemeral storage.
+     *
+     * @since 1.0.1
+     */
+    protected interface EphemeralStorage<ID, DATA> {
+        /**
+         * Put a message to storage, if no message with the same id exists.
+         *
+         * @param msg
+         * @return the existing message with the same id, {@code null} if the message has been put
+         */
+        IQueueMessage<ID, DATA> put(IQueueMessage<ID, DATA> msg);
+
+        /**
+         * Remove a message from storage.
+         *
+         * @param msg
+         * @return the removed message, {@code null} if not found
+         */
+        IQueueMessage<ID, DATA> remove(IQueueMessage<ID, DATA> msg);
+
+        /**
+         * Number of messages in storage.
+         *
+         * @return
+         */
+        int size();
+
+        /**
+         * Perform an action on each message in storage.
+         *
+         * @param action
+         */
+        void forEach(Consumer<IQueueMessage<ID, DATA>> action);
+    }
+
+    /**
+     * Default {@link EphemeralStorage}, backed by a {@link ConcurrentMap}.
+     *
+     * @since 1.0.1
+     */
+    protected static class MapEphemeralStorage<ID, DATA> implements EphemeralStorage<ID, DATA> {
+        private final ConcurrentMap<Object, IQueueMessage<ID, DATA>> storage;
+
+        public MapEphemeralStorage(int initialCapacity) {
+            storage = new ConcurrentHashMap<>(initialCapacity);
+        }
+
+        @Override
+        public IQueueMessage<ID, DATA> put(IQueueMessage<ID, DATA> msg) {
+            return storage.putIfAbsent(msg.getId(), msg);
+        }
+
+        @Override
+        public IQueueMessage<ID, DATA> remove(IQueueMessage<ID, DATA> msg) {
+            return storage.remove(msg.getId());
+        }
+
+        @Override
+        public int size() {
+            return storage.size();
+        }
+
+        @Override
+        public void forEach(Consumer<IQueueMessage<ID, DATA>> action) {
+            storage.values().forEach(action);
+        }
+    }
+
+    /**
+     * {@link EphemeralStorage} for messages with {@code Long} ids, backed by a {@link ConcurrentLongObjectMap}: ids
+     * are used as primitive keys and no map node is allocated per message.
+     *
+     * @since 1.0.1
+     */
+    protected static class LongIdEphemeralStorage<DATA> implements EphemeralStorage<Long, DATA> {
+        private final ConcurrentLongObjectMap<IQueueMessage<Long, DATA>> storage;
+
+        public LongIdEphemeralStorage(int initialCapacity) {
+            storage = new ConcurrentLongObjectMap<>(initialCapacity);
+        }
+
+        @Override
+        public IQueueMessage<Long, DATA> put(IQueueMessage<Long, DATA> msg) {
+            return storage.putIfAbsent(msg.getId().longValue(), msg);
+        }
+
+        @Override
+        public IQueueMessage<Long, DATA> remove(IQueueMessage<Long, DATA> msg) {
+            return storage.remove(msg.getId().longValue());
+        }
+
+        @Override
+        public int size() {
+            return storage.size();
+        }
+
+        @Override
+        public void forEach(Consumer<IQueueMessage<Long, DATA>> action) {
+            storage.forEachValue(action);
+        }
+    }
+
+    private EphemeralStorage<ID, DATA> ephemeralStorage;
+    private ConcurrentSkipListMap<TimeIndexKey, IQueueMessage<ID, DATA>> ephemeralTimeIndex;
+    private boolean ephemeralTimeIndexEnabled = false;
+
+    private final Lock lockTakeWait = new ReentrantLock();
+    private final Condition messageAvailable = lockTakeWait.newCondition();
+    private final AtomicInteger numTakeWaiters = new AtomicInteger(0);
 
     public AbstractInmemEphemeralQueue<ID, DATA> setEphemeralDisabled(boolean ephemeralDisabled) {
         super.setEphemeralDisabled(ephemeralDisabled);
         if (isEphemeralDisabled()) {
             ephemeralStorage = null;
+            ephemeralTimeIndex = null;
         }
         return this;
     }
 
+    /**
+     * Is the time index over ephemeral storage enabled (default {@code false})?
+     *
+     * <p>The time index keeps in-flight messages ordered by queue timestamp, so that
+     * {@link #getOrphanMessages(long)} costs O(number of orphan messages) instead of a scan over the whole ephemeral
+     * storage, at the cost of maintaining the index on every take/finish (one skip-list node and one key allocated per
+     * message). Enable it if orphan messages are looked up often and ephemeral storage is large.</p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isEphemeralTimeIndexEnabled() {
+        return ephemeralTimeIndexEnabled;
+    }
+
+    /**
+     * Enable/Disable the time index over ephemeral storage (default {@code false}). Must be called before
+     * {@code init()}.
+     *
+     * @param ephemeralTimeIndexEnabled
+     * @return
+     * @since 1.0.1
+     */
+    public AbstractInmemEphemeralQueue<ID, DATA> setEphemeralTimeIndexEnabled(boolean ephemeralTimeIndexEnabled) {
+        this.ephemeralTimeIndexEnabled = ephemeralTimeIndexEnabled;
+        return this;
+    }
+
+    /**
+     * Create the {@link EphemeralStorage} instance. Sub-class may override this method to use a storage specialized
+     * for its message id type.
+     *
+     * @param initialCapacity
+     * @return
+     * @since 1.0.1
+     */
+    protected EphemeralStorage<ID, DATA> createEphemeralStorage(int initialCapacity) {
+        return new MapEphemeralStorage<>(initialCapacity);
+    }
+
     protected void initEphemeralStorage(int hintSize) {
         if (!isEphemeralDisabled()) {
             int ephemeralBoundSize = Math.max(0, getEphemeralMaxSize());
-            ephemeralStorage = new ConcurrentHashMap<>(
+            ephemeralStorage = createEphemeralStorage(
                     ephemeralBoundSize > 0 ? Math.min(ephemeralBoundSize, hintSize) : hintSize);
+            ephemeralTimeIndex = ephemeralTimeIndexEnabled ? new ConcurrentSkipListMap<>() : null;
         } else {
             ephemeralStorage = null;
+            ephemeralTimeIndex = null;
         }
     }
 
     protected void doRemoveFromEphemeralStorage(IQueueMessage<ID, DATA> msg) {
         if (ephemeralStorage != null) {
-            ephemeralStorage.remove(msg.getId());
+            IQueueMessage<ID, DATA> removed = ephemeralStorage.remove(msg);
+            if (removed != null && ephemeralTimeIndex != null) {
+                /* use the stored message: re-queued message may carry a new queue timestamp */
+                ephemeralTimeIndex.remove(TimeIndexKey.of(removed));
+            }
         }
     }
 
@@ -52,7 +223,64 @@ public abstract class AbstractInmemEphemeralQueue<ID, DATA> extends AbstractEphe
 
     protected void doPutToEphemeralStorage(IQueueMessage<ID, DATA> msg) {
         if (msg != null && ephemeralStorage != null) {
-            ephemeralStorage.putIfAbsent(msg.getId(), msg);
+            if (ephemeralStorage.put(msg) == null && ephemeralTimeIndex != null) {
+                ephemeralTimeIndex.put(TimeIndexKey.of(msg), msg);
+            }
+        }
+    }
+
+    /**
+     * Wake up one caller blocked in {@link #take(long, TimeUnit)}. Sub-class calls this method after a message has
+     * been put to queue storage.
+     *
+     * <p>This method is cheap if there is no blocked caller.</p>
+     *
+     * @since 1.0.1
+     */
+    protected void signalMessageAvailable() {
+        if (numTakeWaiters.get() > 0) {
+            lockTakeWait.lock();
+            try {
+                messageAvailable.signal();
+            } finally {
+                lockTakeWait.unlock();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Callers are blocked on a {@link Condition} and woken up by {@link #signalMessageAvailable()}, no
+     * polling.</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     * @since 1.0.1
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take(long timeout, TimeUnit unit) throws QueueException.EphemeralIsFull {
+        IQueueMessage<ID, DATA> msg = take();
+        if (msg != null || timeout <= 0) {
+            return msg;
+        }
+        long nanos = unit.toNanos(timeout);
+        lockTakeWait.lock();
+        numTakeWaiters.incrementAndGet();
+        try {
+            /* re-check after registering as waiter, so that a signal can not be missed */
+            while ((msg = take()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = messageAvailable.awaitNanos(nanos);
+            }
+            return msg;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueueException(e);
+        } finally {
+            numTakeWaiters.decrementAndGet();
+            lockTakeWait.unlock();
         }
     }
 
@@ -62,9 +290,12 @@ public abstract class AbstractInmemEphemeralQueue<ID, DATA> extends AbstractEphe
     @Override
     public Collection<IQueueMessage<ID, DATA>> getOrphanMessages(long thresholdTimestampMs) {
         Collection<IQueueMessage<ID, DATA>> orphanMessages = new HashSet<>();
-        if (ephemeralStorage != null) {
+        if (ephemeralTimeIndex != null) {
+            long cutoff = System.currentTimeMillis() - thresholdTimestampMs;
+            orphanMessages.addAll(ephemeralTimeIndex.headMap(new TimeIndexKey(cutoff, null), false).values());
+        } else if (ephemeralStorage != null) {
             long now = System.currentTimeMillis();
-            ephemeralStorage.forEach((key, msg) -> {
+            ephemeralStorage.forEach(msg -> {
                 if (msg.getQueueTimestamp().getTime() + thresholdTimestampMs < now)
                     orphanMessages.add(msg);
             });
@@ -72,6 +303,41 @@ public abstract class AbstractInmemEphemeralQueue<ID, DATA> extends AbstractEphe
         return orphanMessages;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the time index is enabled, only the requested page is read from the index.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public OrphanMessagesPage<ID, DATA> getOrphanMessages(long thresholdTimestampMs, int limit,
+            String continuationToken) {
+        if (ephemeralTimeIndex == null) {
+            return ephemeralStorage != null ?
+                    super.getOrphanMessages(thresholdTimestampMs, limit, continuationToken) :
+                    new OrphanMessagesPage<>(null, null);
+        }
+        TimeIndexKey after = TimeIndexKey.fromToken(continuationToken);
+        TimeIndexKey cutoff = new TimeIndexKey(System.currentTimeMillis() - thresholdTimestampMs, null);
+        if (after != null && after.compareTo(cutoff) >= 0) {
+            return new OrphanMessagesPage<>(null, null);
+        }
+        NavigableMap<TimeIndexKey, IQueueMessage<ID, DATA>> range = after != null ?
+                ephemeralTimeIndex.subMap(after, false, cutoff, false) :
+                ephemeralTimeIndex.headMap(cutoff, false);
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        TimeIndexKey lastKey = null;
+        for (Map.Entry<TimeIndexKey, IQueueMessage<ID, DATA>> entry : range.entrySet()) {
+            if (result.size() >= limit) {
+                return new OrphanMessagesPage<>(result, lastKey != null ? lastKey.toToken() : null);
+            }
+            result.add(entry.getValue());
+            lastKey = entry.getKey();
+        }
+        return new OrphanMessagesPage<>(result, null);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -2,12 +2,26 @@ package com.github.ddth.queue.impl;
 
 import com.github.ddth.commons.serialization.FstSerDeser;
 import com.github.ddth.commons.serialization.ISerDeser;
-import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.IAsyncQueue;
 import com.github.ddth.queue.IQueueMessage;
 import com.github.ddth.queue.IQueueMessageFactory;
 import com.github.ddth.queue.utils.QueueException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Abstract queue implementation.
@@ -15,7 +29,7 @@ import java.util.Date;
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
  * @since 0.5.0
  */
-public abstract class AbstractQueue<ID, DATA> implements IQueue<ID, DATA>, AutoCloseable {
+public abstract class AbstractQueue<ID, DATA> implements IAsyncQueue<ID, DATA>, AutoCloseable {
     protected enum PutToQueueCase {
         NEW(0), REQUEUE(1), REQUEUE_SILENT(2);
 
@@ -30,10 +44,46 @@ public abstract class AbstractQueue<ID, DATA> implements IQueue<ID, DATA>, AutoC
         }
     }
 
+    /**
+     * Default number of threads to execute asynchronous operations.
+     *
+     * @since 1.0.1
+     */
+    public final static int DEFAULT_ASYNC_NUM_THREADS = 4;
+
+    /**
+     * Default max number of pending asynchronous operations.
+     *
+     * @since 1.0.1
+     */
+    public final static int DEFAULT_ASYNC_MAX_PENDING = 1024;
+
     private String queueName;
     private IQueueMessageFactory<ID, DATA> messageFactory;
     private ISerDeser serDeser;
 
+    private int asyncNumThreads = DEFAULT_ASYNC_NUM_THREADS;
+    private int asyncMaxPending = DEFAULT_ASYNC_MAX_PENDING;
+    private volatile ExecutorService asyncExecutor;
+    private boolean myOwnAsyncExecutor = true;
+
+    /* messages of queueAsyncBatched(...) waiting to be stored in one batch */
+    private final static int ASYNC_PUT_BATCH_SIZE = 100;
+
+    private final static class PendingPut<ID, DATA> {
+        private final IQueueMessage<ID, DATA> msg;
+        private final CompletableFuture<Boolean> result;
+
+        private PendingPut(IQueueMessage<ID, DATA> msg, CompletableFuture<Boolean> result) {
+            this.msg = msg;
+            this.result = result;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<PendingPut<ID, DATA>> pendingPuts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger numPendingPuts = new AtomicInteger();
+    private final AtomicBoolean pendingPutsScheduled = new AtomicBoolean();
+
     /**
      * Queue's name.
      *
@@ -100,6 +150,102 @@ public abstract class AbstractQueue<ID, DATA> implements IQueue<ID, DATA>, AutoC
         return this;
     }
 
+    /**
+     * Number of threads to execute asynchronous operations (used only if the executor is created by this queue).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getAsyncNumThreads() {
+        return asyncNumThreads;
+    }
+
+    /**
+     * Number of threads to execute asynchronous operations (used only if the executor is created by this queue).
+     *
+     * @param asyncNumThreads
+     * @return
+     * @since 1.0.1
+     */
+    public AbstractQueue<ID, DATA> setAsyncNumThreads(int asyncNumThreads) {
+        this.asyncNumThreads = asyncNumThreads;
+        return this;
+    }
+
+    /**
+     * Max number of pending asynchronous operations (used only if the executor is created by this queue). When the
+     * limit is reached, asynchronous operations fail immediately with {@link QueueException}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getAsyncMaxPending() {
+        return asyncMaxPending;
+    }
+
+    /**
+     * Max number of pending asynchronous operations (used only if the executor is created by this queue). When the
+     * limit is reached, asynchronous operations fail immediately with {@link QueueException}.
+     *
+     * @param asyncMaxPending
+     * @return
+     * @since 1.0.1
+     */
+    public AbstractQueue<ID, DATA> setAsyncMaxPending(int asyncMaxPending) {
+        this.asyncMaxPending = asyncMaxPending;
+        return this;
+    }
+
+    /**
+     * Set an external {@link ExecutorService} to execute asynchronous operations.
+     *
+     * @param asyncExecutor
+     * @return
+     * @since 1.0.1
+     */
+    public AbstractQueue<ID, DATA> setAsyncExecutor(ExecutorService asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        myOwnAsyncExecutor = false;
+        return this;
+    }
+
+    /**
+     * Get the {@link ExecutorService} to execute asynchronous operations. If no executor has been set, a bounded one
+     * is created on first use (see {@link #setAsyncNumThreads(int)} and {@link #setAsyncMaxPending(int)}).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public ExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            synchronized (this) {
+                if (asyncExecutor == null) {
+                    asyncExecutor = buildAsyncExecutor();
+                    myOwnAsyncExecutor = true;
+                }
+            }
+        }
+        return asyncExecutor;
+    }
+
+    /**
+     * Build a bounded {@link ExecutorService} to execute asynchronous operations.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    protected ExecutorService buildAsyncExecutor() {
+        int numThreads = Math.max(1, asyncNumThreads);
+        String threadName = "queue-async-" + (queueName != null ? queueName : getClass().getSimpleName());
+        ThreadFactory threadFactory = r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        };
+        return new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, asyncMaxPending)), threadFactory);
+    }
+
     /**
      * Initializing method.
      *
@@ -117,7 +263,13 @@ public abstract class AbstractQueue<ID, DATA> implements IQueue<ID, DATA>, AutoC
      * Destroy method.
      */
     public void destroy() {
-        //EMPTY
+        if (asyncExecutor != null && myOwnAsyncExecutor) {
+            try {
+                asyncExecutor.shutdown();
+            } finally {
+                asyncExecutor = null;
+            }
+        }
     }
 
     /**
@@ -209,15 +361,65 @@ public abstract class AbstractQueue<ID, DATA> implements IQueue<ID, DATA>, AutoC
     protected abstract boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase)
             throws QueueException.QueueIsFull;
 
+    /**
+     * Put a batch of new messages to the queue storage.
+     *
+     * <p>Default implementation calls {@link #doPutToQueue(IQueueMessage, PutToQueueCase)} for each message. Sub-class
+     * overrides this method to provide a native multi-message path.</p>
+     *
+     * @param msgs
+     * @return
+     * @throws QueueException.QueueIsFull
+     * @since 1.0.1
+     */
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) throws QueueException.QueueIsFull {
+        boolean[] result = new boolean[msgs.size()];
+        int i = 0;
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            result[i++] = doPutToQueue(msg, PutToQueueCase.NEW);
+        }
+        return result;
+    }
+
+    /**
+     * Clone a message to be put to queue storage as a new message: re-queue count is reset and both timestamps are
+     * set to {@code now}.
+     *
+     * @param _msg
+     * @param now
+     * @return
+     * @since 1.0.1
+     */
+    protected IQueueMessage<ID, DATA> cloneAsNewMessage(IQueueMessage<ID, DATA> _msg, Date now) {
+        IQueueMessage<ID, DATA> msg = _msg.clone().setNumRequeues(0).setQueueTimestamp(now);
+        msg.setTimestamp(now);
+        return msg;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public boolean queue(IQueueMessage<ID, DATA> _msg) {
+        return doPutToQueue(cloneAsNewMessage(_msg, new Date()), PutToQueueCase.NEW);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public boolean[] queueAll(Collection<? extends IQueueMessage<ID, DATA>> _msgs) {
+        if (_msgs == null || _msgs.isEmpty()) {
+            return new boolean[0];
+        }
         Date now = new Date();
-        IQueueMessage<ID, DATA> msg = _msg.clone().setNumRequeues(0).setQueueTimestamp(now);
-        msg.setTimestamp(now);
-        return doPutToQueue(msg, PutToQueueCase.NEW);
+        List<IQueueMessage<ID, DATA>> msgs = new ArrayList<>(_msgs.size());
+        for (IQueueMessage<ID, DATA> _msg : _msgs) {
+            msgs.add(cloneAsNewMessage(_msg, now));
+        }
+        return doPutAllToQueue(msgs);
     }
 
     /**
@@ -237,4 +439,145 @@ public abstract class AbstractQueue<ID, DATA> implements IQueue<ID, DATA>, AutoC
         IQueueMessage<ID, DATA> msg = _msg.clone();
         return doPutToQueue(msg, PutToQueueCase.REQUEUE_SILENT);
     }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Execute an operation with {@link #getAsyncExecutor()}.
+     *
+     * @param operation
+     * @param <T>
+     * @return future of the operation's result; completed exceptionally with {@link QueueException} if the operation
+     * can not be scheduled (e.g. too many pending operations)
+     * @since 1.0.1
+     */
+    protected <T> CompletableFuture<T> runAsync(Supplier<T> operation) {
+        try {
+            return CompletableFuture.supplyAsync(operation, getAsyncExecutor());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new QueueException(e));
+        }
+    }
+
+    /**
+     * Asynchronously put a message to queue, coalescing with other pending {@code queueAsyncBatched} calls: pending
+     * messages are stored by the async executor in batches of up to 100 messages with
+     * {@link #doPutAllToQueue(List)}, so that one storage round-trip serves many calls.
+     *
+     * <p>Sub-classes whose {@link #doPutAllToQueue(List)} is cheaper than individual puts (e.g. pipelined) may route
+     * {@link #queueAsync(IQueueMessage)} here.</p>
+     *
+     * @param _msg
+     * @return future of the put result; completed exceptionally with {@link QueueException} if there are too many
+     * pending operations or the batch could not be stored
+     * @since 1.0.1
+     */
+    protected CompletableFuture<Boolean> queueAsyncBatched(IQueueMessage<ID, DATA> _msg) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (numPendingPuts.incrementAndGet() > Math.max(1, asyncMaxPending)) {
+            numPendingPuts.decrementAndGet();
+            result.completeExceptionally(new QueueException("Too many pending asynchronous operations."));
+            return result;
+        }
+        pendingPuts.add(new PendingPut<>(cloneAsNewMessage(_msg, new Date()), result));
+        schedulePendingPuts();
+        return result;
+    }
+
+    private void schedulePendingPuts() {
+        if (!pendingPuts.isEmpty() && pendingPutsScheduled.compareAndSet(false, true)) {
+            try {
+                getAsyncExecutor().execute(this::storePendingPuts);
+            } catch (RejectedExecutionException e) {
+                /* executor is saturated: store in caller's thread rather than leaving futures incomplete */
+                storePendingPuts();
+            }
+        }
+    }
+
+    private void storePendingPuts() {
+        try {
+            List<PendingPut<ID, DATA>> batch = new ArrayList<>();
+            List<IQueueMessage<ID, DATA>> msgs = new ArrayList<>();
+            while (true) {
+                batch.clear();
+                msgs.clear();
+                PendingPut<ID, DATA> pendingPut;
+                while (batch.size() < ASYNC_PUT_BATCH_SIZE && (pendingPut = pendingPuts.poll()) != null) {
+                    batch.add(pendingPut);
+                    msgs.add(pendingPut.msg);
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                numPendingPuts.addAndGet(-batch.size());
+                try {
+                    boolean[] result = doPutAllToQueue(msgs);
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).result.complete(result[i]);
+                    }
+                } catch (Exception e) {
+                    QueueException qe = e instanceof QueueException ? (QueueException) e : new QueueException(e);
+                    batch.forEach(p -> p.result.completeExceptionally(qe));
+                }
+            }
+        } finally {
+            pendingPutsScheduled.set(false);
+            /* messages added after the last poll but before the flag was cleared */
+            schedulePendingPuts();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public CompletableFuture<Boolean> queueAsync(IQueueMessage<ID, DATA> msg) {
+        return runAsync(() -> queue(msg));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public CompletableFuture<Boolean> requeueAsync(IQueueMessage<ID, DATA> msg) {
+        return runAsync(() -> requeue(msg));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public CompletableFuture<Boolean> requeueSilentAsync(IQueueMessage<ID, DATA> msg) {
+        return runAsync(() -> requeueSilent(msg));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public CompletableFuture<Void> finishAsync(IQueueMessage<ID, DATA> msg) {
+        return runAsync(() -> {
+            finish(msg);
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public CompletableFuture<IQueueMessage<ID, DATA>> takeAsync() {
+        return runAsync(this::take);
+    }
 }
@@ -9,6 +9,7 @@ import org.apache.commons.lang3.StringUtils;
 import javax.jms.*;
 import java.lang.IllegalStateException;
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 /**
  * (Experimental) ActiveMQ implementation of {@link IQueue}.
@@ -355,10 +356,25 @@ public abstract class ActiveMqQueue<ID, DATA> extends AbstractQueue<ID, DATA> {
      */
     @Override
     public IQueueMessage<ID, DATA> take() throws QueueException.EphemeralIsFull {
+        return take(1000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Waits using {@link MessageConsumer#receive(long)}.</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     * @since 1.0.1
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take(long timeout, TimeUnit unit) throws QueueException.EphemeralIsFull {
         try {
             MessageConsumer consumer = getMessageConsumer();
             synchronized (consumer) {
-                Message message = consumer.receive(1000);
+                /* receive(0) blocks indefinitely, so non-positive timeout means "do not wait" */
+                long timeoutMs = unit.toMillis(timeout);
+                Message message = timeoutMs > 0 ? consumer.receive(timeoutMs) : consumer.receiveNoWait();
                 if (message instanceof BytesMessage) {
                     BytesMessage msg = (BytesMessage) message;
                     byte[] buff = new byte[(int) msg.getBodyLength()];
@@ -3,15 +3,21 @@ package com.github.ddth.queue.impl;
 import com.github.ddth.commons.redis.JedisConnector;
 import com.github.ddth.queue.IQueue;
 import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.OrphanMessagesPage;
+import com.github.ddth.queue.OrphanMessagesPage.TimeIndexKey;
+import com.github.ddth.queue.internal.utils.RedisScript;
 import com.github.ddth.queue.internal.utils.RedisUtils;
 import com.github.ddth.queue.utils.QueueException;
 import redis.clients.jedis.BinaryJedisCommands;
+import redis.clients.jedis.Tuple;
 
 import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Base Redis implementation of {@link IQueue}.
@@ -43,6 +49,10 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
     public final static String DEFAULT_HASH_NAME = "queue_h";
     public final static String DEFAULT_LIST_NAME = "queue_l";
     public final static String DEFAULT_SORTED_SET_NAME = "queue_s";
+    /**
+     * @since 1.0.1
+     */
+    public final static int DEFAULT_ORPHAN_MESSAGES_LIMIT = 100;
 
     private String redisPassword = DEFAULT_PASSWORD;
     private JedisConnector jedisConnector;
@@ -61,6 +71,8 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
     private String _redisSortedSetName = DEFAULT_SORTED_SET_NAME;
     private byte[] redisSortedSetName = _redisSortedSetName.getBytes(StandardCharsets.UTF_8);
 
+    private int orphanMessagesLimit = DEFAULT_ORPHAN_MESSAGES_LIMIT;
+
     /**
      * Get the current {@link JedisConnector} used by this queue.
      *
@@ -207,12 +219,43 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
         return this;
     }
 
+    /**
+     * Max number of messages returned by {@link #getOrphanMessages(long)}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getOrphanMessagesLimit() {
+        return orphanMessagesLimit;
+    }
+
+    /**
+     * Max number of messages returned by {@link #getOrphanMessages(long)}, a value less than {@code 1} means "no
+     * limit".
+     *
+     * @param orphanMessagesLimit
+     * @return
+     * @since 1.0.1
+     */
+    public BaseRedisQueue<ID, DATA> setOrphanMessagesLimit(int orphanMessagesLimit) {
+        this.orphanMessagesLimit = orphanMessagesLimit;
+        return this;
+    }
+
     /*----------------------------------------------------------------------*/
     /**
      * LUA script to take a message out of queue.
      */
     private String scriptTake;
     private byte[] scriptTakeAsBytes;
+    private RedisScript redisScriptTake;
+
+    /**
+     * LUA script to take a batch of messages out of queue.
+     */
+    private String scriptTakeMany;
+    private byte[] scriptTakeManyAsBytes;
+    private RedisScript redisScriptTakeMany;
 
 //    /**
 //     * LUA script to move a message from ephemeral storage to queue storage.
@@ -256,9 +299,109 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
     public BaseRedisQueue<ID, DATA> setScriptTake(String scriptTake) {
         this.scriptTake = scriptTake;
         scriptTakeAsBytes = scriptTake != null ? scriptTake.getBytes(StandardCharsets.UTF_8) : null;
+        redisScriptTake = scriptTake != null ? new RedisScript(scriptTake) : null;
+        return this;
+    }
+
+    /**
+     * LUA script to take a message out of queue, to be executed via {@code EVALSHA}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    protected RedisScript getRedisScriptTake() {
+        if (redisScriptTake == null && scriptTake != null) {
+            redisScriptTake = new RedisScript(scriptTake);
+        }
+        return redisScriptTake;
+    }
+
+    /**
+     * LUA script to take a batch of messages out of queue.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getScriptTakeMany() {
+        return scriptTakeMany;
+    }
+
+    /**
+     * LUA script to take a batch of messages out of queue.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    protected byte[] getScriptTakeManyAsBytes() {
+        if (scriptTakeManyAsBytes == null) {
+            scriptTakeManyAsBytes = scriptTakeMany != null ? scriptTakeMany.getBytes(StandardCharsets.UTF_8) : null;
+        }
+        return scriptTakeManyAsBytes;
+    }
+
+    /**
+     * LUA script to take a batch of messages out of queue.
+     *
+     * <p>
+     * Normally queue implementations will build this script; no need to "set"
+     * it from outside.
+     * </p>
+     *
+     * @param scriptTakeMany
+     * @return
+     * @since 1.0.1
+     */
+    public BaseRedisQueue<ID, DATA> setScriptTakeMany(String scriptTakeMany) {
+        this.scriptTakeMany = scriptTakeMany;
+        scriptTakeManyAsBytes = scriptTakeMany != null ? scriptTakeMany.getBytes(StandardCharsets.UTF_8) : null;
+        redisScriptTakeMany = scriptTakeMany != null ? new RedisScript(scriptTakeMany) : null;
         return this;
     }
 
+    /**
+     * LUA script to take a batch of messages out of queue, to be executed via {@code EVALSHA}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    protected RedisScript getRedisScriptTakeMany() {
+        if (redisScriptTakeMany == null && scriptTakeMany != null) {
+            redisScriptTakeMany = new RedisScript(scriptTakeMany);
+        }
+        return redisScriptTakeMany;
+    }
+
+    /**
+     * All LUA scripts used by this queue, to be loaded into Redis server's script cache by {@link #init()}.
+     *
+     * <p>Sub-class that adds its own scripts should override this method and include them.</p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    protected Collection<RedisScript> getRedisScripts() {
+        List<RedisScript> scripts = new ArrayList<>();
+        if (getRedisScriptTake() != null) {
+            scripts.add(getRedisScriptTake());
+        }
+        if (getRedisScriptTakeMany() != null) {
+            scripts.add(getRedisScriptTakeMany());
+        }
+        return scripts;
+    }
+
+    /**
+     * Load LUA scripts into Redis server's script cache ({@code SCRIPT LOAD}), so that they can be executed via
+     * {@code EVALSHA}.
+     *
+     * <p>Scripts that are not loaded (e.g. Redis server is not reachable yet) are loaded transparently on first
+     * use.</p>
+     *
+     * @param scripts
+     * @since 1.0.1
+     */
+    protected abstract void loadScripts(Collection<RedisScript> scripts);
+
 //    /**
 //     * LUA script to move a message from ephemeral storage to queue storage.
 //     *
@@ -340,7 +483,31 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
                     + "redis.call(\"zadd\", \"{1}\", ARGV[1], qid); return redis.call(\"hget\", \"{2}\", qid) "
                     + "else return nil end";
         }
-        scriptTake = MessageFormat.format(scriptTake, _redisListName, _redisSortedSetName, _redisHashName);
+        setScriptTake(MessageFormat.format(scriptTake, _redisListName, _redisSortedSetName, _redisHashName));
+
+        if (isEphemeralDisabled()) {
+            /*
+             * Script details (ephemeral is disabled): same as scriptTake, but
+             * repeated up to ARGV[2] times. Contents of all taken messages are
+             * returned as an array.
+             */
+            scriptTakeMany = "local result='{}'; for i=1,tonumber(ARGV[2]) do "
+                    + "local qid=redis.call(\"lpop\",\"{0}\"); if not qid then break end; "
+                    + "local qcontent=redis.call(\"hget\", \"{2}\", qid); redis.call(\"hdel\", \"{2}\", qid); "
+                    + "if qcontent then table.insert(result, qcontent) end end; return result";
+        } else {
+            /*
+             * Script details (ephemeral is enabled): same as scriptTake, but
+             * repeated up to ARGV[2] times. Contents of all taken messages are
+             * returned as an array.
+             */
+            scriptTakeMany = "local result='{}'; for i=1,tonumber(ARGV[2]) do "
+                    + "local qid=redis.call(\"lpop\",\"{0}\"); if not qid then break end; "
+                    + "redis.call(\"zadd\", \"{1}\", ARGV[1], qid); local qcontent=redis.call(\"hget\", \"{2}\", qid); "
+                    + "if qcontent then table.insert(result, qcontent) end end; return result";
+        }
+        setScriptTakeMany(
+                MessageFormat.format(scriptTakeMany, _redisListName, _redisSortedSetName, _redisHashName));
 
 //        /*
 //         * Script details: remove qId from the SortedSet and rpush it to the
@@ -358,6 +525,8 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
             throw new IllegalStateException("Jedis connector is null.");
         }
 
+        loadScripts(getRedisScripts());
+
         return this;
     }
 
@@ -405,6 +574,22 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
      */
     protected abstract boolean remove(IQueueMessage<ID, DATA> msg) throws QueueException;
 
+    /**
+     * Remove a batch of messages completely.
+     *
+     * <p>Default implementation calls {@link #remove(IQueueMessage)} for each message. Sub-class should override this
+     * method to remove all messages in one round-trip.</p>
+     *
+     * @param msgs
+     * @throws QueueException if error (e.g. IOException while communicating with Redis server)
+     * @since 1.0.1
+     */
+    protected void removeAll(Collection<? extends IQueueMessage<ID, DATA>> msgs) throws QueueException {
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            remove(msg);
+        }
+    }
+
     /**
      * Store a new message.
      *
@@ -421,6 +606,25 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
      */
     protected abstract boolean storeNew(IQueueMessage<ID, DATA> msg);
 
+    /**
+     * Store a batch of new messages.
+     *
+     * <p>Default implementation calls {@link #storeNew(IQueueMessage)} for each message. Sub-class should override this
+     * method to store all messages in one round-trip.</p>
+     *
+     * @param msgs
+     * @return status of each message, the same semantics as return value of {@link #storeNew(IQueueMessage)}
+     * @since 1.0.1
+     */
+    protected boolean[] storeNewAll(List<IQueueMessage<ID, DATA>> msgs) {
+        boolean[] result = new boolean[msgs.size()];
+        int i = 0;
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            result[i++] = storeNew(msg);
+        }
+        return result;
+    }
+
     /**
      * Re-store an old message (called by {@link #requeue(IQueueMessage)} or
      * {@link #requeueSilent(IQueueMessage)}.
@@ -448,6 +652,29 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
                 storeOld(msg);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        return storeNewAll(msgs);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Concurrent calls are coalesced: pending messages are stored in batches, each batch with one {@code MULTI/EXEC} block (see {@link #storeNewAll(List)}), so that
+     * one Redis round-trip serves many calls.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public CompletableFuture<Boolean> queueAsync(IQueueMessage<ID, DATA> msg) {
+        return queueAsyncBatched(msg);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -459,26 +686,61 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
 
     /**
      * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public void finishAll(Collection<? extends IQueueMessage<ID, DATA>> msgs) {
+        if (msgs != null && !msgs.isEmpty()) {
+            removeAll(msgs);
+        }
+    }
+
+    /**
+     * Fetch contents of messages from the Redis hash with one {@code HMGET} command.
+     *
+     * @param jc
+     * @param fields
+     * @param result
+     * @since 1.0.1
+     */
+    protected void fetchMessages(BinaryJedisCommands jc, List<byte[]> fields,
+            Collection<IQueueMessage<ID, DATA>> result) {
+        if (fields.isEmpty()) {
+            return;
+        }
+        List<byte[]> dataList = jc.hmget(getRedisHashNameAsBytes(), fields.toArray(new byte[fields.size()][]));
+        if (dataList != null) {
+            for (byte[] data : dataList) {
+                IQueueMessage<ID, DATA> msg = data != null ? deserialize(data) : null;
+                if (msg != null) {
+                    result.add(msg);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>At most {@link #getOrphanMessagesLimit()} messages, oldest first, are returned. Message contents are fetched
+     * with one {@code HMGET} command.</p>
      */
     @Override
     public Collection<IQueueMessage<ID, DATA>> getOrphanMessages(long thresholdTimestampMs) {
-        Collection<IQueueMessage<ID, DATA>> orphanMessages = new HashSet<>();
+        Collection<IQueueMessage<ID, DATA>> orphanMessages = new ArrayList<>();
         if (!isEphemeralDisabled()) {
             BinaryJedisCommands jc = getBinaryJedisCommands();
             try {
                 long now = System.currentTimeMillis();
-                Collection<IQueueMessage<ID, DATA>> result = new HashSet<>();
                 byte[] min = "0".getBytes();
                 byte[] max = String.valueOf(now - thresholdTimestampMs).getBytes();
-                Set<byte[]> fields = jc.zrangeByScore(getRedisSortedSetNameAsBytes(), min, max, 0, 100);
-                for (byte[] field : fields) {
-                    byte[] data = jc.hget(getRedisHashNameAsBytes(), field);
-                    IQueueMessage<ID, DATA> msg = deserialize(data);
-                    if (msg != null) {
-                        result.add(msg);
-                    }
+                Set<byte[]> fields = orphanMessagesLimit > 0 ?
+                        jc.zrangeByScore(getRedisSortedSetNameAsBytes(), min, max, 0, orphanMessagesLimit) :
+                        jc.zrangeByScore(getRedisSortedSetNameAsBytes(), min, max);
+                if (fields != null) {
+                    fetchMessages(jc, new ArrayList<>(fields), orphanMessages);
                 }
-                return result;
             } finally {
                 closeJedisCommands(jc);
             }
@@ -486,6 +748,64 @@ public abstract class BaseRedisQueue<ID, DATA> extends AbstractEphemeralSupportQ
         return orphanMessages;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The page is read from the ephemeral sorted-set, hence messages are ordered by the time they were taken (the
+     * sorted-set's score, which is also what {@code thresholdTimestampMs} is compared against), not by queue
+     * timestamp. The continuation token encodes {@code <take-time>:<id>} of the last message. Message contents are
+     * fetched with one {@code HMGET} command.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public OrphanMessagesPage<ID, DATA> getOrphanMessages(long thresholdTimestampMs, int limit,
+            String continuationToken) {
+        List<IQueueMessage<ID, DATA>> orphanMessages = new ArrayList<>();
+        if (isEphemeralDisabled() || limit < 1) {
+            return new OrphanMessagesPage<>(orphanMessages, null);
+        }
+        BinaryJedisCommands jc = getBinaryJedisCommands();
+        try {
+            byte[] key = getRedisSortedSetNameAsBytes();
+            byte[] max = String.valueOf(System.currentTimeMillis() - thresholdTimestampMs).getBytes();
+            List<byte[]> fields = new ArrayList<>();
+            List<Long> scores = new ArrayList<>();
+            TimeIndexKey after = TimeIndexKey.fromToken(continuationToken);
+            byte[] min = "0".getBytes();
+            if (after != null) {
+                /* members with the same score are ordered lexicographically by Redis */
+                String afterId = after.getId().toString();
+                byte[] score = String.valueOf(after.getTimestamp()).getBytes();
+                for (byte[] field : jc.zrangeByScore(key, score, score)) {
+                    if (new String(field, StandardCharsets.UTF_8).compareTo(afterId) > 0) {
+                        fields.add(field);
+                        scores.add(after.getTimestamp());
+                    }
+                }
+                min = ("(" + after.getTimestamp()).getBytes();
+            }
+            if (fields.size() <= limit) {
+                for (Tuple tuple : jc.zrangeByScoreWithScores(key, min, max, 0, limit + 1 - fields.size())) {
+                    fields.add(tuple.getBinaryElement());
+                    scores.add((long) tuple.getScore());
+                }
+            }
+            boolean hasMore = fields.size() > limit;
+            if (hasMore) {
+                fields = fields.subList(0, limit);
+            }
+            fetchMessages(jc, fields, orphanMessages);
+            String token = hasMore ?
+                    new TimeIndexKey(scores.get(limit - 1),
+                            new String(fields.get(limit - 1), StandardCharsets.UTF_8)).toToken() :
+                    null;
+            return new OrphanMessagesPage<>(orphanMessages, token);
+        } finally {
+            closeJedisCommands(jc);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
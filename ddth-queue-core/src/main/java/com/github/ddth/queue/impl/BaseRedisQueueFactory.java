@@ -16,6 +16,10 @@ public abstract class BaseRedisQueueFactory<T extends RedisQueue<ID, DATA>, ID,
     public final static String SPEC_FIELD_SORTED_SET_NAME = "sorted_set_name";
     public final static String SPEC_FIELD_HOST_AND_PORT = "host_and_port";
     public final static String SPEC_FIELD_PASSWORD = "password";
+    /**
+     * @since 1.0.1
+     */
+    public final static String SPEC_FIELD_ORPHAN_MESSAGES_LIMIT = "orphan_messages_limit";
 
     private JedisConnector defaultJedisConnector;
     /**
@@ -26,6 +30,7 @@ public abstract class BaseRedisQueueFactory<T extends RedisQueue<ID, DATA>, ID,
 
     private String defaultPassword;
     private String defaultHashName = RedisQueue.DEFAULT_HASH_NAME, defaultListName = RedisQueue.DEFAULT_LIST_NAME, defaultSortedSetName = RedisQueue.DEFAULT_SORTED_SET_NAME;
+    private int defaultOrphanMessagesLimit = BaseRedisQueue.DEFAULT_ORPHAN_MESSAGES_LIMIT;
 
     /**
      * If all {@link BaseRedisQueue} instances are connecting to one Redis
@@ -165,6 +170,30 @@ public abstract class BaseRedisQueueFactory<T extends RedisQueue<ID, DATA>, ID,
         return this;
     }
 
+    /**
+     * Max number of messages returned by {@link BaseRedisQueue#getOrphanMessages(long)}, passed to all queues created
+     * by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getDefaultOrphanMessagesLimit() {
+        return defaultOrphanMessagesLimit;
+    }
+
+    /**
+     * Max number of messages returned by {@link BaseRedisQueue#getOrphanMessages(long)}, passed to all queues created
+     * by this factory.
+     *
+     * @param defaultOrphanMessagesLimit
+     * @return
+     * @since 1.0.1
+     */
+    public BaseRedisQueueFactory<T, ID, DATA> setDefaultOrphanMessagesLimit(int defaultOrphanMessagesLimit) {
+        this.defaultOrphanMessagesLimit = defaultOrphanMessagesLimit;
+        return this;
+    }
+
     /**
      * Destroy method.
      *
@@ -0,0 +1,898 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.commons.redis.JedisConnector;
+import com.github.ddth.commons.redis.JedisUtils;
+import com.github.ddth.queue.IPartitionSupport;
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.OrphanMessagesPage;
+import com.github.ddth.queue.OrphanMessagesPage.TimeIndexKey;
+import com.github.ddth.queue.internal.utils.RedisScript;
+import com.github.ddth.queue.internal.utils.RedisUtils;
+import com.github.ddth.queue.utils.QueueException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Redis Cluster implementation of {@link IQueue}.
+ *
+ * <p>
+ * Implementation:
+ * <ul>
+ * <li>The queue is split into {@link #setNumPartitions(int)} partitions. Each partition has its own hash, list and
+ * sorted-set (see {@link RedisQueue}); names of the three keys share the hash-tag {@code {<hashTag>:<partition>}}, so
+ * they belong to the same hash slot and can be used by one LUA script. Partitions are spread over cluster nodes by
+ * Redis Cluster's slot assignment.</li>
+ * <li>A message is stored in the partition selected by its partition key (see {@link IPartitionSupport}), or by its
+ * id if it has no partition key.</li>
+ * <li>Consumers take messages from partitions in a round-robin manner.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Features:</p>
+ * <ul>
+ * <li>Queue-size support: yes</li>
+ * <li>Ephemeral storage support: yes</li>
+ * <li>Ephemeral-size support: yes</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public abstract class ClusteredRedisQueue<ID, DATA> extends AbstractEphemeralSupportQueue<ID, DATA> {
+    private final Logger LOGGER = LoggerFactory.getLogger(ClusteredRedisQueue.class);
+
+    public final static String DEFAULT_HOSTS_AND_PORTS = Protocol.DEFAULT_HOST + ":" + Protocol.DEFAULT_PORT;
+    public final static String DEFAULT_PASSWORD = null;
+    public final static String DEFAULT_HASH_NAME = BaseRedisQueue.DEFAULT_HASH_NAME;
+    public final static String DEFAULT_LIST_NAME = BaseRedisQueue.DEFAULT_LIST_NAME;
+    public final static String DEFAULT_SORTED_SET_NAME = BaseRedisQueue.DEFAULT_SORTED_SET_NAME;
+    public final static String DEFAULT_HASH_TAG = "queue";
+    public final static int DEFAULT_NUM_PARTITIONS = 1;
+    public final static int DEFAULT_ORPHAN_MESSAGES_LIMIT = BaseRedisQueue.DEFAULT_ORPHAN_MESSAGES_LIMIT;
+
+    /* max number of messages passed to one script call */
+    private final static int MAX_MSGS_PER_CALL = 1000;
+
+    /*
+     * All scripts: KEYS[1] = list, KEYS[2] = sorted-set, KEYS[3] = hash
+     */
+    /*
+     * ARGV: '1' to remove from sorted-set first, then pairs of (qid, content); returns one result per message: 1 if
+     * its qid was rpush-ed, 0 otherwise
+     */
+    private final static RedisScript SCRIPT_STORE = new RedisScript(
+            "local result={}; for i=2,#ARGV,2 do if ARGV[1]=='1' then redis.call('zrem',KEYS[2],ARGV[i]) end; "
+                    + "redis.call('hset',KEYS[3],ARGV[i],ARGV[i+1]); "
+                    + "table.insert(result,redis.call('rpush',KEYS[1],ARGV[i])>0 and 1 or 0) end; return result");
+    /* ARGV: timestamp, max number of messages, '1' if ephemeral storage is disabled; returns message contents */
+    private final static RedisScript SCRIPT_TAKE = new RedisScript(
+            "local result={}; for i=1,tonumber(ARGV[2]) do local qid=redis.call('lpop',KEYS[1]); "
+                    + "if not qid then break end; local c=redis.call('hget',KEYS[3],qid); "
+                    + "if ARGV[3]=='1' then redis.call('hdel',KEYS[3],qid) "
+                    + "else redis.call('zadd',KEYS[2],ARGV[1],qid) end; "
+                    + "if c then table.insert(result,c) end end; return result");
+    /* ARGV: qids; returns number of deleted messages */
+    private final static RedisScript SCRIPT_REMOVE = new RedisScript(
+            "redis.call('zrem',KEYS[2],unpack(ARGV)); return redis.call('hdel',KEYS[3],unpack(ARGV))");
+
+    private String redisHostsAndPorts = DEFAULT_HOSTS_AND_PORTS;
+    private String redisPassword = DEFAULT_PASSWORD;
+    private JedisConnector jedisConnector;
+    /**
+     * Flag to mark if the Redis resource (e.g. Redis client pool) is created
+     * and handled by the queue instance.
+     */
+    protected boolean myOwnRedis = true;
+
+    private String redisHashName = DEFAULT_HASH_NAME, redisListName = DEFAULT_LIST_NAME;
+    private String redisSortedSetName = DEFAULT_SORTED_SET_NAME;
+    private String hashTag = DEFAULT_HASH_TAG;
+    private int numPartitions = DEFAULT_NUM_PARTITIONS;
+    private int orphanMessagesLimit = DEFAULT_ORPHAN_MESSAGES_LIMIT;
+
+    /* keys of each partition, built by init() */
+    private byte[][] listKeys, sortedSetKeys, hashKeys;
+    private final AtomicInteger nextPartition = new AtomicInteger();
+    /*
+     * estimated ephemeral size of each partition, built by init(): updated locally by take/finish/re-queue, and
+     * refreshed from Redis one partition at a time (see estimateEphemeralSize())
+     */
+    private AtomicLongArray ephemeralSizes;
+    private final AtomicInteger nextSizePartition = new AtomicInteger();
+    private final AtomicInteger nextOrphanPartition = new AtomicInteger();
+
+    /**
+     * Redis cluster's seed nodes (format {@code host1:port1,host2:port2}).
+     *
+     * @return
+     */
+    public String getRedisHostsAndPorts() {
+        return redisHostsAndPorts;
+    }
+
+    /**
+     * Redis cluster's seed nodes (format {@code host1:port1,host2:port2}).
+     *
+     * @param redisHostsAndPorts
+     * @return
+     */
+    public ClusteredRedisQueue<ID, DATA> setRedisHostsAndPorts(String redisHostsAndPorts) {
+        this.redisHostsAndPorts = redisHostsAndPorts;
+        return this;
+    }
+
+    /**
+     * Redis' password.
+     *
+     * @return
+     */
+    public String getRedisPassword() {
+        return redisPassword;
+    }
+
+    /**
+     * Redis' password.
+     *
+     * @param redisPassword
+     * @return
+     */
+    public ClusteredRedisQueue<ID, DATA> setRedisPassword(String redisPassword) {
+        this.redisPassword = redisPassword;
+        return this;
+    }
+
+    /**
+     * Get the current {@link JedisConnector} used by this queue.
+     *
+     * @return
+     */
+    public JedisConnector getJedisConnector() {
+        return jedisConnector;
+    }
+
+    /**
+     * Setter for {@link #jedisConnector}.
+     *
+     * @param jedisConnector
+     * @param setMyOwnRedis
+     * @return
+     */
+    protected ClusteredRedisQueue<ID, DATA> setJedisConnector(JedisConnector jedisConnector, boolean setMyOwnRedis) {
+        if (myOwnRedis && this.jedisConnector != null) {
+            this.jedisConnector.destroy();
+        }
+        this.jedisConnector = jedisConnector;
+        myOwnRedis = setMyOwnRedis;
+        return this;
+    }
+
+    /**
+     * Set the external {@link JedisConnector} to be used by this queue.
+     *
+     * @param jedisConnector
+     * @return
+     */
+    public ClusteredRedisQueue<ID, DATA> setJedisConnector(JedisConnector jedisConnector) {
+        return setJedisConnector(jedisConnector, false);
+    }
+
+    /**
+     * Name of the Redis hash to store queue messages (prefix, the partition's hash-tag is appended).
+     *
+     * @return
+     */
+    public String getRedisHashName() {
+        return redisHashName;
+    }
+
+    /**
+     * Name of the Redis hash to store queue messages (prefix, the partition's hash-tag is appended).
+     *
+     * @param redisHashName
+     * @return
+     */
+    public ClusteredRedisQueue<ID, DATA> setRedisHashName(String redisHashName) {
+        this.redisHashName = redisHashName;
+        return this;
+    }
+
+    /**
+     * Name of the Redis list to store queue message ids (prefix, the partition's hash-tag is appended).
+     *
+     * @return
+     */
+    public String getRedisListName() {
+        return redisListName;
+    }
+
+    /**
+     * Name of the Redis list to store queue message ids (prefix, the partition's hash-tag is appended).
+     *
+     * @param redisListName
+     * @return
+     */
+    public ClusteredRedisQueue<ID, DATA> setRedisListName(String redisListName) {
+        this.redisListName = redisListName;
+        return this;
+    }
+
+    /**
+     * Name of the Redis sorted-set to store ephemeral message ids (prefix, the partition's hash-tag is appended).
+     *
+     * @return
+     */
+    public String getRedisSortedSetName() {
+        return redisSortedSetName;
+    }
+
+    /**
+     * Name of the Redis sorted-set to store ephemeral message ids (prefix, the partition's hash-tag is appended).
+     *
+     * @param redisSortedSetName
+     * @return
+     */
+    public ClusteredRedisQueue<ID, DATA> setRedisSortedSetName(String redisSortedSetName) {
+        this.redisSortedSetName = redisSortedSetName;
+        return this;
+    }
+
+    /**
+     * Hash-tag shared by keys of one partition.
+     *
+     * @return
+     */
+    public String getHashTag() {
+        return hashTag;
+    }
+
+    /**
+     * Hash-tag shared by keys of one partition. Queues sharing one cluster should use different hash-tags (or key
+     * names).
+     *
+     * @param hashTag
+     * @return
+     */
+    public ClusteredRedisQueue<ID, DATA> setHashTag(String hashTag) {
+        this.hashTag = hashTag;
+        return this;
+    }
+
+    /**
+     * Number of partitions the queue is split into.
+     *
+     * @return
+     */
+    public int getNumPartitions() {
+        return numPartitions;
+    }
+
+    /**
+     * Number of partitions the queue is split into. Must not be changed once the queue has messages: messages are
+     * looked up in the partition computed from their partition key.
+     *
+     * @param numPartitions
+     * @return
+     */
+    public ClusteredRedisQueue<ID, DATA> setNumPartitions(int numPartitions) {
+        this.numPartitions = numPartitions;
+        return this;
+    }
+
+    /**
+     * Max number of messages returned by {@link #getOrphanMessages(long)}.
+     *
+     * @return
+     */
+    public int getOrphanMessagesLimit() {
+        return orphanMessagesLimit;
+    }
+
+    /**
+     * Max number of messages returned by {@link #getOrphanMessages(long)}, a value less than {@code 1} means "no
+     * limit".
+     *
+     * @param orphanMessagesLimit
+     * @return
+     */
+    public ClusteredRedisQueue<ID, DATA> setOrphanMessagesLimit(int orphanMessagesLimit) {
+        this.orphanMessagesLimit = orphanMessagesLimit;
+        return this;
+    }
+
+    /**
+     * Name of a key of a partition, format {@code <name>{<hashTag>:<partition>}}.
+     *
+     * @param name
+     * @param partition
+     * @return
+     */
+    public String buildKeyName(String name, int partition) {
+        return name + "{" + hashTag + ":" + partition + "}";
+    }
+
+    /**
+     * Name of the Redis hash of a partition.
+     *
+     * @param partition
+     * @return
+     */
+    public byte[] getRedisHashNameAsBytes(int partition) {
+        return hashKeys[partition];
+    }
+
+    /**
+     * Name of the Redis list of a partition.
+     *
+     * @param partition
+     * @return
+     */
+    public byte[] getRedisListNameAsBytes(int partition) {
+        return listKeys[partition];
+    }
+
+    /**
+     * Name of the Redis sorted-set of a partition.
+     *
+     * @param partition
+     * @return
+     */
+    public byte[] getRedisSortedSetNameAsBytes(int partition) {
+        return sortedSetKeys[partition];
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Build a {@link JedisConnector} instance for my own use.
+     *
+     * @return
+     */
+    protected JedisConnector buildJedisConnector() {
+        JedisConnector jedisConnector = new JedisConnector();
+        jedisConnector.setJedisPoolConfig(JedisUtils.defaultJedisPoolConfig())
+                .setRedisHostsAndPorts(getRedisHostsAndPorts()).setRedisPassword(getRedisPassword()).init();
+        return jedisConnector;
+    }
+
+    /**
+     * Init method.
+     *
+     * @return
+     * @throws Exception
+     */
+    public ClusteredRedisQueue<ID, DATA> init() throws Exception {
+        if (numPartitions < 1) {
+            throw new IllegalArgumentException("Number of partitions must be positive.");
+        }
+        if (jedisConnector == null) {
+            setJedisConnector(buildJedisConnector(), true);
+        }
+        listKeys = new byte[numPartitions][];
+        sortedSetKeys = new byte[numPartitions][];
+        hashKeys = new byte[numPartitions][];
+        for (int i = 0; i < numPartitions; i++) {
+            listKeys[i] = buildKeyName(redisListName, i).getBytes(StandardCharsets.UTF_8);
+            sortedSetKeys[i] = buildKeyName(redisSortedSetName, i).getBytes(StandardCharsets.UTF_8);
+            hashKeys[i] = buildKeyName(redisHashName, i).getBytes(StandardCharsets.UTF_8);
+        }
+        ephemeralSizes = new AtomicLongArray(numPartitions);
+
+        super.init();
+
+        if (jedisConnector == null) {
+            throw new IllegalStateException("Jedis connector is null.");
+        }
+
+        try {
+            JedisCluster jedisCluster = getJedisCluster();
+            for (int i = 0; i < numPartitions; i++) {
+                for (RedisScript script : new RedisScript[] { SCRIPT_STORE, SCRIPT_TAKE, SCRIPT_REMOVE }) {
+                    script.load(jedisCluster, listKeys[i]);
+                }
+            }
+        } catch (JedisException e) {
+            LOGGER.warn("Cannot load LUA scripts, they will be loaded on first use: " + e.getMessage());
+        }
+
+        return this;
+    }
+
+    /**
+     * Destroy method.
+     */
+    public void destroy() {
+        try {
+            super.destroy();
+        } finally {
+            jedisConnector = RedisUtils.closeJedisConnector(jedisConnector, myOwnRedis);
+        }
+    }
+
+    /**
+     * Get the {@link JedisCluster} instance (shared, must not be closed after use).
+     *
+     * @return
+     */
+    protected JedisCluster getJedisCluster() {
+        return jedisConnector.getJedisCluster();
+    }
+
+    /**
+     * Execute a script against the keys of a partition.
+     *
+     * @param script
+     * @param partition
+     * @param args
+     * @return
+     */
+    private Object eval(RedisScript script, int partition, byte[]... args) {
+        byte[][] params = new byte[args.length + 3][];
+        params[0] = listKeys[partition];
+        params[1] = sortedSetKeys[partition];
+        params[2] = hashKeys[partition];
+        System.arraycopy(args, 0, params, 3, args.length);
+        return script.eval(getJedisCluster(), 3, params);
+    }
+
+    /**
+     * Calculate the partition of a message: by its partition key if any, by its id otherwise.
+     *
+     * @param msg
+     * @return
+     */
+    protected int partitionOf(IQueueMessage<ID, DATA> msg) {
+        if (numPartitions <= 1) {
+            return 0;
+        }
+        Object key = msg instanceof IPartitionSupport ? ((IPartitionSupport) msg).getPartitionKey() : null;
+        if (key == null) {
+            key = msg.getId();
+        }
+        return key != null ? (key.hashCode() & Integer.MAX_VALUE) % numPartitions : 0;
+    }
+
+    private static byte[] toBytes(Object obj) {
+        return obj instanceof byte[] ? (byte[]) obj : obj.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] qid(IQueueMessage<?, ?> msg) {
+        return msg.getId().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Result of the {@code index}-th message of a {@link #SCRIPT_STORE} execution.
+     *
+     * @param response
+     * @param index
+     * @return
+     */
+    private static boolean isStored(Object response, int index) {
+        if (response instanceof List) {
+            List<?> results = (List<?>) response;
+            return index < results.size() && results.get(index) instanceof Number
+                    && ((Number) results.get(index)).longValue() > 0;
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+        boolean removeFromEphemeral = queueCase != null && queueCase != PutToQueueCase.NEW && !isEphemeralDisabled();
+        int partition = partitionOf(msg);
+        Object response = eval(SCRIPT_STORE, partition,
+                (removeFromEphemeral ? "1" : "0").getBytes(StandardCharsets.UTF_8), qid(msg), serialize(msg));
+        if (removeFromEphemeral) {
+            ephemeralSizes.decrementAndGet(partition);
+        }
+        return isStored(response, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages are grouped by partition, each group is stored by one script execution. A message's result is the
+     * script's result for that message; messages of a script execution that fails are reported as not queued (the
+     * error is re-thrown if no script execution succeeds).</p>
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int i = 0; i < numPartitions; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < msgs.size(); i++) {
+            groups.get(partitionOf(msgs.get(i))).add(i);
+        }
+        boolean[] result = new boolean[msgs.size()];
+        JedisException error = null;
+        boolean stored = false;
+        for (int p = 0; p < numPartitions; p++) {
+            List<Integer> group = groups.get(p);
+            for (int from = 0; from < group.size(); from += MAX_MSGS_PER_CALL) {
+                List<Integer> chunk = group.subList(from, Math.min(group.size(), from + MAX_MSGS_PER_CALL));
+                byte[][] args = new byte[chunk.size() * 2 + 1][];
+                args[0] = "0".getBytes(StandardCharsets.UTF_8);
+                int j = 1;
+                for (int index : chunk) {
+                    IQueueMessage<ID, DATA> msg = msgs.get(index);
+                    args[j++] = qid(msg);
+                    args[j++] = serialize(msg);
+                }
+                Object response;
+                try {
+                    response = eval(SCRIPT_STORE, p, args);
+                } catch (JedisException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+                    LOGGER.warn("Cannot store " + chunk.size() + " messages to partition " + p + ": "
+                            + e.getMessage());
+                    continue;
+                }
+                stored = true;
+                for (int k = 0; k < chunk.size(); k++) {
+                    result[chunk.get(k)] = isStored(response, k);
+                }
+            }
+        }
+        if (error != null && !stored) {
+            throw error;
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Concurrent calls are coalesced: pending messages are stored in batches, each batch with one script execution
+     * per partition (see {@link #doPutAllToQueue(List)}), so that one Redis round-trip serves many calls.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public CompletableFuture<Boolean> queueAsync(IQueueMessage<ID, DATA> msg) {
+        return queueAsyncBatched(msg);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish(IQueueMessage<ID, DATA> msg) {
+        if (!isEphemeralDisabled()) {
+            removeFromEphemeral(partitionOf(msg), qid(msg));
+        }
+    }
+
+    /**
+     * Remove messages from the ephemeral storage of a partition.
+     *
+     * @param partition
+     * @param qids
+     */
+    private void removeFromEphemeral(int partition, byte[]... qids) {
+        Object result = eval(SCRIPT_REMOVE, partition, qids);
+        if (result instanceof Number) {
+            ephemeralSizes.addAndGet(partition, -((Number) result).longValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages are grouped by partition, each group is removed by one script execution.</p>
+     */
+    @Override
+    public void finishAll(Collection<? extends IQueueMessage<ID, DATA>> msgs) {
+        if (isEphemeralDisabled() || msgs == null) {
+            return;
+        }
+        List<List<byte[]>> groups = new ArrayList<>();
+        for (int i = 0; i < numPartitions; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            int p = partitionOf(msg);
+            List<byte[]> group = groups.get(p);
+            group.add(qid(msg));
+            if (group.size() >= MAX_MSGS_PER_CALL) {
+                removeFromEphemeral(p, group.toArray(new byte[group.size()][]));
+                group.clear();
+            }
+        }
+        for (int p = 0; p < numPartitions; p++) {
+            List<byte[]> group = groups.get(p);
+            if (!group.isEmpty()) {
+                removeFromEphemeral(p, group.toArray(new byte[group.size()][]));
+            }
+        }
+    }
+
+    /**
+     * Take up to {@code numMsgs} messages, visiting partitions in round-robin order.
+     *
+     * @param numMsgs
+     * @return
+     */
+    private List<IQueueMessage<ID, DATA>> doTake(int numMsgs) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        byte[] now = String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8);
+        byte[] ephemeralDisabled = (isEphemeralDisabled() ? "1" : "0").getBytes(StandardCharsets.UTF_8);
+        int start = (nextPartition.getAndIncrement() & Integer.MAX_VALUE) % numPartitions;
+        for (int i = 0; i < numPartitions && result.size() < numMsgs; i++) {
+            int p = (start + i) % numPartitions;
+            Object response = eval(SCRIPT_TAKE, p, now,
+                    String.valueOf(numMsgs - result.size()).getBytes(StandardCharsets.UTF_8), ephemeralDisabled);
+            if (response instanceof List) {
+                if (!isEphemeralDisabled()) {
+                    ephemeralSizes.addAndGet(p, ((List<?>) response).size());
+                }
+                for (Object item : (List<?>) response) {
+                    IQueueMessage<ID, DATA> msg = deserialize(toBytes(item));
+                    if (msg != null) {
+                        result.add(msg);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimate the size of the ephemeral storage with one Redis command: the size of one partition is refreshed
+     * ({@code ZCARD}), partitions in turn, and added to the locally maintained sizes of the other partitions.
+     *
+     * <p>Messages taken or finished by other queue instances are accounted for when their partitions are refreshed,
+     * i.e. within {@link #getNumPartitions()} calls.</p>
+     *
+     * @return
+     */
+    private int estimateEphemeralSize() {
+        int partition = (nextSizePartition.getAndIncrement() & Integer.MAX_VALUE) % numPartitions;
+        Long size = getJedisCluster().zcard(sortedSetKeys[partition]);
+        ephemeralSizes.set(partition, size != null ? size.longValue() : 0);
+        long total = 0;
+        for (int p = 0; p < numPartitions; p++) {
+            total += Math.max(0, ephemeralSizes.get(p));
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the ephemeral storage is bounded, its size is estimated with one Redis command instead of one command per
+     * partition: the size of one partition is refreshed, partitions in turn, and added to the sizes of the other
+     * partitions as maintained by this queue instance.</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take() throws QueueException.EphemeralIsFull {
+        ensureEphemeralCapacity(1, this::estimateEphemeralSize);
+        List<IQueueMessage<ID, DATA>> result = doTake(1);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the ephemeral storage is bounded, its size is estimated with one Redis command instead of one command per
+     * partition: the size of one partition is refreshed, partitions in turn, and added to the sizes of the other
+     * partitions as maintained by this queue instance.</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException.EphemeralIsFull {
+        int numMsgs = ensureEphemeralCapacity(maxMessages, this::estimateEphemeralSize);
+        return numMsgs > 0 ? doTake(numMsgs) : new ArrayList<>();
+    }
+
+    /**
+     * Fetch contents of messages of a partition with one {@code HMGET} command.
+     *
+     * @param jedisCluster
+     * @param partition
+     * @param fields
+     * @param result
+     */
+    private void fetchMessages(JedisCluster jedisCluster, int partition, Collection<byte[]> fields,
+            List<IQueueMessage<ID, DATA>> result) {
+        if (fields == null || fields.isEmpty()) {
+            return;
+        }
+        List<byte[]> dataList = jedisCluster.hmget(hashKeys[partition], fields.toArray(new byte[fields.size()][]));
+        for (byte[] data : dataList) {
+            IQueueMessage<ID, DATA> msg = data != null ? deserialize(data) : null;
+            if (msg != null) {
+                result.add(msg);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>At most {@link #getOrphanMessagesLimit()} messages are returned, shared evenly by partitions: each partition
+     * contributes up to its share first, then partitions with more orphan messages fill the remaining room, starting
+     * with a different partition on each call. Message contents of each partition are fetched with one {@code HMGET}
+     * command per pass.</p>
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> getOrphanMessages(long thresholdTimestampMs) {
+        List<IQueueMessage<ID, DATA>> orphanMessages = new ArrayList<>();
+        if (isEphemeralDisabled()) {
+            return orphanMessages;
+        }
+        JedisCluster jedisCluster = getJedisCluster();
+        byte[] min = "0".getBytes();
+        byte[] max = String.valueOf(System.currentTimeMillis() - thresholdTimestampMs).getBytes();
+        if (orphanMessagesLimit <= 0) {
+            for (int p = 0; p < numPartitions; p++) {
+                fetchMessages(jedisCluster, p, jedisCluster.zrangeByScore(sortedSetKeys[p], min, max), orphanMessages);
+            }
+            return orphanMessages;
+        }
+        int share = (orphanMessagesLimit + numPartitions - 1) / numPartitions;
+        int start = (nextOrphanPartition.getAndIncrement() & Integer.MAX_VALUE) % numPartitions;
+        List<Integer> morePartitions = new ArrayList<>();
+        for (int i = 0; i < numPartitions && orphanMessages.size() < orphanMessagesLimit; i++) {
+            int p = (start + i) % numPartitions;
+            int limit = Math.min(share, orphanMessagesLimit - orphanMessages.size());
+            Set<byte[]> fields = jedisCluster.zrangeByScore(sortedSetKeys[p], min, max, 0, limit);
+            if (fields != null && fields.size() >= share) {
+                morePartitions.add(p);
+            }
+            fetchMessages(jedisCluster, p, fields, orphanMessages);
+        }
+        for (int p : morePartitions) {
+            int limit = orphanMessagesLimit - orphanMessages.size();
+            if (limit <= 0) {
+                break;
+            }
+            Set<byte[]> fields = jedisCluster.zrangeByScore(sortedSetKeys[p], min, max, share, limit);
+            fetchMessages(jedisCluster, p, fields, orphanMessages);
+        }
+        return orphanMessages;
+    }
+
+    /**
+     * Get one page of orphan messages of a partition, see {@link BaseRedisQueue}.
+     *
+     * @param jedisCluster
+     * @param partition
+     * @param max
+     * @param limit
+     * @param after
+     * @param result
+     * @return key of the last message of the page if the partition has more orphan messages, {@code null} otherwise
+     */
+    private TimeIndexKey getOrphanMessagesPage(JedisCluster jedisCluster, int partition, byte[] max, int limit,
+            TimeIndexKey after, List<IQueueMessage<ID, DATA>> result) {
+        byte[] key = sortedSetKeys[partition];
+        List<byte[]> fields = new ArrayList<>();
+        List<Long> scores = new ArrayList<>();
+        byte[] min = "0".getBytes();
+        if (after != null) {
+            /* members with the same score are ordered lexicographically by Redis */
+            String afterId = after.getId().toString();
+            byte[] score = String.valueOf(after.getTimestamp()).getBytes();
+            for (byte[] field : jedisCluster.zrangeByScore(key, score, score)) {
+                if (new String(field, StandardCharsets.UTF_8).compareTo(afterId) > 0) {
+                    fields.add(field);
+                    scores.add(after.getTimestamp());
+                }
+            }
+            min = ("(" + after.getTimestamp()).getBytes();
+        }
+        if (fields.size() <= limit) {
+            for (Tuple tuple : jedisCluster.zrangeByScoreWithScores(key, min, max, 0, limit + 1 - fields.size())) {
+                fields.add(tuple.getBinaryElement());
+                scores.add((long) tuple.getScore());
+            }
+        }
+        boolean hasMore = fields.size() > limit;
+        if (hasMore) {
+            fields = fields.subList(0, limit);
+        }
+        fetchMessages(jedisCluster, partition, fields, result);
+        return hasMore ?
+                new TimeIndexKey(scores.get(limit - 1), new String(fields.get(limit - 1), StandardCharsets.UTF_8)) :
+                null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Partitions are paged one after another, each one as {@link BaseRedisQueue} does: messages are ordered by the time
+     * they were taken within a partition, not across partitions, and {@link #getOrphanMessagesLimit()} does not apply.
+     * The continuation token is {@code <partition>:<partition's continuation token>}.
+     * </p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public OrphanMessagesPage<ID, DATA> getOrphanMessages(long thresholdTimestampMs, int limit,
+            String continuationToken) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        if (isEphemeralDisabled() || limit < 1) {
+            return new OrphanMessagesPage<>(result, null);
+        }
+        int partition = 0;
+        TimeIndexKey after = null;
+        if (continuationToken != null && !continuationToken.isEmpty()) {
+            int p = continuationToken.indexOf(':');
+            try {
+                partition = Integer.parseInt(continuationToken.substring(0, Math.max(p, 0)));
+            } catch (NumberFormatException e) {
+                partition = -1;
+            }
+            if (partition < 0 || partition >= numPartitions) {
+                throw new IllegalArgumentException("Invalid continuation token [" + continuationToken + "].");
+            }
+            after = TimeIndexKey.fromToken(continuationToken.substring(p + 1));
+        }
+        JedisCluster jedisCluster = getJedisCluster();
+        byte[] max = String.valueOf(System.currentTimeMillis() - thresholdTimestampMs).getBytes();
+        while (partition < numPartitions && result.size() < limit) {
+            after = getOrphanMessagesPage(jedisCluster, partition, max, limit - result.size(), after, result);
+            if (after == null) {
+                /* this partition is done, continue with the next one */
+                partition++;
+            }
+        }
+        return new OrphanMessagesPage<>(result,
+                partition < numPartitions ? partition + ":" + (after != null ? after.toToken() : "") : null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int queueSize() {
+        JedisCluster jedisCluster = getJedisCluster();
+        long size = 0;
+        for (int p = 0; p < numPartitions; p++) {
+            Long result = jedisCluster.llen(listKeys[p]);
+            size += result != null ? result.longValue() : 0;
+        }
+        return (int) size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int ephemeralSize() {
+        if (isEphemeralDisabled()) {
+            return 0;
+        }
+        JedisCluster jedisCluster = getJedisCluster();
+        long size = 0;
+        for (int p = 0; p < numPartitions; p++) {
+            Long result = jedisCluster.zcard(sortedSetKeys[p]);
+            ephemeralSizes.set(p, result != null ? result.longValue() : 0);
+            size += result != null ? result.longValue() : 0;
+        }
+        return (int) size;
+    }
+}
@@ -0,0 +1,294 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.commons.redis.JedisConnector;
+import com.github.ddth.queue.QueueSpec;
+import com.github.ddth.queue.internal.utils.RedisUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Factory to create {@link ClusteredRedisQueue} instances.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public abstract class ClusteredRedisQueueFactory<T extends ClusteredRedisQueue<ID, DATA>, ID, DATA>
+        extends AbstractQueueFactory<T, ID, DATA> {
+    public final static String SPEC_FIELD_HOSTS_AND_PORTS = "hosts_and_ports";
+    public final static String SPEC_FIELD_PASSWORD = "password";
+    public final static String SPEC_FIELD_HASH_NAME = "hash_name";
+    public final static String SPEC_FIELD_LIST_NAME = "list_name";
+    public final static String SPEC_FIELD_SORTED_SET_NAME = "sorted_set_name";
+    public final static String SPEC_FIELD_HASH_TAG = "hash_tag";
+    public final static String SPEC_FIELD_NUM_PARTITIONS = "num_partitions";
+    public final static String SPEC_FIELD_ORPHAN_MESSAGES_LIMIT = "orphan_messages_limit";
+
+    private JedisConnector defaultJedisConnector;
+    /**
+     * Flag to mark if the Redis resource (e.g. Redis client pool) is created
+     * and handled by the factory.
+     */
+    protected boolean myOwnRedis = false;
+
+    private String defaultHostsAndPorts = ClusteredRedisQueue.DEFAULT_HOSTS_AND_PORTS;
+    private String defaultPassword;
+    private String defaultHashName = ClusteredRedisQueue.DEFAULT_HASH_NAME;
+    private String defaultListName = ClusteredRedisQueue.DEFAULT_LIST_NAME;
+    private String defaultSortedSetName = ClusteredRedisQueue.DEFAULT_SORTED_SET_NAME;
+    private int defaultNumPartitions = ClusteredRedisQueue.DEFAULT_NUM_PARTITIONS;
+    private int defaultOrphanMessagesLimit = ClusteredRedisQueue.DEFAULT_ORPHAN_MESSAGES_LIMIT;
+
+    /**
+     * If all {@link ClusteredRedisQueue} instances are connecting to one Redis cluster, it's a good idea to
+     * pre-create a {@link JedisConnector} instance and share it amongst queues created from this factory.
+     *
+     * @return
+     */
+    protected JedisConnector getDefaultJedisConnector() {
+        return defaultJedisConnector;
+    }
+
+    /**
+     * If all {@link ClusteredRedisQueue} instances are connecting to one Redis cluster, it's a good idea to
+     * pre-create a {@link JedisConnector} instance and share it amongst queues created from this factory.
+     *
+     * @param jedisConnector
+     * @param setMyOwnRedis
+     * @return
+     */
+    protected ClusteredRedisQueueFactory<T, ID, DATA> setDefaultJedisConnector(JedisConnector jedisConnector,
+            boolean setMyOwnRedis) {
+        if (myOwnRedis && this.defaultJedisConnector != null) {
+            this.defaultJedisConnector.destroy();
+        }
+        this.defaultJedisConnector = jedisConnector;
+        myOwnRedis = setMyOwnRedis;
+        return this;
+    }
+
+    /**
+     * If all {@link ClusteredRedisQueue} instances are connecting to one Redis cluster, it's a good idea to
+     * pre-create a {@link JedisConnector} instance and share it amongst queues created from this factory.
+     *
+     * @param jedisConnector
+     * @return
+     */
+    public ClusteredRedisQueueFactory<T, ID, DATA> setDefaultJedisConnector(JedisConnector jedisConnector) {
+        return setDefaultJedisConnector(jedisConnector, false);
+    }
+
+    /**
+     * Default Redis cluster's seed nodes (format {@code host1:port1,host2:port2}), passed to all queues created by
+     * this factory.
+     *
+     * @return
+     */
+    public String getDefaultHostsAndPorts() {
+        return defaultHostsAndPorts;
+    }
+
+    /**
+     * Default Redis cluster's seed nodes (format {@code host1:port1,host2:port2}), passed to all queues created by
+     * this factory.
+     *
+     * @param defaultHostsAndPorts
+     * @return
+     */
+    public ClusteredRedisQueueFactory<T, ID, DATA> setDefaultHostsAndPorts(String defaultHostsAndPorts) {
+        this.defaultHostsAndPorts = defaultHostsAndPorts;
+        return this;
+    }
+
+    /**
+     * Redis' password.
+     *
+     * @return
+     */
+    public String getDefaultPassword() {
+        return defaultPassword;
+    }
+
+    /**
+     * Redis' password.
+     *
+     * @param defaultPassword
+     * @return
+     */
+    public ClusteredRedisQueueFactory<T, ID, DATA> setDefaultPassword(String defaultPassword) {
+        this.defaultPassword = defaultPassword;
+        return this;
+    }
+
+    /**
+     * Name of the Redis hash to store queue messages.
+     *
+     * @return
+     */
+    public String getDefaultHashName() {
+        return defaultHashName;
+    }
+
+    /**
+     * Name of the Redis hash to store queue messages.
+     *
+     * @param defaultHashName
+     * @return
+     */
+    public ClusteredRedisQueueFactory<T, ID, DATA> setDefaultHashName(String defaultHashName) {
+        this.defaultHashName = defaultHashName;
+        return this;
+    }
+
+    /**
+     * Name of the Redis list to store queue message ids.
+     *
+     * @return
+     */
+    public String getDefaultListName() {
+        return defaultListName;
+    }
+
+    /**
+     * Name of the Redis list to store queue message ids.
+     *
+     * @param defaultListName
+     * @return
+     */
+    public ClusteredRedisQueueFactory<T, ID, DATA> setDefaultListName(String defaultListName) {
+        this.defaultListName = defaultListName;
+        return this;
+    }
+
+    /**
+     * Name of the Redis sorted-set to store ephemeral message ids.
+     *
+     * @return
+     */
+    public String getDefaultSortedSetName() {
+        return defaultSortedSetName;
+    }
+
+    /**
+     * Name of the Redis sorted-set to store ephemeral message ids.
+     *
+     * @param defaultSortedSetName
+     * @return
+     */
+    public ClusteredRedisQueueFactory<T, ID, DATA> setDefaultSortedSetName(String defaultSortedSetName) {
+        this.defaultSortedSetName = defaultSortedSetName;
+        return this;
+    }
+
+    /**
+     * Default number of partitions each queue is split into, passed to all queues created by this factory.
+     *
+     * @return
+     */
+    public int getDefaultNumPartitions() {
+        return defaultNumPartitions;
+    }
+
+    /**
+     * Default number of partitions each queue is split into, passed to all queues created by this factory.
+     *
+     * @param defaultNumPartitions
+     * @return
+     */
+    public ClusteredRedisQueueFactory<T, ID, DATA> setDefaultNumPartitions(int defaultNumPartitions) {
+        this.defaultNumPartitions = defaultNumPartitions;
+        return this;
+    }
+
+    /**
+     * Max number of messages returned by {@link ClusteredRedisQueue#getOrphanMessages(long)}, passed to all queues
+     * created by this factory.
+     *
+     * @return
+     */
+    public int getDefaultOrphanMessagesLimit() {
+        return defaultOrphanMessagesLimit;
+    }
+
+    /**
+     * Max number of messages returned by {@link ClusteredRedisQueue#getOrphanMessages(long)}, passed to all queues
+     * created by this factory.
+     *
+     * @param defaultOrphanMessagesLimit
+     * @return
+     */
+    public ClusteredRedisQueueFactory<T, ID, DATA> setDefaultOrphanMessagesLimit(int defaultOrphanMessagesLimit) {
+        this.defaultOrphanMessagesLimit = defaultOrphanMessagesLimit;
+        return this;
+    }
+
+    /**
+     * Destroy method.
+     */
+    public void destroy() {
+        try {
+            super.destroy();
+        } finally {
+            defaultJedisConnector = RedisUtils.closeJedisConnector(defaultJedisConnector, myOwnRedis);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void initQueue(T queue, QueueSpec spec) throws Exception {
+        queue.setEphemeralDisabled(getDefaultEphemeralDisabled()).setEphemeralMaxSize(getDefaultEphemeralMaxSize());
+        Boolean ephemeralDisabled = spec.getField(QueueSpec.FIELD_EPHEMERAL_DISABLED, Boolean.class);
+        if (ephemeralDisabled != null) {
+            queue.setEphemeralDisabled(ephemeralDisabled.booleanValue());
+        }
+        Integer maxEphemeralSize = spec.getField(QueueSpec.FIELD_EPHEMERAL_MAX_SIZE, Integer.class);
+        if (maxEphemeralSize != null) {
+            queue.setEphemeralMaxSize(maxEphemeralSize.intValue());
+        }
+
+        queue.setOrphanMessagesLimit(getDefaultOrphanMessagesLimit());
+        Integer orphanMessagesLimit = spec.getField(SPEC_FIELD_ORPHAN_MESSAGES_LIMIT, Integer.class);
+        if (orphanMessagesLimit != null) {
+            queue.setOrphanMessagesLimit(orphanMessagesLimit.intValue());
+        }
+
+        queue.setRedisHostsAndPorts(getDefaultHostsAndPorts()).setRedisPassword(getDefaultPassword())
+                .setJedisConnector(getDefaultJedisConnector());
+        String redisHostsAndPorts = spec.getField(SPEC_FIELD_HOSTS_AND_PORTS);
+        if (!StringUtils.isBlank(redisHostsAndPorts)) {
+            queue.setRedisHostsAndPorts(redisHostsAndPorts);
+        }
+        String redisPassword = spec.getField(SPEC_FIELD_PASSWORD);
+        if (!StringUtils.isBlank(redisPassword)) {
+            queue.setRedisPassword(redisPassword);
+        }
+
+        queue.setRedisHashName(getDefaultHashName()).setRedisListName(getDefaultListName())
+                .setRedisSortedSetName(getDefaultSortedSetName()).setNumPartitions(getDefaultNumPartitions());
+        String redisHashName = spec.getField(SPEC_FIELD_HASH_NAME);
+        if (!StringUtils.isBlank(redisHashName)) {
+            queue.setRedisHashName(redisHashName);
+        }
+        String redisListName = spec.getField(SPEC_FIELD_LIST_NAME);
+        if (!StringUtils.isBlank(redisListName)) {
+            queue.setRedisListName(redisListName);
+        }
+        String redisSortedSetName = spec.getField(SPEC_FIELD_SORTED_SET_NAME);
+        if (!StringUtils.isBlank(redisSortedSetName)) {
+            queue.setRedisSortedSetName(redisSortedSetName);
+        }
+        /* queues created by one factory share the cluster: each queue gets its own hash-tag by default */
+        String hashTag = spec.getField(SPEC_FIELD_HASH_TAG);
+        queue.setHashTag(!StringUtils.isBlank(hashTag) ?
+                hashTag :
+                (!StringUtils.isBlank(spec.name) ? spec.name : ClusteredRedisQueue.DEFAULT_HASH_TAG));
+        Integer numPartitions = spec.getField(SPEC_FIELD_NUM_PARTITIONS, Integer.class);
+        if (numPartitions != null) {
+            queue.setNumPartitions(numPartitions.intValue());
+        }
+
+        super.initQueue(queue, spec);
+    }
+}
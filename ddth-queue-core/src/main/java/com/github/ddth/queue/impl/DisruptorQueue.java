@@ -3,11 +3,20 @@ package com.github.ddth.queue.impl;
 import com.github.ddth.queue.IQueue;
 import com.github.ddth.queue.IQueueMessage;
 import com.github.ddth.queue.utils.QueueException;
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.BlockingWaitStrategy;
 import com.lmax.disruptor.EventFactory;
+import com.lmax.disruptor.LiteTimeoutBlockingWaitStrategy;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -29,6 +38,13 @@ import java.util.concurrent.locks.ReentrantLock;
  * <li>Ephemeral-size support: yes</li>
  * </ul>
  *
+ * <p>
+ * By default, producers are serialized by a lock in front of a single-producer ring buffer, and consumers are
+ * serialized by another lock. In lock-free mode ({@link #setLockFree(boolean)}), a multi-producer ring buffer is used
+ * and consumers claim sequences with a CAS, WorkerPool-style: each in-progress take holds its own gating
+ * {@link Sequence}, so a consumer never waits for another one and there is no lock on either side.
+ * </p>
+ *
  * @author Thanh Ba Nguyen <bnguyen2k@gmail.com>
  * @see <a href="https://lmax-exchange.github.io/disruptor/">LMAXDisruptor</a>
  * @since 0.4.0
@@ -50,11 +66,25 @@ public class DisruptorQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DA
     private final Lock LOCK_TAKE = new ReentrantLock();
     private final Lock LOCK_PUT = new ReentrantLock();
 
+    /**
+     * Default wait time of the wait strategy used in lock-free mode, in milliseconds.
+     *
+     * @since 1.0.1
+     */
+    public final static long DEFAULT_LOCK_FREE_WAIT_TIMEOUT_MS = 10;
+
     private RingBuffer<Event<ID, DATA>> ringBuffer;
     private Sequence consumedSeq;
     private long knownPublishedSeq;
     private int ringSize = 1024;
 
+    private boolean lockFree = false;
+    private WaitStrategy waitStrategy;
+    private Sequence claimedSeq;
+    private SequenceBarrier consumerBarrier;
+    /* per-take gating sequences (lock-free mode), reused by subsequent takes; Long.MAX_VALUE when idle */
+    private final ConcurrentLinkedQueue<Sequence> idleConsumerSeqs = new ConcurrentLinkedQueue<>();
+
     public DisruptorQueue() {
     }
 
@@ -101,6 +131,63 @@ public class DisruptorQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DA
         return this;
     }
 
+    /**
+     * Is lock-free mode enabled?
+     *
+     * <p>In lock-free mode, a multi-producer ring buffer is used so producers do not need a lock, and consumers
+     * claim sequences with a CAS instead of a lock. Default value is {@code false}.</p>
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isLockFree() {
+        return lockFree;
+    }
+
+    /**
+     * Enable/Disable lock-free mode. Must be called before {@link #init()}.
+     *
+     * <p>In lock-free mode, a multi-producer ring buffer is used so producers do not need a lock, and consumers
+     * claim sequences with a CAS instead of a lock. Default value is {@code false}.</p>
+     *
+     * @param lockFree
+     * @return
+     * @since 1.0.1
+     */
+    public DisruptorQueue<ID, DATA> setLockFree(boolean lockFree) {
+        this.lockFree = lockFree;
+        return this;
+    }
+
+    /**
+     * Disruptor's {@link WaitStrategy} of the ring buffer.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Disruptor's {@link WaitStrategy} of the ring buffer. Must be called before {@link #init()}.
+     *
+     * <p>If not set, {@link BlockingWaitStrategy} is used in default mode, and {@link LiteTimeoutBlockingWaitStrategy}
+     * is used in lock-free mode (it does not take a lock on publishing unless a consumer is waiting).</p>
+     *
+     * <p>In lock-free mode, if the wait strategy supports timeout ({@link TimeoutBlockingWaitStrategy} or
+     * {@link LiteTimeoutBlockingWaitStrategy}), {@link #take(long, TimeUnit)} waits on the ring buffer using the wait
+     * strategy; otherwise it waits on a condition signaled by producers.</p>
+     *
+     * @param waitStrategy
+     * @return
+     * @since 1.0.1
+     */
+    public DisruptorQueue<ID, DATA> setWaitStrategy(WaitStrategy waitStrategy) {
+        this.waitStrategy = waitStrategy;
+        return this;
+    }
+
     /**
      * Init method.
      *
@@ -108,16 +195,32 @@ public class DisruptorQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DA
      * @throws Exception
      */
     public DisruptorQueue<ID, DATA> init() throws Exception {
-        /* single producer "seems" to offer better performance */
-        ringBuffer = RingBuffer.createSingleProducer(EVENT_FACTORY, ringSize);
-        // ringBuffer = RingBuffer.createMultiProducer(EVENT_FACTORY, ringSize);
+        if (lockFree) {
+            if (waitStrategy == null) {
+                waitStrategy = new LiteTimeoutBlockingWaitStrategy(DEFAULT_LOCK_FREE_WAIT_TIMEOUT_MS,
+                        TimeUnit.MILLISECONDS);
+            }
+            ringBuffer = RingBuffer.createMultiProducer(EVENT_FACTORY, ringSize, waitStrategy);
+        } else {
+            if (waitStrategy == null) {
+                waitStrategy = new BlockingWaitStrategy();
+            }
+            /* single producer "seems" to offer better performance */
+            ringBuffer = RingBuffer.createSingleProducer(EVENT_FACTORY, ringSize, waitStrategy);
+        }
 
         initEphemeralStorage(ringSize);
-        consumedSeq = new Sequence();
-        ringBuffer.addGatingSequences(consumedSeq);
         long cursor = ringBuffer.getCursor();
-        consumedSeq.set(cursor);
-        knownPublishedSeq = cursor;
+        if (lockFree) {
+            /* unclaimed slots are protected by claimedSeq, slots being read by the consumers' own sequences */
+            claimedSeq = new Sequence(cursor);
+            ringBuffer.addGatingSequences(claimedSeq);
+            consumerBarrier = ringBuffer.newBarrier();
+        } else {
+            consumedSeq = new Sequence(cursor);
+            ringBuffer.addGatingSequences(consumedSeq);
+            knownPublishedSeq = cursor;
+        }
 
         super.init();
         return this;
@@ -129,6 +232,18 @@ public class DisruptorQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DA
     @Override
     protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase)
             throws QueueException.QueueIsFull {
+        if (lockFree) {
+            if (!ringBuffer.tryPublishEvent((event, _seq) -> {
+                event.set(msg);
+                if (queueCase != null && queueCase != PutToQueueCase.NEW) {
+                    doRemoveFromEphemeralStorage(msg);
+                }
+            })) {
+                throw new QueueException.QueueIsFull(getRingSize());
+            }
+            signalMessageAvailable();
+            return true;
+        }
         LOCK_PUT.lock();
         try {
             if (!ringBuffer.tryPublishEvent((event, _seq) -> {
@@ -139,12 +254,12 @@ public class DisruptorQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DA
                 }
             })) {
                 throw new QueueException.QueueIsFull(getRingSize());
-            } else {
-                return true;
             }
         } finally {
             LOCK_PUT.unlock();
         }
+        signalMessageAvailable();
+        return true;
     }
 
     /**
@@ -161,6 +276,9 @@ public class DisruptorQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DA
      * @return the available message or {@code null} if the ring buffer is empty
      */
     protected IQueueMessage<ID, DATA> takeFromRingBuffer() {
+        if (lockFree) {
+            return takeFromRingBufferLockFree();
+        }
         LOCK_TAKE.lock();
         try {
             long l = consumedSeq.get() + 1;
@@ -184,6 +302,62 @@ public class DisruptorQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DA
         }
     }
 
+    /**
+     * Highest sequence that has been published and is ready to be consumed, starting from {@code sequence}.
+     *
+     * @param sequence
+     * @return {@code sequence - 1} or lower if {@code sequence} is not published yet
+     */
+    private long highestPublishedSeq(long sequence) {
+        if (ringBuffer.getCursor() < sequence) {
+            return sequence - 1;
+        }
+        try {
+            /* cursor has reached the sequence, so this call does not wait regardless of the wait strategy */
+            return consumerBarrier.waitFor(sequence);
+        } catch (AlertException | TimeoutException e) {
+            return sequence - 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return sequence - 1;
+        }
+    }
+
+    /**
+     * Take a message from the ring buffer without locking, WorkerPool-style: the consumer publishes its own gating
+     * sequence ({@code claimed - 1}) before claiming the next sequence with a CAS, so the claimed slot can not be
+     * overwritten while it is being read; the sequence is released (set to {@link Long#MAX_VALUE}) right after.
+     * Consumers never wait for each other.
+     *
+     * @return the available message or {@code null} if the ring buffer is empty
+     */
+    private IQueueMessage<ID, DATA> takeFromRingBufferLockFree() {
+        Sequence mySeq = idleConsumerSeqs.poll();
+        if (mySeq == null) {
+            mySeq = new Sequence(Long.MAX_VALUE);
+            ringBuffer.addGatingSequences(mySeq);
+        }
+        try {
+            while (true) {
+                long current = claimedSeq.get();
+                long next = current + 1;
+                if (highestPublishedSeq(next) < next) {
+                    return null;
+                }
+                mySeq.set(current);
+                if (claimedSeq.compareAndSet(current, next)) {
+                    Event<ID, DATA> eventHolder = ringBuffer.get(next);
+                    IQueueMessage<ID, DATA> msg = eventHolder.get();
+                    eventHolder.set(null);
+                    return msg;
+                }
+            }
+        } finally {
+            mySeq.set(Long.MAX_VALUE);
+            idleConsumerSeqs.offer(mySeq);
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -197,11 +371,49 @@ public class DisruptorQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DA
         return msg;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>In lock-free mode with a timeout-capable wait strategy, callers wait on the ring buffer using the wait
+     * strategy (the wait may overrun {@code timeout} by up to the wait strategy's own timeout).</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     * @since 1.0.1
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take(long timeout, TimeUnit unit) throws QueueException.EphemeralIsFull {
+        if (!lockFree || !(waitStrategy instanceof TimeoutBlockingWaitStrategy
+                || waitStrategy instanceof LiteTimeoutBlockingWaitStrategy)) {
+            return super.take(timeout, unit);
+        }
+        IQueueMessage<ID, DATA> msg = take();
+        if (msg != null || timeout <= 0) {
+            return msg;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while ((msg = take()) == null) {
+            if (System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            try {
+                consumerBarrier.waitFor(claimedSeq.get() + 1);
+            } catch (TimeoutException e) {
+                //wait strategy timed out, re-check
+            } catch (AlertException e) {
+                throw new QueueException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueueException(e);
+            }
+        }
+        return msg;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public int queueSize() {
-        return (int) (ringBuffer.getCursor() - consumedSeq.get());
+        return (int) (ringBuffer.getCursor() - (lockFree ? claimedSeq.get() : consumedSeq.get()));
     }
 }
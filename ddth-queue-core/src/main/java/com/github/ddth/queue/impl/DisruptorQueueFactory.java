@@ -11,6 +11,33 @@ import com.github.ddth.queue.QueueSpec;
 public abstract class DisruptorQueueFactory<T extends DisruptorQueue<ID, DATA>, ID, DATA>
         extends AbstractQueueFactory<T, ID, DATA> {
 
+    public final static String SPEC_FIELD_LOCK_FREE = "lock_free";
+    public final static String SPEC_FIELD_EPHEMERAL_TIME_INDEX = "ephemeral_time_index";
+
+    private boolean defaultLockFree = false;
+
+    /**
+     * Default value for lock-free mode (see {@link DisruptorQueue#setLockFree(boolean)}), passed to all queues
+     * created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isDefaultLockFree() {
+        return defaultLockFree;
+    }
+
+    /**
+     * Default value for lock-free mode (see {@link DisruptorQueue#setLockFree(boolean)}), passed to all queues
+     * created by this factory.
+     *
+     * @param defaultLockFree
+     * @since 1.0.1
+     */
+    public void setDefaultLockFree(boolean defaultLockFree) {
+        this.defaultLockFree = defaultLockFree;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -20,6 +47,7 @@ public abstract class DisruptorQueueFactory<T extends DisruptorQueue<ID, DATA>,
     protected void initQueue(T queue, QueueSpec spec) throws Exception {
         queue.setRingSize(getDefaultMaxSize()).setEphemeralDisabled(getDefaultEphemeralDisabled())
                 .setEphemeralMaxSize(getDefaultEphemeralMaxSize());
+        queue.setLockFree(defaultLockFree);
 
         Integer maxSize = spec.getField(QueueSpec.FIELD_MAX_SIZE, Integer.class);
         if (maxSize != null) {
@@ -36,6 +64,16 @@ public abstract class DisruptorQueueFactory<T extends DisruptorQueue<ID, DATA>,
             queue.setEphemeralMaxSize(maxEphemeralSize.intValue());
         }
 
+        Boolean lockFree = spec.getField(SPEC_FIELD_LOCK_FREE, Boolean.class);
+        if (lockFree != null) {
+            queue.setLockFree(lockFree.booleanValue());
+        }
+
+        Boolean ephemeralTimeIndex = spec.getField(SPEC_FIELD_EPHEMERAL_TIME_INDEX, Boolean.class);
+        if (ephemeralTimeIndex != null) {
+            queue.setEphemeralTimeIndexEnabled(ephemeralTimeIndex.booleanValue());
+        }
+
         super.initQueue(queue, spec);
     }
 }
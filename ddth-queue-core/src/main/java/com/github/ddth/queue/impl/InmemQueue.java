@@ -3,8 +3,12 @@ package com.github.ddth.queue.impl;
 import com.github.ddth.queue.IQueue;
 import com.github.ddth.queue.IQueueMessage;
 import com.github.ddth.queue.QueueSpec;
+import com.github.ddth.queue.internal.utils.StripedQueue;
 import com.github.ddth.queue.utils.QueueException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -40,6 +44,11 @@ public class InmemQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DATA>
      */
     private int boundary = QueueSpec.NO_BOUNDARY;
 
+    /**
+     * A value greater than {@code 1} means the queue storage is striped.
+     */
+    private int numStripes = 1;
+
     public InmemQueue() {
     }
 
@@ -68,11 +77,38 @@ public class InmemQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DATA>
         return this;
     }
 
+    /**
+     * Number of stripes the queue storage is split into (default {@code 1}).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getNumStripes() {
+        return numStripes;
+    }
+
+    /**
+     * Number of stripes the queue storage is split into (default {@code 1}). Must be called before {@link #init()}.
+     *
+     * <p>With more than one stripe, producers and consumers are spread over independent lock-free sub-queues (with
+     * work stealing on take), which scales with the number of cores, but messages are no longer taken in strict
+     * global FIFO order. Total number of messages is still bounded by {@link #getBoundary()}.</p>
+     *
+     * @param numStripes
+     * @return
+     * @since 1.0.1
+     */
+    public InmemQueue<ID, DATA> setNumStripes(int numStripes) {
+        this.numStripes = numStripes;
+        return this;
+    }
+
     /**
      * This method will create a {@link Queue} instance with the following
      * rules:
      *
      * <ul>
+     * <li>If {@link #numStripes} is larger than {@code 1}, a {@link StripedQueue} is created.</li>
      * <li>If {@link #boundary} is set and larger than {@code 1024}, a
      * {@link LinkedBlockingQueue} is created; if {@link #boundary} is less than
      * or equals to {@code 1024}, an {@link ArrayBlockingQueue} is created
@@ -84,6 +120,9 @@ public class InmemQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DATA>
      * @return
      */
     protected Queue<IQueueMessage<ID, DATA>> createQueue(int boundary) {
+        if (numStripes > 1) {
+            return new StripedQueue<>(numStripes, boundary);
+        }
         if (boundary > 0) {
             if (boundary > 1024) {
                 return new LinkedBlockingQueue<>(boundary);
@@ -120,6 +159,7 @@ public class InmemQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DATA>
         if (queueCase != null && queueCase != PutToQueueCase.NEW) {
             doRemoveFromEphemeralStorage(msg);
         }
+        signalMessageAvailable();
         return true;
     }
 
@@ -153,6 +193,27 @@ public class InmemQueue<ID, DATA> extends AbstractInmemEphemeralQueue<ID, DATA>
         return msg;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     * @since 1.0.1
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException.EphemeralIsFull {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        int numMsgs = ensureEphemeralCapacity(maxMessages, this::ephemeralSize);
+        for (int i = 0; i < numMsgs; i++) {
+            IQueueMessage<ID, DATA> msg = takeFromQueue();
+            if (msg == null) {
+                break;
+            }
+            doPutToEphemeralStorage(msg);
+            result.add(msg);
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -11,6 +11,33 @@ import com.github.ddth.queue.QueueSpec;
 public abstract class InmemQueueFactory<T extends InmemQueue<ID, DATA>, ID, DATA>
         extends AbstractQueueFactory<T, ID, DATA> {
 
+    public final static String SPEC_FIELD_NUM_STRIPES = "num_stripes";
+    public final static String SPEC_FIELD_EPHEMERAL_TIME_INDEX = "ephemeral_time_index";
+
+    private int defaultNumStripes = 1;
+
+    /**
+     * Default number of stripes (see {@link InmemQueue#setNumStripes(int)}), passed to all queues created by this
+     * factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getDefaultNumStripes() {
+        return defaultNumStripes;
+    }
+
+    /**
+     * Default number of stripes (see {@link InmemQueue#setNumStripes(int)}), passed to all queues created by this
+     * factory.
+     *
+     * @param defaultNumStripes
+     * @since 1.0.1
+     */
+    public void setDefaultNumStripes(int defaultNumStripes) {
+        this.defaultNumStripes = defaultNumStripes;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -20,6 +47,7 @@ public abstract class InmemQueueFactory<T extends InmemQueue<ID, DATA>, ID, DATA
     protected void initQueue(T queue, QueueSpec spec) throws Exception {
         queue.setBoundary(getDefaultMaxSize()).setEphemeralDisabled(getDefaultEphemeralDisabled())
                 .setEphemeralMaxSize(getDefaultEphemeralMaxSize());
+        queue.setNumStripes(defaultNumStripes);
 
         Integer maxSize = spec.getField(QueueSpec.FIELD_MAX_SIZE, Integer.class);
         if (maxSize != null) {
@@ -36,6 +64,16 @@ public abstract class InmemQueueFactory<T extends InmemQueue<ID, DATA>, ID, DATA
             queue.setEphemeralMaxSize(maxEphemeralSize.intValue());
         }
 
+        Integer numStripes = spec.getField(SPEC_FIELD_NUM_STRIPES, Integer.class);
+        if (numStripes != null) {
+            queue.setNumStripes(numStripes.intValue());
+        }
+
+        Boolean ephemeralTimeIndex = spec.getField(SPEC_FIELD_EPHEMERAL_TIME_INDEX, Boolean.class);
+        if (ephemeralTimeIndex != null) {
+            queue.setEphemeralTimeIndexEnabled(ephemeralTimeIndex.booleanValue());
+        }
+
         super.initQueue(queue, spec);
     }
 }
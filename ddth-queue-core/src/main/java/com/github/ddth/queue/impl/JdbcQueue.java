@@ -13,13 +13,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 /**
@@ -39,7 +50,8 @@ import java.util.function.Supplier;
  * <li>{@link #take()}:
  * <ul>
  * <li>Obtain a database {@link Connection}.</li>
- * <li>Check if {@code ephemeral size} is full or not.</li>
+ * <li>Check if {@code ephemeral size} is full or not (only if it is bounded, see
+ * {@link #setEphemeralBoundCheckTtlMs(long)}).</li>
  * <li>Call {@link #_takeWithRetries(Connection, int, int)}; which, in turn:
  * <ul>
  * <li>Start a database transaction.</li>
@@ -107,6 +119,16 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
 
     public final static int DEFAULT_MAX_RETRIES = 3;
     public final static int DEFAULT_TRANX_ISOLATION_LEVEL = Connection.TRANSACTION_READ_COMMITTED;
+    public final static long DEFAULT_EPHEMERAL_BOUND_CHECK_TTL_MS = 1000;
+
+    /**
+     * DB-operations that are retried on lock contention, used to group retry metrics.
+     *
+     * @since 1.0.1
+     */
+    public enum Operation {
+        TAKE, TAKE_MANY, QUEUE, QUEUE_ALL, REQUEUE, REQUEUE_SILENT, FINISH, GET_ORPHAN_MESSAGES, OTHER
+    }
 
     private Logger LOGGER = LoggerFactory.getLogger(JdbcQueue.class);
 
@@ -120,6 +142,22 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
     private boolean myOwnJdbcHelper = false;
     private int maxRetries = DEFAULT_MAX_RETRIES;
     private int transactionIsolationLevel = DEFAULT_TRANX_ISOLATION_LEVEL;
+    private JdbcSizingStrategy sizingStrategy = JdbcSizingStrategy.EXACT_COUNT;
+    private long ephemeralBoundCheckTtlMs = DEFAULT_EPHEMERAL_BOUND_CHECK_TTL_MS;
+    /* ephemeral-size used by the bound check of take(), see ephemeralSizeForBoundCheck(Connection) */
+    private final AtomicLong boundCheckEphemeralSize = new AtomicLong();
+    private volatile long boundCheckExpiry;
+    private JdbcRetryPolicy retryPolicy = new JdbcRetryPolicy();
+    private volatile SQLErrorCodeSQLExceptionTranslator sqlExceptionTranslator;
+
+    /* per operation: [0] number of retries, [1] number of operations failed after retries were exhausted */
+    private final LongAdder[][] retryStats = new LongAdder[Operation.values().length][];
+
+    {
+        for (int i = 0; i < retryStats.length; i++) {
+            retryStats[i] = new LongAdder[] { new LongAdder(), new LongAdder() };
+        }
+    }
 
     /*----------------------------------------------------------------------*/
 
@@ -263,6 +301,136 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
         return maxRetries;
     }
 
+    /**
+     * Policy to retry DB-operations that failed due to lock contention (default: exponential back-off with jitter,
+     * see {@link JdbcRetryPolicy}).
+     *
+     * @param retryPolicy
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueue<ID, DATA> setRetryPolicy(JdbcRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy != null ? retryPolicy : JdbcRetryPolicy.NO_BACKOFF;
+        return this;
+    }
+
+    /**
+     * Policy to retry DB-operations that failed due to lock contention (default: exponential back-off with jitter,
+     * see {@link JdbcRetryPolicy}).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Number of retries have been made for an operation (since the queue was created).
+     *
+     * @param operation
+     * @return
+     * @since 1.0.1
+     */
+    public long getNumRetries(Operation operation) {
+        return retryStats[operation.ordinal()][0].sum();
+    }
+
+    /**
+     * Number of operations that failed after all retries were exhausted (since the queue was created).
+     *
+     * @param operation
+     * @return
+     * @since 1.0.1
+     */
+    public long getNumRetriesExhausted(Operation operation) {
+        return retryStats[operation.ordinal()][1].sum();
+    }
+
+    /**
+     * Retry metrics of all operations, in format {@code {"<operation>.retries": long, "<operation>.exhausted": long}}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public Map<String, Long> getRetryStats() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Operation op : Operation.values()) {
+            String name = op.name().toLowerCase();
+            result.put(name + ".retries", getNumRetries(op));
+            result.put(name + ".exhausted", getNumRetriesExhausted(op));
+        }
+        return result;
+    }
+
+    /**
+     * Strategy to calculate queue-size and ephemeral-size (default {@link JdbcSizingStrategy#EXACT_COUNT}). The
+     * strategy is also used to check ephemeral storage's bound before taking messages.
+     *
+     * @param sizingStrategy
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueue<ID, DATA> setSizingStrategy(JdbcSizingStrategy sizingStrategy) {
+        this.sizingStrategy = sizingStrategy != null ? sizingStrategy : JdbcSizingStrategy.EXACT_COUNT;
+        return this;
+    }
+
+    /**
+     * Strategy to calculate queue-size and ephemeral-size (default {@link JdbcSizingStrategy#EXACT_COUNT}). The
+     * strategy is also used to check ephemeral storage's bound before taking messages.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcSizingStrategy getSizingStrategy() {
+        return sizingStrategy;
+    }
+
+    /**
+     * How often the ephemeral storage's bound check of {@link #take()}/{@link #take(int)} reads ephemeral-size with
+     * the sizing strategy (default {@link #DEFAULT_EPHEMERAL_BOUND_CHECK_TTL_MS}). In between, the last value is
+     * adjusted by messages taken, finished and re-queued via this queue instance, so that takes do not run a count
+     * query each; messages taken or finished by other queue instances are accounted for at the next read. {@code 0}
+     * or negative: read ephemeral-size on every take.
+     *
+     * <p>The bound check, hence the read, only happens if {@link #getEphemeralMaxSize()} is positive.</p>
+     *
+     * @param ephemeralBoundCheckTtlMs
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueue<ID, DATA> setEphemeralBoundCheckTtlMs(long ephemeralBoundCheckTtlMs) {
+        this.ephemeralBoundCheckTtlMs = ephemeralBoundCheckTtlMs;
+        this.boundCheckExpiry = 0;
+        return this;
+    }
+
+    /**
+     * How often the ephemeral storage's bound check of {@link #take()}/{@link #take(int)} reads ephemeral-size with
+     * the sizing strategy (default {@link #DEFAULT_EPHEMERAL_BOUND_CHECK_TTL_MS}), see
+     * {@link #setEphemeralBoundCheckTtlMs(long)}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getEphemeralBoundCheckTtlMs() {
+        return ephemeralBoundCheckTtlMs;
+    }
+
+    /**
+     * Key to look up queue-size/ephemeral-size in the counter table, see {@link JdbcSizingStrategy.CounterTable}.
+     *
+     * <p>Format: {@code <table-name>:queue} or {@code <ephemeral-table-name>:ephemeral}.</p>
+     *
+     * @param ephemeral
+     * @return
+     * @since 1.0.1
+     */
+    protected String getSizeCounterKey(boolean ephemeral) {
+        return ephemeral ? getTableNameEphemeral() + ":ephemeral" : getTableName() + ":queue";
+    }
+
     /*----------------------------------------------------------------------*/
 
     /**
@@ -372,6 +540,28 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      */
     protected abstract boolean putToQueueStorage(Connection conn, IQueueMessage<ID, DATA> msg);
 
+    /**
+     * Primitive operation: Put a batch of messages to tail of the queue storage.
+     *
+     * <p>
+     * Default implementation calls {@link #putToQueueStorage(Connection, IQueueMessage)} for each message. Caller is
+     * responsible for transaction demarcation.
+     * </p>
+     *
+     * @param conn
+     * @param msgs
+     * @return
+     * @since 1.0.1
+     */
+    protected boolean[] putAllToQueueStorage(Connection conn, List<IQueueMessage<ID, DATA>> msgs) {
+        boolean[] result = new boolean[msgs.size()];
+        int i = 0;
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            result[i++] = putToQueueStorage(conn, msg);
+        }
+        return result;
+    }
+
     /**
      * Primitive operation: Put a message to the ephemeral storage.
      *
@@ -423,50 +613,26 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      */
     protected int executeWithRetries(int numRetries, int maxRetries, boolean transactionMode, Connection conn,
             String sql, Map<String, Object> params) {
-        try {
-            if (transactionMode) {
-                jdbcHelper.startTransaction(conn);
-                conn.setTransactionIsolation(transactionIsolationLevel);
-            }
-            int numRows = jdbcHelper.execute(conn, sql, params);
-            if (transactionMode) {
-                jdbcHelper.commitTransaction(conn);
-            }
-            return numRows;
-        } catch (DuplicatedValueException dve) {
-            LOGGER.warn(dve.getMessage(), dve);
-            if (transactionMode) {
-                jdbcHelper.rollbackTransaction(conn);
-            }
-            return 1;
-        } catch (DaoException de) {
-            if (de.getCause() instanceof DuplicateKeyException) {
-                LOGGER.warn(de.getMessage(), de);
-                if (transactionMode) {
-                    jdbcHelper.rollbackTransaction(conn);
-                }
-                return 1;
-            }
-            if (de.getCause() instanceof ConcurrencyFailureException) {
-                if (transactionMode) {
-                    jdbcHelper.rollbackTransaction(conn);
-                }
-                if (numRetries > maxRetries) {
-                    throw new QueueException(de);
-                } else {
-                    return executeWithRetries(numRetries + 1, maxRetries, transactionMode, conn, sql, params);
-                }
-            }
-            if (transactionMode) {
-                jdbcHelper.rollbackTransaction(conn);
-            }
-            throw de;
-        } catch (Exception e) {
-            if (transactionMode) {
-                jdbcHelper.rollbackTransaction(conn);
-            }
-            throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
-        }
+        return executeWithRetries(Operation.OTHER, numRetries, maxRetries, transactionMode, conn, sql, params);
+    }
+
+    /**
+     * Execute a query, retry if deadlock.
+     *
+     * @param operation       the operation being executed, for retry metrics
+     * @param numRetries
+     * @param maxRetries
+     * @param transactionMode
+     * @param conn
+     * @param sql
+     * @param params
+     * @return number of affected rows
+     * @since 1.0.1
+     */
+    protected int executeWithRetries(Operation operation, int numRetries, int maxRetries, boolean transactionMode,
+            Connection conn, String sql, Map<String, Object> params) {
+        return executeWithRetries(operation, numRetries, maxRetries,
+                () -> executeOnce(transactionMode, conn, () -> jdbcHelper.execute(conn, sql, params)));
     }
 
     /**
@@ -494,12 +660,39 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      */
     protected int executeWithRetries(int numRetries, int maxRetries, boolean transactionMode, Connection conn,
             String sql, Object... params) {
+        return executeWithRetries(Operation.OTHER, numRetries, maxRetries, transactionMode, conn, sql, params);
+    }
+
+    /**
+     * Execute a query, retry if deadlock.
+     *
+     * @param operation       the operation being executed, for retry metrics
+     * @param numRetries
+     * @param maxRetries
+     * @param transactionMode
+     * @param conn
+     * @param sql
+     * @param params
+     * @return number of affected rows
+     * @since 1.0.1
+     */
+    protected int executeWithRetries(Operation operation, int numRetries, int maxRetries, boolean transactionMode,
+            Connection conn, String sql, Object... params) {
+        return executeWithRetries(operation, numRetries, maxRetries,
+                () -> executeOnce(transactionMode, conn, () -> executeUpdate(conn, sql, params)));
+    }
+
+    /**
+     * Execute a statement once (optionally within a transaction). Duplicated-key errors are logged and counted as
+     * {@code 1} affected row.
+     */
+    private int executeOnce(boolean transactionMode, Connection conn, Supplier<Integer> executor) {
         try {
             if (transactionMode) {
                 jdbcHelper.startTransaction(conn);
                 conn.setTransactionIsolation(transactionIsolationLevel);
             }
-            int numRows = jdbcHelper.execute(conn, sql, params);
+            int numRows = executor.get().intValue();
             if (transactionMode) {
                 jdbcHelper.commitTransaction(conn);
             }
@@ -511,26 +704,13 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
             }
             return 1;
         } catch (DaoException de) {
+            if (transactionMode) {
+                jdbcHelper.rollbackTransaction(conn);
+            }
             if (de.getCause() instanceof DuplicateKeyException) {
                 LOGGER.warn(de.getMessage(), de);
-                if (transactionMode) {
-                    jdbcHelper.rollbackTransaction(conn);
-                }
                 return 1;
             }
-            if (de.getCause() instanceof ConcurrencyFailureException) {
-                if (transactionMode) {
-                    jdbcHelper.rollbackTransaction(conn);
-                }
-                if (numRetries > maxRetries) {
-                    throw new QueueException(de);
-                } else {
-                    return executeWithRetries(numRetries + 1, maxRetries, transactionMode, conn, sql, params);
-                }
-            }
-            if (transactionMode) {
-                jdbcHelper.rollbackTransaction(conn);
-            }
             throw de;
         } catch (Exception e) {
             if (transactionMode) {
@@ -540,6 +720,111 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
         }
     }
 
+    /**
+     * Execute a DML statement with positional parameters.
+     *
+     * <p>
+     * This is the fast path for hot operations: the SQL is expected to be pre-built (so that it is the same string
+     * for every call and the JDBC driver's statement cache can reuse the server-side prepared statement), parameters
+     * are bound directly by type (no named-parameter parsing, no {@link Map} building).
+     * </p>
+     *
+     * @param conn
+     * @param sql
+     * @param params
+     * @return number of affected rows
+     * @since 1.0.1
+     */
+    protected int executeUpdate(Connection conn, String sql, Object... params) {
+        try (PreparedStatement pstm = conn.prepareStatement(sql)) {
+            bindParams(pstm, params);
+            return pstm.executeUpdate();
+        } catch (SQLException e) {
+            throw translateSQLException(conn, e);
+        }
+    }
+
+    /**
+     * Execute a DML statement multiple times, with different sets of positional parameters, as a JDBC batch (one
+     * prepared statement, one round-trip if supported by the driver).
+     *
+     * @param conn
+     * @param sql
+     * @param paramsList
+     * @return number of affected rows, for each set of parameters ({@link java.sql.Statement#SUCCESS_NO_INFO} if the
+     * driver does not report it)
+     * @since 1.0.1
+     */
+    protected int[] executeBatchUpdate(Connection conn, String sql, List<Object[]> paramsList) {
+        if (paramsList.isEmpty()) {
+            return new int[0];
+        }
+        try (PreparedStatement pstm = conn.prepareStatement(sql)) {
+            for (Object[] params : paramsList) {
+                bindParams(pstm, params);
+                pstm.addBatch();
+            }
+            return pstm.executeBatch();
+        } catch (SQLException e) {
+            throw translateSQLException(conn, e);
+        }
+    }
+
+    /**
+     * Bind positional parameters to a prepared statement, using type-specific setters.
+     *
+     * @param pstm
+     * @param params
+     * @throws SQLException
+     * @since 1.0.1
+     */
+    protected static void bindParams(PreparedStatement pstm, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object value = params[i];
+            int index = i + 1;
+            if (value == null) {
+                pstm.setNull(index, Types.NULL);
+            } else if (value instanceof Long) {
+                pstm.setLong(index, ((Long) value).longValue());
+            } else if (value instanceof Integer) {
+                pstm.setInt(index, ((Integer) value).intValue());
+            } else if (value instanceof String) {
+                pstm.setString(index, (String) value);
+            } else if (value instanceof byte[]) {
+                pstm.setBytes(index, (byte[]) value);
+            } else if (value instanceof Timestamp) {
+                pstm.setTimestamp(index, (Timestamp) value);
+            } else if (value instanceof Date) {
+                pstm.setTimestamp(index, new Timestamp(((Date) value).getTime()));
+            } else {
+                pstm.setObject(index, value);
+            }
+        }
+    }
+
+    /**
+     * Translate a {@link SQLException} to a {@link DaoException} whose cause is a Spring
+     * {@link org.springframework.dao.DataAccessException}, the same way {@link IJdbcHelper} does, so that
+     * deadlocks ({@link ConcurrencyFailureException}) and duplicated keys ({@link DuplicateKeyException}) are detected
+     * by callers.
+     *
+     * @param conn
+     * @param e
+     * @return
+     * @since 1.0.1
+     */
+    protected DaoException translateSQLException(Connection conn, SQLException e) {
+        try {
+            if (sqlExceptionTranslator == null) {
+                sqlExceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(
+                        conn.getMetaData().getDatabaseProductName());
+            }
+            return new DaoException(sqlExceptionTranslator.translate("executeUpdate", null, e));
+        } catch (Exception ex) {
+            return new DaoException(e);
+        }
+    }
+
     /**
      * Execute queries, retry if deadlock.
      *
@@ -562,19 +847,59 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      * @since 1.0.0
      */
     protected <T> T executeWithRetries(int numRetries, int maxRetries, Supplier<T> sqlRunner) {
-        try {
-            return sqlRunner.get();
-        } catch (DaoException | QueueException e) {
-            if (e.getCause() instanceof ConcurrencyFailureException) {
-                if (numRetries > maxRetries) {
+        return executeWithRetries(Operation.OTHER, numRetries, maxRetries, sqlRunner);
+    }
+
+    /**
+     * Execute queries, retry (iteratively, with back-off delays determined by {@link #getRetryPolicy()}) if the
+     * failure is caused by lock contention ({@link ConcurrencyFailureException}).
+     *
+     * <p>
+     * {@code sqlRunner} performs one attempt; it is responsible for rolling back its own transaction before
+     * re-throwing an exception.
+     * </p>
+     *
+     * @param operation  the operation being executed, for retry metrics
+     * @param numRetries number of retries have been made so far
+     * @param maxRetries
+     * @param sqlRunner
+     * @param <T>
+     * @return
+     * @since 1.0.1
+     */
+    protected <T> T executeWithRetries(Operation operation, int numRetries, int maxRetries, Supplier<T> sqlRunner) {
+        long startTime = System.currentTimeMillis();
+        while (true) {
+            try {
+                return sqlRunner.get();
+            } catch (DaoException | QueueException e) {
+                if (!retryPolicy.isRetryable(e)) {
+                    throw e;
+                }
+                long elapsedMs = System.currentTimeMillis() - startTime;
+                if (!retryPolicy.canRetry(numRetries, maxRetries, elapsedMs)) {
+                    retryStats[operation.ordinal()][1].increment();
                     throw new QueueException(e);
-                } else {
-                    return executeWithRetries(numRetries + 1, maxRetries, sqlRunner);
                 }
+                numRetries++;
+                /* back-off delay is clamped to the deadline, no retry once the deadline is reached */
+                long delayMs = retryPolicy.delayMs(numRetries, elapsedMs);
+                if (delayMs > 0) {
+                    try {
+                        Thread.sleep(delayMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new QueueException(e);
+                    }
+                }
+                if (retryPolicy.remainingMs(System.currentTimeMillis() - startTime) <= 0) {
+                    retryStats[operation.ordinal()][1].increment();
+                    throw new QueueException(e);
+                }
+                retryStats[operation.ordinal()][0].increment();
+            } catch (Exception e) {
+                throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
             }
-            throw e;
-        } catch (Exception e) {
-            throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
         }
     }
 
@@ -600,27 +925,73 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      */
     protected boolean _queueWithRetries(Connection conn, IQueueMessage<ID, DATA> immutableMsg, int numRetries,
             int maxRetries) {
-        try {
-            return putToQueueStorage(conn, immutableMsg);
-        } catch (DuplicatedValueException dve) {
-            LOGGER.warn(dve.getMessage(), dve);
-            return true;
-        } catch (DaoException de) {
-            if (de.getCause() instanceof DuplicateKeyException) {
-                LOGGER.warn(de.getMessage(), de);
+        return executeWithRetries(Operation.QUEUE, numRetries, maxRetries, () -> {
+            try {
+                return putToQueueStorage(conn, immutableMsg);
+            } catch (DuplicatedValueException dve) {
+                LOGGER.warn(dve.getMessage(), dve);
                 return true;
+            } catch (DaoException de) {
+                if (de.getCause() instanceof DuplicateKeyException) {
+                    LOGGER.warn(de.getMessage(), de);
+                    return true;
+                }
+                throw de;
             }
-            if (de.getCause() instanceof ConcurrencyFailureException) {
-                if (numRetries > maxRetries) {
-                    throw new QueueException(de);
-                } else {
-                    return _queueWithRetries(conn, immutableMsg, numRetries + 1, maxRetries);
+        });
+    }
+
+    /**
+     * Queue a batch of messages within one transaction, retry if deadlock.
+     *
+     * <p>
+     * If one of the messages already exists in queue storage, the transaction is rolled back and messages are queued
+     * one by one via {@link #_queueWithRetries(Connection, IQueueMessage, int, int)}.
+     * </p>
+     *
+     * @param conn
+     * @param immutableMsgs
+     * @param numRetries
+     * @param maxRetries
+     * @return
+     * @since 1.0.1
+     */
+    protected boolean[] _queueAllWithRetries(Connection conn, List<IQueueMessage<ID, DATA>> immutableMsgs,
+            int numRetries, int maxRetries) {
+        boolean[] result = executeWithRetries(Operation.QUEUE_ALL, numRetries, maxRetries, () -> {
+            try {
+                jdbcHelper.startTransaction(conn);
+                conn.setTransactionIsolation(transactionIsolationLevel);
+                boolean[] status = putAllToQueueStorage(conn, immutableMsgs);
+                jdbcHelper.commitTransaction(conn);
+                return status;
+            } catch (DuplicatedValueException dve) {
+                jdbcHelper.rollbackTransaction(conn);
+                LOGGER.warn(dve.getMessage(), dve);
+                return null;
+            } catch (DaoException de) {
+                jdbcHelper.rollbackTransaction(conn);
+                if (de.getCause() instanceof DuplicateKeyException) {
+                    LOGGER.warn(de.getMessage(), de);
+                    return null;
                 }
+                throw de;
+            } catch (Exception e) {
+                jdbcHelper.rollbackTransaction(conn);
+                throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
             }
-            throw de;
-        } catch (Exception e) {
-            throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
+        });
+        /* null: one of the messages already exists, fall back to queue messages one by one */
+        return result != null ? result : _queueOneByOne(conn, immutableMsgs);
+    }
+
+    private boolean[] _queueOneByOne(Connection conn, List<IQueueMessage<ID, DATA>> immutableMsgs) {
+        boolean[] result = new boolean[immutableMsgs.size()];
+        int i = 0;
+        for (IQueueMessage<ID, DATA> msg : immutableMsgs) {
+            result[i++] = _queueWithRetries(conn, msg, 0, this.maxRetries);
         }
+        return result;
     }
 
     /**
@@ -645,39 +1016,32 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      */
     protected boolean _requeueSilentWithRetries(Connection conn, IQueueMessage<ID, DATA> immutableMsg, int numRetries,
             int maxRetries) {
-        try {
-            jdbcHelper.startTransaction(conn);
-            conn.setTransactionIsolation(transactionIsolationLevel);
-            if (!isEphemeralDisabled()) {
-                removeFromEphemeralStorage(conn, immutableMsg);
-            }
-            boolean result = putToQueueStorage(conn, immutableMsg);
-            jdbcHelper.commitTransaction(conn);
-            return result;
-        } catch (DuplicatedValueException dve) {
-            jdbcHelper.rollbackTransaction(conn);
-            LOGGER.warn(dve.getMessage(), dve);
-            return true;
-        } catch (DaoException de) {
-            if (de.getCause() instanceof DuplicateKeyException) {
+        return executeWithRetries(Operation.REQUEUE_SILENT, numRetries, maxRetries, () -> {
+            try {
+                jdbcHelper.startTransaction(conn);
+                conn.setTransactionIsolation(transactionIsolationLevel);
+                if (!isEphemeralDisabled()) {
+                    removeFromEphemeralStorage(conn, immutableMsg);
+                }
+                boolean result = putToQueueStorage(conn, immutableMsg);
+                jdbcHelper.commitTransaction(conn);
+                return result;
+            } catch (DuplicatedValueException dve) {
                 jdbcHelper.rollbackTransaction(conn);
-                LOGGER.warn(de.getMessage(), de);
+                LOGGER.warn(dve.getMessage(), dve);
                 return true;
-            }
-            if (de.getCause() instanceof ConcurrencyFailureException) {
+            } catch (DaoException de) {
                 jdbcHelper.rollbackTransaction(conn);
-                if (numRetries > maxRetries) {
-                    throw new QueueException(de);
-                } else {
-                    return _requeueSilentWithRetries(conn, immutableMsg, numRetries + 1, maxRetries);
+                if (de.getCause() instanceof DuplicateKeyException) {
+                    LOGGER.warn(de.getMessage(), de);
+                    return true;
                 }
+                throw de;
+            } catch (Exception e) {
+                jdbcHelper.rollbackTransaction(conn);
+                throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
             }
-            jdbcHelper.rollbackTransaction(conn);
-            throw de;
-        } catch (Exception e) {
-            jdbcHelper.rollbackTransaction(conn);
-            throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
-        }
+        });
     }
 
     /**
@@ -702,39 +1066,32 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      */
     protected boolean _requeueWithRetries(Connection conn, IQueueMessage<ID, DATA> immutableMsg, int numRetries,
             int maxRetries) {
-        try {
-            jdbcHelper.startTransaction(conn);
-            conn.setTransactionIsolation(transactionIsolationLevel);
-            if (!isEphemeralDisabled()) {
-                removeFromEphemeralStorage(conn, immutableMsg);
-            }
-            boolean result = putToQueueStorage(conn, immutableMsg);
-            jdbcHelper.commitTransaction(conn);
-            return result;
-        } catch (DuplicatedValueException dve) {
-            jdbcHelper.rollbackTransaction(conn);
-            LOGGER.warn(dve.getMessage(), dve);
-            return true;
-        } catch (DaoException de) {
-            if (de.getCause() instanceof DuplicateKeyException) {
+        return executeWithRetries(Operation.REQUEUE, numRetries, maxRetries, () -> {
+            try {
+                jdbcHelper.startTransaction(conn);
+                conn.setTransactionIsolation(transactionIsolationLevel);
+                if (!isEphemeralDisabled()) {
+                    removeFromEphemeralStorage(conn, immutableMsg);
+                }
+                boolean result = putToQueueStorage(conn, immutableMsg);
+                jdbcHelper.commitTransaction(conn);
+                return result;
+            } catch (DuplicatedValueException dve) {
                 jdbcHelper.rollbackTransaction(conn);
-                LOGGER.warn(de.getMessage(), de);
+                LOGGER.warn(dve.getMessage(), dve);
                 return true;
-            }
-            if (de.getCause() instanceof ConcurrencyFailureException) {
+            } catch (DaoException de) {
                 jdbcHelper.rollbackTransaction(conn);
-                if (numRetries > maxRetries) {
-                    throw new QueueException(de);
-                } else {
-                    return _requeueWithRetries(conn, immutableMsg, numRetries + 1, maxRetries);
+                if (de.getCause() instanceof DuplicateKeyException) {
+                    LOGGER.warn(de.getMessage(), de);
+                    return true;
                 }
+                throw de;
+            } catch (Exception e) {
+                jdbcHelper.rollbackTransaction(conn);
+                throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
             }
-            jdbcHelper.rollbackTransaction(conn);
-            throw de;
-        } catch (Exception e) {
-            jdbcHelper.rollbackTransaction(conn);
-            throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
-        }
+        });
     }
 
     /**
@@ -757,6 +1114,24 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are put to queue storage within one database transaction.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        try {
+            try (Connection conn = jdbcHelper.getConnection()) {
+                return _queueAllWithRetries(conn, msgs, 0, this.maxRetries);
+            }
+        } catch (Exception e) {
+            throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
+        }
+    }
+
     /**
      * Perform "finish" action, retry if deadlock.
      *
@@ -781,21 +1156,9 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      * @param maxRetries
      */
     protected void _finishWithRetries(Connection conn, IQueueMessage<ID, DATA> msg, int numRetries, int maxRetries) {
-        try {
-            if (!isEphemeralDisabled()) {
-                removeFromEphemeralStorage(conn, msg);
-            }
-        } catch (DaoException de) {
-            if (de.getCause() instanceof ConcurrencyFailureException) {
-                if (numRetries > maxRetries) {
-                    throw new QueueException(de);
-                } else {
-                    _finishWithRetries(conn, msg, numRetries + 1, maxRetries);
-                }
-            }
-            throw de;
-        } catch (Exception e) {
-            throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
+        if (!isEphemeralDisabled()) {
+            executeWithRetries(Operation.FINISH, numRetries, maxRetries,
+                    () -> removeFromEphemeralStorage(conn, msg));
         }
     }
 
@@ -808,6 +1171,7 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
             try (Connection conn = jdbcHelper.getConnection()) {
                 _finishWithRetries(conn, msg, 0, this.maxRetries);
             }
+            trackEphemeralSize(-1);
         } catch (Exception e) {
             final String logMsg = "(finish) Exception [" + e.getClass().getName() + "]: " + e.getMessage();
             LOGGER.error(logMsg, e);
@@ -835,48 +1199,153 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      * @return
      */
     protected IQueueMessage<ID, DATA> _takeWithRetries(Connection conn, int numRetries, int maxRetries) {
-        try {
-            jdbcHelper.startTransaction(conn);
-            conn.setTransactionIsolation(transactionIsolationLevel);
+        return executeWithRetries(Operation.TAKE, numRetries, maxRetries, () -> {
+            try {
+                jdbcHelper.startTransaction(conn);
+                conn.setTransactionIsolation(transactionIsolationLevel);
 
-            boolean result = true;
-            IQueueMessage<ID, DATA> msg = peekFromQueueStorage(conn);
-            if (msg != null) {
-                result &= removeFromQueueStorage(conn, msg);
-                if (!isEphemeralDisabled()) {
-                    try {
-                        result &= putToEphemeralStorage(conn, msg);
-                    } catch (DuplicatedValueException dve) {
-                        LOGGER.warn(dve.getMessage(), dve);
-                    } catch (DaoException de) {
-                        if (de.getCause() instanceof DuplicatedValueException) {
-                            LOGGER.warn(de.getMessage(), de);
-                        } else {
-                            throw de;
+                boolean result = true;
+                IQueueMessage<ID, DATA> msg = peekFromQueueStorage(conn);
+                if (msg != null) {
+                    result &= removeFromQueueStorage(conn, msg);
+                    if (!isEphemeralDisabled()) {
+                        try {
+                            result &= putToEphemeralStorage(conn, msg);
+                        } catch (DuplicatedValueException dve) {
+                            LOGGER.warn(dve.getMessage(), dve);
+                        } catch (DaoException de) {
+                            if (de.getCause() instanceof DuplicatedValueException) {
+                                LOGGER.warn(de.getMessage(), de);
+                            } else {
+                                throw de;
+                            }
                         }
                     }
                 }
-            }
-            if (result) {
-                jdbcHelper.commitTransaction(conn);
-                return msg;
-            } else {
+                if (result) {
+                    jdbcHelper.commitTransaction(conn);
+                    return msg;
+                } else {
+                    jdbcHelper.rollbackTransaction(conn);
+                    return null;
+                }
+            } catch (DaoException de) {
                 jdbcHelper.rollbackTransaction(conn);
-                return null;
-            }
-        } catch (DaoException de) {
-            if (de.getCause() instanceof ConcurrencyFailureException) {
+                throw de;
+            } catch (Exception e) {
                 jdbcHelper.rollbackTransaction(conn);
-                if (numRetries > maxRetries) {
-                    throw new QueueException(de);
-                } else {
-                    return _takeWithRetries(conn, numRetries + 1, maxRetries);
+                throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
+            }
+        });
+    }
+
+    /**
+     * Take a batch of messages from queue, retry if deadlock.
+     *
+     * <p>
+     * Default implementation calls {@link #_takeWithRetries(Connection, int, int)} repeatedly. Sub-class should
+     * override this method to claim all messages with one database operation.
+     * </p>
+     *
+     * @param conn
+     * @param maxMessages
+     * @param numRetries
+     * @param maxRetries
+     * @return
+     * @since 1.0.1
+     */
+    protected Collection<? extends IQueueMessage<ID, DATA>> _takeManyWithRetries(Connection conn, int maxMessages,
+            int numRetries, int maxRetries) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        for (int i = 0; i < maxMessages; i++) {
+            IQueueMessage<ID, DATA> msg = _takeWithRetries(conn, numRetries, maxRetries);
+            if (msg == null) {
+                break;
+            }
+            result.add(msg);
+        }
+        return result;
+    }
+
+    /**
+     * Ephemeral-size used by the bound check of {@link #take()}/{@link #take(int)}: read with the sizing strategy at
+     * most once every {@link #getEphemeralBoundCheckTtlMs()} milliseconds, adjusted by this queue instance's own
+     * operations in between.
+     *
+     * @param conn
+     * @return
+     */
+    private int ephemeralSizeForBoundCheck(Connection conn) {
+        if (ephemeralBoundCheckTtlMs <= 0) {
+            return sizingStrategy.ephemeralSize(this, conn);
+        }
+        long now = System.currentTimeMillis();
+        if (now >= boundCheckExpiry) {
+            boundCheckEphemeralSize.set(sizingStrategy.ephemeralSize(this, conn));
+            boundCheckExpiry = now + ephemeralBoundCheckTtlMs;
+        }
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, boundCheckEphemeralSize.get()));
+    }
+
+    /**
+     * Adjust the ephemeral-size used by the bound check, see {@link #ephemeralSizeForBoundCheck(Connection)}.
+     *
+     * @param delta
+     */
+    private void trackEphemeralSize(long delta) {
+        if (ephemeralBoundCheckTtlMs > 0 && !isEphemeralDisabled() && getEphemeralMaxSize() > 0) {
+            boundCheckEphemeralSize.addAndGet(delta);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public boolean requeue(IQueueMessage<ID, DATA> msg) {
+        boolean result = super.requeue(msg);
+        if (result) {
+            trackEphemeralSize(-1);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public boolean requeueSilent(IQueueMessage<ID, DATA> msg) {
+        boolean result = super.requeueSilent(msg);
+        if (result) {
+            trackEphemeralSize(-1);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If ephemeral storage is bounded, its size is checked first (see {@link #setEphemeralBoundCheckTtlMs(long)}).
+     * </p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take() throws QueueException.EphemeralIsFull {
+        try {
+            try (Connection conn = jdbcHelper.getConnection()) {
+                ensureEphemeralCapacity(1, () -> ephemeralSizeForBoundCheck(conn));
+                IQueueMessage<ID, DATA> msg = _takeWithRetries(conn, 0, this.maxRetries);
+                if (msg != null) {
+                    trackEphemeralSize(1);
                 }
+                return msg;
             }
-            jdbcHelper.rollbackTransaction(conn);
-            throw de;
         } catch (Exception e) {
-            jdbcHelper.rollbackTransaction(conn);
             throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
         }
     }
@@ -884,19 +1353,23 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
     /**
      * {@inheritDoc}
      *
+     * <p>Ephemeral storage's size is checked once for the whole batch (see {@link #setEphemeralBoundCheckTtlMs(long)}).
+     * </p>
+     *
      * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     * @since 1.0.1
      */
     @Override
-    public IQueueMessage<ID, DATA> take() throws QueueException.EphemeralIsFull {
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException.EphemeralIsFull {
         try {
             try (Connection conn = jdbcHelper.getConnection()) {
-                if (!isEphemeralDisabled()) {
-                    int ephemeralMaxSize = getEphemeralMaxSize();
-                    if (ephemeralMaxSize > 0 && ephemeralSize(conn) >= ephemeralMaxSize) {
-                        throw new QueueException.EphemeralIsFull(ephemeralMaxSize);
-                    }
+                int numMsgs = ensureEphemeralCapacity(maxMessages, () -> ephemeralSizeForBoundCheck(conn));
+                List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+                if (numMsgs > 0) {
+                    result.addAll(_takeManyWithRetries(conn, numMsgs, 0, this.maxRetries));
+                    trackEphemeralSize(result.size());
                 }
-                return _takeWithRetries(conn, 0, this.maxRetries);
+                return result;
             }
         } catch (Exception e) {
             throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
@@ -927,27 +1400,22 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
      */
     protected Collection<? extends IQueueMessage<ID, DATA>> _getOrphanMessagesWithRetries(long thresholdTimestampMs,
             Connection conn, int numRetries, int maxRetries) {
-        try {
-            jdbcHelper.startTransaction(conn);
-            conn.setTransactionIsolation(transactionIsolationLevel);
-            Collection<? extends IQueueMessage<ID, DATA>> msgs = getOrphanMessagesFromEphemeralStorage(conn,
-                    thresholdTimestampMs);
-            jdbcHelper.commitTransaction(conn);
-            return msgs;
-        } catch (DaoException de) {
-            if (de.getCause() instanceof ConcurrencyFailureException) {
+        return executeWithRetries(Operation.GET_ORPHAN_MESSAGES, numRetries, maxRetries, () -> {
+            try {
+                jdbcHelper.startTransaction(conn);
+                conn.setTransactionIsolation(transactionIsolationLevel);
+                Collection<? extends IQueueMessage<ID, DATA>> msgs = getOrphanMessagesFromEphemeralStorage(conn,
+                        thresholdTimestampMs);
+                jdbcHelper.commitTransaction(conn);
+                return msgs;
+            } catch (DaoException de) {
                 jdbcHelper.rollbackTransaction(conn);
-                if (numRetries > maxRetries) {
-                    throw new QueueException(de);
-                } else {
-                    return _getOrphanMessagesWithRetries(thresholdTimestampMs, conn, numRetries + 1, maxRetries);
-                }
+                throw de;
+            } catch (Exception e) {
+                jdbcHelper.rollbackTransaction(conn);
+                throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
             }
-            throw de;
-        } catch (Exception e) {
-            jdbcHelper.rollbackTransaction(conn);
-            throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
-        }
+        });
     }
 
     /**
@@ -980,7 +1448,7 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
     }
 
     /**
-     * Get number of items currently in queue storage.
+     * Get number of items currently in queue storage (exact count).
      *
      * @param conn
      * @return
@@ -991,7 +1459,7 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
     }
 
     /**
-     * Get number of items currently in ephemeral storage.
+     * Get number of items currently in ephemeral storage (exact count).
      *
      * @param conn
      * @return
@@ -1003,11 +1471,13 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Size is calculated by the {@link #getSizingStrategy() sizing strategy}.</p>
      */
     @Override
     public int queueSize() {
         try (Connection conn = jdbcHelper.getConnection()) {
-            return queueSize(conn);
+            return sizingStrategy.queueSize(this, conn);
         } catch (Exception e) {
             throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
         }
@@ -1015,6 +1485,8 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Size is calculated by the {@link #getSizingStrategy() sizing strategy}.</p>
      */
     @Override
     public int ephemeralSize() {
@@ -1022,7 +1494,7 @@ public abstract class JdbcQueue<ID, DATA> extends AbstractEphemeralSupportQueue<
             return 0;
         }
         try (Connection conn = jdbcHelper.getConnection()) {
-            return ephemeralSize(conn);
+            return sizingStrategy.ephemeralSize(this, conn);
         } catch (Exception e) {
             throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
         }
@@ -24,6 +24,32 @@ public abstract class JdbcQueueFactory<T extends JdbcQueue<ID, DATA>, ID, DATA>
     public final static String SPEC_FIELD_TABLE_NAME_EPHEMERAL = "table_name_ephemeral";
     public final static String SPEC_FIELD_MAX_RETRIES = "max_retries";
     public final static String SPEC_FIELD_TRANSACTION_ISOLATION_LEVEL = "tranx_isolation_level";
+    public final static String SPEC_FIELD_SIZING_STRATEGY = "sizing_strategy";
+    public final static String SPEC_FIELD_SIZING_CACHE_TTL_MS = "sizing_cache_ttl_ms";
+    public final static String SPEC_FIELD_SIZE_COUNTER_TABLE = "size_counter_table";
+    public final static String SPEC_FIELD_EPHEMERAL_BOUND_CHECK_TTL_MS = "ephemeral_bound_check_ttl_ms";
+    public final static String SPEC_FIELD_RETRY_BASE_DELAY_MS = "retry_base_delay_ms";
+    public final static String SPEC_FIELD_RETRY_MAX_DELAY_MS = "retry_max_delay_ms";
+    public final static String SPEC_FIELD_RETRY_DEADLINE_MS = "retry_deadline_ms";
+
+    /**
+     * Sizing strategy: exact count using {@code SELECT COUNT(*)}, see {@link JdbcSizingStrategy#EXACT_COUNT}.
+     *
+     * @since 1.0.1
+     */
+    public final static String SIZING_STRATEGY_EXACT_COUNT = "exact_count";
+    /**
+     * Sizing strategy: read trigger-maintained counters, see {@link JdbcSizingStrategy.CounterTable}.
+     *
+     * @since 1.0.1
+     */
+    public final static String SIZING_STRATEGY_COUNTER_TABLE = "counter_table";
+    /**
+     * Sizing strategy: planner statistics, see {@link JdbcSizingStrategy.PlannerEstimate}.
+     *
+     * @since 1.0.1
+     */
+    public final static String SIZING_STRATEGY_PLANNER_ESTIMATE = "planner_estimate";
 
     private DataSource defaultDataSource;
     private IJdbcHelper defaultJdbcHelper;
@@ -31,6 +57,13 @@ public abstract class JdbcQueueFactory<T extends JdbcQueue<ID, DATA>, ID, DATA>
     private String defaultTableName, defaultTableNameEphemeral;
     private int defaultMaxRetries = JdbcQueue.DEFAULT_MAX_RETRIES;
     private int defaultTransactionIsolationLevel = JdbcQueue.DEFAULT_TRANX_ISOLATION_LEVEL;
+    private String defaultSizingStrategy = SIZING_STRATEGY_EXACT_COUNT;
+    private long defaultSizingCacheTtlMs = 0;
+    private String defaultSizeCounterTable = JdbcSizingStrategy.CounterTable.DEFAULT_TABLE_NAME;
+    private long defaultEphemeralBoundCheckTtlMs = JdbcQueue.DEFAULT_EPHEMERAL_BOUND_CHECK_TTL_MS;
+    private long defaultRetryBaseDelayMs = JdbcRetryPolicy.DEFAULT_BASE_DELAY_MS;
+    private long defaultRetryMaxDelayMs = JdbcRetryPolicy.DEFAULT_MAX_DELAY_MS;
+    private long defaultRetryDeadlineMs = JdbcRetryPolicy.DEFAULT_DEADLINE_MS;
 
     /**
      * Default name of database table to store queue messages, passed to all queues created by this factory.
@@ -117,6 +150,199 @@ public abstract class JdbcQueueFactory<T extends JdbcQueue<ID, DATA>, ID, DATA>
         return this;
     }
 
+    /**
+     * Default sizing strategy ({@link #SIZING_STRATEGY_EXACT_COUNT}, {@link #SIZING_STRATEGY_COUNTER_TABLE} or
+     * {@link #SIZING_STRATEGY_PLANNER_ESTIMATE}), passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getDefaultSizingStrategy() {
+        return defaultSizingStrategy;
+    }
+
+    /**
+     * Default sizing strategy ({@link #SIZING_STRATEGY_EXACT_COUNT}, {@link #SIZING_STRATEGY_COUNTER_TABLE} or
+     * {@link #SIZING_STRATEGY_PLANNER_ESTIMATE}), passed to all queues created by this factory.
+     *
+     * @param defaultSizingStrategy
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueueFactory<T, ID, DATA> setDefaultSizingStrategy(String defaultSizingStrategy) {
+        this.defaultSizingStrategy = defaultSizingStrategy;
+        return this;
+    }
+
+    /**
+     * If positive, sizes calculated by the sizing strategy are cached for this amount of time (see
+     * {@link JdbcSizingStrategy.CachedCount}), passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDefaultSizingCacheTtlMs() {
+        return defaultSizingCacheTtlMs;
+    }
+
+    /**
+     * If positive, sizes calculated by the sizing strategy are cached for this amount of time (see
+     * {@link JdbcSizingStrategy.CachedCount}), passed to all queues created by this factory.
+     *
+     * @param defaultSizingCacheTtlMs
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueueFactory<T, ID, DATA> setDefaultSizingCacheTtlMs(long defaultSizingCacheTtlMs) {
+        this.defaultSizingCacheTtlMs = defaultSizingCacheTtlMs;
+        return this;
+    }
+
+    /**
+     * How often the ephemeral storage's bound check of {@code take()} reads ephemeral-size (see
+     * {@link JdbcQueue#setEphemeralBoundCheckTtlMs(long)}), passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDefaultEphemeralBoundCheckTtlMs() {
+        return defaultEphemeralBoundCheckTtlMs;
+    }
+
+    /**
+     * How often the ephemeral storage's bound check of {@code take()} reads ephemeral-size (see
+     * {@link JdbcQueue#setEphemeralBoundCheckTtlMs(long)}), passed to all queues created by this factory.
+     *
+     * @param defaultEphemeralBoundCheckTtlMs
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueueFactory<T, ID, DATA> setDefaultEphemeralBoundCheckTtlMs(long defaultEphemeralBoundCheckTtlMs) {
+        this.defaultEphemeralBoundCheckTtlMs = defaultEphemeralBoundCheckTtlMs;
+        return this;
+    }
+
+    /**
+     * Name of the counter table used by {@link #SIZING_STRATEGY_COUNTER_TABLE}, passed to all queues created by
+     * this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getDefaultSizeCounterTable() {
+        return defaultSizeCounterTable;
+    }
+
+    /**
+     * Name of the counter table used by {@link #SIZING_STRATEGY_COUNTER_TABLE}, passed to all queues created by
+     * this factory.
+     *
+     * @param defaultSizeCounterTable
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueueFactory<T, ID, DATA> setDefaultSizeCounterTable(String defaultSizeCounterTable) {
+        this.defaultSizeCounterTable = defaultSizeCounterTable;
+        return this;
+    }
+
+    /**
+     * Default delay before the first retry of a failed DB-operation (see {@link JdbcRetryPolicy}), passed to all
+     * queues created by this factory. {@code 0} disables back-off.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDefaultRetryBaseDelayMs() {
+        return defaultRetryBaseDelayMs;
+    }
+
+    /**
+     * Default delay before the first retry of a failed DB-operation (see {@link JdbcRetryPolicy}), passed to all
+     * queues created by this factory. {@code 0} disables back-off.
+     *
+     * @param defaultRetryBaseDelayMs
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueueFactory<T, ID, DATA> setDefaultRetryBaseDelayMs(long defaultRetryBaseDelayMs) {
+        this.defaultRetryBaseDelayMs = defaultRetryBaseDelayMs;
+        return this;
+    }
+
+    /**
+     * Default max delay between 2 retries of a failed DB-operation (see {@link JdbcRetryPolicy}), passed to all
+     * queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDefaultRetryMaxDelayMs() {
+        return defaultRetryMaxDelayMs;
+    }
+
+    /**
+     * Default max delay between 2 retries of a failed DB-operation (see {@link JdbcRetryPolicy}), passed to all
+     * queues created by this factory.
+     *
+     * @param defaultRetryMaxDelayMs
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueueFactory<T, ID, DATA> setDefaultRetryMaxDelayMs(long defaultRetryMaxDelayMs) {
+        this.defaultRetryMaxDelayMs = defaultRetryMaxDelayMs;
+        return this;
+    }
+
+    /**
+     * Default max total time spent on retrying a DB-operation (see {@link JdbcRetryPolicy}), passed to all queues
+     * created by this factory. {@code 0} means no deadline.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDefaultRetryDeadlineMs() {
+        return defaultRetryDeadlineMs;
+    }
+
+    /**
+     * Default max total time spent on retrying a DB-operation (see {@link JdbcRetryPolicy}), passed to all queues
+     * created by this factory. {@code 0} means no deadline.
+     *
+     * @param defaultRetryDeadlineMs
+     * @return
+     * @since 1.0.1
+     */
+    public JdbcQueueFactory<T, ID, DATA> setDefaultRetryDeadlineMs(long defaultRetryDeadlineMs) {
+        this.defaultRetryDeadlineMs = defaultRetryDeadlineMs;
+        return this;
+    }
+
+    /**
+     * Build a {@link JdbcSizingStrategy} instance.
+     *
+     * @param strategy
+     * @param cacheTtlMs
+     * @param counterTable
+     * @return
+     * @since 1.0.1
+     */
+    protected JdbcSizingStrategy buildSizingStrategy(String strategy, long cacheTtlMs, String counterTable) {
+        JdbcSizingStrategy sizingStrategy;
+        if (StringUtils.isBlank(strategy) || SIZING_STRATEGY_EXACT_COUNT.equalsIgnoreCase(strategy)) {
+            sizingStrategy = JdbcSizingStrategy.EXACT_COUNT;
+        } else if (SIZING_STRATEGY_COUNTER_TABLE.equalsIgnoreCase(strategy)) {
+            sizingStrategy = StringUtils.isBlank(counterTable) ?
+                    new JdbcSizingStrategy.CounterTable() :
+                    new JdbcSizingStrategy.CounterTable(counterTable);
+        } else if (SIZING_STRATEGY_PLANNER_ESTIMATE.equalsIgnoreCase(strategy)) {
+            sizingStrategy = new JdbcSizingStrategy.PlannerEstimate();
+        } else {
+            throw new IllegalArgumentException("Invalid sizing strategy [" + strategy + "].");
+        }
+        return cacheTtlMs > 0 ? new JdbcSizingStrategy.CachedCount(sizingStrategy, cacheTtlMs) : sizingStrategy;
+    }
+
     /**
      * If all {@link JdbcQueue} instances are connecting to one
      * {@link DataSource}, it's a good idea to pre-create a {@link IJdbcHelper}
@@ -257,6 +483,26 @@ public abstract class JdbcQueueFactory<T extends JdbcQueue<ID, DATA>, ID, DATA>
             queue.setTransactionIsolationLevel(txIsolationLevel.intValue());
         }
 
+        String sizingStrategy = spec.getField(SPEC_FIELD_SIZING_STRATEGY);
+        Long sizingCacheTtlMs = spec.getField(SPEC_FIELD_SIZING_CACHE_TTL_MS, Long.class);
+        String sizeCounterTable = spec.getField(SPEC_FIELD_SIZE_COUNTER_TABLE);
+        queue.setSizingStrategy(
+                buildSizingStrategy(!StringUtils.isBlank(sizingStrategy) ? sizingStrategy : defaultSizingStrategy,
+                        sizingCacheTtlMs != null ? sizingCacheTtlMs.longValue() : defaultSizingCacheTtlMs,
+                        !StringUtils.isBlank(sizeCounterTable) ? sizeCounterTable : defaultSizeCounterTable));
+        Long ephemeralBoundCheckTtlMs = spec.getField(SPEC_FIELD_EPHEMERAL_BOUND_CHECK_TTL_MS, Long.class);
+        queue.setEphemeralBoundCheckTtlMs(ephemeralBoundCheckTtlMs != null ?
+                ephemeralBoundCheckTtlMs.longValue() :
+                defaultEphemeralBoundCheckTtlMs);
+
+        Long retryBaseDelayMs = spec.getField(SPEC_FIELD_RETRY_BASE_DELAY_MS, Long.class);
+        Long retryMaxDelayMs = spec.getField(SPEC_FIELD_RETRY_MAX_DELAY_MS, Long.class);
+        Long retryDeadlineMs = spec.getField(SPEC_FIELD_RETRY_DEADLINE_MS, Long.class);
+        queue.setRetryPolicy(
+                new JdbcRetryPolicy(retryBaseDelayMs != null ? retryBaseDelayMs.longValue() : defaultRetryBaseDelayMs,
+                        retryMaxDelayMs != null ? retryMaxDelayMs.longValue() : defaultRetryMaxDelayMs,
+                        retryDeadlineMs != null ? retryDeadlineMs.longValue() : defaultRetryDeadlineMs));
+
         super.initQueue(queue, spec);
     }
 }
@@ -0,0 +1,144 @@
+package com.github.ddth.queue.impl;
+
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Policy to retry DB-operations of {@link JdbcQueue} that failed due to lock contention (deadlock, lock timeout,
+ * serialization failure).
+ *
+ * <ul>
+ * <li>Retries are bounded by the queue's {@link JdbcQueue#getMaxRetries() max-retries} and by
+ * {@link #getDeadlineMs() deadline} (total time spent on one operation, including back-off delays).</li>
+ * <li>Delay before the n-th retry is a random value in {@code [0, min(maxDelay, baseDelay * 2^(n-1))]}
+ * ("full jitter"), so that competing transactions do not retry at the same moment; it is clamped to the time left
+ * before the deadline.</li>
+ * <li>Only failures caused by lock contention ({@link ConcurrencyFailureException}) are retried, see
+ * {@link #isRetryable(Throwable)}.</li>
+ * <li>Sub-classes may override {@link #isRetryable(Throwable)}, {@link #canRetry(int, int, long)} and
+ * {@link #backoffMs(int)}.</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class JdbcRetryPolicy {
+    public final static long DEFAULT_BASE_DELAY_MS = 5;
+    public final static long DEFAULT_MAX_DELAY_MS = 500;
+    public final static long DEFAULT_DEADLINE_MS = 10000;
+
+    /**
+     * Retry immediately, no deadline (behavior prior to v1.0.1).
+     */
+    public final static JdbcRetryPolicy NO_BACKOFF = new JdbcRetryPolicy(0, 0, 0);
+
+    private final long baseDelayMs, maxDelayMs, deadlineMs;
+
+    public JdbcRetryPolicy() {
+        this(DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, DEFAULT_DEADLINE_MS);
+    }
+
+    /**
+     * @param baseDelayMs delay before the first retry (upper bound, before jitter); {@code 0} to disable back-off
+     * @param maxDelayMs  max delay between 2 retries
+     * @param deadlineMs  max total time spent on one operation; {@code 0} or negative means no deadline
+     */
+    public JdbcRetryPolicy(long baseDelayMs, long maxDelayMs, long deadlineMs) {
+        this.baseDelayMs = Math.max(0, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+        this.deadlineMs = deadlineMs;
+    }
+
+    /**
+     * Delay before the first retry (upper bound, before jitter).
+     *
+     * @return
+     */
+    public long getBaseDelayMs() {
+        return baseDelayMs;
+    }
+
+    /**
+     * Max delay between 2 retries.
+     *
+     * @return
+     */
+    public long getMaxDelayMs() {
+        return maxDelayMs;
+    }
+
+    /**
+     * Max total time spent on one operation; {@code 0} or negative means no deadline.
+     *
+     * @return
+     */
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    /**
+     * Check if a failure is caused by lock contention (a {@link ConcurrencyFailureException} in its cause chain), hence
+     * worth retrying.
+     *
+     * @param e
+     * @return
+     */
+    public boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause() != t ? t.getCause() : null) {
+            if (t instanceof ConcurrencyFailureException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Time left before the deadline.
+     *
+     * @param elapsedMs time spent on the operation so far
+     * @return {@link Long#MAX_VALUE} if there is no deadline, {@code 0} if the deadline has passed
+     */
+    public long remainingMs(long elapsedMs) {
+        return deadlineMs <= 0 ? Long.MAX_VALUE : Math.max(0, deadlineMs - elapsedMs);
+    }
+
+    /**
+     * Check if a failed operation should be retried.
+     *
+     * @param numRetries number of retries have been made so far
+     * @param maxRetries
+     * @param elapsedMs  time spent on the operation so far
+     * @return
+     */
+    public boolean canRetry(int numRetries, int maxRetries, long elapsedMs) {
+        return numRetries <= maxRetries && (deadlineMs <= 0 || elapsedMs < deadlineMs);
+    }
+
+    /**
+     * Calculate delay before a retry.
+     *
+     * @param retryNumber the upcoming retry, starting from {@code 1}
+     * @return
+     */
+    public long backoffMs(int retryNumber) {
+        if (baseDelayMs <= 0) {
+            return 0;
+        }
+        int shift = Math.min(Math.max(retryNumber - 1, 0), 30);
+        long cap = baseDelayMs << shift;
+        cap = cap <= 0 || cap > maxDelayMs ? maxDelayMs : cap;
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Calculate delay before a retry: {@link #backoffMs(int)}, clamped to the time left before the deadline.
+     *
+     * @param retryNumber the upcoming retry, starting from {@code 1}
+     * @param elapsedMs   time spent on the operation so far
+     * @return
+     */
+    public long delayMs(int retryNumber, long elapsedMs) {
+        return Math.min(backoffMs(retryNumber), remainingMs(elapsedMs));
+    }
+}
@@ -0,0 +1,223 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.dao.utils.DaoException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+
+/**
+ * Strategy to calculate queue-size and ephemeral-size of a {@link JdbcQueue}.
+ *
+ * <p>
+ * The strategy is used by {@link JdbcQueue#queueSize()}, {@link JdbcQueue#ephemeralSize()} and by the ephemeral
+ * bound check of {@link JdbcQueue#take()}/{@link JdbcQueue#take(int)} (at most once per
+ * {@link JdbcQueue#getEphemeralBoundCheckTtlMs()}). Built-in strategies:
+ * </p>
+ * <ul>
+ * <li>{@link #EXACT_COUNT} (default): {@code SELECT COUNT(*)}, exact but scans the table (or index).</li>
+ * <li>{@link CounterTable}: exact, reads counters that are maintained by database triggers in the same transaction
+ * as the queue operation.</li>
+ * <li>{@link PlannerEstimate}: approximate, reads table statistics ({@code pg_class.reltuples} for PostgreSQL,
+ * {@code information_schema.TABLES.TABLE_ROWS} for MySQL).</li>
+ * <li>{@link CachedCount}: caches results of another strategy for a period of time.</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public interface JdbcSizingStrategy {
+    /**
+     * Exact count using {@code SELECT COUNT(*)}, see {@link JdbcQueue#queueSize(Connection)} and
+     * {@link JdbcQueue#ephemeralSize(Connection)}.
+     */
+    JdbcSizingStrategy EXACT_COUNT = new JdbcSizingStrategy() {
+        @Override
+        public int queueSize(JdbcQueue<?, ?> queue, Connection conn) {
+            return queue.queueSize(conn);
+        }
+
+        @Override
+        public int ephemeralSize(JdbcQueue<?, ?> queue, Connection conn) {
+            return queue.ephemeralSize(conn);
+        }
+    };
+
+    /**
+     * Get number of items currently in queue storage.
+     *
+     * @param queue
+     * @param conn
+     * @return
+     */
+    int queueSize(JdbcQueue<?, ?> queue, Connection conn);
+
+    /**
+     * Get number of items currently in ephemeral storage.
+     *
+     * @param queue
+     * @param conn
+     * @return
+     */
+    int ephemeralSize(JdbcQueue<?, ?> queue, Connection conn);
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Read sizes from a counter table, which is maintained by database triggers on the queue table(s); hence
+     * counters are updated in the same transaction as the queue operations.
+     *
+     * <p>
+     * Counter table schema:
+     * </p>
+     * <ul>
+     * <li>{@code counter_key}: {@code string}, see {@link JdbcQueue#getSizeCounterKey(boolean)}</li>
+     * <li>{@code slot}: {@code int}, triggers spread updates over several slots (rows) to avoid hot-row contention;
+     * size is the sum of all slots</li>
+     * <li>{@code num_entries}: {@code bigint}</li>
+     * </ul>
+     *
+     * <p>See sample schemas {@code sample-dbschema/sample_schema-size-counter.*.sql}.</p>
+     */
+    class CounterTable implements JdbcSizingStrategy {
+        public final static String DEFAULT_TABLE_NAME = "queue_size_counter";
+        public final static String COL_COUNTER_KEY = "counter_key";
+        public final static String COL_NUM_ENTRIES = "num_entries";
+
+        private final static String FIELD_COUNT = "num_entries";
+        private final String sqlSum;
+
+        public CounterTable() {
+            this(DEFAULT_TABLE_NAME);
+        }
+
+        public CounterTable(String tableName) {
+            sqlSum = MessageFormat
+                    .format("SELECT SUM({1}) AS {2} FROM {0} WHERE {3}=?", tableName, COL_NUM_ENTRIES, FIELD_COUNT,
+                            COL_COUNTER_KEY);
+        }
+
+        @Override
+        public int queueSize(JdbcQueue<?, ?> queue, Connection conn) {
+            return queue.doSize(conn, sqlSum, FIELD_COUNT, queue.getSizeCounterKey(false));
+        }
+
+        @Override
+        public int ephemeralSize(JdbcQueue<?, ?> queue, Connection conn) {
+            return queue.doSize(conn, sqlSum, FIELD_COUNT, queue.getSizeCounterKey(true));
+        }
+    }
+
+    /**
+     * Estimate sizes from the query planner's table statistics.
+     *
+     * <ul>
+     * <li>PostgreSQL: {@code pg_class.reltuples}; MySQL: {@code information_schema.TABLES.TABLE_ROWS}.</li>
+     * <li>If queue and ephemeral storages are 2 different tables, each size is estimated from its own table.</li>
+     * <li>If both storages share one table (e.g. less-locking queues), ephemeral-size is counted exactly (the
+     * ephemeral storage is expected to be small and indexed) and queue-size is estimated as
+     * {@code table's rows - ephemeral-size}.</li>
+     * <li>Statistics cover the whole table, this strategy is not suitable for single-storage queues.</li>
+     * </ul>
+     */
+    class PlannerEstimate implements JdbcSizingStrategy {
+        private final static String FIELD_COUNT = "num_entries";
+        private final static String SQL_PGSQL =
+                "SELECT CAST(reltuples AS BIGINT) AS " + FIELD_COUNT + " FROM pg_class WHERE oid=to_regclass(?)";
+        private final static String SQL_MYSQL = "SELECT TABLE_ROWS AS " + FIELD_COUNT
+                + " FROM information_schema.TABLES WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME=?";
+
+        private volatile String sqlEstimate;
+
+        /**
+         * Estimate number of rows of a table.
+         *
+         * @param queue
+         * @param conn
+         * @param tableName
+         * @return
+         */
+        protected int estimateRows(JdbcQueue<?, ?> queue, Connection conn, String tableName) {
+            if (sqlEstimate == null) {
+                try {
+                    String dbms = conn.getMetaData().getDatabaseProductName();
+                    if (dbms != null && dbms.toLowerCase().contains("postgres")) {
+                        sqlEstimate = SQL_PGSQL;
+                    } else if (dbms != null && (dbms.toLowerCase().contains("mysql") || dbms.toLowerCase()
+                            .contains("mariadb"))) {
+                        sqlEstimate = SQL_MYSQL;
+                    } else {
+                        throw new IllegalStateException("Unsupported database [" + dbms + "].");
+                    }
+                } catch (SQLException e) {
+                    throw new DaoException(e);
+                }
+            }
+            return Math.max(0, queue.doSize(conn, sqlEstimate, FIELD_COUNT, tableName));
+        }
+
+        private static boolean isSharedStorage(JdbcQueue<?, ?> queue) {
+            return queue.getTableName().equals(queue.getTableNameEphemeral());
+        }
+
+        @Override
+        public int queueSize(JdbcQueue<?, ?> queue, Connection conn) {
+            int numRows = estimateRows(queue, conn, queue.getTableName());
+            return isSharedStorage(queue) ? Math.max(0, numRows - queue.ephemeralSize(conn)) : numRows;
+        }
+
+        @Override
+        public int ephemeralSize(JdbcQueue<?, ?> queue, Connection conn) {
+            return isSharedStorage(queue) ?
+                    queue.ephemeralSize(conn) :
+                    estimateRows(queue, conn, queue.getTableNameEphemeral());
+        }
+    }
+
+    /**
+     * Cache results of another strategy for a period of time.
+     *
+     * <p>Note: cached values belong to one queue, an instance of this class must not be shared among queues.</p>
+     */
+    class CachedCount implements JdbcSizingStrategy {
+        public final static long DEFAULT_TTL_MS = 1000;
+
+        private final JdbcSizingStrategy delegate;
+        private final long ttlMs;
+        private volatile long queueSizeExpiry, ephemeralSizeExpiry;
+        private volatile int queueSize, ephemeralSize;
+
+        public CachedCount() {
+            this(EXACT_COUNT, DEFAULT_TTL_MS);
+        }
+
+        public CachedCount(long ttlMs) {
+            this(EXACT_COUNT, ttlMs);
+        }
+
+        public CachedCount(JdbcSizingStrategy delegate, long ttlMs) {
+            this.delegate = delegate;
+            this.ttlMs = ttlMs;
+        }
+
+        @Override
+        public int queueSize(JdbcQueue<?, ?> queue, Connection conn) {
+            long now = System.currentTimeMillis();
+            if (now >= queueSizeExpiry) {
+                queueSize = delegate.queueSize(queue, conn);
+                queueSizeExpiry = now + ttlMs;
+            }
+            return queueSize;
+        }
+
+        @Override
+        public int ephemeralSize(JdbcQueue<?, ?> queue, Connection conn) {
+            long now = System.currentTimeMillis();
+            if (now >= ephemeralSizeExpiry) {
+                ephemeralSize = delegate.ephemeralSize(queue, conn);
+                ephemeralSizeExpiry = now + ttlMs;
+            }
+            return ephemeralSize;
+        }
+    }
+}
@@ -8,11 +8,18 @@ import com.github.ddth.queue.IQueue;
 import com.github.ddth.queue.IQueueMessage;
 import com.github.ddth.queue.utils.QueueException;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -291,24 +298,47 @@ public abstract class KafkaQueue<ID, DATA> extends AbstractQueue<ID, DATA> {
      * @since 0.3.3
      */
     protected IQueueMessage<ID, DATA> takeFromQueue() {
-        KafkaMessage kMsg = kafkaClient.consumeMessage(consumerGroupId, true, topicName, 1000, TimeUnit.MILLISECONDS);
+        return takeFromQueue(1000, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take a message from Kafka queue, waiting up to the specified wait time.
+     *
+     * @param timeout
+     * @param unit
+     * @return
+     * @since 1.0.1
+     */
+    protected IQueueMessage<ID, DATA> takeFromQueue(long timeout, TimeUnit unit) {
+        KafkaMessage kMsg = kafkaClient.consumeMessage(consumerGroupId, true, topicName, timeout, unit);
         return kMsg != null ? deserialize(kMsg.content()) : null;
     }
 
     /**
-     * {@inheritDoc}
-     * <p>{@code queueCase} is ignore as we always add new message to Kafka.</p>
+     * Build a {@link KafkaMessage} from a queue message.
+     *
+     * @param msg
+     * @return
+     * @since 1.0.1
      */
-    @Override
-    protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+    protected KafkaMessage toKafkaMessage(IQueueMessage<ID, DATA> msg) {
         byte[] msgData = serialize(msg);
         Object pKey = msg instanceof IPartitionSupport ? ((IPartitionSupport) msg).getPartitionKey() : msg.getId();
         if (pKey == null) {
             pKey = msg.getId();
         }
-        KafkaMessage kMsg = pKey != null ?
+        return pKey != null ?
                 new KafkaMessage(topicName, pKey.toString(), msgData) :
                 new KafkaMessage(topicName, msgData);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>{@code queueCase} is ignore as we always add new message to Kafka.</p>
+     */
+    @Override
+    protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+        KafkaMessage kMsg = toKafkaMessage(msg);
         if (sendAsync) {
             return kafkaClient.sendMessageRaw(producerType, kMsg) != null;
         } else {
@@ -316,6 +346,70 @@ public abstract class KafkaQueue<ID, DATA> extends AbstractQueue<ID, DATA> {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are handed to the producer without waiting for each one to be acknowledged. If
+     * {@link #isSendAsync()} is {@code false}, this method waits for all acknowledgements once the whole batch has
+     * been sent.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        List<Future<RecordMetadata>> futures = new ArrayList<>(msgs.size());
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            futures.add(kafkaClient.sendMessageRaw(producerType, toKafkaMessage(msg)));
+        }
+        boolean[] result = new boolean[futures.size()];
+        int i = 0;
+        for (Future<RecordMetadata> future : futures) {
+            if (future != null && !sendAsync) {
+                try {
+                    result[i++] = future.get() != null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new QueueException(e);
+                } catch (ExecutionException e) {
+                    LOGGER.warn(e.getMessage(), e);
+                    result[i++] = false;
+                }
+            } else {
+                result[i++] = future != null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Message is handed to the Kafka producer right away; the returned future is completed from the producer's
+     * send callback, so no extra thread is involved.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public CompletableFuture<Boolean> queueAsync(IQueueMessage<ID, DATA> _msg) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        try {
+            KafkaMessage kMsg = toKafkaMessage(cloneAsNewMessage(_msg, new Date()));
+            Future<RecordMetadata> future = kafkaClient.sendMessageRaw(producerType, kMsg, (metadata, e) -> {
+                if (e != null) {
+                    result.completeExceptionally(new QueueException(e));
+                } else {
+                    result.complete(metadata != null);
+                }
+            });
+            if (future == null) {
+                result.complete(false);
+            }
+        } catch (Exception e) {
+            result.completeExceptionally(e instanceof QueueException ? e : new QueueException(e));
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -332,6 +426,18 @@ public abstract class KafkaQueue<ID, DATA> extends AbstractQueue<ID, DATA> {
         return takeFromQueue();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Waits using the Kafka consumer's own poll timeout.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take(long timeout, TimeUnit unit) {
+        return takeFromQueue(timeout, unit);
+    }
+
     /**
      * {@inheritDoc}
      * <p>
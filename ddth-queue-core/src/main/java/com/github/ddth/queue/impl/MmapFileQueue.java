@@ -0,0 +1,825 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.OrphanMessagesPage;
+import com.github.ddth.queue.OrphanMessagesPage.TimeIndexKey;
+import com.github.ddth.queue.utils.QueueException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Memory-mapped file implementation of {@link IQueue}.
+ *
+ * <p>
+ * Implementation:
+ * <ul>
+ * <li>Pure Java, no native library. Queue storage is a sequence of append-only segment files, each one is mapped into
+ * memory with a {@link MappedByteBuffer}. A record is {@code <4-byte length><serialized message>}; a record that does
+ * not fit into the current segment is written to a new segment.</li>
+ * <li>The read cursor ({@code <segment index><position>}) is kept in a small memory-mapped file, in two alternating
+ * slots with a sequence number and a checksum: a cursor torn by a crash is ignored and the previous one is used.
+ * Segments are deleted once fully consumed; their memory mappings are released when garbage collected.</li>
+ * <li>Ephemeral storage is an append-only journal file of added/removed messages. It is replayed into memory when the
+ * queue is initialized, and rewritten when most of its records are removed messages.</li>
+ * <li>Puts are serialized by one lock, takes by another. Queue-size and ephemeral-size are exact in-memory
+ * counters.</li>
+ * <li>Writes reach the OS page cache, so they survive a process crash. Use {@link #setSyncWrites(boolean)} to also
+ * survive a machine crash.</li>
+ * <li>If the process crashes after a message has been moved to ephemeral storage but before the read cursor is
+ * saved, the message is taken again after restart.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Features:</p>
+ * <ul>
+ * <li>Queue-size support: yes</li>
+ * <li>Ephemeral storage support: yes</li>
+ * <li>Ephemeral-size support: yes</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public abstract class MmapFileQueue<ID, DATA> extends AbstractEphemeralSupportQueue<ID, DATA> {
+    private final Logger LOGGER = LoggerFactory.getLogger(MmapFileQueue.class);
+
+    public final static String DEFAULT_STORAGE_DIR = "/tmp/ddth-mmap-queue";
+    public final static int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final static String SEGMENT_FILE_PREFIX = "segment-";
+    private final static String SEGMENT_FILE_SUFFIX = ".dat";
+    private final static String CURSOR_FILE = "cursor.dat";
+    /* a cursor slot is <8-byte sequence><8-byte segment index><8-byte position><8-byte checksum> */
+    private final static int CURSOR_SLOT_SIZE = 32, CURSOR_CHECKSUM_OFFSET = 24;
+    private final static String EPHEMERAL_FILE = "ephemeral.dat";
+    /* record length that marks the end of data in a segment: readers move on to the next segment */
+    private final static int END_OF_SEGMENT = -1;
+    private final static byte OP_ADD = 1, OP_REMOVE = 2;
+    private final static int EPHEMERAL_REWRITE_MIN_RECORDS = 1024;
+
+    /**
+     * A segment file, mapped into memory.
+     */
+    private static class Segment {
+        private final long index;
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(File file, long index, int minCapacity) throws IOException {
+            this.index = index;
+            this.file = file;
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(minCapacity, channel.size()));
+        }
+
+        private int capacity() {
+            return buffer.capacity();
+        }
+
+        /**
+         * Length of the record at a position, {@link #END_OF_SEGMENT} if there is no room for one.
+         *
+         * @param position
+         * @return
+         */
+        private int recordLength(int position) {
+            return position + 4 > buffer.capacity() ? END_OF_SEGMENT : buffer.getInt(position);
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                /* ignore */
+            }
+        }
+    }
+
+    /**
+     * A message in ephemeral storage.
+     */
+    private static class EphemeralEntry {
+        private final byte[] value;
+        private final TimeIndexKey timeKey;
+
+        private EphemeralEntry(byte[] value, TimeIndexKey timeKey) {
+            this.value = value;
+            this.timeKey = timeKey;
+        }
+    }
+
+    private String storageDir;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private boolean syncWrites = false;
+
+    private File STORAGE_DIR;
+    private final Lock lockPut = new ReentrantLock(), lockTake = new ReentrantLock();
+    private final ConcurrentMap<Long, Segment> segments = new ConcurrentHashMap<>();
+    private Segment writeSegment, readSegment;
+    private int writePosition, readPosition;
+    private FileChannel cursorChannel;
+    private MappedByteBuffer cursorBuffer;
+    private long cursorSequence;
+    private final CRC32 cursorCrc = new CRC32();
+    /* number of messages written to queue storage and not taken yet */
+    private final AtomicLong queueCount = new AtomicLong();
+
+    private final Object ephemeralLock = new Object();
+    private FileChannel ephemeralChannel;
+    private long ephemeralJournalRecords;
+    private final ConcurrentMap<String, EphemeralEntry> ephemeralStorage = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<TimeIndexKey, String> ephemeralTimeIndex = new ConcurrentSkipListMap<>();
+
+    /**
+     * Directory to store data files.
+     *
+     * @return
+     */
+    public String getStorageDir() {
+        return storageDir;
+    }
+
+    /**
+     * Directory to store data files.
+     *
+     * @param storageDir
+     * @return
+     */
+    public MmapFileQueue<ID, DATA> setStorageDir(String storageDir) {
+        this.storageDir = storageDir;
+        return this;
+    }
+
+    /**
+     * Size (in bytes) of a segment file, default value {@link #DEFAULT_SEGMENT_SIZE}. A message larger than this
+     * size is written to a segment of its own.
+     *
+     * @return
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Size (in bytes) of a segment file, default value {@link #DEFAULT_SEGMENT_SIZE}. A message larger than this
+     * size is written to a segment of its own.
+     *
+     * <p>Note: must be set before calling {@link #init()}, existing segments keep their sizes.</p>
+     *
+     * @param segmentSize
+     * @return
+     */
+    public MmapFileQueue<ID, DATA> setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * If {@code true}, writes are flushed from OS buffer to storage before returning. Default value {@code false}.
+     *
+     * @return
+     */
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    /**
+     * If {@code true}, writes are flushed from OS buffer to storage before returning. Default value {@code false}.
+     *
+     * @param syncWrites
+     * @return
+     */
+    public MmapFileQueue<ID, DATA> setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+        return this;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Init method.
+     *
+     * @return
+     * @throws Exception
+     */
+    public MmapFileQueue<ID, DATA> init() throws Exception {
+        if (StringUtils.isBlank(storageDir)) {
+            storageDir = DEFAULT_STORAGE_DIR + File.separator + getQueueName();
+        }
+        if (segmentSize <= 8) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        STORAGE_DIR = new File(storageDir);
+        LOGGER.info("Storage Directory: " + STORAGE_DIR.getAbsolutePath());
+        FileUtils.forceMkdir(STORAGE_DIR);
+
+        try {
+            cursorChannel = FileChannel.open(new File(STORAGE_DIR, CURSOR_FILE).toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            cursorBuffer = cursorChannel.map(FileChannel.MapMode.READ_WRITE, 0, 2 * CURSOR_SLOT_SIZE);
+            initSegments();
+            if (!isEphemeralDisabled()) {
+                initEphemeralStorage();
+            }
+        } catch (Exception e) {
+            destroy();
+            throw e;
+        }
+
+        super.init();
+
+        return this;
+    }
+
+    /**
+     * Destroy method.
+     */
+    public void destroy() {
+        try {
+            super.destroy();
+        } finally {
+            lockPut.lock();
+            lockTake.lock();
+            try {
+                segments.values().forEach(Segment::close);
+                segments.clear();
+                writeSegment = readSegment = null;
+                closeQuietly(cursorChannel);
+                cursorChannel = null;
+                synchronized (ephemeralLock) {
+                    closeQuietly(ephemeralChannel);
+                    ephemeralChannel = null;
+                }
+            } finally {
+                lockTake.unlock();
+                lockPut.unlock();
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                /* ignore */
+            }
+        }
+    }
+
+    private File segmentFile(long index) {
+        return new File(STORAGE_DIR, SEGMENT_FILE_PREFIX + String.format("%020d", index) + SEGMENT_FILE_SUFFIX);
+    }
+
+    private Segment openSegment(long index, int minCapacity) throws IOException {
+        Segment segment = segments.get(index);
+        if (segment == null) {
+            segment = new Segment(segmentFile(index), index, minCapacity);
+            segments.put(index, segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Close and delete a fully consumed segment.
+     *
+     * <p>
+     * A {@link MappedByteBuffer} can not be unmapped with public APIs: the mapping stays until the buffer is garbage
+     * collected. Until then the segment's pages still count towards the process' mapped memory (not heap) and, on
+     * platforms that do not allow deleting a mapped file (e.g. Windows), the file stays on disk; such files are
+     * deleted when the queue is re-initialized.
+     * </p>
+     *
+     * @param segment
+     */
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.index);
+        segment.close();
+        if (!segment.file.delete()) {
+            /* e.g. the file is still mapped on some platforms: it will be deleted when the queue is re-initialized */
+            LOGGER.warn("Cannot delete consumed segment file [" + segment.file.getAbsolutePath() + "].");
+        }
+    }
+
+    /**
+     * Load the read cursor, delete consumed segments and scan the rest for the write position and queue-size.
+     *
+     * @throws IOException
+     */
+    private void initSegments() throws IOException {
+        TreeSet<Long> indexes = new TreeSet<>();
+        File[] files = STORAGE_DIR.listFiles();
+        for (File file : files != null ? files : new File[0]) {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX)) {
+                try {
+                    indexes.add(Long.parseLong(name.substring(SEGMENT_FILE_PREFIX.length(),
+                            name.length() - SEGMENT_FILE_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Ignored unknown file [" + file.getAbsolutePath() + "].");
+                }
+            }
+        }
+
+        /* the valid slot with the highest sequence; none is valid in a new cursor file */
+        long cursorIndex = 0;
+        int cursorPosition = 0;
+        cursorSequence = 0;
+        for (int offset = 0; offset < 2 * CURSOR_SLOT_SIZE; offset += CURSOR_SLOT_SIZE) {
+            long sequence = cursorBuffer.getLong(offset);
+            if (sequence > cursorSequence
+                    && cursorBuffer.getLong(offset + CURSOR_CHECKSUM_OFFSET) == cursorChecksum(offset)) {
+                cursorSequence = sequence;
+                cursorIndex = cursorBuffer.getLong(offset + 8);
+                cursorPosition = (int) cursorBuffer.getLong(offset + 16);
+            }
+        }
+        for (Long index : indexes.headSet(cursorIndex)) {
+            if (!segmentFile(index).delete()) {
+                LOGGER.warn("Cannot delete consumed segment file [" + segmentFile(index).getAbsolutePath() + "].");
+            }
+        }
+        if (!indexes.contains(cursorIndex)) {
+            /* the cursor's segment has been deleted after it had been fully consumed */
+            Long next = indexes.ceiling(cursorIndex);
+            cursorIndex = next != null ? next : cursorIndex;
+            cursorPosition = 0;
+        }
+        readSegment = openSegment(cursorIndex, segmentSize);
+        readPosition = cursorPosition;
+
+        Segment segment = readSegment;
+        int position = readPosition;
+        long count = 0;
+        while (true) {
+            int length = segment.recordLength(position);
+            if (length == END_OF_SEGMENT) {
+                segment = openSegment(segment.index + 1, segmentSize);
+                position = 0;
+            } else if (length <= 0) {
+                /* a record's length is written after its data: a zero length marks the end of data */
+                break;
+            } else {
+                count++;
+                position += 4 + length;
+            }
+        }
+        writeSegment = segment;
+        writePosition = position;
+        queueCount.set(count);
+        saveCursor();
+    }
+
+    private long cursorChecksum(int offset) {
+        cursorCrc.reset();
+        for (int i = offset; i < offset + CURSOR_CHECKSUM_OFFSET; i++) {
+            cursorCrc.update(cursorBuffer.get(i));
+        }
+        return cursorCrc.getValue();
+    }
+
+    /**
+     * Save the read cursor to the slot not holding the latest cursor, so that a crash in the middle leaves the latest
+     * cursor intact.
+     */
+    private void saveCursor() {
+        long sequence = cursorSequence + 1;
+        int offset = (int) (sequence & 1) * CURSOR_SLOT_SIZE;
+        cursorBuffer.putLong(offset, sequence);
+        cursorBuffer.putLong(offset + 8, readSegment.index);
+        cursorBuffer.putLong(offset + 16, readPosition);
+        cursorBuffer.putLong(offset + CURSOR_CHECKSUM_OFFSET, cursorChecksum(offset));
+        cursorSequence = sequence;
+        if (syncWrites) {
+            cursorBuffer.force();
+        }
+    }
+
+    /**
+     * Append records to queue storage; must be called while holding {@link #lockPut}.
+     *
+     * @param values
+     * @throws IOException
+     */
+    private void appendRecords(byte[][] values) throws IOException {
+        for (byte[] value : values) {
+            int recordSize = 4 + value.length;
+            /* keep room for the end-of-segment marker */
+            if (writePosition + recordSize + 4 > writeSegment.capacity()) {
+                writeSegment.buffer.putInt(writePosition, END_OF_SEGMENT);
+                if (syncWrites) {
+                    writeSegment.buffer.force();
+                }
+                writeSegment = openSegment(writeSegment.index + 1, Math.max(segmentSize, recordSize + 4));
+                writePosition = 0;
+            }
+            ByteBuffer buffer = writeSegment.buffer.duplicate();
+            buffer.position(writePosition + 4);
+            buffer.put(value);
+            /* length is written last: readers never see a partially written record */
+            writeSegment.buffer.putInt(writePosition, value.length);
+            writePosition += recordSize;
+        }
+        if (syncWrites) {
+            writeSegment.buffer.force();
+        }
+        /* publish new records to takers */
+        queueCount.addAndGet(values.length);
+    }
+
+    private void putToQueueStorage(byte[][] values) {
+        lockPut.lock();
+        try {
+            appendRecords(values);
+        } catch (IOException e) {
+            throw new QueueException(e);
+        } finally {
+            lockPut.unlock();
+        }
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Replay the ephemeral journal into memory.
+     *
+     * @throws IOException
+     */
+    private void initEphemeralStorage() throws IOException {
+        File file = new File(STORAGE_DIR, EPHEMERAL_FILE);
+        long goodLength = 0, numRecords = 0;
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    byte op;
+                    byte[] data;
+                    try {
+                        op = in.readByte();
+                        data = new byte[in.readInt()];
+                        in.readFully(data);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    goodLength += 5 + data.length;
+                    numRecords++;
+                    if (op == OP_ADD) {
+                        IQueueMessage<ID, DATA> msg = deserialize(data);
+                        if (msg != null) {
+                            addToEphemeralIndex(msg, data);
+                        }
+                    } else if (op == OP_REMOVE) {
+                        removeFromEphemeralIndex(new String(data, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+        ephemeralChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        /* drop the partially written last record, if any */
+        ephemeralChannel.truncate(goodLength);
+        ephemeralJournalRecords = numRecords;
+        LOGGER.info("Loaded " + ephemeralStorage.size() + " ephemeral message(s).");
+    }
+
+    private void addToEphemeralIndex(IQueueMessage<ID, DATA> msg, byte[] value) {
+        String key = msg.getId().toString();
+        TimeIndexKey timeKey = TimeIndexKey.of(msg);
+        EphemeralEntry old = ephemeralStorage.put(key, new EphemeralEntry(value, timeKey));
+        if (old != null) {
+            ephemeralTimeIndex.remove(old.timeKey);
+        }
+        ephemeralTimeIndex.put(timeKey, key);
+    }
+
+    private boolean removeFromEphemeralIndex(String key) {
+        EphemeralEntry entry = ephemeralStorage.remove(key);
+        if (entry != null) {
+            ephemeralTimeIndex.remove(entry.timeKey);
+        }
+        return entry != null;
+    }
+
+    /**
+     * Append records to the ephemeral journal; must be called while holding {@link #ephemeralLock}.
+     *
+     * @param op
+     * @param entries
+     * @throws IOException
+     */
+    private void appendEphemeralJournal(byte op, List<byte[]> entries) throws IOException {
+        int size = 0;
+        for (byte[] entry : entries) {
+            size += 5 + entry.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] entry : entries) {
+            buffer.put(op).putInt(entry.length).put(entry);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            ephemeralChannel.write(buffer);
+        }
+        if (syncWrites) {
+            ephemeralChannel.force(false);
+        }
+        ephemeralJournalRecords += entries.size();
+    }
+
+    /**
+     * Rewrite the ephemeral journal with only messages currently in ephemeral storage, if most of its records are
+     * obsolete; must be called while holding {@link #ephemeralLock}.
+     *
+     * @throws IOException
+     */
+    private void maybeRewriteEphemeralJournal() throws IOException {
+        if (ephemeralJournalRecords < EPHEMERAL_REWRITE_MIN_RECORDS
+                || ephemeralJournalRecords < 4L * ephemeralStorage.size()) {
+            return;
+        }
+        File file = new File(STORAGE_DIR, EPHEMERAL_FILE);
+        File tempFile = new File(STORAGE_DIR, EPHEMERAL_FILE + ".tmp");
+        List<byte[]> values = new ArrayList<>();
+        ephemeralStorage.values().forEach(entry -> values.add(entry.value));
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (byte[] value : values) {
+                ByteBuffer buffer = ByteBuffer.allocate(5 + value.length).put(OP_ADD).putInt(value.length).put(value);
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(false);
+        }
+        closeQuietly(ephemeralChannel);
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        ephemeralChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        ephemeralJournalRecords = values.size();
+    }
+
+    private void putToEphemeralStorage(List<IQueueMessage<ID, DATA>> msgs, List<byte[]> values) throws IOException {
+        synchronized (ephemeralLock) {
+            appendEphemeralJournal(OP_ADD, values);
+            for (int i = 0, n = msgs.size(); i < n; i++) {
+                addToEphemeralIndex(msgs.get(i), values.get(i));
+            }
+        }
+    }
+
+    private void removeFromEphemeralStorage(IQueueMessage<ID, DATA> msg) {
+        String key = msg.getId().toString();
+        synchronized (ephemeralLock) {
+            if (!ephemeralStorage.containsKey(key)) {
+                return;
+            }
+            try {
+                appendEphemeralJournal(OP_REMOVE, Arrays.asList(key.getBytes(StandardCharsets.UTF_8)));
+                removeFromEphemeralIndex(key);
+                maybeRewriteEphemeralJournal();
+            } catch (IOException e) {
+                throw new QueueException(e);
+            }
+        }
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+        putToQueueStorage(new byte[][] { serialize(msg) });
+        if (queueCase != null && queueCase != PutToQueueCase.NEW && !isEphemeralDisabled()) {
+            removeFromEphemeralStorage(msg);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are appended to queue storage while holding the write lock once.</p>
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        byte[][] values = new byte[msgs.size()][];
+        int i = 0;
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            values[i++] = serialize(msg);
+        }
+        putToQueueStorage(values);
+        boolean[] result = new boolean[values.length];
+        Arrays.fill(result, true);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish(IQueueMessage<ID, DATA> msg) {
+        if (!isEphemeralDisabled()) {
+            removeFromEphemeralStorage(msg);
+        }
+    }
+
+    /**
+     * Take up to {@code maxMessages} messages: read records at the read cursor, move them to ephemeral storage, then
+     * save the read cursor and delete segments that have been fully consumed.
+     *
+     * @param maxMessages
+     * @return
+     */
+    private List<IQueueMessage<ID, DATA>> takeMessages(int maxMessages) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        lockTake.lock();
+        try {
+            long available = Math.min(queueCount.get(), maxMessages);
+            if (available <= 0) {
+                return result;
+            }
+            Segment startSegment = readSegment;
+            int startPosition = readPosition;
+            List<Segment> consumedSegments = new ArrayList<>();
+            List<byte[]> values = new ArrayList<>();
+            try {
+                for (long i = 0; i < available; i++) {
+                    int length = readSegment.recordLength(readPosition);
+                    while (length == END_OF_SEGMENT) {
+                        consumedSegments.add(readSegment);
+                        /* the writer opens the next segment before publishing records written to it */
+                        readSegment = openSegment(readSegment.index + 1, segmentSize);
+                        readPosition = 0;
+                        length = readSegment.recordLength(readPosition);
+                    }
+                    byte[] value = new byte[length];
+                    ByteBuffer buffer = readSegment.buffer.duplicate();
+                    buffer.position(readPosition + 4);
+                    buffer.get(value);
+                    readPosition += 4 + length;
+                    IQueueMessage<ID, DATA> msg = deserialize(value);
+                    if (msg != null) {
+                        result.add(msg);
+                        values.add(value);
+                    }
+                }
+                if (!isEphemeralDisabled() && !result.isEmpty()) {
+                    putToEphemeralStorage(result, values);
+                }
+            } catch (Exception e) {
+                readSegment = startSegment;
+                readPosition = startPosition;
+                throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
+            }
+            saveCursor();
+            queueCount.addAndGet(-available);
+            consumedSegments.forEach(this::deleteSegment);
+            return result;
+        } finally {
+            lockTake.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take() throws QueueException.EphemeralIsFull {
+        if (!isEphemeralDisabled()) {
+            int ephemeralMaxSize = getEphemeralMaxSize();
+            if (ephemeralMaxSize > 0 && ephemeralSize() >= ephemeralMaxSize) {
+                throw new QueueException.EphemeralIsFull(ephemeralMaxSize);
+            }
+        }
+        List<IQueueMessage<ID, DATA>> msgs = takeMessages(1);
+        return msgs.isEmpty() ? null : msgs.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages are read and moved to ephemeral storage while holding the read lock once.</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException.EphemeralIsFull {
+        int numMsgs = ensureEphemeralCapacity(maxMessages, this::ephemeralSize);
+        return numMsgs > 0 ? takeMessages(numMsgs) : new ArrayList<>();
+    }
+
+    private List<IQueueMessage<ID, DATA>> collectOrphanMessages(NavigableMap<TimeIndexKey, String> range, int limit,
+            TimeIndexKey[] lastKey) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        for (Map.Entry<TimeIndexKey, String> indexEntry : range.entrySet()) {
+            if (result.size() >= limit) {
+                return result;
+            }
+            EphemeralEntry entry = ephemeralStorage.get(indexEntry.getValue());
+            IQueueMessage<ID, DATA> msg = entry != null ? deserialize(entry.value) : null;
+            if (msg != null) {
+                result.add(msg);
+                lastKey[0] = indexEntry.getKey();
+            }
+        }
+        lastKey[0] = null;
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Orphan messages are looked up via the in-memory time index of ephemeral storage.</p>
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> getOrphanMessages(long thresholdTimestampMs) {
+        if (isEphemeralDisabled()) {
+            return new ArrayList<>();
+        }
+        TimeIndexKey cutoff = new TimeIndexKey(System.currentTimeMillis() - thresholdTimestampMs, null);
+        return collectOrphanMessages(ephemeralTimeIndex.headMap(cutoff, false), Integer.MAX_VALUE,
+                new TimeIndexKey[1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Only the requested page is read from the in-memory time index of ephemeral storage.</p>
+     */
+    @Override
+    public OrphanMessagesPage<ID, DATA> getOrphanMessages(long thresholdTimestampMs, int limit,
+            String continuationToken) {
+        if (isEphemeralDisabled()) {
+            return new OrphanMessagesPage<>(null, null);
+        }
+        TimeIndexKey after = TimeIndexKey.fromToken(continuationToken);
+        TimeIndexKey cutoff = new TimeIndexKey(System.currentTimeMillis() - thresholdTimestampMs, null);
+        if (after != null && after.compareTo(cutoff) >= 0) {
+            return new OrphanMessagesPage<>(null, null);
+        }
+        NavigableMap<TimeIndexKey, String> range = after != null ?
+                ephemeralTimeIndex.subMap(after, false, cutoff, false) :
+                ephemeralTimeIndex.headMap(cutoff, false);
+        TimeIndexKey[] lastKey = new TimeIndexKey[1];
+        List<IQueueMessage<ID, DATA>> result = collectOrphanMessages(range, limit, lastKey);
+        return new OrphanMessagesPage<>(result, lastKey[0] != null ? lastKey[0].toToken() : null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Read from an in-memory counter.</p>
+     */
+    @Override
+    public int queueSize() {
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, queueCount.get()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Read from the in-memory index of ephemeral storage.</p>
+     */
+    @Override
+    public int ephemeralSize() {
+        return isEphemeralDisabled() ? 0 : ephemeralStorage.size();
+    }
+}
@@ -0,0 +1,122 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.queue.QueueSpec;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.File;
+
+/**
+ * Factory to create {@link MmapFileQueue} instances.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public abstract class MmapFileQueueFactory<T extends MmapFileQueue<ID, DATA>, ID, DATA>
+        extends AbstractQueueFactory<T, ID, DATA> {
+
+    public final static String SPEC_FIELD_STORAGE_DIR = "storage_dir";
+    public final static String SPEC_FIELD_SEGMENT_SIZE = "segment_size";
+    public final static String SPEC_FIELD_SYNC_WRITES = "sync_writes";
+
+    private String rootStorageDir;
+    private int defaultSegmentSize = MmapFileQueue.DEFAULT_SEGMENT_SIZE;
+    private boolean defaultSyncWrites = false;
+
+    /**
+     * Root directory to store data files. Each queue created by this factory stores its own data in a sub-directory.
+     *
+     * @return
+     */
+    public String getRootStorageDir() {
+        return rootStorageDir;
+    }
+
+    /**
+     * Root directory to store data files. Each queue created by this factory stores its own data in a sub-directory.
+     *
+     * @param rootStorageDir
+     * @return
+     */
+    public MmapFileQueueFactory<T, ID, DATA> setRootStorageDir(String rootStorageDir) {
+        this.rootStorageDir = rootStorageDir;
+        return this;
+    }
+
+    /**
+     * Default value of {@link MmapFileQueue#setSegmentSize(int)}, passed to all queues created by this factory.
+     *
+     * @return
+     */
+    public int getDefaultSegmentSize() {
+        return defaultSegmentSize;
+    }
+
+    /**
+     * Default value of {@link MmapFileQueue#setSegmentSize(int)}, passed to all queues created by this factory.
+     *
+     * @param defaultSegmentSize
+     * @return
+     */
+    public MmapFileQueueFactory<T, ID, DATA> setDefaultSegmentSize(int defaultSegmentSize) {
+        this.defaultSegmentSize = defaultSegmentSize;
+        return this;
+    }
+
+    /**
+     * Default value of {@link MmapFileQueue#setSyncWrites(boolean)}, passed to all queues created by this factory.
+     *
+     * @return
+     */
+    public boolean isDefaultSyncWrites() {
+        return defaultSyncWrites;
+    }
+
+    /**
+     * Default value of {@link MmapFileQueue#setSyncWrites(boolean)}, passed to all queues created by this factory.
+     *
+     * @param defaultSyncWrites
+     * @return
+     */
+    public MmapFileQueueFactory<T, ID, DATA> setDefaultSyncWrites(boolean defaultSyncWrites) {
+        this.defaultSyncWrites = defaultSyncWrites;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void initQueue(T queue, QueueSpec spec) throws Exception {
+        queue.setEphemeralDisabled(getDefaultEphemeralDisabled()).setEphemeralMaxSize(getDefaultEphemeralMaxSize());
+        Boolean ephemeralDisabled = spec.getField(QueueSpec.FIELD_EPHEMERAL_DISABLED, Boolean.class);
+        if (ephemeralDisabled != null) {
+            queue.setEphemeralDisabled(ephemeralDisabled.booleanValue());
+        }
+        Integer maxEphemeralSize = spec.getField(QueueSpec.FIELD_EPHEMERAL_MAX_SIZE, Integer.class);
+        if (maxEphemeralSize != null) {
+            queue.setEphemeralMaxSize(maxEphemeralSize.intValue());
+        }
+
+        String storageDir = spec.getField(SPEC_FIELD_STORAGE_DIR);
+        if (StringUtils.isBlank(storageDir) && !StringUtils.isBlank(rootStorageDir)) {
+            storageDir = rootStorageDir + File.separator + queue.getQueueName();
+        }
+        if (!StringUtils.isBlank(storageDir)) {
+            queue.setStorageDir(storageDir);
+        }
+
+        queue.setSegmentSize(defaultSegmentSize).setSyncWrites(defaultSyncWrites);
+        Integer segmentSize = spec.getField(SPEC_FIELD_SEGMENT_SIZE, Integer.class);
+        if (segmentSize != null) {
+            queue.setSegmentSize(segmentSize.intValue());
+        }
+        Boolean syncWrites = spec.getField(SPEC_FIELD_SYNC_WRITES, Boolean.class);
+        if (syncWrites != null) {
+            queue.setSyncWrites(syncWrites.booleanValue());
+        }
+
+        super.initQueue(queue, spec);
+    }
+}
@@ -5,6 +5,8 @@ import com.github.ddth.queue.IQueueMessage;
 import com.github.ddth.queue.internal.utils.MongoUtils;
 import com.github.ddth.queue.internal.utils.QueueUtils;
 import com.github.ddth.queue.utils.QueueException;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
@@ -17,9 +19,12 @@ import org.bson.types.Binary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.function.Consumer;
 
 /**
@@ -305,6 +310,33 @@ public abstract class MongodbQueue<ID, DATA> extends AbstractEphemeralSupportQue
         return true;
     }
 
+    private final static InsertManyOptions INSERT_MANY_OPTIONS = new InsertManyOptions().ordered(false);
+
+    /**
+     * Insert a batch of new messages to collection.
+     *
+     * <p>Messages are inserted with one unordered {@code insertMany} command; a message that can not be inserted
+     * (e.g. duplicated id) does not prevent others from being inserted.</p>
+     *
+     * @param msgs
+     * @return
+     * @since 1.0.1
+     */
+    protected boolean[] insertManyToCollection(List<IQueueMessage<ID, DATA>> msgs) {
+        List<Document> docs = new ArrayList<>(msgs.size());
+        msgs.forEach(msg -> docs.add(toDocument(msg)));
+        boolean[] result = new boolean[msgs.size()];
+        Arrays.fill(result, true);
+        try {
+            getCollection().insertMany(docs, INSERT_MANY_OPTIONS);
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                result[error.getIndex()] = false;
+            }
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -315,6 +347,16 @@ public abstract class MongodbQueue<ID, DATA> extends AbstractEphemeralSupportQue
                 upsertToCollection(msg);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        return insertManyToCollection(msgs);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -355,6 +397,45 @@ public abstract class MongodbQueue<ID, DATA> extends AbstractEphemeralSupportQue
         return fromDocument(document);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Implementation: ids of up to {@code maxMessages} available messages are fetched, then all of them are claimed
+     * with one {@code updateMany} command that assigns a shared ephemeral key. Messages are claimed only if they
+     * are still available, so concurrent takers never receive the same message. If ephemeral storage is disabled,
+     * claimed messages are removed with one {@code deleteMany} command after being read.
+     * </p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     * @since 1.0.1
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException.EphemeralIsFull {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        int numMsgs = ensureEphemeralCapacity(maxMessages, this::ephemeralSize);
+        if (numMsgs <= 0) {
+            return result;
+        }
+        List<Object> ids = new ArrayList<>();
+        getCollection().find(FILTER_TAKE).sort(Sorts.ascending(COLLECTION_FIELD_QUEUE_TIME))
+                .projection(Projections.include(COLLECTION_FIELD_ID)).limit(numMsgs)
+                .forEach((Consumer<Document>) doc -> ids.add(doc.get(COLLECTION_FIELD_ID)));
+        if (ids.isEmpty()) {
+            return result;
+        }
+        String ephemeralId = QueueUtils.IDGEN.generateId128Hex();
+        Bson filterClaimed = Filters.eq(COLLECTION_FIELD_EPHEMERAL_KEY, ephemeralId);
+        getCollection().updateMany(Filters.and(FILTER_TAKE, Filters.in(COLLECTION_FIELD_ID, ids)),
+                Updates.set(COLLECTION_FIELD_EPHEMERAL_KEY, ephemeralId));
+        getCollection().find(filterClaimed).sort(Sorts.ascending(COLLECTION_FIELD_QUEUE_TIME))
+                .forEach((Consumer<Document>) doc -> result.add(fromDocument(doc)));
+        if (isEphemeralDisabled()) {
+            getCollection().deleteMany(filterClaimed);
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
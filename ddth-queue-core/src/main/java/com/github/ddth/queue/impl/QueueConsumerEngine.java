@@ -0,0 +1,651 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.queue.IMessageHandler;
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.utils.QueueException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Managed consumer: a pool of workers that take messages from a queue, pass them to a {@link IMessageHandler} and
+ * then {@link IQueue#finish(IQueueMessage)} or {@link IQueue#requeue(IQueueMessage)} them.
+ *
+ * <ul>
+ * <li>Concurrency: {@link #setNumWorkers(int)} workers, created by {@link #setThreadFactory(ThreadFactory)} (e.g. a
+ * virtual-thread factory on runtimes that support it).</li>
+ * <li>Prefetch: each worker takes up to {@link #setPrefetchSize(int)} messages at a time via
+ * {@link IQueue#take(int)}.</li>
+ * <li>In-flight limit: at most {@link #setMaxInFlight(int)} messages are taken but not yet finished/re-queued. If not
+ * set, the limit is the queue's ephemeral max size (if any), or {@code numWorkers * prefetchSize}.</li>
+ * <li>Idle back-off: when queue is empty, workers wait with {@link IQueue#take(long, TimeUnit)}; wait time doubles
+ * from {@link #setIdleBackoffMinMs(long)} up to {@link #setIdleBackoffMaxMs(long)} and resets once a message
+ * arrives.</li>
+ * <li>Retry: a failed message is re-queued until it has been re-queued {@link #setMaxRetries(int)} times, then it is
+ * dropped (see {@link #onMessageDropped(IQueueMessage)}).</li>
+ * <li>Graceful shutdown: {@link #destroy()} stops taking new messages, lets workers finish the message they are
+ * handling, returns prefetched-but-unhandled messages to queue, and waits up to
+ * {@link #setShutdownTimeoutMs(long)}.</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class QueueConsumerEngine<ID, DATA> implements AutoCloseable {
+    private final Logger LOGGER = LoggerFactory.getLogger(QueueConsumerEngine.class);
+
+    public final static int DEFAULT_PREFETCH_SIZE = 1;
+    public final static int DEFAULT_MAX_RETRIES = 3;
+    public final static long DEFAULT_IDLE_BACKOFF_MIN_MS = 1;
+    public final static long DEFAULT_IDLE_BACKOFF_MAX_MS = 100;
+    public final static long DEFAULT_SHUTDOWN_TIMEOUT_MS = 10000;
+
+    private IQueue<ID, DATA> queue;
+    private IMessageHandler<ID, DATA> messageHandler;
+    private int numWorkers = Runtime.getRuntime().availableProcessors();
+    private ThreadFactory threadFactory;
+    private int prefetchSize = DEFAULT_PREFETCH_SIZE;
+    private int maxInFlight = 0;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long idleBackoffMinMs = DEFAULT_IDLE_BACKOFF_MIN_MS;
+    private long idleBackoffMaxMs = DEFAULT_IDLE_BACKOFF_MAX_MS;
+    private long shutdownTimeoutMs = DEFAULT_SHUTDOWN_TIMEOUT_MS;
+
+    private volatile boolean running = false;
+    private Thread[] workers;
+    private Semaphore inFlightPermits;
+    private int effectiveMaxInFlight;
+
+    private final LongAdder numTaken = new LongAdder();
+    private final LongAdder numFinished = new LongAdder();
+    private final LongAdder numRequeued = new LongAdder();
+    private final LongAdder numDropped = new LongAdder();
+    private final LongAdder numErrors = new LongAdder();
+    private final LongAdder numIdleWaits = new LongAdder();
+    private final LongAdder totalHandleTimeNs = new LongAdder();
+    private final AtomicLong maxHandleTimeNs = new AtomicLong();
+
+    public QueueConsumerEngine() {
+    }
+
+    public QueueConsumerEngine(IQueue<ID, DATA> queue, IMessageHandler<ID, DATA> messageHandler) {
+        this.queue = queue;
+        this.messageHandler = messageHandler;
+    }
+
+    /**
+     * Queue to consume messages from.
+     *
+     * @return
+     */
+    public IQueue<ID, DATA> getQueue() {
+        return queue;
+    }
+
+    /**
+     * Queue to consume messages from.
+     *
+     * @param queue
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setQueue(IQueue<ID, DATA> queue) {
+        this.queue = queue;
+        return this;
+    }
+
+    /**
+     * Handler to process messages.
+     *
+     * @return
+     */
+    public IMessageHandler<ID, DATA> getMessageHandler() {
+        return messageHandler;
+    }
+
+    /**
+     * Handler to process messages.
+     *
+     * @param messageHandler
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setMessageHandler(IMessageHandler<ID, DATA> messageHandler) {
+        this.messageHandler = messageHandler;
+        return this;
+    }
+
+    /**
+     * Number of workers (default: number of available processors).
+     *
+     * @return
+     */
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    /**
+     * Number of workers (default: number of available processors).
+     *
+     * @param numWorkers
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setNumWorkers(int numWorkers) {
+        this.numWorkers = numWorkers;
+        return this;
+    }
+
+    /**
+     * Factory to create worker threads. If not set, platform threads named {@code queue-consumer-<n>} are created.
+     *
+     * @return
+     */
+    public ThreadFactory getThreadFactory() {
+        return threadFactory;
+    }
+
+    /**
+     * Factory to create worker threads. If not set, platform threads named {@code queue-consumer-<n>} are created.
+     *
+     * @param threadFactory
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        return this;
+    }
+
+    /**
+     * Max number of messages each worker takes from queue at a time (default {@link #DEFAULT_PREFETCH_SIZE}).
+     *
+     * @return
+     */
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+
+    /**
+     * Max number of messages each worker takes from queue at a time (default {@link #DEFAULT_PREFETCH_SIZE}).
+     *
+     * @param prefetchSize
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setPrefetchSize(int prefetchSize) {
+        this.prefetchSize = prefetchSize;
+        return this;
+    }
+
+    /**
+     * Max number of messages taken but not yet finished/re-queued, across all workers. Value {@code <=0} means
+     * "auto": queue's ephemeral max size if ephemeral storage is enabled and bounded, otherwise
+     * {@code numWorkers * prefetchSize}.
+     *
+     * @return
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Max number of messages taken but not yet finished/re-queued, across all workers. Value {@code <=0} means
+     * "auto": queue's ephemeral max size if ephemeral storage is enabled and bounded, otherwise
+     * {@code numWorkers * prefetchSize}.
+     *
+     * @param maxInFlight
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Max number of times a failed message is re-queued before being dropped (default
+     * {@link #DEFAULT_MAX_RETRIES}). Value {@code <0} means "retry forever".
+     *
+     * @return
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Max number of times a failed message is re-queued before being dropped (default
+     * {@link #DEFAULT_MAX_RETRIES}). Value {@code <0} means "retry forever".
+     *
+     * @param maxRetries
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Initial wait time when queue is empty (default {@link #DEFAULT_IDLE_BACKOFF_MIN_MS}).
+     *
+     * @return
+     */
+    public long getIdleBackoffMinMs() {
+        return idleBackoffMinMs;
+    }
+
+    /**
+     * Initial wait time when queue is empty (default {@link #DEFAULT_IDLE_BACKOFF_MIN_MS}).
+     *
+     * @param idleBackoffMinMs
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setIdleBackoffMinMs(long idleBackoffMinMs) {
+        this.idleBackoffMinMs = idleBackoffMinMs;
+        return this;
+    }
+
+    /**
+     * Max wait time when queue is empty (default {@link #DEFAULT_IDLE_BACKOFF_MAX_MS}).
+     *
+     * @return
+     */
+    public long getIdleBackoffMaxMs() {
+        return idleBackoffMaxMs;
+    }
+
+    /**
+     * Max wait time when queue is empty (default {@link #DEFAULT_IDLE_BACKOFF_MAX_MS}).
+     *
+     * @param idleBackoffMaxMs
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setIdleBackoffMaxMs(long idleBackoffMaxMs) {
+        this.idleBackoffMaxMs = idleBackoffMaxMs;
+        return this;
+    }
+
+    /**
+     * Max time {@link #destroy()} waits for workers to stop (default {@link #DEFAULT_SHUTDOWN_TIMEOUT_MS}). Workers
+     * still running after that are interrupted.
+     *
+     * @return
+     */
+    public long getShutdownTimeoutMs() {
+        return shutdownTimeoutMs;
+    }
+
+    /**
+     * Max time {@link #destroy()} waits for workers to stop (default {@link #DEFAULT_SHUTDOWN_TIMEOUT_MS}). Workers
+     * still running after that are interrupted.
+     *
+     * @param shutdownTimeoutMs
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> setShutdownTimeoutMs(long shutdownTimeoutMs) {
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        return this;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Is the engine running?
+     *
+     * @return
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * The in-flight limit in effect (resolved when the engine is initialized).
+     *
+     * @return
+     */
+    public int getEffectiveMaxInFlight() {
+        return effectiveMaxInFlight;
+    }
+
+    /**
+     * Number of messages currently taken but not yet finished/re-queued.
+     *
+     * @return
+     */
+    public int getNumInFlight() {
+        Semaphore permits = inFlightPermits;
+        return permits != null ? effectiveMaxInFlight - permits.availablePermits() : 0;
+    }
+
+    /**
+     * Total number of messages taken from queue.
+     *
+     * @return
+     */
+    public long getNumTaken() {
+        return numTaken.sum();
+    }
+
+    /**
+     * Total number of messages successfully handled and finished.
+     *
+     * @return
+     */
+    public long getNumFinished() {
+        return numFinished.sum();
+    }
+
+    /**
+     * Total number of messages re-queued after a failed handling.
+     *
+     * @return
+     */
+    public long getNumRequeued() {
+        return numRequeued.sum();
+    }
+
+    /**
+     * Total number of messages dropped after exceeding max retries.
+     *
+     * @return
+     */
+    public long getNumDropped() {
+        return numDropped.sum();
+    }
+
+    /**
+     * Total number of exceptions thrown by the message handler.
+     *
+     * @return
+     */
+    public long getNumErrors() {
+        return numErrors.sum();
+    }
+
+    /**
+     * Total number of times a worker found queue empty (or ephemeral storage full) and backed off.
+     *
+     * @return
+     */
+    public long getNumIdleWaits() {
+        return numIdleWaits.sum();
+    }
+
+    /**
+     * Average time (in nanoseconds) the message handler spent on one message.
+     *
+     * @return
+     */
+    public long getAvgHandleTimeNs() {
+        long n = numFinished.sum() + numRequeued.sum() + numDropped.sum();
+        return n > 0 ? totalHandleTimeNs.sum() / n : 0;
+    }
+
+    /**
+     * Max time (in nanoseconds) the message handler spent on one message.
+     *
+     * @return
+     */
+    public long getMaxHandleTimeNs() {
+        return maxHandleTimeNs.get();
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Resolve the in-flight limit.
+     *
+     * @return
+     */
+    protected int calcMaxInFlight() {
+        if (maxInFlight > 0) {
+            return maxInFlight;
+        }
+        if (queue instanceof AbstractEphemeralSupportQueue) {
+            AbstractEphemeralSupportQueue<?, ?> q = (AbstractEphemeralSupportQueue<?, ?>) queue;
+            if (!q.isEphemeralDisabled() && q.getEphemeralMaxSize() > 0) {
+                return q.getEphemeralMaxSize();
+            }
+        }
+        return Math.max(1, numWorkers) * Math.max(1, prefetchSize);
+    }
+
+    /**
+     * Build the default {@link ThreadFactory} to create worker threads.
+     *
+     * @return
+     */
+    protected ThreadFactory buildThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> new Thread(r, "queue-consumer-" + counter.getAndIncrement());
+    }
+
+    /**
+     * Init method: start workers.
+     *
+     * @return
+     */
+    public QueueConsumerEngine<ID, DATA> init() {
+        if (queue == null) {
+            throw new IllegalStateException("Queue is null.");
+        }
+        if (messageHandler == null) {
+            throw new IllegalStateException("Message handler is null.");
+        }
+        if (running) {
+            throw new IllegalStateException("Engine is already running.");
+        }
+        effectiveMaxInFlight = calcMaxInFlight();
+        inFlightPermits = new Semaphore(effectiveMaxInFlight);
+        ThreadFactory tf = threadFactory != null ? threadFactory : buildThreadFactory();
+        running = true;
+        workers = new Thread[Math.max(1, numWorkers)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = tf.newThread(this::workerLoop);
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        return this;
+    }
+
+    /**
+     * Destroy method: stop workers gracefully.
+     */
+    public void destroy() {
+        running = false;
+        Thread[] workers = this.workers;
+        this.workers = null;
+        if (workers == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMs;
+        try {
+            for (Thread worker : workers) {
+                long waitMs = deadline - System.currentTimeMillis();
+                if (waitMs > 0) {
+                    worker.join(waitMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Thread worker : workers) {
+                if (worker.isAlive()) {
+                    LOGGER.warn("Worker [" + worker.getName() + "] did not stop in time, interrupting it.");
+                    worker.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        destroy();
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Acquire in-flight permits for one fetch: block (up to max idle back-off) for the first one, then grab as many as
+     * available up to prefetch size.
+     *
+     * @return number of acquired permits, {@code 0} if none
+     */
+    private int acquirePermits() {
+        try {
+            if (!inFlightPermits.tryAcquire(idleBackoffMaxMs, TimeUnit.MILLISECONDS)) {
+                return 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+        int permits = 1;
+        while (permits < prefetchSize && inFlightPermits.tryAcquire()) {
+            permits++;
+        }
+        return permits;
+    }
+
+    /**
+     * Take up to {@code maxMessages} messages; if none is available, wait up to {@code waitMs} for one.
+     *
+     * @param maxMessages
+     * @param waitMs
+     * @return
+     */
+    protected Collection<? extends IQueueMessage<ID, DATA>> fetch(int maxMessages, long waitMs) {
+        if (maxMessages > 1) {
+            Collection<? extends IQueueMessage<ID, DATA>> msgs = queue.take(maxMessages);
+            if (msgs != null && !msgs.isEmpty()) {
+                return msgs;
+            }
+        }
+        IQueueMessage<ID, DATA> msg = queue.take(waitMs, TimeUnit.MILLISECONDS);
+        return msg != null ? Collections.singletonList(msg) : Collections.emptyList();
+    }
+
+    private void workerLoop() {
+        long backoffMs = Math.max(1, idleBackoffMinMs);
+        /* an interrupted worker stops, it does not spin on interrupted waits */
+        while (running && !Thread.currentThread().isInterrupted()) {
+            int permits = acquirePermits();
+            if (permits <= 0) {
+                continue;
+            }
+            Collection<? extends IQueueMessage<ID, DATA>> msgs = Collections.emptyList();
+            boolean sleepBeforeRetry = false;
+            try {
+                msgs = fetch(permits, backoffMs);
+            } catch (QueueException.EphemeralIsFull e) {
+                sleepBeforeRetry = true;
+            } catch (Exception e) {
+                if (running) {
+                    LOGGER.error(e.getMessage(), e);
+                }
+                sleepBeforeRetry = true;
+            }
+            int numMsgs = msgs.size();
+            if (numMsgs < permits) {
+                inFlightPermits.release(permits - numMsgs);
+            }
+            if (numMsgs == 0) {
+                numIdleWaits.increment();
+                if (sleepBeforeRetry && running) {
+                    sleepQuietly(backoffMs);
+                }
+                backoffMs = Math.min(backoffMs * 2, Math.max(1, idleBackoffMaxMs));
+                continue;
+            }
+            backoffMs = Math.max(1, idleBackoffMinMs);
+            numTaken.add(numMsgs);
+            Iterator<? extends IQueueMessage<ID, DATA>> it = msgs.iterator();
+            while (it.hasNext()) {
+                IQueueMessage<ID, DATA> msg = it.next();
+                try {
+                    if (running) {
+                        handleMessage(msg);
+                    } else {
+                        returnToQueue(msg);
+                    }
+                } finally {
+                    inFlightPermits.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Pass a message to the handler, then finish, re-queue or drop it.
+     *
+     * @param msg
+     */
+    protected void handleMessage(IQueueMessage<ID, DATA> msg) {
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            success = messageHandler.handle(msg);
+        } catch (Exception e) {
+            numErrors.increment();
+            LOGGER.warn("Error handling message [" + msg.getId() + "]: " + e.getMessage(), e);
+            success = false;
+        }
+        long duration = System.nanoTime() - start;
+        totalHandleTimeNs.add(duration);
+        maxHandleTimeNs.accumulateAndGet(duration, Math::max);
+        try {
+            if (success) {
+                queue.finish(msg);
+                numFinished.increment();
+            } else if (maxRetries < 0 || msg.getNumRequeues() < maxRetries) {
+                queue.requeue(msg);
+                numRequeued.increment();
+            } else {
+                queue.finish(msg);
+                numDropped.increment();
+                onMessageDropped(msg);
+            }
+        } catch (Exception e) {
+            LOGGER.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Return a prefetched-but-unhandled message to queue during shutdown.
+     *
+     * @param msg
+     */
+    protected void returnToQueue(IQueueMessage<ID, DATA> msg) {
+        try {
+            queue.requeueSilent(msg);
+        } catch (Exception e) {
+            LOGGER.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Called when a message is dropped after exceeding max retries. Sub-class may override this method to e.g. send
+     * the message to a dead-letter queue.
+     *
+     * @param msg
+     */
+    protected void onMessageDropped(IQueueMessage<ID, DATA> msg) {
+        LOGGER.warn("Message [" + msg.getId() + "] dropped after " + msg.getNumRequeues() + " re-queue(s).");
+    }
+}
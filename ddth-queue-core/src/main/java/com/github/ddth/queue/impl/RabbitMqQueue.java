@@ -14,6 +14,11 @@ import java.net.URISyntaxException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -150,6 +155,87 @@ public abstract class RabbitMqQueue<ID, DATA> extends AbstractQueue<ID, DATA> {
         return producerChannel;
     }
 
+    /**
+     * A publisher-confirm channel and the futures waiting for its confirms (delivery tags are per channel).
+     */
+    private final static class ConfirmChannel {
+        private final Channel channel;
+        private final ConcurrentNavigableMap<Long, CompletableFuture<Boolean>> pendingConfirms
+                = new ConcurrentSkipListMap<>();
+
+        private ConfirmChannel(Channel channel) {
+            this.channel = channel;
+        }
+
+        private void complete(long deliveryTag, boolean multiple, boolean ack) {
+            if (multiple) {
+                Map<Long, CompletableFuture<Boolean>> confirmed = pendingConfirms.headMap(deliveryTag, true);
+                confirmed.values().forEach(f -> f.complete(ack));
+                confirmed.clear();
+            } else {
+                CompletableFuture<Boolean> f = pendingConfirms.remove(deliveryTag);
+                if (f != null) {
+                    f.complete(ack);
+                }
+            }
+        }
+
+        private void failAll(Throwable cause) {
+            while (!pendingConfirms.isEmpty()) {
+                Map.Entry<Long, CompletableFuture<Boolean>> entry = pendingConfirms.pollFirstEntry();
+                if (entry != null) {
+                    entry.getValue().completeExceptionally(cause);
+                }
+            }
+        }
+    }
+
+    private volatile ConfirmChannel confirmChannel;
+
+    /**
+     * Get the {@link Channel} dedicated for sending messages asynchronously. The channel is in publisher-confirm mode:
+     * broker's acks/nacks complete the futures returned by {@link #queueAsync(IQueueMessage)}.
+     *
+     * @return
+     * @throws IOException
+     * @throws TimeoutException
+     * @since 1.0.1
+     */
+    protected Channel getConfirmChannel() throws IOException, TimeoutException {
+        return obtainConfirmChannel().channel;
+    }
+
+    private ConfirmChannel obtainConfirmChannel() throws IOException, TimeoutException {
+        ConfirmChannel result = confirmChannel;
+        if (result == null) {
+            synchronized (this) {
+                result = confirmChannel;
+                if (result == null) {
+                    Channel channel = createChannel();
+                    channel.confirmSelect();
+                    ConfirmChannel cc = new ConfirmChannel(channel);
+                    channel.addConfirmListener((deliveryTag, multiple) -> cc.complete(deliveryTag, multiple, true),
+                            (deliveryTag, multiple) -> cc.complete(deliveryTag, multiple, false));
+                    /* unconfirmed messages will never be confirmed once the channel (or its connection) is closed */
+                    channel.addShutdownListener(cause -> onConfirmChannelShutdown(cc, cause));
+                    confirmChannel = result = cc;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void onConfirmChannelShutdown(ConfirmChannel cc, Throwable cause) {
+        synchronized (this) {
+            if (confirmChannel == cc) {
+                confirmChannel = null;
+            }
+        }
+        synchronized (cc.channel) {
+            cc.failAll(new QueueException("Confirm channel has been shut down.", cause));
+        }
+    }
+
     private Channel consumerChannel;
 
     /**
@@ -219,6 +305,12 @@ public abstract class RabbitMqQueue<ID, DATA> extends AbstractQueue<ID, DATA> {
         } finally {
             closeQuietly(connection);
             closeQuietly(producerChannel);
+            ConfirmChannel cc = confirmChannel;
+            confirmChannel = null;
+            if (cc != null) {
+                closeQuietly(cc.channel);
+                cc.failAll(new QueueException("Queue has been destroyed."));
+            }
             closeQuietly(consumerChannel);
             if (connectionFactory != null && myOwnConnectionFactory) {
                 connectionFactory = null;
@@ -267,6 +359,39 @@ public abstract class RabbitMqQueue<ID, DATA> extends AbstractQueue<ID, DATA> {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Message is published on a publisher-confirm channel; the returned future is completed when the broker
+     * acks ({@code true}) or nacks ({@code false}) the message.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public CompletableFuture<Boolean> queueAsync(IQueueMessage<ID, DATA> _msg) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        try {
+            byte[] msgData = serialize(cloneAsNewMessage(_msg, new Date()));
+            ConfirmChannel cc = obtainConfirmChannel();
+            synchronized (cc.channel) {
+                if (!cc.channel.isOpen()) {
+                    throw new QueueException("Confirm channel has been shut down.");
+                }
+                long seqNo = cc.channel.getNextPublishSeqNo();
+                cc.pendingConfirms.put(seqNo, result);
+                try {
+                    cc.channel.basicPublish("" /*exchange*/, queueName, null /*basic-properties*/, msgData);
+                } catch (Exception e) {
+                    cc.pendingConfirms.remove(seqNo);
+                    throw e;
+                }
+            }
+        } catch (Exception e) {
+            result.completeExceptionally(e instanceof QueueException ? e : new QueueException(e));
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      *
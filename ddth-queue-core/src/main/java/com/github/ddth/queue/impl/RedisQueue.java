@@ -4,11 +4,18 @@ import com.github.ddth.commons.redis.JedisConnector;
 import com.github.ddth.commons.redis.JedisUtils;
 import com.github.ddth.queue.IQueue;
 import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.internal.utils.RedisScript;
 import com.github.ddth.queue.utils.QueueException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import redis.clients.jedis.*;
+import redis.clients.jedis.exceptions.JedisException;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Redis implementation of {@link IQueue}.
@@ -36,6 +43,8 @@ import java.nio.charset.StandardCharsets;
  * @since 0.3.1
  */
 public abstract class RedisQueue<ID, DATA> extends BaseRedisQueue<ID, DATA> {
+    private final Logger LOGGER = LoggerFactory.getLogger(RedisQueue.class);
+
     public final static String DEFAULT_HOST_AND_PORT = Protocol.DEFAULT_HOST + ":" + Protocol.DEFAULT_PORT;
     private String redisHostAndPort = DEFAULT_HOST_AND_PORT;
 
@@ -82,6 +91,22 @@ public abstract class RedisQueue<ID, DATA> extends BaseRedisQueue<ID, DATA> {
         return getJedisConnector().getJedis();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected void loadScripts(Collection<RedisScript> scripts) {
+        try (Jedis jedis = getJedisConnector().getJedis()) {
+            for (RedisScript script : scripts) {
+                script.load(jedis);
+            }
+        } catch (JedisException e) {
+            LOGGER.warn("Cannot load LUA scripts, they will be loaded on first use: " + e.getMessage());
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -111,6 +136,9 @@ public abstract class RedisQueue<ID, DATA> extends BaseRedisQueue<ID, DATA> {
 
     /**
      * {@inheritDoc}
+     *
+     * <p>{@code HDEL} and {@code ZREM} are sent in one pipeline: both commands are idempotent, so a {@code MULTI/EXEC}
+     * block is not needed.</p>
      */
     @Override
     protected boolean remove(IQueueMessage<ID, DATA> msg) {
@@ -118,14 +146,39 @@ public abstract class RedisQueue<ID, DATA> extends BaseRedisQueue<ID, DATA> {
             return true;
         }
         try (Jedis jedis = getJedisConnector().getJedis()) {
-            try (Transaction jt = jedis.multi()) {
-                byte[] field = msg.getId().toString().getBytes(StandardCharsets.UTF_8);
-                Response<?>[] importantResponses = new Response[] { jt.hdel(getRedisHashNameAsBytes(), field),
-                        isEphemeralDisabled() ? null : jt.zrem(getRedisSortedSetNameAsBytes(), field) };
-                return doExecTx(jt, importantResponses);
-            } catch (IOException e) {
-                throw new QueueException(e);
-            }
+            Pipeline p = jedis.pipelined();
+            byte[] field = msg.getId().toString().getBytes(StandardCharsets.UTF_8);
+            Response<Long> response = p.hdel(getRedisHashNameAsBytes(), field);
+            p.zrem(getRedisSortedSetNameAsBytes(), field);
+            p.sync();
+            Long value = response.get();
+            return value != null && value.longValue() > 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are removed with one variadic {@code HDEL} and one variadic {@code ZREM}, sent in one
+     * pipeline.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected void removeAll(Collection<? extends IQueueMessage<ID, DATA>> msgs) {
+        if (isEphemeralDisabled()) {
+            return;
+        }
+        byte[][] fields = new byte[msgs.size()][];
+        int i = 0;
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            fields[i++] = msg.getId().toString().getBytes(StandardCharsets.UTF_8);
+        }
+        try (Jedis jedis = getJedisConnector().getJedis()) {
+            Pipeline p = jedis.pipelined();
+            p.hdel(getRedisHashNameAsBytes(), fields);
+            p.zrem(getRedisSortedSetNameAsBytes(), fields);
+            p.sync();
         }
     }
 
@@ -148,6 +201,39 @@ public abstract class RedisQueue<ID, DATA> extends BaseRedisQueue<ID, DATA> {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are stored within one {@code MULTI/EXEC} block.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] storeNewAll(List<IQueueMessage<ID, DATA>> msgs) {
+        boolean[] result = new boolean[msgs.size()];
+        try (Jedis jedis = getJedisConnector().getJedis()) {
+            try (Transaction jt = jedis.multi()) {
+                Response<?>[] importantResponses = new Response[msgs.size()];
+                int i = 0;
+                for (IQueueMessage<ID, DATA> msg : msgs) {
+                    byte[] field = msg.getId().toString().getBytes(StandardCharsets.UTF_8);
+                    byte[] data = serialize(msg);
+                    /* hset may return 0 if hash already existed. So we only care about the response of rpush */
+                    jt.hset(getRedisHashNameAsBytes(), field, data);
+                    importantResponses[i++] = jt.rpush(getRedisListNameAsBytes(), field);
+                }
+                jt.exec();
+                for (i = 0; i < importantResponses.length; i++) {
+                    Object value = importantResponses[i].get();
+                    result[i] = value != null && (!(value instanceof Number) || ((Number) value).longValue() > 0);
+                }
+                return result;
+            } catch (IOException e) {
+                throw new QueueException(e);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -185,7 +271,8 @@ public abstract class RedisQueue<ID, DATA> extends BaseRedisQueue<ID, DATA> {
         }
         try (Jedis jedis = getJedisConnector().getJedis()) {
             long now = System.currentTimeMillis();
-            Object response = jedis.eval(getScriptTakeAsBytes(), 0, String.valueOf(now).getBytes(StandardCharsets.UTF_8));
+            Object response = getRedisScriptTake()
+                    .eval(jedis, 0, String.valueOf(now).getBytes(StandardCharsets.UTF_8));
             return response == null ?
                     null :
                     deserialize(response instanceof byte[] ?
@@ -193,4 +280,38 @@ public abstract class RedisQueue<ID, DATA> extends BaseRedisQueue<ID, DATA> {
                             response.toString().getBytes(StandardCharsets.UTF_8));
         }
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are claimed by one execution of {@link #getScriptTakeMany()}.</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     * @since 1.0.1
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException.EphemeralIsFull {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        int numMsgs = ensureEphemeralCapacity(maxMessages, this::ephemeralSize);
+        if (numMsgs <= 0) {
+            return result;
+        }
+        try (Jedis jedis = getJedisConnector().getJedis()) {
+            long now = System.currentTimeMillis();
+            Object response = getRedisScriptTakeMany().eval(jedis, 0,
+                    String.valueOf(now).getBytes(StandardCharsets.UTF_8),
+                    String.valueOf(numMsgs).getBytes(StandardCharsets.UTF_8));
+            if (response instanceof List) {
+                for (Object item : (List<?>) response) {
+                    IQueueMessage<ID, DATA> msg = deserialize(item instanceof byte[] ?
+                            (byte[]) item :
+                            item.toString().getBytes(StandardCharsets.UTF_8));
+                    if (msg != null) {
+                        result.add(msg);
+                    }
+                }
+            }
+        }
+        return result;
+    }
 }
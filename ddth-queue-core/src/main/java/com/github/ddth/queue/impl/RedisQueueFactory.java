@@ -52,6 +52,12 @@ public abstract class RedisQueueFactory<T extends RedisQueue<ID, DATA>, ID, DATA
             queue.setEphemeralMaxSize(maxEphemeralSize.intValue());
         }
 
+        queue.setOrphanMessagesLimit(getDefaultOrphanMessagesLimit());
+        Integer orphanMessagesLimit = spec.getField(SPEC_FIELD_ORPHAN_MESSAGES_LIMIT, Integer.class);
+        if (orphanMessagesLimit != null) {
+            queue.setOrphanMessagesLimit(orphanMessagesLimit.intValue());
+        }
+
         queue.setRedisHostAndPort(getDefaultHostAndPort()).setRedisPassword(getDefaultPassword())
                 .setJedisConnector(getDefaultJedisConnector());
         String redisHostAndPort = spec.getField(SPEC_FIELD_HOST_AND_PORT);
@@ -0,0 +1,788 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.commons.redis.JedisConnector;
+import com.github.ddth.commons.redis.JedisUtils;
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.OrphanMessagesPage;
+import com.github.ddth.queue.internal.utils.QueueUtils;
+import com.github.ddth.queue.internal.utils.RedisScript;
+import com.github.ddth.queue.internal.utils.RedisUtils;
+import com.github.ddth.queue.utils.QueueException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis implementation of {@link IQueue}, backed by a Redis Stream and a consumer group (requires Redis 5.0+).
+ *
+ * <p>
+ * Implementation:
+ * <ul>
+ * <li>Messages are appended to a stream ({@code XADD}), one field per entry. See
+ * {@link #setRedisStreamName(String)}.</li>
+ * <li>Messages are taken via a consumer group ({@code XREADGROUP}). See {@link #setConsumerGroupName(String)} and
+ * {@link #setConsumerName(String)}.</li>
+ * <li>A hash maps message ids to stream entry-ids, so that any queue instance can finish or re-queue a message. See
+ * {@link #setRedisHashName(String)}.</li>
+ * <li>The consumer group's pending entries list acts as ephemeral storage: {@link #finish(IQueueMessage)}
+ * acknowledges and deletes the entry ({@code XACK + XDEL}), orphan messages are detected by entries' idle time
+ * ({@code XPENDING}).</li>
+ * <li>If ephemeral storage is disabled, messages are read with {@code NOACK} and deleted right away.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * Implementation notes:
+ * <ul>
+ * <li>{@code XREADGROUP} is sent as a plain command (it is not allowed in LUA scripts before Redis 7), with option
+ * {@code BLOCK} for {@link #take(long, TimeUnit)}. Other operations are one {@code EVALSHA} round-trip each (see
+ * {@link RedisScript}), as the bundled Jedis client does not support stream commands natively.</li>
+ * <li>Messages must have ids: the id-to-entry-id mapping is keyed by message id.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Features:</p>
+ * <ul>
+ * <li>Queue-size support: yes</li>
+ * <li>Ephemeral storage support: yes</li>
+ * <li>Ephemeral-size support: yes</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public abstract class RedisStreamQueue<ID, DATA> extends AbstractEphemeralSupportQueue<ID, DATA> {
+    private final Logger LOGGER = LoggerFactory.getLogger(RedisStreamQueue.class);
+
+    public final static String DEFAULT_HOST_AND_PORT = Protocol.DEFAULT_HOST + ":" + Protocol.DEFAULT_PORT;
+    public final static String DEFAULT_PASSWORD = null;
+    public final static String DEFAULT_STREAM_NAME = "queue_x";
+    public final static String DEFAULT_HASH_NAME = "queue_xh";
+    public final static String DEFAULT_CONSUMER_GROUP_NAME = "queue_g";
+    public final static int DEFAULT_ORPHAN_MESSAGES_LIMIT = BaseRedisQueue.DEFAULT_ORPHAN_MESSAGES_LIMIT;
+
+    /* max number of ids passed to one script call */
+    private final static int MAX_IDS_PER_CALL = 1000;
+    /* max number of pending entries scanned by one script call, so that no call blocks Redis for long */
+    private final static int MAX_PENDING_ENTRIES_PER_CALL = 1000;
+
+    private final static byte[] EMPTY = new byte[0];
+
+    /**
+     * Stream commands sent as plain commands.
+     */
+    private enum StreamCommand implements ProtocolCommand {
+        XREADGROUP;
+
+        private final byte[] raw = name().getBytes(StandardCharsets.UTF_8);
+
+        @Override
+        public byte[] getRaw() {
+            return raw;
+        }
+    }
+
+    private final static RedisScript SCRIPT_CREATE_GROUP = new RedisScript(
+            "redis.pcall('XGROUP','CREATE',KEYS[1],ARGV[1],'0','MKSTREAM'); return 1");
+    /* KEYS: stream, hash; ARGV: message-id ('' if none), message data, message-id, message data... */
+    private final static RedisScript SCRIPT_ADD = new RedisScript(
+            "for i=1,#ARGV,2 do local e=redis.call('XADD',KEYS[1],'*','m',ARGV[i+1]); "
+                    + "if ARGV[i]~='' then redis.call('HSET',KEYS[2],ARGV[i],e) end end; return #ARGV/2");
+    /* KEYS: stream, hash; ARGV: group, message-id ('' if none), message data */
+    private final static RedisScript SCRIPT_READD = new RedisScript(
+            "local o=ARGV[2]~='' and redis.call('HGET',KEYS[2],ARGV[2]); "
+                    + "if o then redis.call('XACK',KEYS[1],ARGV[1],o); redis.call('XDEL',KEYS[1],o) end; "
+                    + "local e=redis.call('XADD',KEYS[1],'*','m',ARGV[3]); "
+                    + "if ARGV[2]~='' then redis.call('HSET',KEYS[2],ARGV[2],e) end; return e");
+    /*
+     * KEYS: stream, hash; ARGV: group, message-id, entry-id, message-id, entry-id...
+     * ('' entry-id: looked up by message-id; '' message-id: not in the hash)
+     */
+    private final static RedisScript SCRIPT_FINISH = new RedisScript(
+            "local n=0; for i=2,#ARGV,2 do local e=ARGV[i+1]; if ARGV[i]~='' then "
+                    + "if e=='' then e=redis.call('HGET',KEYS[2],ARGV[i]) end; redis.call('HDEL',KEYS[2],ARGV[i]) end; "
+                    + "if e and e~='' then redis.call('XACK',KEYS[1],ARGV[1],e); n=n+redis.call('XDEL',KEYS[1],e) end "
+                    + "end; return n");
+    /*
+     * ARGV: group, min idle time (ms), limit, start entry-id ('-': first), max number of pending entries to scan;
+     * returns [next start entry-id ('': end of pending entries list), entry-id, data, entry-id, data...]
+     */
+    private final static RedisScript SCRIPT_ORPHANS = new RedisScript(
+            "local result={''}; local n=0; local idle=tonumber(ARGV[2]); local limit=tonumber(ARGV[3]); "
+                    + "local start=ARGV[4]; local scan=tonumber(ARGV[5]); "
+                    + "while scan>0 do local c=math.min(100,scan); "
+                    + "local p=redis.call('XPENDING',KEYS[1],ARGV[1],start,'+',c); scan=scan-#p; "
+                    + "for i,e in ipairs(p) do local ms,seq=string.match(e[1],'(%d+)-(%d+)'); "
+                    + "start=ms..'-'..(tonumber(seq)+1); "
+                    + "if e[3]>=idle then local r=redis.call('XRANGE',KEYS[1],e[1],e[1]); "
+                    + "if r[1] then local f=r[1][2]; for j=1,#f,2 do if f[j]=='m' then "
+                    + "table.insert(result,e[1]); table.insert(result,f[j+1]); n=n+1 end end end end; "
+                    + "if n>=limit then if i<#p or #p==c then result[1]=start end; return result end end; "
+                    + "if #p<c then return result end end; result[1]=start; return result");
+    /* ARGV: group; returns [stream length, number of pending entries] */
+    private final static RedisScript SCRIPT_SIZE = new RedisScript(
+            "return {redis.call('XLEN',KEYS[1]), redis.call('XPENDING',KEYS[1],ARGV[1])[1]}");
+
+    private String redisHostAndPort = DEFAULT_HOST_AND_PORT;
+    private String redisPassword = DEFAULT_PASSWORD;
+    private JedisConnector jedisConnector;
+    /**
+     * Flag to mark if the Redis resource (e.g. Redis client pool) is created
+     * and handled by the queue instance.
+     */
+    protected boolean myOwnRedis = true;
+
+    private String _redisStreamName = DEFAULT_STREAM_NAME;
+    private byte[] redisStreamName = _redisStreamName.getBytes(StandardCharsets.UTF_8);
+    private String consumerGroupName = DEFAULT_CONSUMER_GROUP_NAME;
+    private byte[] consumerGroupNameAsBytes = consumerGroupName.getBytes(StandardCharsets.UTF_8);
+    private String consumerName;
+    private byte[] consumerNameAsBytes;
+    private String _redisHashName = DEFAULT_HASH_NAME;
+    private byte[] redisHashName = _redisHashName.getBytes(StandardCharsets.UTF_8);
+    private int orphanMessagesLimit = DEFAULT_ORPHAN_MESSAGES_LIMIT;
+
+    /**
+     * Redis host and port scheme (format {@code host:port}).
+     *
+     * @return
+     */
+    public String getRedisHostAndPort() {
+        return redisHostAndPort;
+    }
+
+    /**
+     * Redis host and port scheme (format {@code host:port}).
+     *
+     * @param redisHostAndPort
+     * @return
+     */
+    public RedisStreamQueue<ID, DATA> setRedisHostAndPort(String redisHostAndPort) {
+        this.redisHostAndPort = redisHostAndPort;
+        return this;
+    }
+
+    /**
+     * Redis' password.
+     *
+     * @return
+     */
+    public String getRedisPassword() {
+        return redisPassword;
+    }
+
+    /**
+     * Redis' password.
+     *
+     * @param redisPassword
+     * @return
+     */
+    public RedisStreamQueue<ID, DATA> setRedisPassword(String redisPassword) {
+        this.redisPassword = redisPassword;
+        return this;
+    }
+
+    /**
+     * Get the current {@link JedisConnector} used by this queue.
+     *
+     * @return
+     */
+    public JedisConnector getJedisConnector() {
+        return jedisConnector;
+    }
+
+    /**
+     * Setter for {@link #jedisConnector}.
+     *
+     * @param jedisConnector
+     * @param setMyOwnRedis
+     * @return
+     */
+    protected RedisStreamQueue<ID, DATA> setJedisConnector(JedisConnector jedisConnector, boolean setMyOwnRedis) {
+        if (myOwnRedis && this.jedisConnector != null) {
+            this.jedisConnector.destroy();
+        }
+        this.jedisConnector = jedisConnector;
+        myOwnRedis = setMyOwnRedis;
+        return this;
+    }
+
+    /**
+     * Set the external {@link JedisConnector} to be used by this queue.
+     *
+     * @param jedisConnector
+     * @return
+     */
+    public RedisStreamQueue<ID, DATA> setJedisConnector(JedisConnector jedisConnector) {
+        return setJedisConnector(jedisConnector, false);
+    }
+
+    /**
+     * Name of the Redis stream to store queue messages.
+     *
+     * @return
+     */
+    public String getRedisStreamName() {
+        return _redisStreamName;
+    }
+
+    /**
+     * Name of the Redis stream to store queue messages.
+     *
+     * @param redisStreamName
+     * @return
+     */
+    public RedisStreamQueue<ID, DATA> setRedisStreamName(String redisStreamName) {
+        _redisStreamName = redisStreamName;
+        this.redisStreamName = _redisStreamName.getBytes(StandardCharsets.UTF_8);
+        return this;
+    }
+
+    /**
+     * Name of the Redis hash to map message ids to stream entry-ids.
+     *
+     * @return
+     */
+    public String getRedisHashName() {
+        return _redisHashName;
+    }
+
+    /**
+     * Name of the Redis hash to map message ids to stream entry-ids.
+     *
+     * @param redisHashName
+     * @return
+     */
+    public RedisStreamQueue<ID, DATA> setRedisHashName(String redisHashName) {
+        _redisHashName = redisHashName;
+        this.redisHashName = _redisHashName.getBytes(StandardCharsets.UTF_8);
+        return this;
+    }
+
+    /**
+     * Name of the consumer group to take messages.
+     *
+     * @return
+     */
+    public String getConsumerGroupName() {
+        return consumerGroupName;
+    }
+
+    /**
+     * Name of the consumer group to take messages.
+     *
+     * @param consumerGroupName
+     * @return
+     */
+    public RedisStreamQueue<ID, DATA> setConsumerGroupName(String consumerGroupName) {
+        this.consumerGroupName = consumerGroupName;
+        this.consumerGroupNameAsBytes = consumerGroupName.getBytes(StandardCharsets.UTF_8);
+        return this;
+    }
+
+    /**
+     * Name of this consumer within the consumer group (a unique name is generated by {@link #init()} if not set).
+     *
+     * @return
+     */
+    public String getConsumerName() {
+        return consumerName;
+    }
+
+    /**
+     * Name of this consumer within the consumer group (a unique name is generated by {@link #init()} if not set).
+     *
+     * @param consumerName
+     * @return
+     */
+    public RedisStreamQueue<ID, DATA> setConsumerName(String consumerName) {
+        this.consumerName = consumerName;
+        this.consumerNameAsBytes = consumerName != null ? consumerName.getBytes(StandardCharsets.UTF_8) : null;
+        return this;
+    }
+
+    /**
+     * Max number of messages returned by {@link #getOrphanMessages(long)}.
+     *
+     * @return
+     */
+    public int getOrphanMessagesLimit() {
+        return orphanMessagesLimit;
+    }
+
+    /**
+     * Max number of messages returned by {@link #getOrphanMessages(long)}, a value less than {@code 1} means "no
+     * limit".
+     *
+     * @param orphanMessagesLimit
+     * @return
+     */
+    public RedisStreamQueue<ID, DATA> setOrphanMessagesLimit(int orphanMessagesLimit) {
+        this.orphanMessagesLimit = orphanMessagesLimit;
+        return this;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Build a {@link JedisConnector} instance for my own use.
+     *
+     * @return
+     */
+    protected JedisConnector buildJedisConnector() {
+        JedisConnector jedisConnector = new JedisConnector();
+        jedisConnector.setJedisPoolConfig(JedisUtils.defaultJedisPoolConfig())
+                .setRedisHostsAndPorts(getRedisHostAndPort()).setRedisPassword(getRedisPassword()).init();
+        return jedisConnector;
+    }
+
+    /**
+     * Init method.
+     *
+     * @return
+     * @throws Exception
+     */
+    public RedisStreamQueue<ID, DATA> init() throws Exception {
+        if (jedisConnector == null) {
+            setJedisConnector(buildJedisConnector(), true);
+        }
+        if (consumerName == null) {
+            setConsumerName(QueueUtils.IDGEN.generateId128Hex().toLowerCase());
+        }
+
+        super.init();
+
+        if (jedisConnector == null) {
+            throw new IllegalStateException("Jedis connector is null.");
+        }
+
+        try (Jedis jedis = jedisConnector.getJedis()) {
+            SCRIPT_CREATE_GROUP.eval(jedis, 1, redisStreamName, consumerGroupNameAsBytes);
+            for (RedisScript script : new RedisScript[] { SCRIPT_ADD, SCRIPT_READD, SCRIPT_FINISH, SCRIPT_ORPHANS,
+                    SCRIPT_SIZE }) {
+                script.load(jedis);
+            }
+        } catch (JedisException e) {
+            LOGGER.warn("Cannot prepare stream [" + _redisStreamName + "], it will be prepared on first use: " + e
+                    .getMessage());
+        }
+
+        return this;
+    }
+
+    /**
+     * Destroy method.
+     */
+    public void destroy() {
+        try {
+            super.destroy();
+        } finally {
+            jedisConnector = RedisUtils.closeJedisConnector(jedisConnector, myOwnRedis);
+        }
+    }
+
+    private static boolean isNoGroupError(JedisDataException e) {
+        String msg = e.getMessage();
+        return msg != null && msg.contains("NOGROUP");
+    }
+
+    /**
+     * Execute a script against the stream and the id hash. If the consumer group does not exist (e.g. the stream has
+     * been deleted), it is created and the script is executed again.
+     *
+     * @param script
+     * @param args
+     * @return
+     */
+    private Object eval(RedisScript script, byte[]... args) {
+        byte[][] params = new byte[args.length + 2][];
+        params[0] = redisStreamName;
+        params[1] = redisHashName;
+        System.arraycopy(args, 0, params, 2, args.length);
+        try (Jedis jedis = jedisConnector.getJedis()) {
+            try {
+                return script.eval(jedis, 2, params);
+            } catch (JedisDataException e) {
+                if (!isNoGroupError(e)) {
+                    throw e;
+                }
+                SCRIPT_CREATE_GROUP.eval(jedis, 1, redisStreamName, consumerGroupNameAsBytes);
+                return script.eval(jedis, 2, params);
+            }
+        }
+    }
+
+    /**
+     * Send {@code XREADGROUP} on the connection; the socket timeout is lifted while the command blocks.
+     *
+     * @param jedis
+     * @param block
+     * @param args
+     * @return
+     */
+    private static Object sendReadGroup(Jedis jedis, boolean block, byte[][] args) {
+        Client client = jedis.getClient();
+        if (block) {
+            client.setTimeoutInfinite();
+        }
+        try {
+            client.sendCommand(StreamCommand.XREADGROUP, args);
+            return client.getOne();
+        } finally {
+            if (block) {
+                client.rollbackTimeout();
+            }
+        }
+    }
+
+    /**
+     * Read new entries via {@code XREADGROUP}, creating the consumer group if it does not exist.
+     *
+     * @param numMsgs
+     * @param blockMs
+     *         wait up to this number of milliseconds for new entries, {@code 0} means "do not wait"
+     * @param noAck
+     * @return entries in format {@code [entry-id, data, entry-id, data...]}
+     */
+    private List<Object> readGroup(int numMsgs, long blockMs, boolean noAck) {
+        List<byte[]> args = new ArrayList<>();
+        args.add(toBytes("GROUP"));
+        args.add(consumerGroupNameAsBytes);
+        args.add(consumerNameAsBytes);
+        args.add(toBytes("COUNT"));
+        args.add(toBytes(numMsgs));
+        if (blockMs > 0) {
+            args.add(toBytes("BLOCK"));
+            args.add(toBytes(blockMs));
+        }
+        if (noAck) {
+            args.add(toBytes("NOACK"));
+        }
+        args.add(toBytes("STREAMS"));
+        args.add(redisStreamName);
+        args.add(toBytes(">"));
+        byte[][] params = args.toArray(new byte[args.size()][]);
+        Object response;
+        try (Jedis jedis = jedisConnector.getJedis()) {
+            try {
+                response = sendReadGroup(jedis, blockMs > 0, params);
+            } catch (JedisDataException e) {
+                if (!isNoGroupError(e)) {
+                    throw e;
+                }
+                SCRIPT_CREATE_GROUP.eval(jedis, 1, redisStreamName, consumerGroupNameAsBytes);
+                response = sendReadGroup(jedis, blockMs > 0, params);
+            }
+        }
+
+        /* reply: [[stream, [[entry-id, [field, value...]]...]]], or nil if no entry */
+        List<Object> result = new ArrayList<>();
+        if (response instanceof List) {
+            for (Object stream : (List<?>) response) {
+                for (Object _entry : (List<?>) ((List<?>) stream).get(1)) {
+                    List<?> entry = (List<?>) _entry;
+                    List<?> fields = entry.get(1) instanceof List ? (List<?>) entry.get(1) : null;
+                    for (int i = 0; fields != null && i + 1 < fields.size(); i += 2) {
+                        if ("m".equals(toStr(fields.get(i)))) {
+                            result.add(entry.get(0));
+                            result.add(fields.get(i + 1));
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static byte[] toBytes(Object obj) {
+        return obj instanceof byte[] ? (byte[]) obj : obj.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String toStr(Object obj) {
+        return obj instanceof byte[] ? new String((byte[]) obj, StandardCharsets.UTF_8) : obj.toString();
+    }
+
+    private static byte[] idAsBytes(IQueueMessage<?, ?> msg) {
+        return msg.getId() != null ? toBytes(msg.getId()) : EMPTY;
+    }
+
+    /**
+     * Parse {@code [entry-id, data, entry-id, data...]} replies.
+     *
+     * @param response
+     * @param finishArgs
+     *         if not {@code null}, {@code [message-id, entry-id]} of each entry is appended to it
+     * @return
+     */
+    private List<IQueueMessage<ID, DATA>> parseMessages(Object response, List<byte[]> finishArgs) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        if (response instanceof List) {
+            List<?> items = (List<?>) response;
+            for (int i = 0; i + 1 < items.size(); i += 2) {
+                IQueueMessage<ID, DATA> msg = deserialize(toBytes(items.get(i + 1)));
+                if (msg != null) {
+                    result.add(msg);
+                }
+                if (finishArgs != null) {
+                    finishArgs.add(msg != null ? idAsBytes(msg) : EMPTY);
+                    finishArgs.add(toBytes(items.get(i)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+        byte[] data = serialize(msg);
+        if (queueCase == null || queueCase == PutToQueueCase.NEW) {
+            eval(SCRIPT_ADD, idAsBytes(msg), data);
+        } else {
+            /* re-queue: the old entry is acknowledged and deleted, the message is appended as a new entry */
+            eval(SCRIPT_READD, consumerGroupNameAsBytes, idAsBytes(msg), data);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are appended within one script execution.</p>
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        boolean[] result = new boolean[msgs.size()];
+        for (int i = 0; i < msgs.size(); i += MAX_IDS_PER_CALL) {
+            int n = Math.min(MAX_IDS_PER_CALL, msgs.size() - i);
+            byte[][] args = new byte[n * 2][];
+            for (int j = 0; j < n; j++) {
+                args[j * 2] = idAsBytes(msgs.get(i + j));
+                args[j * 2 + 1] = serialize(msgs.get(i + j));
+            }
+            eval(SCRIPT_ADD, args);
+            for (int j = 0; j < n; j++) {
+                result[i + j] = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The message's stream entry is looked up by message id, so the message can be finished by any queue
+     * instance.</p>
+     */
+    @Override
+    public void finish(IQueueMessage<ID, DATA> msg) {
+        if (!isEphemeralDisabled()) {
+            eval(SCRIPT_FINISH, consumerGroupNameAsBytes, idAsBytes(msg), EMPTY);
+        }
+    }
+
+    /**
+     * Acknowledge and delete entries, {@code args} is {@code [message-id, entry-id, message-id, entry-id...]}.
+     *
+     * @param args
+     */
+    private void finishEntries(List<byte[]> args) {
+        for (int i = 0; i < args.size(); i += MAX_IDS_PER_CALL * 2) {
+            List<byte[]> chunk = args.subList(i, Math.min(args.size(), i + MAX_IDS_PER_CALL * 2));
+            byte[][] params = new byte[chunk.size() + 1][];
+            params[0] = consumerGroupNameAsBytes;
+            for (int j = 0; j < chunk.size(); j++) {
+                params[j + 1] = chunk.get(j);
+            }
+            eval(SCRIPT_FINISH, params);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are acknowledged and deleted within one script execution.</p>
+     */
+    @Override
+    public void finishAll(Collection<? extends IQueueMessage<ID, DATA>> msgs) {
+        if (isEphemeralDisabled() || msgs == null || msgs.isEmpty()) {
+            return;
+        }
+        List<byte[]> args = new ArrayList<>(msgs.size() * 2);
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            args.add(idAsBytes(msg));
+            args.add(EMPTY);
+        }
+        finishEntries(args);
+    }
+
+    private List<IQueueMessage<ID, DATA>> doTake(int numMsgs, long blockMs) {
+        boolean noAck = isEphemeralDisabled();
+        List<Object> entries = readGroup(numMsgs, blockMs, noAck);
+        if (!noAck) {
+            return parseMessages(entries, null);
+        }
+        /* NOACK: entries are not added to the pending entries list, delete them right away */
+        List<byte[]> finishArgs = new ArrayList<>();
+        List<IQueueMessage<ID, DATA>> result = parseMessages(entries, finishArgs);
+        if (!finishArgs.isEmpty()) {
+            finishEntries(finishArgs);
+        }
+        return result;
+    }
+
+    private void ensureEphemeralNotFull() throws QueueException.EphemeralIsFull {
+        if (!isEphemeralDisabled()) {
+            int ephemeralMaxSize = getEphemeralMaxSize();
+            if (ephemeralMaxSize > 0 && ephemeralSize() >= ephemeralMaxSize) {
+                throw new QueueException.EphemeralIsFull(ephemeralMaxSize);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take() throws QueueException.EphemeralIsFull {
+        ensureEphemeralNotFull();
+        List<IQueueMessage<ID, DATA>> result = doTake(1, 0);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Waits using {@code XREADGROUP}'s {@code BLOCK} option.</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take(long timeout, TimeUnit unit) throws QueueException.EphemeralIsFull {
+        ensureEphemeralNotFull();
+        List<IQueueMessage<ID, DATA>> result = doTake(1, Math.max(0, unit.toMillis(timeout)));
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are read by one {@code XREADGROUP ... COUNT n} command.</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException.EphemeralIsFull {
+        int numMsgs = ensureEphemeralCapacity(maxMessages, this::ephemeralSize);
+        return numMsgs > 0 ? doTake(numMsgs, 0) : new ArrayList<>();
+    }
+
+    /**
+     * Look up orphan messages, starting at entry-id {@code start}, with bounded script calls until {@code limit}
+     * messages are found or the end of the pending entries list is reached.
+     *
+     * @param thresholdTimestampMs
+     * @param limit
+     * @param start
+     * @param result
+     * @return entry-id to resume the lookup at, or {@code null} if the end of the pending entries list was reached
+     */
+    private String lookupOrphanMessages(long thresholdTimestampMs, int limit, String start,
+            List<IQueueMessage<ID, DATA>> result) {
+        byte[] idle = String.valueOf(Math.max(0, thresholdTimestampMs)).getBytes(StandardCharsets.UTF_8);
+        byte[] maxScan = String.valueOf(MAX_PENDING_ENTRIES_PER_CALL).getBytes(StandardCharsets.UTF_8);
+        String next = start;
+        while (next != null && result.size() < limit) {
+            int callLimit = Math.min(limit - result.size(), MAX_PENDING_ENTRIES_PER_CALL);
+            List<?> items = (List<?>) eval(SCRIPT_ORPHANS, consumerGroupNameAsBytes, idle,
+                    String.valueOf(callLimit).getBytes(StandardCharsets.UTF_8), next.getBytes(StandardCharsets.UTF_8),
+                    maxScan);
+            String token = toStr(items.get(0));
+            result.addAll(parseMessages(items.subList(1, items.size()), null));
+            next = token.isEmpty() ? null : token;
+        }
+        return next;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Orphan messages are pending entries of the consumer group that have not been delivered for at least
+     * {@code thresholdTimestampMs} milliseconds. At most {@link #getOrphanMessagesLimit()} messages are returned. The
+     * pending entries list is walked with several script calls, each scanning a bounded number of entries.</p>
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> getOrphanMessages(long thresholdTimestampMs) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        if (!isEphemeralDisabled()) {
+            int limit = orphanMessagesLimit > 0 ? orphanMessagesLimit : Integer.MAX_VALUE;
+            lookupOrphanMessages(thresholdTimestampMs, limit, "-", result);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The page is read from the consumer group's pending entries list, hence messages are ordered by stream
+     * entry-id (the time they were appended to the stream) and {@link #getOrphanMessagesLimit()} does not apply. The
+     * continuation token is the entry-id to resume the lookup at. Each script call scans a bounded number of pending
+     * entries.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public OrphanMessagesPage<ID, DATA> getOrphanMessages(long thresholdTimestampMs, int limit,
+            String continuationToken) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        if (isEphemeralDisabled() || limit < 1) {
+            return new OrphanMessagesPage<>(result, null);
+        }
+        String start = continuationToken == null || continuationToken.isEmpty() ? "-" : continuationToken;
+        if (!start.equals("-") && !start.matches("\\d+-\\d+")) {
+            throw new IllegalArgumentException("Invalid continuation token [" + continuationToken + "].");
+        }
+        String next = lookupOrphanMessages(thresholdTimestampMs, limit, start, result);
+        return new OrphanMessagesPage<>(result, next);
+    }
+
+    private long[] sizes() {
+        Object response = eval(SCRIPT_SIZE, consumerGroupNameAsBytes);
+        List<?> items = (List<?>) response;
+        return new long[] { ((Number) items.get(0)).longValue(), ((Number) items.get(1)).longValue() };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int queueSize() {
+        long[] sizes = sizes();
+        /* finished entries are deleted, so the stream holds queued and pending entries */
+        return (int) Math.max(0, sizes[0] - sizes[1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int ephemeralSize() {
+        return isEphemeralDisabled() ? 0 : (int) sizes()[1];
+    }
+}
@@ -0,0 +1,265 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.commons.redis.JedisConnector;
+import com.github.ddth.queue.QueueSpec;
+import com.github.ddth.queue.internal.utils.RedisUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Factory to create {@link RedisStreamQueue} instances.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public abstract class RedisStreamQueueFactory<T extends RedisStreamQueue<ID, DATA>, ID, DATA>
+        extends AbstractQueueFactory<T, ID, DATA> {
+    public final static String SPEC_FIELD_HOST_AND_PORT = "host_and_port";
+    public final static String SPEC_FIELD_PASSWORD = "password";
+    public final static String SPEC_FIELD_STREAM_NAME = "stream_name";
+    public final static String SPEC_FIELD_HASH_NAME = "hash_name";
+    public final static String SPEC_FIELD_CONSUMER_GROUP_NAME = "consumer_group_name";
+    public final static String SPEC_FIELD_CONSUMER_NAME = "consumer_name";
+    public final static String SPEC_FIELD_ORPHAN_MESSAGES_LIMIT = "orphan_messages_limit";
+
+    private JedisConnector defaultJedisConnector;
+    /**
+     * Flag to mark if the Redis resource (e.g. Redis client pool) is created
+     * and handled by the factory.
+     */
+    protected boolean myOwnRedis = false;
+
+    private String defaultHostAndPort = RedisStreamQueue.DEFAULT_HOST_AND_PORT;
+    private String defaultPassword;
+    private String defaultStreamName = RedisStreamQueue.DEFAULT_STREAM_NAME;
+    private String defaultHashName = RedisStreamQueue.DEFAULT_HASH_NAME;
+    private String defaultConsumerGroupName = RedisStreamQueue.DEFAULT_CONSUMER_GROUP_NAME;
+    private int defaultOrphanMessagesLimit = RedisStreamQueue.DEFAULT_ORPHAN_MESSAGES_LIMIT;
+
+    /**
+     * If all {@link RedisStreamQueue} instances are connecting to one Redis server, it's a good idea to pre-create a
+     * {@link JedisConnector} instance and share it amongst queues created from this factory.
+     *
+     * @return
+     */
+    protected JedisConnector getDefaultJedisConnector() {
+        return defaultJedisConnector;
+    }
+
+    /**
+     * If all {@link RedisStreamQueue} instances are connecting to one Redis server, it's a good idea to pre-create a
+     * {@link JedisConnector} instance and share it amongst queues created from this factory.
+     *
+     * @param jedisConnector
+     * @param setMyOwnRedis
+     * @return
+     */
+    protected RedisStreamQueueFactory<T, ID, DATA> setDefaultJedisConnector(JedisConnector jedisConnector,
+            boolean setMyOwnRedis) {
+        if (myOwnRedis && this.defaultJedisConnector != null) {
+            this.defaultJedisConnector.destroy();
+        }
+        this.defaultJedisConnector = jedisConnector;
+        myOwnRedis = setMyOwnRedis;
+        return this;
+    }
+
+    /**
+     * If all {@link RedisStreamQueue} instances are connecting to one Redis server, it's a good idea to pre-create a
+     * {@link JedisConnector} instance and share it amongst queues created from this factory.
+     *
+     * @param jedisConnector
+     * @return
+     */
+    public RedisStreamQueueFactory<T, ID, DATA> setDefaultJedisConnector(JedisConnector jedisConnector) {
+        return setDefaultJedisConnector(jedisConnector, false);
+    }
+
+    /**
+     * Default Redis host and port scheme (format {@code host:port}), passed to all queues created by this factory.
+     *
+     * @return
+     */
+    public String getDefaultHostAndPort() {
+        return defaultHostAndPort;
+    }
+
+    /**
+     * Default Redis host and port scheme (format {@code host:port}), passed to all queues created by this factory.
+     *
+     * @param defaultHostAndPort
+     * @return
+     */
+    public RedisStreamQueueFactory<T, ID, DATA> setDefaultHostAndPort(String defaultHostAndPort) {
+        this.defaultHostAndPort = defaultHostAndPort;
+        return this;
+    }
+
+    /**
+     * Redis' password.
+     *
+     * @return
+     */
+    public String getDefaultPassword() {
+        return defaultPassword;
+    }
+
+    /**
+     * Redis' password.
+     *
+     * @param defaultPassword
+     * @return
+     */
+    public RedisStreamQueueFactory<T, ID, DATA> setDefaultPassword(String defaultPassword) {
+        this.defaultPassword = defaultPassword;
+        return this;
+    }
+
+    /**
+     * Name of the Redis stream to store queue messages.
+     *
+     * @return
+     */
+    public String getDefaultStreamName() {
+        return defaultStreamName;
+    }
+
+    /**
+     * Name of the Redis stream to store queue messages.
+     *
+     * @param defaultStreamName
+     * @return
+     */
+    public RedisStreamQueueFactory<T, ID, DATA> setDefaultStreamName(String defaultStreamName) {
+        this.defaultStreamName = defaultStreamName;
+        return this;
+    }
+
+    /**
+     * Name of the Redis hash to map message ids to stream entry-ids.
+     *
+     * @return
+     */
+    public String getDefaultHashName() {
+        return defaultHashName;
+    }
+
+    /**
+     * Name of the Redis hash to map message ids to stream entry-ids.
+     *
+     * @param defaultHashName
+     * @return
+     */
+    public RedisStreamQueueFactory<T, ID, DATA> setDefaultHashName(String defaultHashName) {
+        this.defaultHashName = defaultHashName;
+        return this;
+    }
+
+    /**
+     * Name of the consumer group to take messages.
+     *
+     * @return
+     */
+    public String getDefaultConsumerGroupName() {
+        return defaultConsumerGroupName;
+    }
+
+    /**
+     * Name of the consumer group to take messages.
+     *
+     * @param defaultConsumerGroupName
+     * @return
+     */
+    public RedisStreamQueueFactory<T, ID, DATA> setDefaultConsumerGroupName(String defaultConsumerGroupName) {
+        this.defaultConsumerGroupName = defaultConsumerGroupName;
+        return this;
+    }
+
+    /**
+     * Max number of messages returned by {@link RedisStreamQueue#getOrphanMessages(long)}, passed to all queues
+     * created by this factory.
+     *
+     * @return
+     */
+    public int getDefaultOrphanMessagesLimit() {
+        return defaultOrphanMessagesLimit;
+    }
+
+    /**
+     * Max number of messages returned by {@link RedisStreamQueue#getOrphanMessages(long)}, passed to all queues
+     * created by this factory.
+     *
+     * @param defaultOrphanMessagesLimit
+     * @return
+     */
+    public RedisStreamQueueFactory<T, ID, DATA> setDefaultOrphanMessagesLimit(int defaultOrphanMessagesLimit) {
+        this.defaultOrphanMessagesLimit = defaultOrphanMessagesLimit;
+        return this;
+    }
+
+    /**
+     * Destroy method.
+     */
+    public void destroy() {
+        try {
+            super.destroy();
+        } finally {
+            defaultJedisConnector = RedisUtils.closeJedisConnector(defaultJedisConnector, myOwnRedis);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void initQueue(T queue, QueueSpec spec) throws Exception {
+        queue.setEphemeralDisabled(getDefaultEphemeralDisabled()).setEphemeralMaxSize(getDefaultEphemeralMaxSize());
+        Boolean ephemeralDisabled = spec.getField(QueueSpec.FIELD_EPHEMERAL_DISABLED, Boolean.class);
+        if (ephemeralDisabled != null) {
+            queue.setEphemeralDisabled(ephemeralDisabled.booleanValue());
+        }
+        Integer maxEphemeralSize = spec.getField(QueueSpec.FIELD_EPHEMERAL_MAX_SIZE, Integer.class);
+        if (maxEphemeralSize != null) {
+            queue.setEphemeralMaxSize(maxEphemeralSize.intValue());
+        }
+
+        queue.setOrphanMessagesLimit(getDefaultOrphanMessagesLimit());
+        Integer orphanMessagesLimit = spec.getField(SPEC_FIELD_ORPHAN_MESSAGES_LIMIT, Integer.class);
+        if (orphanMessagesLimit != null) {
+            queue.setOrphanMessagesLimit(orphanMessagesLimit.intValue());
+        }
+
+        queue.setRedisHostAndPort(getDefaultHostAndPort()).setRedisPassword(getDefaultPassword())
+                .setJedisConnector(getDefaultJedisConnector());
+        String redisHostAndPort = spec.getField(SPEC_FIELD_HOST_AND_PORT);
+        if (!StringUtils.isBlank(redisHostAndPort)) {
+            queue.setRedisHostAndPort(redisHostAndPort);
+        }
+        String redisPassword = spec.getField(SPEC_FIELD_PASSWORD);
+        if (!StringUtils.isBlank(redisPassword)) {
+            queue.setRedisPassword(redisPassword);
+        }
+
+        queue.setRedisStreamName(getDefaultStreamName()).setRedisHashName(getDefaultHashName())
+                .setConsumerGroupName(getDefaultConsumerGroupName());
+        String streamName = spec.getField(SPEC_FIELD_STREAM_NAME);
+        if (!StringUtils.isBlank(streamName)) {
+            queue.setRedisStreamName(streamName);
+        }
+        String hashName = spec.getField(SPEC_FIELD_HASH_NAME);
+        if (!StringUtils.isBlank(hashName)) {
+            queue.setRedisHashName(hashName);
+        }
+        String consumerGroupName = spec.getField(SPEC_FIELD_CONSUMER_GROUP_NAME);
+        if (!StringUtils.isBlank(consumerGroupName)) {
+            queue.setConsumerGroupName(consumerGroupName);
+        }
+        String consumerName = spec.getField(SPEC_FIELD_CONSUMER_NAME);
+        if (!StringUtils.isBlank(consumerName)) {
+            queue.setConsumerName(consumerName);
+        }
+
+        super.initQueue(queue, spec);
+    }
+}
@@ -4,7 +4,8 @@ import com.github.ddth.commons.rocksdb.RocksDbUtils;
 import com.github.ddth.commons.rocksdb.RocksDbWrapper;
 import com.github.ddth.queue.IQueue;
 import com.github.ddth.queue.IQueueMessage;
-import com.github.ddth.queue.internal.utils.QueueUtils;
+import com.github.ddth.queue.OrphanMessagesPage;
+import com.github.ddth.queue.OrphanMessagesPage.TimeIndexKey;
 import com.github.ddth.queue.utils.QueueException;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -14,11 +15,28 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
 
 /**
  * RocksDB implementation of {@link IQueue}.
@@ -27,6 +45,22 @@ import java.util.concurrent.locks.ReentrantLock;
  * Implementation:
  * <ul>
  * <li>RocksDB as queue storage</li>
+ * <li>Keys in queue storage are 8-byte big-endian sequence numbers (highest bit set), allocated in write order.
+ * Messages stored with 32-char hex keys by versions prior to v1.0.1 are re-keyed when the queue is initialized.</li>
+ * <li>(since v1.0.1) Queue storage holds sequence numbers {@code [head, tail)}: the tail is persisted in the metadata
+ * column-family within the same {@link WriteBatch} as the messages, the head is the first key in queue storage when
+ * the queue is initialized. Takers claim sequence numbers by CAS on the head and read messages with point lookups,
+ * so takes run concurrently and {@link #queueSize()} is {@code O(1)}.</li>
+ * <li>(since v1.0.1) Taken messages are removed with range deletes over contiguous sequence numbers, and the
+ * consumed prefix of queue storage is compacted in background every {@link #setCompactEveryNumTakes(long) N} takes,
+ * so that tombstones do not pile up at the head of queue storage during long backlogs.</li>
+ * <li>(since v1.0.1) Mutable column-family options (memtable size, compression, compaction triggers...) can be
+ * tuned via {@link #setCfOptions(String)}.</li>
+ * <li>(since v1.0.1) Ephemeral-size is an exact counter, rebuilt from ephemeral storage when the queue is
+ * initialized.</li>
+ * <li>(since v1.0.1) Optional {@link #setGroupCommit(boolean) group-commit}: a writer thread coalesces messages put
+ * by concurrent producers into one {@link WriteBatch}; each producer returns once its batch has been written.
+ * Durability of writes is configured via {@link #setSyncWrites(boolean)} and {@link #setDisableWal(boolean)}.</li>
  * </ul>
  * </p>
  *
@@ -50,19 +84,59 @@ public abstract class RocksDbQueue<ID, DATA> extends AbstractEphemeralSupportQue
     public final static String DEFAULT_CFNAME_QUEUE = "queue";
     public final static String DEFAULT_CFNAME_METADATA = "metadata";
     public final static String DEFAULT_CFNAME_EPHEMERAL = "ephemeral";
+    /**
+     * @since 1.0.1
+     */
+    public final static String DEFAULT_CFNAME_EPHEMERAL_TIME = "ephemeral_time";
+    /**
+     * @since 1.0.1
+     */
+    public final static int DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE = 1000;
+    /**
+     * @since 1.0.1
+     */
+    public final static long DEFAULT_COMPACT_EVERY_NUM_TAKES = 100000;
 
-    private byte[] lastFetchedId = null;
-    private Lock lockPut = new ReentrantLock(), lockTake = new ReentrantLock();
+    private Lock lockPut = new ReentrantLock();
+
+    /* queue storage holds keys [headSeq, tailSeq); takers claim sequence numbers by CAS on headSeq */
+    private final AtomicLong headSeq = new AtomicLong();
+    private volatile long tailSeq;
+    private final Queue<Long> releasedSeqs = new ConcurrentLinkedQueue<>();
+    /* sequence numbers in [head, tail) without a message (taken right before a crash), found by initQueueSeqs() */
+    private final AtomicLong missingSeqs = new AtomicLong();
+    private final AtomicLong ephemeralCount = new AtomicLong();
+    private final Object[] ephemeralLocks = IntStream.range(0, 64).mapToObj(i -> new Object()).toArray();
 
     private String storageDir;
     private String cfNameQueue = DEFAULT_CFNAME_QUEUE, cfNameMetadata = DEFAULT_CFNAME_METADATA, cfNameEphemeral = DEFAULT_CFNAME_EPHEMERAL;
+    private String cfNameEphemeralTime = DEFAULT_CFNAME_EPHEMERAL_TIME;
     private DBOptions dbOptions;
     private ReadOptions readOptions;
     private WriteOptions writeOptions;
     private RocksDbWrapper rocksDbWrapper;
-    private WriteBatch batchPutToQueue, batchTake;
-    private ColumnFamilyHandle cfQueue, cfMetadata, cfEphemeral;
-    private RocksIterator itQueue, itEphemeral;
+    private WriteBatch batchPutToQueue;
+    private ColumnFamilyHandle cfQueue, cfMetadata, cfEphemeral, cfEphemeralTime;
+    private RocksIterator itQueue, itEphemeral, itEphemeralTime;
+
+    private boolean syncWrites = false, disableWal = false;
+    private WriteOptions myWriteOptions;
+    private long nextKeySeq;
+
+    private boolean groupCommit = false;
+    private long groupCommitIntervalMs = 0;
+    private int groupCommitMaxBatchSize = DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE;
+    private BlockingQueue<PutRequest> putRequests;
+    private Thread groupCommitWriter;
+    private volatile boolean groupCommitRunning = false;
+
+    private long compactEveryNumTakes = DEFAULT_COMPACT_EVERY_NUM_TAKES;
+    private String cfOptions;
+    /* queue storage below compactedSeq has been compacted */
+    private volatile long compactedSeq = 0;
+    /* set while a compaction is pending or running, so that requests made meanwhile are coalesced */
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+    private volatile ExecutorService compactionExecutor;
 
     /**
      * Directory to store RocksDB data files.
@@ -150,6 +224,211 @@ public abstract class RocksDbQueue<ID, DATA> extends AbstractEphemeralSupportQue
         return this;
     }
 
+    /**
+     * Name of the column-family to store the time index of ephemeral messages (keys are
+     * {@code <8-byte queue timestamp><message id>}).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getCfNameEphemeralTime() {
+        return cfNameEphemeralTime;
+    }
+
+    /**
+     * Name of the column-family to store the time index of ephemeral messages (keys are
+     * {@code <8-byte queue timestamp><message id>}).
+     *
+     * @param cfNameEphemeralTime
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueue<ID, DATA> setCfNameEphemeralTime(String cfNameEphemeralTime) {
+        this.cfNameEphemeralTime = cfNameEphemeralTime;
+        return this;
+    }
+
+    /**
+     * If {@code true}, writes are flushed from OS buffer to storage before returning (see
+     * {@link WriteOptions#setSync(boolean)}). Default value {@code false}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    /**
+     * If {@code true}, writes are flushed from OS buffer to storage before returning (see
+     * {@link WriteOptions#setSync(boolean)}). Default value {@code false}.
+     *
+     * <p>Note: must be set before calling {@link #init()}.</p>
+     *
+     * @param syncWrites
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueue<ID, DATA> setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+        return this;
+    }
+
+    /**
+     * If {@code true}, writes skip the write-ahead-log (see {@link WriteOptions#setDisableWAL(boolean)}): faster,
+     * but recent writes are lost if the process crashes. Default value {@code false}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isDisableWal() {
+        return disableWal;
+    }
+
+    /**
+     * If {@code true}, writes skip the write-ahead-log (see {@link WriteOptions#setDisableWAL(boolean)}): faster,
+     * but recent writes are lost if the process crashes. Default value {@code false}.
+     *
+     * <p>Note: must be set before calling {@link #init()}.</p>
+     *
+     * @param disableWal
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueue<ID, DATA> setDisableWal(boolean disableWal) {
+        this.disableWal = disableWal;
+        return this;
+    }
+
+    /**
+     * If {@code true}, messages put by concurrent producers are written by a dedicated writer thread, in one
+     * {@link WriteBatch} per round. Default value {@code false}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isGroupCommit() {
+        return groupCommit;
+    }
+
+    /**
+     * If {@code true}, messages put by concurrent producers are written by a dedicated writer thread, in one
+     * {@link WriteBatch} per round. Default value {@code false}.
+     *
+     * <p>Note: must be set before calling {@link #init()}.</p>
+     *
+     * @param groupCommit
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueue<ID, DATA> setGroupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+        return this;
+    }
+
+    /**
+     * Group-commit: max time (in milliseconds) the writer waits for more messages after the first one of a round
+     * arrives. {@code 0} (default) means messages pending at the time are written immediately.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getGroupCommitIntervalMs() {
+        return groupCommitIntervalMs;
+    }
+
+    /**
+     * Group-commit: max time (in milliseconds) the writer waits for more messages after the first one of a round
+     * arrives. {@code 0} (default) means messages pending at the time are written immediately.
+     *
+     * @param groupCommitIntervalMs
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueue<ID, DATA> setGroupCommitIntervalMs(long groupCommitIntervalMs) {
+        this.groupCommitIntervalMs = groupCommitIntervalMs;
+        return this;
+    }
+
+    /**
+     * Group-commit: max number of messages written in one round (default value
+     * {@link #DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE}).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getGroupCommitMaxBatchSize() {
+        return groupCommitMaxBatchSize;
+    }
+
+    /**
+     * Group-commit: max number of messages written in one round (default value
+     * {@link #DEFAULT_GROUP_COMMIT_MAX_BATCH_SIZE}).
+     *
+     * @param groupCommitMaxBatchSize
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueue<ID, DATA> setGroupCommitMaxBatchSize(int groupCommitMaxBatchSize) {
+        this.groupCommitMaxBatchSize = groupCommitMaxBatchSize;
+        return this;
+    }
+
+    /**
+     * The consumed prefix of queue storage is compacted (in background) each time this number of messages have been
+     * taken since the last compaction. {@code 0} or negative disables it. Default value
+     * {@link #DEFAULT_COMPACT_EVERY_NUM_TAKES}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getCompactEveryNumTakes() {
+        return compactEveryNumTakes;
+    }
+
+    /**
+     * The consumed prefix of queue storage is compacted (in background) each time this number of messages have been
+     * taken since the last compaction. {@code 0} or negative disables it. Default value
+     * {@link #DEFAULT_COMPACT_EVERY_NUM_TAKES}.
+     *
+     * @param compactEveryNumTakes
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueue<ID, DATA> setCompactEveryNumTakes(long compactEveryNumTakes) {
+        this.compactEveryNumTakes = compactEveryNumTakes;
+        return this;
+    }
+
+    /**
+     * Mutable column-family options, in RocksDB's option string format (e.g.
+     * {@code "write_buffer_size=67108864;max_write_buffer_number=4;compression=kLZ4Compression"}), applied to
+     * queue and ephemeral column-families when the queue is initialized.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getCfOptions() {
+        return cfOptions;
+    }
+
+    /**
+     * Mutable column-family options, in RocksDB's option string format (e.g.
+     * {@code "write_buffer_size=67108864;max_write_buffer_number=4;compression=kLZ4Compression"}), applied to
+     * queue and ephemeral column-families when the queue is initialized.
+     *
+     * <p>Note: must be set before calling {@link #init()}; see {@link MutableColumnFamilyOptions} for supported
+     * options.</p>
+     *
+     * @param cfOptions
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueue<ID, DATA> setCfOptions(String cfOptions) {
+        this.cfOptions = cfOptions;
+        return this;
+    }
+
     /*----------------------------------------------------------------------*/
 
     /**
@@ -172,21 +451,51 @@ public abstract class RocksDbQueue<ID, DATA> extends AbstractEphemeralSupportQue
 
         try {
             batchPutToQueue = new WriteBatch();
-            batchTake = new WriteBatch();
 
             dbOptions = RocksDbUtils.defaultDbOptions();
             rocksDbWrapper = RocksDbWrapper.openReadWrite(STORAGE_DIR, dbOptions, null, null,
-                    new String[] { cfNameEphemeral, cfNameMetadata, cfNameQueue });
+                    new String[] { cfNameEphemeral, cfNameEphemeralTime, cfNameMetadata, cfNameQueue });
             readOptions = rocksDbWrapper.getReadOptions();
-            writeOptions = rocksDbWrapper.getWriteOptions();
+            if (syncWrites || disableWal) {
+                myWriteOptions = new WriteOptions().setSync(syncWrites).setDisableWAL(disableWal);
+                writeOptions = myWriteOptions;
+            } else {
+                writeOptions = rocksDbWrapper.getWriteOptions();
+            }
 
             cfEphemeral = rocksDbWrapper.getColumnFamilyHandle(cfNameEphemeral);
+            cfEphemeralTime = rocksDbWrapper.getColumnFamilyHandle(cfNameEphemeralTime);
             cfMetadata = rocksDbWrapper.getColumnFamilyHandle(cfNameMetadata);
             cfQueue = rocksDbWrapper.getColumnFamilyHandle(cfNameQueue);
+            if (!StringUtils.isBlank(cfOptions)) {
+                MutableColumnFamilyOptions options = MutableColumnFamilyOptions.parse(cfOptions).build();
+                for (ColumnFamilyHandle cf : new ColumnFamilyHandle[] { cfQueue, cfEphemeral, cfEphemeralTime }) {
+                    rocksDbWrapper.getRocksDb().setOptions(cf, options);
+                }
+            }
 
             itQueue = rocksDbWrapper.getIterator(cfNameQueue);
             itEphemeral = rocksDbWrapper.getIterator(cfNameEphemeral);
-            lastFetchedId = loadLastFetchedId();
+            itEphemeralTime = rocksDbWrapper.getIterator(cfNameEphemeralTime);
+            initQueueSeqs();
+            /* one daemon thread, created on first compaction */
+            String compactionThreadName = "rocksdb-queue-compaction-" + getQueueName();
+            compactionExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, compactionThreadName);
+                t.setDaemon(true);
+                return t;
+            });
+            if (!isEphemeralDisabled()) {
+                buildEphemeralTimeIndexIfMissing();
+                ephemeralCount.set(countEphemeralMessages());
+            }
+            if (groupCommit) {
+                putRequests = new LinkedBlockingQueue<>();
+                groupCommitRunning = true;
+                groupCommitWriter = new Thread(this::groupCommitLoop, "rocksdb-queue-writer-" + getQueueName());
+                groupCommitWriter.setDaemon(true);
+                groupCommitWriter.start();
+            }
         } catch (Exception e) {
             destroy();
             throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
@@ -204,13 +513,10 @@ public abstract class RocksDbQueue<ID, DATA> extends AbstractEphemeralSupportQue
         try {
             super.destroy();
         } finally {
-            try {
-                saveLastFetchedId(lastFetchedId);
-            } catch (Exception e) {
-                LOGGER.error(e.getMessage(), e);
-            }
+            stopGroupCommitWriter();
+            stopCompaction();
 
-            RocksDbUtils.closeRocksObjects(batchPutToQueue, batchTake, dbOptions);
+            RocksDbUtils.closeRocksObjects(batchPutToQueue, dbOptions, myWriteOptions);
 
             try {
                 rocksDbWrapper.close();
@@ -220,56 +526,352 @@ public abstract class RocksDbQueue<ID, DATA> extends AbstractEphemeralSupportQue
         }
     }
 
-    private final static String keyLastFetchedId = "last-fetched-id";
-    private final static byte[] keyLastFetchedIdBytes = keyLastFetchedId.getBytes(StandardCharsets.UTF_8);
+    private final static String keyQueueTailSeq = "queue-tail-seq";
+    private final static byte[] keyQueueTailSeqBytes = keyQueueTailSeq.getBytes(StandardCharsets.UTF_8);
 
     /**
-     * Loads last saved last-fetched-id.
+     * Key of a message in the ephemeral time index.
      *
+     * @param queueTimestamp
+     * @param ephemeralKey
      * @return
-     * @since 0.4.0.1
      */
-    private byte[] loadLastFetchedId() {
-        return rocksDbWrapper.get(cfNameMetadata, readOptions, keyLastFetchedId);
+    private static byte[] ephemeralTimeKey(long queueTimestamp, byte[] ephemeralKey) {
+        return ByteBuffer.allocate(8 + ephemeralKey.length).putLong(queueTimestamp).put(ephemeralKey).array();
+    }
+
+    private static long queueTimestamp(IQueueMessage<?, ?> msg) {
+        return msg.getQueueTimestamp() != null ? msg.getQueueTimestamp().getTime() : 0;
     }
 
     /**
-     * Saves last-fetched-id.
+     * Build the ephemeral time index from ephemeral storage, if the index is empty but the storage is not (e.g. data
+     * written by a version without the index).
      *
-     * @param lastFetchedId
-     * @since 0.4.0.1
+     * @throws RocksDBException
      */
-    private void saveLastFetchedId(byte[] lastFetchedId) {
-        if (lastFetchedId != null) {
-            rocksDbWrapper.put(cfNameMetadata, writeOptions, keyLastFetchedId, lastFetchedId);
+    private void buildEphemeralTimeIndexIfMissing() throws RocksDBException {
+        synchronized (itEphemeralTime) {
+            itEphemeralTime.seekToFirst();
+            if (itEphemeralTime.isValid()) {
+                return;
+            }
+        }
+        synchronized (itEphemeral) {
+            try (WriteBatch batch = new WriteBatch()) {
+                int count = 0;
+                for (itEphemeral.seekToFirst(); itEphemeral.isValid(); itEphemeral.next()) {
+                    IQueueMessage<ID, DATA> msg = deserialize(itEphemeral.value());
+                    if (msg != null) {
+                        byte[] key = itEphemeral.key();
+                        batch.put(cfEphemeralTime, ephemeralTimeKey(queueTimestamp(msg), key), key);
+                        if (++count % 1000 == 0) {
+                            rocksDbWrapper.write(writeOptions, batch);
+                            batch.clear();
+                        }
+                    }
+                }
+                if (count > 0) {
+                    rocksDbWrapper.write(writeOptions, batch);
+                    LOGGER.info("Built ephemeral time index for " + count + " message(s).");
+                }
+            }
         }
     }
 
+    /*----------------------------------------------------------------------*/
+
     /**
-     * {@inheritDoc}
+     * Messages to be written to queue storage in one go.
      */
-    @Override
-    protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
-        byte[] value = serialize(msg);
+    private final static class PutRequest {
+        private final byte[][] values;
+        private final byte[] ephemeralKey, ephemeralTimeKey;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private PutRequest(byte[][] values, byte[] ephemeralKey, byte[] ephemeralTimeKey) {
+            this.values = values;
+            this.ephemeralKey = ephemeralKey;
+            this.ephemeralTimeKey = ephemeralTimeKey;
+        }
+    }
+
+    private final static long KEY_SEQ_FLAG = Long.MIN_VALUE;
+
+    /**
+     * Sequence number of a binary key in queue storage, {@code -1} if the key is not a binary one (e.g. hex keys
+     * written by versions prior to v1.0.1).
+     *
+     * @param key
+     * @return
+     */
+    private static long keySeq(byte[] key) {
+        return key != null && key.length == 8 && (key[0] & 0x80) != 0 ?
+                ByteBuffer.wrap(key).getLong() & ~KEY_SEQ_FLAG :
+                -1;
+    }
+
+    private static byte[] queueKey(long seq) {
+        return ByteBuffer.allocate(8).putLong(seq | KEY_SEQ_FLAG).array();
+    }
+
+    /**
+     * Load head and tail sequence numbers of queue storage.
+     *
+     * <ul>
+     * <li>Tail: the persisted tail, moved past any key found after it.</li>
+     * <li>Messages with hex keys (written by versions prior to v1.0.1, they sort before binary keys) are re-keyed to
+     * the tail, in their original order.</li>
+     * <li>Head: the first key in queue storage (messages before it have been taken).</li>
+     * <li>Sequence numbers between head and tail without a message (taken by a concurrent taker right before the queue
+     * was stopped) are counted, so that {@link #queueSize()} is exact after a restart.</li>
+     * </ul>
+     *
+     * @throws RocksDBException
+     */
+    private void initQueueSeqs() throws RocksDBException {
+        byte[] storedTail = rocksDbWrapper.get(cfNameMetadata, readOptions, keyQueueTailSeq);
+        long seq = storedTail != null && storedTail.length == 8 ? ByteBuffer.wrap(storedTail).getLong() : 0;
+        synchronized (itQueue) {
+            for (itQueue.seek(queueKey(seq)); itQueue.isValid(); itQueue.next()) {
+                seq = Math.max(seq, keySeq(itQueue.key()) + 1);
+            }
+        }
+        nextKeySeq = seq;
+
+        synchronized (itQueue) {
+            try (WriteBatch batch = new WriteBatch()) {
+                int count = 0;
+                for (itQueue.seekToFirst(); itQueue.isValid() && keySeq(itQueue.key()) < 0; itQueue.next()) {
+                    batch.delete(cfQueue, itQueue.key());
+                    batch.put(cfQueue, queueKey(nextKeySeq++), itQueue.value());
+                    if (++count % 1000 == 0) {
+                        batch.put(cfMetadata, keyQueueTailSeqBytes, ByteBuffer.allocate(8).putLong(nextKeySeq).array());
+                        rocksDbWrapper.write(writeOptions, batch);
+                        batch.clear();
+                    }
+                }
+                if (count > 0) {
+                    batch.put(cfMetadata, keyQueueTailSeqBytes, ByteBuffer.allocate(8).putLong(nextKeySeq).array());
+                    rocksDbWrapper.write(writeOptions, batch);
+                    LOGGER.info("Re-keyed " + count + " message(s) in queue storage.");
+                }
+            }
+        }
+        tailSeq = nextKeySeq;
+
+        long head = tailSeq, count = 0;
+        synchronized (itQueue) {
+            for (itQueue.seekToFirst(); itQueue.isValid(); itQueue.next()) {
+                long keySeq = keySeq(itQueue.key());
+                if (keySeq >= 0 && keySeq < tailSeq && count++ == 0) {
+                    head = keySeq;
+                }
+            }
+        }
+        headSeq.set(head);
+        missingSeqs.set(tailSeq - head - count);
+    }
+
+    /**
+     * Allocate the next key in queue storage; must be called while holding {@link #lockPut}, and keys must be written
+     * in allocation order.
+     *
+     * @return
+     */
+    private byte[] nextQueueKey() {
+        return queueKey(nextKeySeq++);
+    }
+
+    private long countEphemeralMessages() {
+        long count = 0;
+        synchronized (itEphemeral) {
+            for (itEphemeral.seekToFirst(); itEphemeral.isValid(); itEphemeral.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Object ephemeralLock(Object id) {
+        return ephemeralLocks[Math.floorMod(id.hashCode(), ephemeralLocks.length)];
+    }
+
+    /**
+     * Write messages of one or many put-requests to queue storage in one {@link WriteBatch}, then complete the
+     * requests.
+     *
+     * @param requests
+     */
+    private void writePutRequests(Collection<PutRequest> requests) {
         lockPut.lock();
+        long startSeq = nextKeySeq;
         try {
-            byte[] key = QueueUtils.IDGEN.generateId128Hex().toLowerCase().getBytes(StandardCharsets.UTF_8);
-            try {
-                batchPutToQueue.put(cfQueue, key, value);
-                if (queueCase != null && queueCase != PutToQueueCase.NEW && !isEphemeralDisabled()) {
-                    byte[] _key = msg.getId().toString().getBytes(StandardCharsets.UTF_8);
-                    batchPutToQueue.delete(cfEphemeral, _key);
+            for (PutRequest request : requests) {
+                for (byte[] value : request.values) {
+                    batchPutToQueue.put(cfQueue, nextQueueKey(), value);
                 }
-                rocksDbWrapper.write(writeOptions, batchPutToQueue);
-            } catch (RocksDBException e) {
-                throw new QueueException(e);
-            } finally {
+                if (request.ephemeralKey != null) {
+                    batchPutToQueue.delete(cfEphemeral, request.ephemeralKey);
+                }
+                if (request.ephemeralTimeKey != null) {
+                    batchPutToQueue.delete(cfEphemeralTime, request.ephemeralTimeKey);
+                }
+            }
+            batchPutToQueue.put(cfMetadata, keyQueueTailSeqBytes, ByteBuffer.allocate(8).putLong(nextKeySeq).array());
+            rocksDbWrapper.write(writeOptions, batchPutToQueue);
+            /* publish new messages to takers */
+            tailSeq = nextKeySeq;
+            requests.forEach(request -> request.result.complete(null));
+        } catch (Exception e) {
+            /* nothing has been written, the sequence numbers can be reused */
+            nextKeySeq = startSeq;
+            QueueException qe = e instanceof QueueException ? (QueueException) e : new QueueException(e);
+            requests.forEach(request -> request.result.completeExceptionally(qe));
+        } finally {
+            try {
                 batchPutToQueue.clear();
+            } finally {
+                lockPut.unlock();
+            }
+        }
+    }
+
+    /**
+     * Write a put-request, directly or via the group-commit writer, and wait for the result.
+     *
+     * @param request
+     */
+    private void submitPutRequest(PutRequest request) {
+        if (groupCommit) {
+            if (!groupCommitRunning) {
+                throw new QueueException("Group-commit writer is not running.");
+            }
+            putRequests.add(request);
+            if (!groupCommitRunning && putRequests.remove(request)) {
+                /* the writer stopped before it could see the request */
+                throw new QueueException("Group-commit writer is not running.");
+            }
+        } else {
+            writePutRequests(Collections.singletonList(request));
+        }
+        try {
+            request.result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof QueueException ? (QueueException) cause : new QueueException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueueException(e);
+        }
+    }
+
+    private void groupCommitLoop() {
+        List<PutRequest> requests = new ArrayList<>();
+        try {
+            while (groupCommitRunning || !putRequests.isEmpty()) {
+                try {
+                    PutRequest request = putRequests.poll(100, TimeUnit.MILLISECONDS);
+                    if (request == null) {
+                        continue;
+                    }
+                    requests.add(request);
+                    int numMsgs = request.values.length;
+                    long deadline = System.currentTimeMillis() + groupCommitIntervalMs;
+                    while (numMsgs < groupCommitMaxBatchSize) {
+                        long waitMs = deadline - System.currentTimeMillis();
+                        request = waitMs > 0 ? putRequests.poll(waitMs, TimeUnit.MILLISECONDS) : putRequests.poll();
+                        if (request == null) {
+                            break;
+                        }
+                        requests.add(request);
+                        numMsgs += request.values.length;
+                    }
+                } finally {
+                    if (!requests.isEmpty()) {
+                        writePutRequests(requests);
+                        requests.clear();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            /*
+             * interrupted: stop accepting requests, write pending ones with non-blocking polls (a timed poll would
+             * throw again right away) and exit
+             */
+            groupCommitRunning = false;
+            for (PutRequest request = putRequests.poll(); request != null; request = putRequests.poll()) {
+                requests.add(request);
+            }
+            if (!requests.isEmpty()) {
+                writePutRequests(requests);
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stopGroupCommitWriter() {
+        groupCommitRunning = false;
+        if (groupCommitWriter != null) {
+            try {
+                groupCommitWriter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            groupCommitWriter = null;
+        }
+        if (putRequests != null) {
+            QueueException qe = new QueueException("Queue has been destroyed.");
+            for (PutRequest request = putRequests.poll(); request != null; request = putRequests.poll()) {
+                request.result.completeExceptionally(qe);
             }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+        byte[] value = serialize(msg);
+        if (queueCase == null || queueCase == PutToQueueCase.NEW || isEphemeralDisabled()) {
+            submitPutRequest(new PutRequest(new byte[][] { value }, null, null));
             return true;
-        } finally {
-            lockPut.unlock();
         }
+        byte[] ephemeralKey = msg.getId().toString().getBytes(StandardCharsets.UTF_8), ephemeralTimeKey = null;
+        synchronized (ephemeralLock(msg.getId())) {
+            /* re-queued message may carry a new queue timestamp: the index key is built from the stored one */
+            byte[] stored = rocksDbWrapper.get(cfNameEphemeral, readOptions, msg.getId().toString());
+            IQueueMessage<ID, DATA> storedMsg = stored != null ? deserialize(stored) : null;
+            if (storedMsg != null) {
+                ephemeralTimeKey = ephemeralTimeKey(queueTimestamp(storedMsg), ephemeralKey);
+            }
+            submitPutRequest(new PutRequest(new byte[][] { value }, ephemeralKey, ephemeralTimeKey));
+            if (stored != null) {
+                ephemeralCount.decrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages are written to queue storage within one {@link WriteBatch}.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        byte[][] values = new byte[msgs.size()][];
+        int i = 0;
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            values[i++] = serialize(msg);
+        }
+        submitPutRequest(new PutRequest(values, null, null));
+        boolean[] result = new boolean[values.length];
+        Arrays.fill(result, true);
+        return result;
     }
 
     /**
@@ -278,8 +880,170 @@ public abstract class RocksDbQueue<ID, DATA> extends AbstractEphemeralSupportQue
     @Override
     public void finish(IQueueMessage<ID, DATA> msg) {
         if (!isEphemeralDisabled()) {
-            String key = msg.getId().toString();
-            rocksDbWrapper.delete(cfNameEphemeral, writeOptions, key);
+            byte[] key = msg.getId().toString().getBytes(StandardCharsets.UTF_8);
+            synchronized (ephemeralLock(msg.getId())) {
+                boolean exists = rocksDbWrapper.get(cfNameEphemeral, readOptions, msg.getId().toString()) != null;
+                try (WriteBatch batch = new WriteBatch()) {
+                    batch.delete(cfEphemeral, key);
+                    batch.delete(cfEphemeralTime, ephemeralTimeKey(queueTimestamp(msg), key));
+                    rocksDbWrapper.write(writeOptions, batch);
+                } catch (RocksDBException e) {
+                    throw new QueueException(e);
+                }
+                if (exists) {
+                    ephemeralCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim up to {@code maxSeqs} sequence numbers of queue storage: released ones first, then from the head.
+     *
+     * @param maxSeqs
+     * @return
+     */
+    private List<Long> claimSeqs(int maxSeqs) {
+        List<Long> seqs = new ArrayList<>();
+        for (Long seq; seqs.size() < maxSeqs && (seq = releasedSeqs.poll()) != null; ) {
+            seqs.add(seq);
+        }
+        while (seqs.size() < maxSeqs) {
+            long head = headSeq.get();
+            long available = tailSeq - head;
+            if (available <= 0) {
+                break;
+            }
+            int n = (int) Math.min(available, maxSeqs - seqs.size());
+            if (headSeq.compareAndSet(head, head + n)) {
+                for (int i = 0; i < n; i++) {
+                    seqs.add(head + i);
+                }
+                break;
+            }
+        }
+        return seqs;
+    }
+
+    /**
+     * Take up to {@code maxMessages} messages: claim sequence numbers, read messages with point lookups and move them
+     * to ephemeral storage within one {@link WriteBatch}.
+     *
+     * @param maxMessages
+     * @return
+     */
+    private List<IQueueMessage<ID, DATA>> takeMessages(int maxMessages) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        while (result.size() < maxMessages) {
+            List<Long> seqs = claimSeqs(maxMessages - result.size());
+            if (seqs.isEmpty()) {
+                break;
+            }
+            List<IQueueMessage<ID, DATA>> taken = new ArrayList<>();
+            try (WriteBatch batch = new WriteBatch()) {
+                deleteQueueSeqs(batch, seqs);
+                for (long seq : seqs) {
+                    byte[] value = rocksDbWrapper.get(cfNameQueue, readOptions, queueKey(seq));
+                    if (value == null) {
+                        /* message has been taken before the queue was re-initialized */
+                        missingSeqs.decrementAndGet();
+                        continue;
+                    }
+                    IQueueMessage<ID, DATA> msg = deserialize(value);
+                    if (msg != null) {
+                        if (!isEphemeralDisabled()) {
+                            byte[] _key = msg.getId().toString().getBytes(StandardCharsets.UTF_8);
+                            batch.put(cfEphemeral, _key, value);
+                            batch.put(cfEphemeralTime, ephemeralTimeKey(queueTimestamp(msg), _key), _key);
+                        }
+                        taken.add(msg);
+                    }
+                }
+                rocksDbWrapper.write(writeOptions, batch);
+            } catch (Exception e) {
+                /* let other takers retry these messages */
+                releasedSeqs.addAll(seqs);
+                throw e instanceof QueueException ? (QueueException) e : new QueueException(e);
+            }
+            if (!isEphemeralDisabled()) {
+                ephemeralCount.addAndGet(taken.size());
+            }
+            result.addAll(taken);
+        }
+        maybeCompactConsumed();
+        return result;
+    }
+
+    /**
+     * Delete claimed sequence numbers from queue storage: one range delete per run of contiguous sequence numbers.
+     *
+     * @param batch
+     * @param seqs
+     * @throws RocksDBException
+     */
+    private void deleteQueueSeqs(WriteBatch batch, List<Long> seqs) throws RocksDBException {
+        for (int i = 0, n = seqs.size(); i < n; ) {
+            int j = i + 1;
+            while (j < n && seqs.get(j) == seqs.get(j - 1) + 1) {
+                j++;
+            }
+            if (j - i == 1) {
+                batch.delete(cfQueue, queueKey(seqs.get(i)));
+            } else {
+                batch.deleteRange(cfQueue, queueKey(seqs.get(i)), queueKey(seqs.get(j - 1) + 1));
+            }
+            i = j;
+        }
+    }
+
+    /**
+     * Compact the consumed prefix of queue storage in background, if enough messages have been taken since the last
+     * compaction. Compaction never drops live keys, so messages claimed but not yet moved are safe.
+     *
+     * <p>Compactions run one at a time on a single background thread; requests made while a compaction is pending or
+     * running are coalesced into it (it compacts up to the head at the time it starts).</p>
+     */
+    private void maybeCompactConsumed() {
+        ExecutorService executor = compactionExecutor;
+        if (executor == null || compactEveryNumTakes <= 0 || headSeq.get() - compactedSeq < compactEveryNumTakes
+                || !compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    long head = headSeq.get();
+                    rocksDbWrapper.getRocksDb().compactRange(cfQueue, queueKey(compactedSeq), queueKey(head));
+                    compactedSeq = head;
+                } catch (Exception e) {
+                    LOGGER.warn("Error while compacting queue storage: " + e.getMessage(), e);
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            /* queue is being destroyed */
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Stop accepting compactions and wait for the pending one (if any).
+     */
+    private void stopCompaction() {
+        ExecutorService executor = compactionExecutor;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                LOGGER.info("Waiting for queue storage compaction to finish...");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            compactionExecutor = null;
         }
     }
 
@@ -296,75 +1060,132 @@ public abstract class RocksDbQueue<ID, DATA> extends AbstractEphemeralSupportQue
                 throw new QueueException.EphemeralIsFull(ephemeralMaxSize);
             }
         }
-        lockTake.lock();
-        try {
-            if (lastFetchedId == null) {
-                itQueue.seekToFirst();
+        List<IQueueMessage<ID, DATA>> msgs = takeMessages(1);
+        return msgs.isEmpty() ? null : msgs.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Up to {@code maxMessages} messages are moved to ephemeral storage within one {@link WriteBatch}.</p>
+     *
+     * @throws QueueException.EphemeralIsFull if the ephemeral storage is full
+     * @since 1.0.1
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException.EphemeralIsFull {
+        int numMsgs = ensureEphemeralCapacity(maxMessages, this::ephemeralSize);
+        return numMsgs > 0 ? takeMessages(numMsgs) : new ArrayList<>();
+    }
+
+    /**
+     * Walk the ephemeral time index, starting after {@code afterKey} (or from the beginning if {@code null}), and
+     * collect up to {@code limit} messages queued before {@code cutoff}.
+     *
+     * @param cutoff
+     * @param afterKey
+     * @param limit
+     * @param result
+     * @return time-index key of the last collected message if there are more orphan messages, {@code null} otherwise
+     */
+    private byte[] collectOrphanMessages(long cutoff, byte[] afterKey, int limit,
+            Collection<IQueueMessage<ID, DATA>> result) {
+        synchronized (itEphemeralTime) {
+            if (afterKey == null) {
+                itEphemeralTime.seekToFirst();
             } else {
-                itQueue.seek(lastFetchedId);
-            }
-            if (!itQueue.isValid()) {
-                return null;
+                itEphemeralTime.seek(afterKey);
+                if (itEphemeralTime.isValid() && Arrays.equals(afterKey, itEphemeralTime.key())) {
+                    itEphemeralTime.next();
+                }
             }
-            lastFetchedId = itQueue.key();
-            byte[] value = itQueue.value();
-            IQueueMessage<ID, DATA> msg = deserialize(value);
-            try {
-                batchTake.delete(cfQueue, lastFetchedId);
-                batchTake.put(cfMetadata, keyLastFetchedIdBytes, lastFetchedId);
-                if (!isEphemeralDisabled() && msg != null) {
-                    byte[] _key = msg.getId().toString().getBytes(StandardCharsets.UTF_8);
-                    batchTake.put(cfEphemeral, _key, value);
+            byte[] lastKey = null;
+            for (; itEphemeralTime.isValid(); itEphemeralTime.next()) {
+                byte[] timeKey = itEphemeralTime.key();
+                if (ByteBuffer.wrap(timeKey).getLong() >= cutoff) {
+                    return null;
+                }
+                if (result.size() >= limit) {
+                    return lastKey;
+                }
+                byte[] value = rocksDbWrapper.get(cfNameEphemeral, readOptions,
+                        new String(itEphemeralTime.value(), StandardCharsets.UTF_8));
+                IQueueMessage<ID, DATA> msg = value != null ? deserialize(value) : null;
+                if (msg != null) {
+                    result.add(msg);
+                    lastKey = timeKey;
+                } else {
+                    /* stale index entry (e.g. message finished with a modified queue timestamp) */
+                    try (WriteBatch batch = new WriteBatch()) {
+                        batch.delete(cfEphemeralTime, timeKey);
+                        rocksDbWrapper.write(writeOptions, batch);
+                    } catch (RocksDBException e) {
+                        throw new QueueException(e);
+                    }
                 }
-                rocksDbWrapper.write(writeOptions, batchTake);
-            } catch (RocksDBException e) {
-                throw new QueueException(e);
-            } finally {
-                batchTake.clear();
             }
-            itQueue.next();
-            return msg;
-        } finally {
-            lockTake.unlock();
+            return null;
         }
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Orphan messages are looked up via the ephemeral time index, cost is proportional to the number of orphan
+     * messages.</p>
      */
     @Override
     public Collection<IQueueMessage<ID, DATA>> getOrphanMessages(long thresholdTimestampMs) {
-        Collection<IQueueMessage<ID, DATA>> orphanMessages = new HashSet<>();
+        Collection<IQueueMessage<ID, DATA>> orphanMessages = new ArrayList<>();
         if (!isEphemeralDisabled()) {
-            synchronized (itEphemeral) {
-                long now = System.currentTimeMillis();
-                itEphemeral.seekToFirst();
-                while (itEphemeral.isValid()) {
-                    byte[] value = itEphemeral.value();
-                    IQueueMessage<ID, DATA> msg = deserialize(value);
-                    if (msg.getQueueTimestamp().getTime() + thresholdTimestampMs < now) {
-                        orphanMessages.add(msg);
-                    }
-                    itEphemeral.next();
-                }
-            }
+            collectOrphanMessages(System.currentTimeMillis() - thresholdTimestampMs, null, Integer.MAX_VALUE,
+                    orphanMessages);
         }
         return orphanMessages;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Only the requested page is read from the ephemeral time index.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public OrphanMessagesPage<ID, DATA> getOrphanMessages(long thresholdTimestampMs, int limit,
+            String continuationToken) {
+        List<IQueueMessage<ID, DATA>> orphanMessages = new ArrayList<>();
+        if (isEphemeralDisabled()) {
+            return new OrphanMessagesPage<>(orphanMessages, null);
+        }
+        TimeIndexKey after = TimeIndexKey.fromToken(continuationToken);
+        byte[] afterKey = after != null ?
+                ephemeralTimeKey(after.getTimestamp(), after.getId().toString().getBytes(StandardCharsets.UTF_8)) :
+                null;
+        byte[] lastKey = collectOrphanMessages(System.currentTimeMillis() - thresholdTimestampMs, afterKey, limit,
+                orphanMessages);
+        return new OrphanMessagesPage<>(orphanMessages,
+                lastKey != null ? TimeIndexKey.of(orphanMessages.get(orphanMessages.size() - 1)).toToken() : null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Computed from head and tail sequence numbers of queue storage.</p>
      */
     @Override
     public int queueSize() {
-        return (int) rocksDbWrapper.getEstimateNumKeys(cfNameQueue);
+        long size = tailSeq - headSeq.get() + releasedSeqs.size() - missingSeqs.get();
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, size));
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>Read from an in-memory counter.</p>
      */
     @Override
     public int ephemeralSize() {
-        return (int) rocksDbWrapper.getEstimateNumKeys(cfNameEphemeral);
+        return isEphemeralDisabled() ? 0 : (int) Math.max(0, Math.min(Integer.MAX_VALUE, ephemeralCount.get()));
     }
 }
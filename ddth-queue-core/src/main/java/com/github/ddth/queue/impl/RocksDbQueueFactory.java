@@ -18,9 +18,42 @@ public abstract class RocksDbQueueFactory<T extends RocksDbQueue<ID, DATA>, ID,
     public final static String SPEC_FIELD_CF_EPHEMERAL = "cf_ephemeral";
     public final static String SPEC_FIELD_CF_QUEUE = "cf_queue";
     public final static String SPEC_FIELD_CF_METADATA = "cf_metadata";
+    /**
+     * @since 1.0.1
+     */
+    public final static String SPEC_FIELD_CF_EPHEMERAL_TIME = "cf_ephemeral_time";
+    /**
+     * @since 1.0.1
+     */
+    public final static String SPEC_FIELD_SYNC_WRITES = "sync_writes";
+    /**
+     * @since 1.0.1
+     */
+    public final static String SPEC_FIELD_DISABLE_WAL = "disable_wal";
+    /**
+     * @since 1.0.1
+     */
+    public final static String SPEC_FIELD_GROUP_COMMIT = "group_commit";
+    /**
+     * @since 1.0.1
+     */
+    public final static String SPEC_FIELD_GROUP_COMMIT_INTERVAL_MS = "group_commit_interval_ms";
+    /**
+     * @since 1.0.1
+     */
+    public final static String SPEC_FIELD_COMPACT_EVERY_NUM_TAKES = "compact_every_num_takes";
+    /**
+     * @since 1.0.1
+     */
+    public final static String SPEC_FIELD_CF_OPTIONS = "cf_options";
 
     private String rootStorageDir;
     private String defaultCfNameQueue = RocksDbQueue.DEFAULT_CFNAME_QUEUE, defaultCfNameMetaData = RocksDbQueue.DEFAULT_CFNAME_METADATA, defaultCfNameEphemeral = RocksDbQueue.DEFAULT_CFNAME_EPHEMERAL;
+    private String defaultCfNameEphemeralTime = RocksDbQueue.DEFAULT_CFNAME_EPHEMERAL_TIME;
+    private boolean defaultSyncWrites = false, defaultDisableWal = false, defaultGroupCommit = false;
+    private long defaultGroupCommitIntervalMs = 0;
+    private long defaultCompactEveryNumTakes = RocksDbQueue.DEFAULT_COMPACT_EVERY_NUM_TAKES;
+    private String defaultCfOptions;
 
     /**
      * Root directory to store RocksDB's data. Each queue created by this factory stores its own data in a sub-directory.
@@ -102,6 +135,166 @@ public abstract class RocksDbQueueFactory<T extends RocksDbQueue<ID, DATA>, ID,
         return this;
     }
 
+    /**
+     * Default name of the column-family to store time index of ephemeral messages, passed to all queues created by
+     * this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getDefaultCfNameEphemeralTime() {
+        return defaultCfNameEphemeralTime;
+    }
+
+    /**
+     * Default name of the column-family to store time index of ephemeral messages, passed to all queues created by
+     * this factory.
+     *
+     * @param defaultCfNameEphemeralTime
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueueFactory<T, ID, DATA> setDefaultCfNameEphemeralTime(String defaultCfNameEphemeralTime) {
+        this.defaultCfNameEphemeralTime = defaultCfNameEphemeralTime;
+        return this;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setSyncWrites(boolean)}, passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isDefaultSyncWrites() {
+        return defaultSyncWrites;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setSyncWrites(boolean)}, passed to all queues created by this factory.
+     *
+     * @param defaultSyncWrites
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueueFactory<T, ID, DATA> setDefaultSyncWrites(boolean defaultSyncWrites) {
+        this.defaultSyncWrites = defaultSyncWrites;
+        return this;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setDisableWal(boolean)}, passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isDefaultDisableWal() {
+        return defaultDisableWal;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setDisableWal(boolean)}, passed to all queues created by this factory.
+     *
+     * @param defaultDisableWal
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueueFactory<T, ID, DATA> setDefaultDisableWal(boolean defaultDisableWal) {
+        this.defaultDisableWal = defaultDisableWal;
+        return this;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setGroupCommit(boolean)}, passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isDefaultGroupCommit() {
+        return defaultGroupCommit;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setGroupCommit(boolean)}, passed to all queues created by this factory.
+     *
+     * @param defaultGroupCommit
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueueFactory<T, ID, DATA> setDefaultGroupCommit(boolean defaultGroupCommit) {
+        this.defaultGroupCommit = defaultGroupCommit;
+        return this;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setGroupCommitIntervalMs(long)}, passed to all queues created by this
+     * factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDefaultGroupCommitIntervalMs() {
+        return defaultGroupCommitIntervalMs;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setGroupCommitIntervalMs(long)}, passed to all queues created by this
+     * factory.
+     *
+     * @param defaultGroupCommitIntervalMs
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueueFactory<T, ID, DATA> setDefaultGroupCommitIntervalMs(long defaultGroupCommitIntervalMs) {
+        this.defaultGroupCommitIntervalMs = defaultGroupCommitIntervalMs;
+        return this;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setCompactEveryNumTakes(long)}, passed to all queues created by this
+     * factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDefaultCompactEveryNumTakes() {
+        return defaultCompactEveryNumTakes;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setCompactEveryNumTakes(long)}, passed to all queues created by this
+     * factory.
+     *
+     * @param defaultCompactEveryNumTakes
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueueFactory<T, ID, DATA> setDefaultCompactEveryNumTakes(long defaultCompactEveryNumTakes) {
+        this.defaultCompactEveryNumTakes = defaultCompactEveryNumTakes;
+        return this;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setCfOptions(String)}, passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getDefaultCfOptions() {
+        return defaultCfOptions;
+    }
+
+    /**
+     * Default value of {@link RocksDbQueue#setCfOptions(String)}, passed to all queues created by this factory.
+     *
+     * @param defaultCfOptions
+     * @return
+     * @since 1.0.1
+     */
+    public RocksDbQueueFactory<T, ID, DATA> setDefaultCfOptions(String defaultCfOptions) {
+        this.defaultCfOptions = defaultCfOptions;
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -128,11 +321,15 @@ public abstract class RocksDbQueueFactory<T extends RocksDbQueue<ID, DATA>, ID,
         }
 
         queue.setCfNameEphemeral(defaultCfNameEphemeral).setCfNameMetadata(defaultCfNameMetaData)
-                .setCfNameQueue(defaultCfNameQueue);
+                .setCfNameQueue(defaultCfNameQueue).setCfNameEphemeralTime(defaultCfNameEphemeralTime);
         String cfNameEphemeral = spec.getField(SPEC_FIELD_CF_EPHEMERAL);
         if (!StringUtils.isBlank(cfNameEphemeral)) {
             queue.setCfNameEphemeral(cfNameEphemeral);
         }
+        String cfNameEphemeralTime = spec.getField(SPEC_FIELD_CF_EPHEMERAL_TIME);
+        if (!StringUtils.isBlank(cfNameEphemeralTime)) {
+            queue.setCfNameEphemeralTime(cfNameEphemeralTime);
+        }
         String cfNameMetadata = spec.getField(SPEC_FIELD_CF_METADATA);
         if (!StringUtils.isBlank(cfNameMetadata)) {
             queue.setCfNameMetadata(cfNameMetadata);
@@ -142,6 +339,35 @@ public abstract class RocksDbQueueFactory<T extends RocksDbQueue<ID, DATA>, ID,
             queue.setCfNameQueue(cfNameQueue);
         }
 
+        queue.setSyncWrites(defaultSyncWrites).setDisableWal(defaultDisableWal).setGroupCommit(defaultGroupCommit)
+                .setGroupCommitIntervalMs(defaultGroupCommitIntervalMs);
+        Boolean syncWrites = spec.getField(SPEC_FIELD_SYNC_WRITES, Boolean.class);
+        if (syncWrites != null) {
+            queue.setSyncWrites(syncWrites.booleanValue());
+        }
+        Boolean disableWal = spec.getField(SPEC_FIELD_DISABLE_WAL, Boolean.class);
+        if (disableWal != null) {
+            queue.setDisableWal(disableWal.booleanValue());
+        }
+        Boolean groupCommit = spec.getField(SPEC_FIELD_GROUP_COMMIT, Boolean.class);
+        if (groupCommit != null) {
+            queue.setGroupCommit(groupCommit.booleanValue());
+        }
+        Long groupCommitIntervalMs = spec.getField(SPEC_FIELD_GROUP_COMMIT_INTERVAL_MS, Long.class);
+        if (groupCommitIntervalMs != null) {
+            queue.setGroupCommitIntervalMs(groupCommitIntervalMs.longValue());
+        }
+
+        queue.setCompactEveryNumTakes(defaultCompactEveryNumTakes).setCfOptions(defaultCfOptions);
+        Long compactEveryNumTakes = spec.getField(SPEC_FIELD_COMPACT_EVERY_NUM_TAKES, Long.class);
+        if (compactEveryNumTakes != null) {
+            queue.setCompactEveryNumTakes(compactEveryNumTakes.longValue());
+        }
+        String cfOptions = spec.getField(SPEC_FIELD_CF_OPTIONS);
+        if (!StringUtils.isBlank(cfOptions)) {
+            queue.setCfOptions(cfOptions);
+        }
+
         super.initQueue(queue, spec);
     }
 }
@@ -0,0 +1,608 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.queue.IPartitionSupport;
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.IQueueFactory;
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.OrphanMessagesPage;
+import com.github.ddth.queue.QueueSpec;
+import com.github.ddth.queue.utils.QueueException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToIntFunction;
+
+/**
+ * Sharded implementation of {@link IQueue}: one logical queue spread over a number of child queues (shards).
+ *
+ * <p>
+ * Implementation:
+ * <ul>
+ * <li>Shards are obtained from one {@link #setQueueFactory(IQueueFactory) queue factory}, one per
+ * {@link #setShardSpecs(List) shard spec} (e.g. different table names, Redis hosts or collections).</li>
+ * <li>A message is stored in the shard selected by its partition key (see {@link IPartitionSupport}). Messages without
+ * partition key are spread in a round-robin manner, and the selected shard is recorded in the message as a generated
+ * partition key.</li>
+ * <li>Consumers take messages from shards in a round-robin manner. A shard that returned nothing is skipped for
+ * {@link #setEmptyShardBackoffMs(long) empty-shard-backoff-ms}, or until a message is put to it via this queue.</li>
+ * <li>{@link #finish(IQueueMessage)} and {@link #requeue(IQueueMessage)} are routed to the shard selected by the
+ * message's partition key. If the owning shard can not be derived from the message (e.g. the shard's storage does not
+ * keep partition keys), the shard the message was taken from is remembered by this queue instance; if it is not
+ * remembered either (e.g. taken by another instance), the message is finished on all shards, so message ids must be
+ * unique across shards.</li>
+ * <li>Shards are managed by the queue factory: they are not destroyed by {@link #destroy()}.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Features:</p>
+ * <ul>
+ * <li>Queue-size support: yes, if supported by all shards</li>
+ * <li>Ephemeral storage support: as the shards</li>
+ * <li>Ephemeral-size support: yes, if supported by all shards</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class ShardedQueue<ID, DATA> extends AbstractQueue<ID, DATA> {
+    public final static long DEFAULT_EMPTY_SHARD_BACKOFF_MS = 100;
+
+    /* bound of remembered owners: entries of messages finished via other instances are never removed */
+    private final static int MAX_REMEMBERED_OWNERS = 100_000;
+
+    private IQueueFactory<ID, DATA> queueFactory;
+    private List<QueueSpec> shardSpecs;
+    private long emptyShardBackoffMs = DEFAULT_EMPTY_SHARD_BACKOFF_MS;
+
+    private IQueue<ID, DATA>[] shards;
+    private AtomicLongArray emptyUntil;
+    private final AtomicInteger nextPutShard = new AtomicInteger();
+    private final AtomicInteger nextTakeShard = new AtomicInteger();
+    private final AtomicInteger nextPartitionKey = new AtomicInteger();
+    /* owning shards of taken messages that can not be derived from the messages themselves */
+    private final ConcurrentMap<Object, Integer> owners = new ConcurrentHashMap<>();
+
+    /**
+     * Factory to create the shards.
+     *
+     * @return
+     */
+    public IQueueFactory<ID, DATA> getQueueFactory() {
+        return queueFactory;
+    }
+
+    /**
+     * Factory to create the shards.
+     *
+     * @param queueFactory
+     * @return
+     */
+    public ShardedQueue<ID, DATA> setQueueFactory(IQueueFactory<ID, DATA> queueFactory) {
+        this.queueFactory = queueFactory;
+        return this;
+    }
+
+    /**
+     * Specs of the shards, one per shard.
+     *
+     * @return
+     */
+    public List<QueueSpec> getShardSpecs() {
+        return shardSpecs;
+    }
+
+    /**
+     * Specs of the shards, one per shard.
+     *
+     * <p>Note: messages are routed by the position of shard in this list, which must not change once the queue holds
+     * messages.</p>
+     *
+     * @param shardSpecs
+     * @return
+     */
+    public ShardedQueue<ID, DATA> setShardSpecs(List<QueueSpec> shardSpecs) {
+        this.shardSpecs = shardSpecs;
+        return this;
+    }
+
+    /**
+     * Specs of the shards, one per shard.
+     *
+     * @param shardSpecs
+     * @return
+     */
+    public ShardedQueue<ID, DATA> setShardSpecs(QueueSpec... shardSpecs) {
+        return setShardSpecs(Arrays.asList(shardSpecs));
+    }
+
+    /**
+     * A shard that returned no message is skipped by consumers for this period of time (default value
+     * {@link #DEFAULT_EMPTY_SHARD_BACKOFF_MS}). A value less than {@code 1} disables skipping.
+     *
+     * @return
+     */
+    public long getEmptyShardBackoffMs() {
+        return emptyShardBackoffMs;
+    }
+
+    /**
+     * A shard that returned no message is skipped by consumers for this period of time (default value
+     * {@link #DEFAULT_EMPTY_SHARD_BACKOFF_MS}). A value less than {@code 1} disables skipping.
+     *
+     * <p>Note: messages put to a shard directly, or via another {@link ShardedQueue} instance, can be taken with a
+     * delay up to this period of time.</p>
+     *
+     * @param emptyShardBackoffMs
+     * @return
+     */
+    public ShardedQueue<ID, DATA> setEmptyShardBackoffMs(long emptyShardBackoffMs) {
+        this.emptyShardBackoffMs = emptyShardBackoffMs;
+        return this;
+    }
+
+    /**
+     * Number of shards.
+     *
+     * @return
+     */
+    public int getNumShards() {
+        return shards != null ? shards.length : 0;
+    }
+
+    /**
+     * Get a shard by its index.
+     *
+     * @param index
+     * @return
+     */
+    public IQueue<ID, DATA> getShard(int index) {
+        return shards[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public ShardedQueue<ID, DATA> init() throws Exception {
+        if (queueFactory == null || shardSpecs == null || shardSpecs.isEmpty()) {
+            throw new IllegalStateException("Queue factory and shard specs are required.");
+        }
+        shards = new IQueue[shardSpecs.size()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = queueFactory.getQueue(shardSpecs.get(i));
+            if (shards[i] == null) {
+                throw new IllegalStateException("Cannot create shard [" + shardSpecs.get(i) + "].");
+            }
+        }
+        emptyUntil = new AtomicLongArray(shards.length);
+        super.init();
+        return this;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IQueueMessage<ID, DATA> createMessage() {
+        return shards[0].createMessage();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IQueueMessage<ID, DATA> createMessage(DATA content) {
+        return shards[0].createMessage(content);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IQueueMessage<ID, DATA> createMessage(ID id, DATA content) {
+        return shards[0].createMessage(id, content);
+    }
+
+    private int shardOfKey(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % shards.length;
+    }
+
+    /**
+     * Calculate the shard of a message by its partition key.
+     *
+     * @param msg
+     * @return {@code -1} if the message has no partition key
+     */
+    protected int shardOf(IQueueMessage<ID, DATA> msg) {
+        if (shards.length == 1) {
+            return 0;
+        }
+        String key = msg instanceof IPartitionSupport ? ((IPartitionSupport) msg).getPartitionKey() : null;
+        return key != null ? shardOfKey(key) : -1;
+    }
+
+    /**
+     * Record the shard in a message without partition key, by setting a generated partition key that selects the
+     * shard (if the message supports partition keys).
+     *
+     * @param msg
+     * @param shard
+     * @return
+     */
+    private int assignShard(IQueueMessage<ID, DATA> msg, int shard) {
+        if (msg instanceof IPartitionSupport && shards.length > 1) {
+            String key;
+            do {
+                key = String.valueOf(nextPartitionKey.getAndIncrement() & Integer.MAX_VALUE);
+            } while (shardOfKey(key) != shard);
+            ((IPartitionSupport) msg).setPartitionKey(key);
+        }
+        return shard;
+    }
+
+    /**
+     * Calculate the shard to put a new message to.
+     *
+     * @param msg
+     * @return
+     */
+    private int shardToPut(IQueueMessage<ID, DATA> msg) {
+        int shard = shardOf(msg);
+        return shard >= 0 ? shard
+                : assignShard(msg, (nextPutShard.getAndIncrement() & Integer.MAX_VALUE) % shards.length);
+    }
+
+    /**
+     * Find the shard a taken message belongs to.
+     *
+     * @param msg
+     * @param forget if {@code true}, the remembered owner (if any) is forgotten
+     * @return {@code -1} if the owning shard is unknown
+     */
+    private int ownerOf(IQueueMessage<ID, DATA> msg, boolean forget) {
+        Object id = msg.getId();
+        Integer owner = id == null || owners.isEmpty() ? null : (forget ? owners.remove(id) : owners.get(id));
+        return owner != null ? owner : shardOf(msg);
+    }
+
+    /**
+     * Remember the owning shard of a taken message, if it can not be derived from the message.
+     *
+     * @param msg
+     * @param shard
+     */
+    private void rememberOwner(IQueueMessage<ID, DATA> msg, int shard) {
+        if (msg.getId() != null && shardOf(msg) != shard) {
+            if (owners.size() >= MAX_REMEMBERED_OWNERS) {
+                /* forgotten owners are not lost: finish/requeue falls back to all shards */
+                owners.clear();
+            }
+            owners.put(msg.getId(), shard);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>New messages go to the shard selected by partition key (see {@link #shardOf(IQueueMessage)}); requeued
+     * messages go back to their owning shards.</p>
+     */
+    @Override
+    protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+        if (queueCase == null || queueCase == PutToQueueCase.NEW) {
+            int shard = shardToPut(msg);
+            /* message has been prepared by queue(), it is put as-is */
+            boolean result = shards[shard].queue(msg);
+            emptyUntil.set(shard, 0);
+            return result;
+        }
+        int shard = ownerOf(msg, true);
+        boolean result;
+        if (shard >= 0) {
+            /* message has been prepared by requeue/requeueSilent, it is put as-is */
+            result = shards[shard].requeueSilent(msg);
+        } else {
+            /*
+             * owner unknown: put to the first shard that accepts the message (some shards only requeue messages they
+             * hold), then remove it from ephemeral storage of the other shards
+             */
+            int start = (nextPutShard.getAndIncrement() & Integer.MAX_VALUE) % shards.length;
+            result = false;
+            for (int i = 0; i < shards.length && !result; i++) {
+                shard = assignShard(msg, (start + i) % shards.length);
+                result = shards[shard].requeueSilent(msg);
+            }
+            if (!result) {
+                return false;
+            }
+            for (int i = 0; i < shards.length; i++) {
+                if (i != shard) {
+                    shards[i].finish(msg);
+                }
+            }
+        }
+        emptyUntil.set(shard, 0);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages are grouped by shard, each group is put by one {@link IQueue#queueAll(Collection)} call.</p>
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < msgs.size(); i++) {
+            groups.get(shardToPut(msgs.get(i))).add(i);
+        }
+        boolean[] result = new boolean[msgs.size()];
+        for (int shard = 0; shard < shards.length; shard++) {
+            List<Integer> group = groups.get(shard);
+            if (group.isEmpty()) {
+                continue;
+            }
+            List<IQueueMessage<ID, DATA>> groupMsgs = new ArrayList<>(group.size());
+            for (int index : group) {
+                groupMsgs.add(msgs.get(index));
+            }
+            boolean[] groupResult = shards[shard].queueAll(groupMsgs);
+            emptyUntil.set(shard, 0);
+            for (int i = 0; i < group.size(); i++) {
+                result[group.get(i)] = groupResult[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish(IQueueMessage<ID, DATA> msg) {
+        int shard = ownerOf(msg, true);
+        if (shard >= 0) {
+            shards[shard].finish(msg);
+        } else {
+            for (IQueue<ID, DATA> queue : shards) {
+                queue.finish(msg);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages are grouped by owning shard, each group is finished by one {@link IQueue#finishAll(Collection)}
+     * call.</p>
+     */
+    @Override
+    public void finishAll(Collection<? extends IQueueMessage<ID, DATA>> msgs) {
+        if (msgs == null || msgs.isEmpty()) {
+            return;
+        }
+        List<List<IQueueMessage<ID, DATA>>> groups = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+        List<IQueueMessage<ID, DATA>> unknown = new ArrayList<>();
+        for (IQueueMessage<ID, DATA> msg : msgs) {
+            int shard = ownerOf(msg, true);
+            (shard >= 0 ? groups.get(shard) : unknown).add(msg);
+        }
+        for (int shard = 0; shard < shards.length; shard++) {
+            List<IQueueMessage<ID, DATA>> group = groups.get(shard);
+            group.addAll(unknown);
+            if (!group.isEmpty()) {
+                shards[shard].finishAll(group);
+            }
+        }
+    }
+
+    /**
+     * Is the shard to be skipped by consumers?
+     *
+     * @param shard
+     * @param now
+     * @return
+     */
+    private boolean isSkipped(int shard, long now) {
+        return emptyShardBackoffMs > 0 && emptyUntil.get(shard) > now;
+    }
+
+    /**
+     * Mark the shard as empty, it will be skipped by consumers for a while.
+     *
+     * @param shard
+     * @param now
+     */
+    private void markEmpty(int shard, long now) {
+        if (emptyShardBackoffMs > 0) {
+            emptyUntil.set(shard, now + emptyShardBackoffMs);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Shards are visited in round-robin order; {@link QueueException.EphemeralIsFull} is thrown only if no shard
+     * could return a message and at least one shard's ephemeral storage is full.</p>
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take() throws QueueException.EphemeralIsFull {
+        long now = System.currentTimeMillis();
+        int start = (nextTakeShard.getAndIncrement() & Integer.MAX_VALUE) % shards.length;
+        QueueException.EphemeralIsFull ephemeralIsFull = null;
+        for (int i = 0; i < shards.length; i++) {
+            int shard = (start + i) % shards.length;
+            if (isSkipped(shard, now)) {
+                continue;
+            }
+            try {
+                IQueueMessage<ID, DATA> msg = shards[shard].take();
+                if (msg != null) {
+                    rememberOwner(msg, shard);
+                    return msg;
+                }
+                markEmpty(shard, now);
+            } catch (QueueException.EphemeralIsFull e) {
+                ephemeralIsFull = e;
+            }
+        }
+        if (ephemeralIsFull != null) {
+            throw ephemeralIsFull;
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Shards are visited in round-robin order until {@code maxMessages} messages are taken.</p>
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) throws QueueException.EphemeralIsFull {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        int start = (nextTakeShard.getAndIncrement() & Integer.MAX_VALUE) % shards.length;
+        QueueException.EphemeralIsFull ephemeralIsFull = null;
+        for (int i = 0; i < shards.length && result.size() < maxMessages; i++) {
+            int shard = (start + i) % shards.length;
+            if (isSkipped(shard, now)) {
+                continue;
+            }
+            try {
+                Collection<IQueueMessage<ID, DATA>> msgs = shards[shard].take(maxMessages - result.size());
+                if (msgs == null || msgs.isEmpty()) {
+                    markEmpty(shard, now);
+                    continue;
+                }
+                for (IQueueMessage<ID, DATA> msg : msgs) {
+                    rememberOwner(msg, shard);
+                    result.add(msg);
+                }
+            } catch (QueueException.EphemeralIsFull e) {
+                ephemeralIsFull = e;
+            }
+        }
+        if (result.isEmpty() && ephemeralIsFull != null) {
+            throw ephemeralIsFull;
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Orphan messages of all shards.</p>
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> getOrphanMessages(long thresholdTimestampMs) {
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        for (int shard = 0; shard < shards.length; shard++) {
+            Collection<IQueueMessage<ID, DATA>> msgs = shards[shard].getOrphanMessages(thresholdTimestampMs);
+            if (msgs != null) {
+                for (IQueueMessage<ID, DATA> msg : msgs) {
+                    rememberOwner(msg, shard);
+                    result.add(msg);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Shards are paged one after another, each one with its own continuation token: messages are ordered within a
+     * shard, not across shards. The continuation token is {@code <shard-index>:<shard's continuation token>}.
+     * </p>
+     */
+    @Override
+    public OrphanMessagesPage<ID, DATA> getOrphanMessages(long thresholdTimestampMs, int limit,
+            String continuationToken) {
+        int shard = 0;
+        String shardToken = null;
+        if (continuationToken != null && !continuationToken.isEmpty()) {
+            int p = continuationToken.indexOf(':');
+            try {
+                shard = Integer.parseInt(continuationToken.substring(0, Math.max(p, 0)));
+            } catch (NumberFormatException e) {
+                shard = -1;
+            }
+            if (shard < 0 || shard >= shards.length) {
+                throw new IllegalArgumentException("Invalid continuation token [" + continuationToken + "].");
+            }
+            shardToken = p + 1 < continuationToken.length() ? continuationToken.substring(p + 1) : null;
+        }
+        List<IQueueMessage<ID, DATA>> result = new ArrayList<>();
+        while (shard < shards.length && result.size() < limit) {
+            OrphanMessagesPage<ID, DATA> page = shards[shard].getOrphanMessages(thresholdTimestampMs,
+                    limit - result.size(), shardToken);
+            for (IQueueMessage<ID, DATA> msg : page.getMessages()) {
+                rememberOwner(msg, shard);
+                result.add(msg);
+            }
+            if (page.hasMore() && !page.getContinuationToken().equals(shardToken)) {
+                shardToken = page.getContinuationToken();
+            } else {
+                /* this shard is done, continue with the next one */
+                shard++;
+                shardToken = null;
+            }
+        }
+        return new OrphanMessagesPage<>(result,
+                shard < shards.length ? shard + ":" + (shardToken != null ? shardToken : "") : null);
+    }
+
+    /**
+     * Sum of sizes of all shards, computed by the supplied function.
+     *
+     * @param sizeFunc
+     * @return
+     */
+    private int sumSizes(ToIntFunction<IQueue<ID, DATA>> sizeFunc) {
+        long total = 0;
+        for (IQueue<ID, DATA> queue : shards) {
+            int size = sizeFunc.applyAsInt(queue);
+            if (size < 0) {
+                return SIZE_NOT_SUPPORTED;
+            }
+            total += size;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Sum of sizes of all shards.</p>
+     */
+    @Override
+    public int queueSize() {
+        return sumSizes(IQueue::queueSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Sum of ephemeral sizes of all shards.</p>
+     */
+    @Override
+    public int ephemeralSize() {
+        return sumSizes(IQueue::ephemeralSize);
+    }
+}
@@ -0,0 +1,401 @@
+package com.github.ddth.queue.impl;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.OrphanMessagesPage;
+import com.github.ddth.queue.utils.QueueException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tiered implementation of {@link IQueue}: an in-memory queue in front of a persistent queue.
+ *
+ * <p>
+ * Implementation:
+ * <ul>
+ * <li>New messages are put to the {@link #setMemoryQueue(IQueue) memory queue} until it holds
+ * {@link #setBoundary(int) boundary} messages (or it throws {@link QueueException.QueueIsFull}); further messages
+ * spill over to the {@link #setPersistentQueue(IQueue) persistent queue}. While spilled messages are pending, new
+ * messages also go to the persistent queue, so that messages are taken in (mostly) FIFO order.</li>
+ * <li>Consumers take from the memory queue. When it is empty, it is refilled from the persistent queue with a batch
+ * of up to {@link #setRefillBatchSize(int) refill-batch-size} messages. Refilled messages are finished in the
+ * persistent queue once they are in the memory queue.</li>
+ * <li>Ephemeral storage, queue-size and orphan messages of taken messages are those of the memory queue.</li>
+ * <li>Messages held by the memory queue are as volatile as the memory queue itself: up to
+ * {@code boundary + refill-batch-size} messages can be lost if the process crashes.</li>
+ * <li>Memory and persistent queues are managed by the caller: they must be initialized before {@link #init()} and
+ * are not destroyed by {@link #destroy()}. The persistent queue should not be consumed by others.</li>
+ * </ul>
+ * </p>
+ *
+ * <p>Features:</p>
+ * <ul>
+ * <li>Queue-size support: yes, if supported by both memory and persistent queues</li>
+ * <li>Ephemeral storage support: as the memory queue</li>
+ * <li>Ephemeral-size support: as the memory queue</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class TieredQueue<ID, DATA> extends AbstractQueue<ID, DATA> {
+    public final static int DEFAULT_REFILL_BATCH_SIZE = 100;
+
+    private IQueue<ID, DATA> memoryQueue, persistentQueue;
+    private int boundary = 0;
+    private int refillBatchSize = DEFAULT_REFILL_BATCH_SIZE;
+
+    /* number of messages spilled over to the persistent queue and not refilled yet */
+    private final AtomicLong numSpilled = new AtomicLong();
+    private final Lock lockRefill = new ReentrantLock();
+
+    /**
+     * The in-memory queue, in front.
+     *
+     * @return
+     */
+    public IQueue<ID, DATA> getMemoryQueue() {
+        return memoryQueue;
+    }
+
+    /**
+     * The in-memory queue, in front.
+     *
+     * @param memoryQueue
+     * @return
+     */
+    public TieredQueue<ID, DATA> setMemoryQueue(IQueue<ID, DATA> memoryQueue) {
+        this.memoryQueue = memoryQueue;
+        return this;
+    }
+
+    /**
+     * The persistent queue, messages spill over to it.
+     *
+     * @return
+     */
+    public IQueue<ID, DATA> getPersistentQueue() {
+        return persistentQueue;
+    }
+
+    /**
+     * The persistent queue, messages spill over to it.
+     *
+     * @param persistentQueue
+     * @return
+     */
+    public TieredQueue<ID, DATA> setPersistentQueue(IQueue<ID, DATA> persistentQueue) {
+        this.persistentQueue = persistentQueue;
+        return this;
+    }
+
+    /**
+     * Max number of messages held by the memory queue before spilling over to the persistent queue. A value less
+     * than {@code 1} means messages spill over only when the memory queue is full.
+     *
+     * @return
+     */
+    public int getBoundary() {
+        return boundary;
+    }
+
+    /**
+     * Max number of messages held by the memory queue before spilling over to the persistent queue. A value less
+     * than {@code 1} means messages spill over only when the memory queue is full.
+     *
+     * <p>Note: a positive value requires the memory queue to support {@link IQueue#queueSize()}.</p>
+     *
+     * @param boundary
+     * @return
+     */
+    public TieredQueue<ID, DATA> setBoundary(int boundary) {
+        this.boundary = boundary;
+        return this;
+    }
+
+    /**
+     * Max number of messages moved from the persistent queue to the memory queue in one refill (default value
+     * {@link #DEFAULT_REFILL_BATCH_SIZE}).
+     *
+     * @return
+     */
+    public int getRefillBatchSize() {
+        return refillBatchSize;
+    }
+
+    /**
+     * Max number of messages moved from the persistent queue to the memory queue in one refill (default value
+     * {@link #DEFAULT_REFILL_BATCH_SIZE}).
+     *
+     * @param refillBatchSize
+     * @return
+     */
+    public TieredQueue<ID, DATA> setRefillBatchSize(int refillBatchSize) {
+        this.refillBatchSize = refillBatchSize;
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TieredQueue<ID, DATA> init() throws Exception {
+        if (memoryQueue == null || persistentQueue == null) {
+            throw new IllegalStateException("Memory queue and persistent queue are required.");
+        }
+        if (refillBatchSize < 1) {
+            throw new IllegalArgumentException("Invalid refill batch size: " + refillBatchSize);
+        }
+        /* messages left in the persistent queue by a previous run are taken before new ones */
+        numSpilled.set(Math.max(0, persistentQueue.queueSize()));
+        super.init();
+        return this;
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IQueueMessage<ID, DATA> createMessage() {
+        return memoryQueue.createMessage();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IQueueMessage<ID, DATA> createMessage(DATA content) {
+        return memoryQueue.createMessage(content);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IQueueMessage<ID, DATA> createMessage(ID id, DATA content) {
+        return memoryQueue.createMessage(id, content);
+    }
+
+    /**
+     * Number of messages that can be put to the memory queue without exceeding {@link #getBoundary()}.
+     *
+     * @return {@link Integer#MAX_VALUE} if boundary is not set
+     */
+    private int memoryRoom() {
+        if (boundary < 1) {
+            return Integer.MAX_VALUE;
+        }
+        int memorySize = memoryQueue.queueSize();
+        return memorySize < 0 ? 0 : Math.max(0, boundary - memorySize);
+    }
+
+    /**
+     * Put a message to the memory queue.
+     *
+     * @param msg
+     * @param queueCase
+     * @return {@code false} if the memory queue is full
+     */
+    private boolean putToMemory(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+        try {
+            /* message has been prepared by queue/requeue/requeueSilent, it is put as-is */
+            return queueCase == PutToQueueCase.NEW ? memoryQueue.queue(msg) : memoryQueue.requeueSilent(msg);
+        } catch (QueueException.QueueIsFull e) {
+            return false;
+        }
+    }
+
+    /**
+     * Put a message to the persistent queue.
+     *
+     * <p>A re-queued message was taken from the memory queue, not from the persistent queue, whose re-queue path may
+     * reject it (e.g. less-locking JDBC queues only update rows they hold). It is inserted as a new message, as-is:
+     * re-queue count and timestamps are kept.</p>
+     *
+     * @param msg
+     * @param queueCase
+     * @return
+     */
+    private boolean putToPersistent(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+        if (queueCase == PutToQueueCase.NEW) {
+            return persistentQueue.queue(msg);
+        }
+        if (persistentQueue instanceof AbstractQueue) {
+            /* message has been prepared by requeue/requeueSilent, it is put as-is */
+            return ((AbstractQueue<ID, DATA>) persistentQueue).doPutToQueue(msg, PutToQueueCase.NEW);
+        }
+        return persistentQueue.requeueSilent(msg) || persistentQueue.queue(msg);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean doPutToQueue(IQueueMessage<ID, DATA> msg, PutToQueueCase queueCase) {
+        if (queueCase == null) {
+            queueCase = PutToQueueCase.NEW;
+        }
+        if (numSpilled.get() == 0 && memoryRoom() > 0 && putToMemory(msg, queueCase)) {
+            return true;
+        }
+        numSpilled.incrementAndGet();
+        try {
+            boolean result = putToPersistent(msg, queueCase);
+            if (!result) {
+                numSpilled.decrementAndGet();
+            } else if (queueCase != PutToQueueCase.NEW) {
+                /* the message was taken from the memory queue, it stays there as an orphan if not put */
+                memoryQueue.finish(msg);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            numSpilled.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The batch is split: messages fitting into the memory queue go there, the rest spill over to the persistent
+     * queue.</p>
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, DATA>> msgs) {
+        int maxToMemory = numSpilled.get() == 0 ? Math.min(msgs.size(), memoryRoom()) : 0;
+        boolean[] result = new boolean[msgs.size()];
+        int numToMemory = 0;
+        while (numToMemory < maxToMemory && putToMemory(msgs.get(numToMemory), PutToQueueCase.NEW)) {
+            result[numToMemory++] = true;
+        }
+        if (numToMemory < msgs.size()) {
+            int numToPersistent = msgs.size() - numToMemory;
+            numSpilled.addAndGet(numToPersistent);
+            try {
+                boolean[] persistentResult = persistentQueue.queueAll(msgs.subList(numToMemory, msgs.size()));
+                for (int i = 0; i < numToPersistent; i++) {
+                    result[numToMemory + i] = persistentResult[i];
+                    if (!persistentResult[i]) {
+                        numSpilled.decrementAndGet();
+                    }
+                }
+            } catch (RuntimeException e) {
+                numSpilled.addAndGet(-numToPersistent);
+                throw e;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Move a batch of messages from the persistent queue to the memory queue.
+     *
+     * @return number of messages moved
+     */
+    private int refill() {
+        lockRefill.lock();
+        try {
+            int numMsgs = Math.min(refillBatchSize, memoryRoom());
+            if (numMsgs <= 0) {
+                return 0;
+            }
+            Collection<IQueueMessage<ID, DATA>> msgs = persistentQueue.take(numMsgs);
+            int numMoved = 0;
+            for (IQueueMessage<ID, DATA> msg : msgs) {
+                if (putToMemory(msg, PutToQueueCase.REQUEUE_SILENT)) {
+                    numMoved++;
+                    persistentQueue.finish(msg);
+                } else {
+                    persistentQueue.requeueSilent(msg);
+                }
+            }
+            /* clamped at zero: the persistent queue may hold messages not counted at init (size not supported) */
+            numSpilled.accumulateAndGet(numMoved, (current, moved) -> Math.max(0, current - moved));
+            return numMoved;
+        } finally {
+            lockRefill.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void finish(IQueueMessage<ID, DATA> msg) {
+        memoryQueue.finish(msg);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the memory queue is empty, it is refilled from the persistent queue first.</p>
+     */
+    @Override
+    public IQueueMessage<ID, DATA> take() {
+        IQueueMessage<ID, DATA> msg = memoryQueue.take();
+        if (msg == null && refill() > 0) {
+            msg = memoryQueue.take();
+        }
+        return msg;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the memory queue is empty, it is refilled from the persistent queue first.</p>
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> take(int maxMessages) {
+        Collection<IQueueMessage<ID, DATA>> msgs = memoryQueue.take(maxMessages);
+        if ((msgs == null || msgs.isEmpty()) && refill() > 0) {
+            msgs = memoryQueue.take(maxMessages);
+        }
+        return msgs != null ? msgs : new ArrayList<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Collection<IQueueMessage<ID, DATA>> getOrphanMessages(long thresholdTimestampMs) {
+        return memoryQueue.getOrphanMessages(thresholdTimestampMs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OrphanMessagesPage<ID, DATA> getOrphanMessages(long thresholdTimestampMs, int limit,
+            String continuationToken) {
+        return memoryQueue.getOrphanMessages(thresholdTimestampMs, limit, continuationToken);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Sum of sizes of memory and persistent queues.</p>
+     */
+    @Override
+    public int queueSize() {
+        int memorySize = memoryQueue.queueSize();
+        int persistentSize = persistentQueue.queueSize();
+        return memorySize < 0 || persistentSize < 0 ?
+                SIZE_NOT_SUPPORTED :
+                (int) Math.min(Integer.MAX_VALUE, (long) memorySize + persistentSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int ephemeralSize() {
+        return memoryQueue.ephemeralSize();
+    }
+}
@@ -1,9 +1,12 @@
 package com.github.ddth.queue.impl.universal;
 
 import java.sql.Connection;
+import java.sql.Statement;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
@@ -34,6 +37,18 @@ import com.github.ddth.queue.internal.utils.QueueUtils;
  * <li>{@code msg_content}: {@code blob}, message's content, see {@link #COL_CONTENT}</li>
  * </ul>
  *
+ * <p>
+ * Claim options (since v1.0.1, honored by DBMS-specific implementations):
+ * </p>
+ * <ul>
+ * <li>{@link #setSkipLocked(boolean) skip-locked}: claim rows with {@code SELECT...FOR UPDATE SKIP LOCKED}
+ * (PostgreSQL 9.5+, MySQL 8+), concurrent takers grab disjoint rows instead of waiting on the head of the
+ * queue.</li>
+ * <li>Batch claiming: {@link #take(int)} claims up to {@code n} messages in one operation, all of them are handed
+ * out to the caller (nothing is buffered locally, so no claimed message can be mistaken for an orphan while it
+ * waits to be served).</li>
+ * </ul>
+ *
  * @param <T>
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
  * @since 1.0.0
@@ -70,6 +85,8 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
      */
     public final static String COL_CONTENT = "msg_content";
 
+    private boolean skipLocked = false;
+
     /**
      * {@inheritDoc}
      */
@@ -78,6 +95,42 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
         return getTableName();
     }
 
+    /**
+     * If {@code true}, queue messages are claimed using {@code SELECT...FOR UPDATE SKIP LOCKED} (requires PostgreSQL
+     * 9.5+ or MySQL 8+).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isSkipLocked() {
+        return skipLocked;
+    }
+
+    /**
+     * If {@code true}, queue messages are claimed using {@code SELECT...FOR UPDATE SKIP LOCKED} (requires PostgreSQL
+     * 9.5+ or MySQL 8+).
+     *
+     * <p>Note: must be set before calling {@link #init()}.</p>
+     *
+     * @param skipLocked
+     * @return
+     * @since 1.0.1
+     */
+    public BaseLessLockingUniversalJdbcQueue<T, ID> setSkipLocked(boolean skipLocked) {
+        this.skipLocked = skipLocked;
+        return this;
+    }
+
+    /**
+     * Alias of {@link #isSkipLocked()}.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean getSkipLocked() {
+        return isSkipLocked();
+    }
+
     /*----------------------------------------------------------------------*/
 
     private final static String FIELD_COUNT = "num_entries";
@@ -85,10 +138,23 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
     private String SQL_COUNT_EPHEMERAL =
             "SELECT COUNT(*) AS " + FIELD_COUNT + " FROM {0} WHERE " + COL_EPHEMERAL_ID + "!=0";
     private BuildNamedParamsSqlResult NPSQL_GET_ORPHAN_MSGS;
-    private BuildNamedParamsSqlResult NPSQL_DELETE_MSG;
-    private BuildNamedParamsSqlResult NPSQL_PUT_NEW_TO_QUEUE, NPSQL_REPUT_TO_QUEUE;
-    private BuildNamedParamsSqlResult NPSQL_REQUEUE, NPSQL_REQUEUE_SILENT;
-    private BuildNamedParamsSqlResult NPSQL_GET_FIRST_AVAILABLE_MSG, NPSQL_ASSIGN_EPHEMERAL_ID;
+    private BuildNamedParamsSqlResult NPSQL_GET_FIRST_AVAILABLE_MSG;
+
+    /* hot paths use pre-built positional SQLs, see JdbcQueue.executeUpdate(...) */
+    private String SQL_DELETE_MSG = "DELETE FROM {0} WHERE " + COL_QUEUE_ID + "=?";
+    private String SQL_PUT_NEW_TO_QUEUE =
+            "INSERT INTO {0} (" + COL_EPHEMERAL_ID + ", " + COL_ORG_TIMESTAMP + ", " + COL_TIMESTAMP + ", "
+                    + COL_NUM_REQUEUES + ", " + COL_CONTENT + ") VALUES (0, ?, ?, ?, ?)";
+    private String SQL_REPUT_TO_QUEUE =
+            "INSERT INTO {0} (" + COL_QUEUE_ID + ", " + COL_EPHEMERAL_ID + ", " + COL_ORG_TIMESTAMP + ", "
+                    + COL_TIMESTAMP + ", " + COL_NUM_REQUEUES + ", " + COL_CONTENT + ") VALUES (?, 0, ?, ?, ?, ?)";
+    private String SQL_REQUEUE =
+            "UPDATE {0} SET " + COL_EPHEMERAL_ID + "=0, " + COL_NUM_REQUEUES + "=" + COL_NUM_REQUEUES + "+1, "
+                    + COL_TIMESTAMP + "=? WHERE " + COL_QUEUE_ID + "=? AND " + COL_EPHEMERAL_ID + "!=0";
+    private String SQL_REQUEUE_SILENT =
+            "UPDATE {0} SET " + COL_EPHEMERAL_ID + "=0 WHERE " + COL_QUEUE_ID + "=? AND " + COL_EPHEMERAL_ID + "!=0";
+    private String SQL_ASSIGN_EPHEMERAL_ID =
+            "UPDATE {0} SET " + COL_EPHEMERAL_ID + "=? WHERE " + COL_QUEUE_ID + "=? AND " + COL_EPHEMERAL_ID + "=0";
 
     /**
      * {@inheritDoc}
@@ -115,33 +181,17 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
                 .withTableNames(getTableNameEphemeral()).build();
 
         /* remove a message from storage completely */
-        NPSQL_DELETE_MSG = new DefaultNamedParamsSqlBuilders.DeleteBuilder(getTableName(),
-                new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_ID, "=", "dummy")).build();
-
+        SQL_DELETE_MSG = MessageFormat.format(SQL_DELETE_MSG, getTableName());
         /* put a new message (message without pre-set queue id) to queue, assuming column COL_QUEUE_ID is auto-number. */
-        NPSQL_PUT_NEW_TO_QUEUE = new DefaultNamedParamsSqlBuilders.InsertBuilder(getTableName(),
-                MapUtils.createMap(COL_EPHEMERAL_ID, "dummy", COL_ORG_TIMESTAMP, "dummy", COL_TIMESTAMP, "dummy",
-                        COL_NUM_REQUEUES, "dummy", COL_CONTENT, "dummy")).build();
+        SQL_PUT_NEW_TO_QUEUE = MessageFormat.format(SQL_PUT_NEW_TO_QUEUE, getTableName());
         /* put a message with pre-set queue id to queue */
-        NPSQL_REPUT_TO_QUEUE = new DefaultNamedParamsSqlBuilders.InsertBuilder(getTableName(),
-                MapUtils.createMap(COL_QUEUE_ID, "dummy", COL_EPHEMERAL_ID, "dummy", COL_ORG_TIMESTAMP, "dummy",
-                        COL_TIMESTAMP, "dummy", COL_NUM_REQUEUES, "dummy", COL_CONTENT, "dummy")).build();
-
+        SQL_REPUT_TO_QUEUE = MessageFormat.format(SQL_REPUT_TO_QUEUE, getTableName());
         /* requeue a message: move from ephemeral storage to queue storage by resetting value of COL_EPHEMERAL_ID */
-        NPSQL_REQUEUE = new DefaultNamedParamsSqlBuilders.UpdateBuilder(getTableName()).withValues(
-                MapUtils.createMap(COL_EPHEMERAL_ID, new ParamRawExpression("0"), COL_NUM_REQUEUES,
-                        new ParamRawExpression(COL_NUM_REQUEUES + "+1"), COL_TIMESTAMP, "dummy")).withFilter(
-                new DefaultNamedParamsFilters.FilterAnd()
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_ID, "=", "dummy"))
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "!=",
-                                new ParamRawExpression("0")))).build();
+        SQL_REQUEUE = MessageFormat.format(SQL_REQUEUE, getTableName());
         /* requeue a message silently: move from ephemeral storage to queue storage by resetting value of COL_EPHEMERAL_ID */
-        NPSQL_REQUEUE_SILENT = new DefaultNamedParamsSqlBuilders.UpdateBuilder(getTableName())
-                .withValues(MapUtils.createMap(COL_EPHEMERAL_ID, new ParamRawExpression("0"))).withFilter(
-                        new DefaultNamedParamsFilters.FilterAnd()
-                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_ID, "=", "dummy"))
-                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "!=",
-                                        new ParamRawExpression("0")))).build();
+        SQL_REQUEUE_SILENT = MessageFormat.format(SQL_REQUEUE_SILENT, getTableName());
+        /* assign ephemeral-id to message */
+        SQL_ASSIGN_EPHEMERAL_ID = MessageFormat.format(SQL_ASSIGN_EPHEMERAL_ID, getTableName());
 
         /* get first available queue message */
         NPSQL_GET_FIRST_AVAILABLE_MSG = new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
@@ -149,13 +199,6 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
                         new ParamRawExpression("0"))).withLimit(1)
                 .withSorting(isFifo() ? MapUtils.createMap(COL_ORG_TIMESTAMP, Boolean.FALSE) : null)
                 .withTableNames(getTableName()).build();
-        /* assign ephemeral-id to message */
-        NPSQL_ASSIGN_EPHEMERAL_ID = new DefaultNamedParamsSqlBuilders.UpdateBuilder(getTableName())
-                .withValues(MapUtils.createMap(COL_EPHEMERAL_ID, "dummy")).withFilter(
-                        new DefaultNamedParamsFilters.FilterAnd()
-                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_ID, "=", "dummy"))
-                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=",
-                                        new ParamRawExpression("0")))).build();
 
         super.init();
         return this;
@@ -234,36 +277,66 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
         return selectMessages(conn, NPSQL_GET_ORPHAN_MSGS.clause, params);
     }
 
+    static boolean isEmptyId(Object qid) {
+        if (qid instanceof String) {
+            return StringUtils.isBlank(qid.toString());
+        }
+        if (qid instanceof Number) {
+            return ((Number) qid).longValue() == 0;
+        }
+        return qid == null;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     protected boolean putToQueueStorage(Connection conn, IQueueMessage<ID, byte[]> msg) {
         ID qid = msg.getId();
-        boolean isEmptyId = qid == null;
-        if (!isEmptyId) {
-            if (qid instanceof String) {
-                isEmptyId = StringUtils.isBlank(qid.toString());
-            }
-            if (qid instanceof Number) {
-                isEmptyId = ((Number) qid).longValue() == 0;
+        int numRows = isEmptyId(qid) ?
+                executeUpdate(conn, SQL_PUT_NEW_TO_QUEUE, msg.getTimestamp(), msg.getQueueTimestamp(),
+                        msg.getNumRequeues(), msg.getData()) :
+                executeUpdate(conn, SQL_REPUT_TO_QUEUE, qid, msg.getTimestamp(), msg.getQueueTimestamp(),
+                        msg.getNumRequeues(), msg.getData());
+        return numRows > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages are inserted using JDBC batches (one for new messages, one for messages with pre-set queue id).</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] putAllToQueueStorage(Connection conn, List<IQueueMessage<ID, byte[]>> msgs) {
+        List<Integer> newIndexes = new ArrayList<>(), reputIndexes = new ArrayList<>();
+        List<Object[]> newParams = new ArrayList<>(), reputParams = new ArrayList<>();
+        int i = 0;
+        for (IQueueMessage<ID, byte[]> msg : msgs) {
+            ID qid = msg.getId();
+            if (isEmptyId(qid)) {
+                newIndexes.add(i);
+                newParams.add(new Object[] { msg.getTimestamp(), msg.getQueueTimestamp(), msg.getNumRequeues(),
+                        msg.getData() });
+            } else {
+                reputIndexes.add(i);
+                reputParams.add(new Object[] { qid, msg.getTimestamp(), msg.getQueueTimestamp(), msg.getNumRequeues(),
+                        msg.getData() });
             }
+            i++;
         }
-        int numRows;
-        if (isEmptyId) {
-            Map<String, Object> params = MapUtils
-                    .createMap(COL_EPHEMERAL_ID, 0, COL_ORG_TIMESTAMP, msg.getTimestamp(), COL_TIMESTAMP,
-                            msg.getQueueTimestamp(), COL_NUM_REQUEUES, msg.getNumRequeues(), COL_CONTENT,
-                            msg.getData());
-            numRows = getJdbcHelper().execute(conn, NPSQL_PUT_NEW_TO_QUEUE.clause, params);
-        } else {
-            Map<String, Object> params = MapUtils
-                    .createMap(COL_QUEUE_ID, qid, COL_EPHEMERAL_ID, 0, COL_ORG_TIMESTAMP, msg.getTimestamp(),
-                            COL_TIMESTAMP, msg.getQueueTimestamp(), COL_NUM_REQUEUES, msg.getNumRequeues(), COL_CONTENT,
-                            msg.getData());
-            numRows = getJdbcHelper().execute(conn, NPSQL_REPUT_TO_QUEUE.clause, params);
+        boolean[] result = new boolean[msgs.size()];
+        collectBatchResult(result, newIndexes, executeBatchUpdate(conn, SQL_PUT_NEW_TO_QUEUE, newParams));
+        collectBatchResult(result, reputIndexes, executeBatchUpdate(conn, SQL_REPUT_TO_QUEUE, reputParams));
+        return result;
+    }
+
+    /* map results of a JDBC batch back to positions of the messages in the original list */
+    static void collectBatchResult(boolean[] result, List<Integer> indexes, int[] numRows) {
+        for (int i = 0; i < numRows.length; i++) {
+            result[indexes.get(i)] = numRows[i] > 0 || numRows[i] == Statement.SUCCESS_NO_INFO;
         }
-        return numRows > 0;
     }
 
     /*----------------------------------------------------------------------*/
@@ -275,8 +348,7 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
      */
     @Override
     protected void _finishWithRetries(Connection conn, IQueueMessage<ID, byte[]> msg, int numRetries, int maxRetries) {
-        Map<String, Object> params = MapUtils.createMap(COL_QUEUE_ID, msg.getId());
-        executeWithRetries(numRetries, maxRetries, false, conn, NPSQL_DELETE_MSG.clause, params);
+        executeWithRetries(Operation.FINISH, numRetries, maxRetries, false, conn, SQL_DELETE_MSG, msg.getId());
     }
 
     /** There is no overridden implementation of {@link #_queueWithRetries(Connection, IQueueMessage, int, int)} as it has been covered by {@link #putToQueueStorage(Connection, IQueueMessage)} */
@@ -293,8 +365,8 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
     @Override
     protected boolean _requeueWithRetries(Connection conn, IQueueMessage<ID, byte[]> msg, int numRetries,
             int maxRetries) {
-        Map<String, Object> params = MapUtils.createMap(COL_QUEUE_ID, msg.getId(), COL_TIMESTAMP, new Date());
-        int numRows = executeWithRetries(numRetries, maxRetries, false, conn, NPSQL_REQUEUE.clause, params);
+        int numRows = executeWithRetries(Operation.REQUEUE, numRetries, maxRetries, false, conn, SQL_REQUEUE,
+                new Date(), msg.getId());
         return numRows > 0;
     }
 
@@ -310,8 +382,8 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
     @Override
     protected boolean _requeueSilentWithRetries(Connection conn, IQueueMessage<ID, byte[]> msg, int numRetries,
             int maxRetries) {
-        Map<String, Object> params = MapUtils.createMap(COL_QUEUE_ID, msg.getId());
-        int numRows = executeWithRetries(numRetries, maxRetries, false, conn, NPSQL_REQUEUE_SILENT.clause, params);
+        int numRows = executeWithRetries(Operation.REQUEUE_SILENT, numRetries, maxRetries, false, conn,
+                SQL_REQUEUE_SILENT, msg.getId());
         return numRows > 0;
     }
 
@@ -328,7 +400,7 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
     @Override
     protected T _takeWithRetries(Connection conn, int numRetries, int maxRetries) {
         IJdbcHelper jdbcHelper = getJdbcHelper();
-        return executeWithRetries(numRetries, maxRetries, () -> {
+        return executeWithRetries(Operation.TAKE, numRetries, maxRetries, () -> {
             try {
                 jdbcHelper.startTransaction(conn);
                 conn.setTransactionIsolation(getTransactionIsolationLevel());
@@ -337,9 +409,7 @@ public abstract class BaseLessLockingUniversalJdbcQueue<T extends BaseUniversalQ
                 T msg = dbRow != null ? createMessge(dbRow) : null;
                 if (msg != null) {
                     long ephemeralId = QueueUtils.IDGEN.generateId64();
-                    Map<String, Object> params = MapUtils
-                            .createMap(COL_EPHEMERAL_ID, ephemeralId, COL_QUEUE_ID, msg.getId());
-                    int numRows = jdbcHelper.execute(conn, NPSQL_ASSIGN_EPHEMERAL_ID.clause, params);
+                    int numRows = executeUpdate(conn, SQL_ASSIGN_EPHEMERAL_ID, ephemeralId, msg.getId());
                     msg = numRows > 0 ? msg : null;
                 }
 
@@ -10,12 +10,24 @@ import com.github.ddth.dao.utils.DaoException;
 import com.github.ddth.queue.IQueueMessage;
 import com.github.ddth.queue.internal.utils.QueueUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
 
 /**
  * Same as {@link BaseLessLockingUniversalJdbcQueue}, but messages from all queues are stored in one same storage.
@@ -33,6 +45,29 @@ import java.util.Map;
  * <li>{@code msg_content}: {@code blob}, message's content, see {@link #COL_CONTENT}</li>
  * </ul>
  *
+ * <p>
+ * Rotating partitions (since v1.0.1): when {@link #setNumPartitions(int) num-partitions} is greater than {@code 1},
+ * messages are stored in {@code N} tables {@code <table-name>_0 ... <table-name>_(N-1)} (same schema as above) instead
+ * of one:
+ * </p>
+ * <ul>
+ * <li>Time is divided into periods of {@link #setPartitionPeriodMs(long) partition-period}; producers write to the
+ * partition of the current period, {@code (now / partition-period) mod N} (or of the previous period, if the message's
+ * timestamp belongs to it).</li>
+ * <li>Takers look for messages from the oldest partition to the newest one; finish/requeue look up the partition of
+ * the message's timestamp first, or the partition the message was taken from if the message's timestamp does not
+ * select it (remembered by this queue instance).</li>
+ * <li>Partitions other than the current and the previous one that hold no rows of this queue are skipped by takers,
+ * finish/requeue and size/orphan lookups until they are written to again, see {@link #checkDrainedPartitions()}.</li>
+ * <li>Partitions other than the current and the previous one are {@code TRUNCATE}d once they are fully drained (no
+ * rows of any queue), see {@link #reclaimPartitions()}. Disk space and indexes are reclaimed at once, instead of
+ * waiting for row-deleted pages to be vacuumed/purged.</li>
+ * <li>{@code queue_id} must be unique across partition tables: messages created by
+ * {@code Universal*QueueMessage.newInstance(...)} already carry unique ids; auto-number ids must come from one shared
+ * sequence.</li>
+ * <li>Clocks of producers should be synchronized well within one partition-period.</li>
+ * </ul>
+ *
  * @param <T>
  * @author Thanh Nguyen <btnguyen2k@gmail.com>
  * @since 1.0.0
@@ -74,6 +109,31 @@ public abstract class BaseLessLockingUniversalSingleStorageJdbcQueue<T extends B
      */
     public final static String COL_CONTENT = "msg_content";
 
+    /**
+     * Default rotation period of partition tables: 1 hour.
+     *
+     * @since 1.0.1
+     */
+    public final static long DEFAULT_PARTITION_PERIOD_MS = 3600000;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(BaseLessLockingUniversalSingleStorageJdbcQueue.class);
+
+    private int numPartitions = 0;
+    private long partitionPeriodMs = DEFAULT_PARTITION_PERIOD_MS;
+    private long[] reclaimedPeriods;
+    private final AtomicLong nextReclaimCheck = new AtomicLong();
+    /* per partition: the period it was found without rows of this queue */
+    private AtomicLongArray drainedPeriods;
+    private final AtomicLong nextDrainedCheck = new AtomicLong();
+
+    /* partitions to look up if not partitioned, never modified */
+    private final static int[] NO_PARTITIONS = { 0 };
+
+    /* bound of remembered partitions: entries of messages finished via other instances are never removed */
+    private final static int MAX_REMEMBERED_PARTITIONS = 100_000;
+    /* partitions of taken messages whose timestamps do not select the partition they were written to */
+    private final ConcurrentMap<Object, Integer> messagePartitions = new ConcurrentHashMap<>();
+
     /**
      * {@inheritDoc}
      */
@@ -82,30 +142,397 @@ public abstract class BaseLessLockingUniversalSingleStorageJdbcQueue<T extends B
         return getTableName();
     }
 
+    /**
+     * Number of rotating partition tables; {@code 0} or {@code 1} means no partitioning (default).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getNumPartitions() {
+        return numPartitions;
+    }
+
+    /**
+     * Number of rotating partition tables; {@code 0} or {@code 1} means no partitioning (default).
+     *
+     * <p>Note: must be set before calling {@link #init()}.</p>
+     *
+     * @param numPartitions
+     * @return
+     * @since 1.0.1
+     */
+    public BaseLessLockingUniversalSingleStorageJdbcQueue<T, ID> setNumPartitions(int numPartitions) {
+        this.numPartitions = numPartitions;
+        return this;
+    }
+
+    /**
+     * Rotation period of partition tables (default value {@link #DEFAULT_PARTITION_PERIOD_MS}).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getPartitionPeriodMs() {
+        return partitionPeriodMs;
+    }
+
+    /**
+     * Rotation period of partition tables (default value {@link #DEFAULT_PARTITION_PERIOD_MS}).
+     *
+     * @param partitionPeriodMs
+     * @return
+     * @since 1.0.1
+     */
+    public BaseLessLockingUniversalSingleStorageJdbcQueue<T, ID> setPartitionPeriodMs(long partitionPeriodMs) {
+        this.partitionPeriodMs = partitionPeriodMs;
+        return this;
+    }
+
+    /**
+     * Are messages stored in rotating partition tables?
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean isPartitioned() {
+        return numPartitions > 1;
+    }
+
+    /**
+     * Name of a partition table: {@code <table-name>_<partition>}, or {@link #getTableName()} if not partitioned.
+     *
+     * @param partition
+     * @return
+     * @since 1.0.1
+     */
+    protected String getPartitionTableName(int partition) {
+        return isPartitioned() ? getTableName() + "_" + partition : getTableName();
+    }
+
+    /**
+     * Build one SQL statement per partition table.
+     *
+     * @param sqlBuilder
+     *         build the SQL statement for a table name
+     * @return array of SQL statements, indexed by partition
+     * @since 1.0.1
+     */
+    protected String[] buildPartitionSqls(Function<String, String> sqlBuilder) {
+        String[] sqls = new String[Math.max(numPartitions, 1)];
+        for (int i = 0; i < sqls.length; i++) {
+            sqls[i] = sqlBuilder.apply(getPartitionTableName(i));
+        }
+        return sqls;
+    }
+
+    private long currentPeriod() {
+        return System.currentTimeMillis() / partitionPeriodMs;
+    }
+
+    private int partitionOfPeriod(long period) {
+        return isPartitioned() ? (int) Math.floorMod(period, (long) numPartitions) : 0;
+    }
+
+    /* the last period a partition received new messages, as of the given period */
+    private long lastWritePeriod(int partition, long period) {
+        return period - Math.floorMod(period - partition, (long) numPartitions);
+    }
+
+    private boolean isDrained(int partition, long period) {
+        return drainedPeriods.get(partition) > lastWritePeriod(partition, period);
+    }
+
+    /**
+     * Partition that a message is written to: the partition of the previous period if the message's timestamp
+     * belongs to it (so that finish/requeue find it by its timestamp), the partition of the current period otherwise.
+     *
+     * @param msg
+     * @return
+     * @since 1.0.1
+     */
+    protected int getPartitionForWrite(IQueueMessage<ID, byte[]> msg) {
+        if (!isPartitioned()) {
+            return 0;
+        }
+        long period = currentPeriod();
+        Date timestamp = msg.getTimestamp();
+        return timestamp != null && timestamp.getTime() / partitionPeriodMs == period - 1 ?
+                partitionOfPeriod(period - 1) :
+                partitionOfPeriod(period);
+    }
+
+    /**
+     * Partitions to look for queue messages, from the oldest to the newest (i.e. the current) one. Drained
+     * partitions (see {@link #checkDrainedPartitions()}) are skipped.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    protected int[] getPartitionsForTake() {
+        if (!isPartitioned()) {
+            return NO_PARTITIONS;
+        }
+        long period = currentPeriod();
+        int current = partitionOfPeriod(period);
+        int[] result = new int[numPartitions];
+        int numResults = 0;
+        for (int i = 0; i < numPartitions; i++) {
+            int partition = (current + 1 + i) % numPartitions;
+            if (!isDrained(partition, period)) {
+                result[numResults++] = partition;
+            }
+        }
+        return numResults < result.length ? Arrays.copyOf(result, numResults) : result;
+    }
+
+    /**
+     * Same as {@link #getPartitionsForTake()}, drained partitions are re-checked first (at most once per
+     * {@code partition-period / 10}).
+     *
+     * @param conn
+     * @return
+     * @since 1.0.1
+     */
+    protected int[] getPartitionsForTake(Connection conn) {
+        if (isPartitioned()) {
+            long now = System.currentTimeMillis();
+            long next = nextDrainedCheck.get();
+            if (now >= next && nextDrainedCheck.compareAndSet(next, now + Math.max(partitionPeriodMs / 10, 1))) {
+                checkDrainedPartitions(conn);
+            }
+        }
+        return getPartitionsForTake();
+    }
+
+    /**
+     * Partitions to look for a message: the partition the message was taken from if remembered (the remembered
+     * partition is forgotten), or the partition of the message's timestamp, first.
+     *
+     * @param msg
+     * @return
+     * @since 1.0.1
+     */
+    protected int[] getPartitionsForMessage(IQueueMessage<ID, byte[]> msg) {
+        int[] result = getPartitionsForTake();
+        if (result.length > 1) {
+            Object id = msg.getId();
+            Integer hint = id == null || messagePartitions.isEmpty() ? null : messagePartitions.remove(id);
+            Date timestamp = msg.getTimestamp();
+            if (hint == null && timestamp != null) {
+                hint = partitionOfPeriod(timestamp.getTime() / partitionPeriodMs);
+            }
+            for (int i = 0; hint != null && i < result.length; i++) {
+                if (result[i] == hint) {
+                    System.arraycopy(result, 0, result, 1, i);
+                    result[0] = hint;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remember the partition a message was taken from, if the message's timestamp does not select it.
+     *
+     * @param msg
+     * @param partition
+     * @since 1.0.1
+     */
+    protected void rememberPartition(IQueueMessage<ID, byte[]> msg, int partition) {
+        Date timestamp = msg.getTimestamp();
+        if (isPartitioned() && msg.getId() != null && (timestamp == null
+                || partitionOfPeriod(timestamp.getTime() / partitionPeriodMs) != partition)) {
+            if (messagePartitions.size() >= MAX_REMEMBERED_PARTITIONS) {
+                /* forgotten partitions are not lost: finish/requeue falls back to all partitions */
+                messagePartitions.clear();
+            }
+            messagePartitions.put(msg.getId(), partition);
+        }
+    }
+
+    /**
+     * Mark partitions that hold no rows (queue or ephemeral) of this queue as drained: they are skipped by takers,
+     * finish/requeue and size/orphan lookups until they are written to again. The current and the previous partitions
+     * are never marked.
+     *
+     * <p>Called automatically by takers (at most once per {@code partition-period / 10}).</p>
+     *
+     * @return number of partitions marked as drained
+     * @since 1.0.1
+     */
+    public int checkDrainedPartitions() {
+        if (!isPartitioned()) {
+            return 0;
+        }
+        try (Connection conn = getJdbcHelper().getConnection()) {
+            return checkDrainedPartitions(conn);
+        } catch (SQLException e) {
+            throw new DaoException(e);
+        }
+    }
+
+    /**
+     * See {@link #checkDrainedPartitions()}.
+     *
+     * @param conn
+     * @return
+     * @since 1.0.1
+     */
+    protected int checkDrainedPartitions(Connection conn) {
+        IJdbcHelper jdbcHelper = getJdbcHelper();
+        long period = currentPeriod();
+        int current = partitionOfPeriod(period), previous = partitionOfPeriod(period - 1);
+        int numDrained = 0;
+        for (int i = 0; i < numPartitions; i++) {
+            if (i == current || i == previous || isDrained(i, period)) {
+                continue;
+            }
+            if (jdbcHelper.executeSelectOne(conn, SQLS_CHECK_QUEUE_EMPTY[i], getQueueName()) == null) {
+                drainedPeriods.set(i, period);
+                numDrained++;
+            }
+        }
+        return numDrained;
+    }
+
+    /**
+     * {@code TRUNCATE} partition tables that are fully drained (no rows of any queue), except the current and the
+     * previous partitions which may still receive new messages.
+     *
+     * <p>Called automatically after messages are put to queue (at most once per {@code partition-period / 10}); it
+     * can also be called periodically by applications.</p>
+     *
+     * @return number of truncated partition tables
+     * @since 1.0.1
+     */
+    public int reclaimPartitions() {
+        if (!isPartitioned()) {
+            return 0;
+        }
+        try (Connection conn = getJdbcHelper().getConnection()) {
+            return reclaimPartitions(conn);
+        } catch (SQLException e) {
+            throw new DaoException(e);
+        }
+    }
+
+    /**
+     * See {@link #reclaimPartitions()}.
+     *
+     * @param conn
+     * @return
+     * @since 1.0.1
+     */
+    protected synchronized int reclaimPartitions(Connection conn) {
+        IJdbcHelper jdbcHelper = getJdbcHelper();
+        long period = currentPeriod();
+        int current = partitionOfPeriod(period), previous = partitionOfPeriod(period - 1);
+        int numReclaimed = 0;
+        for (int i = 0; i < numPartitions; i++) {
+            if (i == current || i == previous || reclaimedPeriods[i] > lastWritePeriod(i, period)) {
+                continue;
+            }
+            if (jdbcHelper.executeSelectOne(conn, SQL_CHECK_EMPTY[i]) == null) {
+                jdbcHelper.execute(conn, SQL_TRUNCATE[i]);
+                reclaimedPeriods[i] = period;
+                drainedPeriods.set(i, period);
+                numReclaimed++;
+            }
+        }
+        return numReclaimed;
+    }
+
+    private void maybeReclaimPartitions() {
+        if (!isPartitioned()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long next = nextReclaimCheck.get();
+        if (now >= next && nextReclaimCheck.compareAndSet(next, now + Math.max(partitionPeriodMs / 10, 1))) {
+            try {
+                reclaimPartitions();
+            } catch (Exception e) {
+                LOGGER.warn("Error while reclaiming partitions of table [" + getTableName() + "]: " + e.getMessage(),
+                        e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages from all queues share one storage, key format: {@code <table-name>:<queue-name>:queue} or
+     * {@code <table-name>:<queue-name>:ephemeral}.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected String getSizeCounterKey(boolean ephemeral) {
+        return ephemeral ?
+                getTableNameEphemeral() + ":" + getQueueName() + ":ephemeral" :
+                getTableName() + ":" + getQueueName() + ":queue";
+    }
+
     /*----------------------------------------------------------------------*/
 
     private final static String FIELD_COUNT = "num_entries";
-    private String SQL_COUNT =
+    private final static String SQL_COUNT =
             "SELECT COUNT(*) AS " + FIELD_COUNT + " FROM {0} WHERE " + COL_QUEUE_NAME + "=? AND " + COL_EPHEMERAL_ID
                     + "=0";
-    private String SQL_COUNT_EPHEMERAL =
+    private final static String SQL_COUNT_EPHEMERAL =
             "SELECT COUNT(*) AS " + FIELD_COUNT + " FROM {0} WHERE " + COL_QUEUE_NAME + "=? AND " + COL_EPHEMERAL_ID
                     + "!=0";
-    private BuildNamedParamsSqlResult NPSQL_GET_ORPHAN_MSGS;
-    private BuildNamedParamsSqlResult NPSQL_DELETE_MSG;
-    private BuildNamedParamsSqlResult NPSQL_PUT_NEW_TO_QUEUE, NPSQL_REPUT_TO_QUEUE;
-    private BuildNamedParamsSqlResult NPSQL_REQUEUE, NPSQL_REQUEUE_SILENT;
-    private BuildNamedParamsSqlResult NPSQL_GET_FIRST_AVAILABLE_MSG, NPSQL_ASSIGN_EPHEMERAL_ID;
+    private String[] SQLS_COUNT, SQLS_COUNT_EPHEMERAL;
+    private String[] NPSQLS_GET_ORPHAN_MSGS;
+    private String[] NPSQLS_GET_FIRST_AVAILABLE_MSG;
+
+    /* hot paths use pre-built positional SQLs, see JdbcQueue.executeUpdate(...) */
+    private final static String SQL_DELETE_MSG =
+            "DELETE FROM {0} WHERE " + COL_QUEUE_NAME + "=? AND " + COL_QUEUE_ID + "=?";
+    private final static String SQL_PUT_NEW_TO_QUEUE =
+            "INSERT INTO {0} (" + COL_QUEUE_NAME + ", " + COL_EPHEMERAL_ID + ", " + COL_ORG_TIMESTAMP + ", "
+                    + COL_TIMESTAMP + ", " + COL_NUM_REQUEUES + ", " + COL_CONTENT + ") VALUES (?, 0, ?, ?, ?, ?)";
+    private final static String SQL_REPUT_TO_QUEUE =
+            "INSERT INTO {0} (" + COL_QUEUE_NAME + ", " + COL_QUEUE_ID + ", " + COL_EPHEMERAL_ID + ", "
+                    + COL_ORG_TIMESTAMP + ", " + COL_TIMESTAMP + ", " + COL_NUM_REQUEUES + ", " + COL_CONTENT
+                    + ") VALUES (?, ?, 0, ?, ?, ?, ?)";
+    private final static String SQL_REQUEUE =
+            "UPDATE {0} SET " + COL_EPHEMERAL_ID + "=0, " + COL_NUM_REQUEUES + "=" + COL_NUM_REQUEUES + "+1, "
+                    + COL_TIMESTAMP + "=? WHERE " + COL_QUEUE_NAME + "=? AND " + COL_QUEUE_ID + "=? AND "
+                    + COL_EPHEMERAL_ID + "!=0";
+    private final static String SQL_REQUEUE_SILENT =
+            "UPDATE {0} SET " + COL_EPHEMERAL_ID + "=0 WHERE " + COL_QUEUE_NAME + "=? AND " + COL_QUEUE_ID
+                    + "=? AND " + COL_EPHEMERAL_ID + "!=0";
+    private final static String SQL_ASSIGN_EPHEMERAL_ID =
+            "UPDATE {0} SET " + COL_EPHEMERAL_ID + "=? WHERE " + COL_QUEUE_NAME + "=? AND " + COL_QUEUE_ID
+                    + "=? AND " + COL_EPHEMERAL_ID + "=0";
+    private String[] SQLS_DELETE_MSG, SQLS_PUT_NEW_TO_QUEUE, SQLS_REPUT_TO_QUEUE;
+    private String[] SQLS_REQUEUE, SQLS_REQUEUE_SILENT, SQLS_ASSIGN_EPHEMERAL_ID;
+
+    /* partition maintenance */
+    private String[] SQL_CHECK_EMPTY, SQL_TRUNCATE, SQLS_CHECK_QUEUE_EMPTY;
+
+    private static String formatSql(String template, String tableName) {
+        return MessageFormat.format(template, tableName);
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
     public BaseLessLockingUniversalSingleStorageJdbcQueue<T, ID> init() throws Exception {
+        if (isPartitioned() && partitionPeriodMs <= 0) {
+            throw new IllegalStateException("Invalid partition period [" + partitionPeriodMs + "].");
+        }
+        reclaimedPeriods = new long[Math.max(numPartitions, 1)];
+        Arrays.fill(reclaimedPeriods, Long.MIN_VALUE);
+        drainedPeriods = new AtomicLongArray(reclaimedPeriods);
+
         /* count number of queue messages */
-        SQL_COUNT = MessageFormat.format(SQL_COUNT, getTableName());
+        SQLS_COUNT = buildPartitionSqls(table -> formatSql(SQL_COUNT, table));
         /* count number of ephemeral messages */
-        SQL_COUNT_EPHEMERAL = MessageFormat.format(SQL_COUNT_EPHEMERAL, getTableNameEphemeral());
+        SQLS_COUNT_EPHEMERAL = buildPartitionSqls(table -> formatSql(SQL_COUNT_EPHEMERAL, table));
 
         String[] COLUMNS_SELECT = { COL_QUEUE_ID + " AS " + UniversalIdIntQueueMessage.FIELD_QUEUE_ID,
                 COL_ORG_TIMESTAMP + " AS " + UniversalIdIntQueueMessage.FIELD_TIMESTAMP,
@@ -114,82 +541,75 @@ public abstract class BaseLessLockingUniversalSingleStorageJdbcQueue<T extends B
                 COL_CONTENT + " AS " + UniversalIdIntQueueMessage.FIELD_DATA };
 
         /* read orphan messages from ephemeral storage */
-        NPSQL_GET_ORPHAN_MSGS = new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
-                .withFilterWhere(new DefaultNamedParamsFilters.FilterAnd()
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "!=",
-                                new ParamRawExpression("0")))
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_TIMESTAMP, "<", "dummy")))
-                .withTableNames(getTableNameEphemeral()).build();
+        NPSQLS_GET_ORPHAN_MSGS = buildPartitionSqls(
+                table -> new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
+                        .withFilterWhere(new DefaultNamedParamsFilters.FilterAnd()
+                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
+                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "!=",
+                                        new ParamRawExpression("0")))
+                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_TIMESTAMP, "<", "dummy")))
+                        .withTableNames(table).build().clause);
 
         /* remove a message from storage completely */
-        NPSQL_DELETE_MSG = new DefaultNamedParamsSqlBuilders.DeleteBuilder(getTableName(),
-                new DefaultNamedParamsFilters.FilterAnd()
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_ID, "=", "dummy"))).build();
-
+        SQLS_DELETE_MSG = buildPartitionSqls(table -> formatSql(SQL_DELETE_MSG, table));
         /* put a new message (message without pre-set queue id) to queue, assuming column COL_QUEUE_ID is auto-number. */
-        NPSQL_PUT_NEW_TO_QUEUE = new DefaultNamedParamsSqlBuilders.InsertBuilder(getTableName(),
-                MapUtils.createMap(COL_QUEUE_NAME, "dummy", COL_EPHEMERAL_ID, "dummy", COL_ORG_TIMESTAMP, "dummy",
-                        COL_TIMESTAMP, "dummy", COL_NUM_REQUEUES, "dummy", COL_CONTENT, "dummy")).build();
+        SQLS_PUT_NEW_TO_QUEUE = buildPartitionSqls(table -> formatSql(SQL_PUT_NEW_TO_QUEUE, table));
         /* put a message with pre-set queue id to queue */
-        NPSQL_REPUT_TO_QUEUE = new DefaultNamedParamsSqlBuilders.InsertBuilder(getTableName(),
-                MapUtils.createMap(COL_QUEUE_NAME, "dummy", COL_QUEUE_ID, "dummy", COL_EPHEMERAL_ID, "dummy",
-                        COL_ORG_TIMESTAMP, "dummy", COL_TIMESTAMP, "dummy", COL_NUM_REQUEUES, "dummy", COL_CONTENT,
-                        "dummy")).build();
-
+        SQLS_REPUT_TO_QUEUE = buildPartitionSqls(table -> formatSql(SQL_REPUT_TO_QUEUE, table));
         /* requeue a message: move from ephemeral storage to queue storage by resetting value of COL_EPHEMERAL_ID */
-        NPSQL_REQUEUE = new DefaultNamedParamsSqlBuilders.UpdateBuilder(getTableName()).withValues(
-                MapUtils.createMap(COL_EPHEMERAL_ID, new ParamRawExpression("0"), COL_NUM_REQUEUES,
-                        new ParamRawExpression(COL_NUM_REQUEUES + "+1"), COL_TIMESTAMP, "dummy")).withFilter(
-                new DefaultNamedParamsFilters.FilterAnd()
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_ID, "=", "dummy"))
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "!=",
-                                new ParamRawExpression("0")))).build();
+        SQLS_REQUEUE = buildPartitionSqls(table -> formatSql(SQL_REQUEUE, table));
         /* requeue a message silently: move from ephemeral storage to queue storage by resetting value of COL_EPHEMERAL_ID */
-        NPSQL_REQUEUE_SILENT = new DefaultNamedParamsSqlBuilders.UpdateBuilder(getTableName())
-                .withValues(MapUtils.createMap(COL_EPHEMERAL_ID, new ParamRawExpression("0"))).withFilter(
-                        new DefaultNamedParamsFilters.FilterAnd()
-                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
-                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_ID, "=", "dummy"))
-                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "!=",
-                                        new ParamRawExpression("0")))).build();
+        SQLS_REQUEUE_SILENT = buildPartitionSqls(table -> formatSql(SQL_REQUEUE_SILENT, table));
+        /* assign ephemeral-id to message */
+        SQLS_ASSIGN_EPHEMERAL_ID = buildPartitionSqls(table -> formatSql(SQL_ASSIGN_EPHEMERAL_ID, table));
 
         /* get first available queue message */
-        NPSQL_GET_FIRST_AVAILABLE_MSG = new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
-                .withFilterWhere(new DefaultNamedParamsFilters.FilterAnd()
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=",
-                                new ParamRawExpression("0")))).withLimit(1)
-                .withSorting(isFifo() ? MapUtils.createMap(COL_ORG_TIMESTAMP, Boolean.FALSE) : null)
-                .withTableNames(getTableName()).build();
-        /* assign ephemeral-id to message */
-        NPSQL_ASSIGN_EPHEMERAL_ID = new DefaultNamedParamsSqlBuilders.UpdateBuilder(getTableName())
-                .withValues(MapUtils.createMap(COL_EPHEMERAL_ID, "dummy")).withFilter(
-                        new DefaultNamedParamsFilters.FilterAnd()
+        NPSQLS_GET_FIRST_AVAILABLE_MSG = buildPartitionSqls(
+                table -> new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
+                        .withFilterWhere(new DefaultNamedParamsFilters.FilterAnd()
                                 .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
-                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_ID, "=", "dummy"))
                                 .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=",
-                                        new ParamRawExpression("0")))).build();
+                                        new ParamRawExpression("0")))).withLimit(1)
+                        .withSorting(isFifo() ? MapUtils.createMap(COL_ORG_TIMESTAMP, Boolean.FALSE) : null)
+                        .withTableNames(table).build().clause);
+
+        /* check if a partition table is empty (messages of all queues), and truncate it */
+        SQL_CHECK_EMPTY = buildPartitionSqls(table -> "SELECT 1 AS " + FIELD_COUNT + " FROM " + table + " LIMIT 1");
+        SQL_TRUNCATE = buildPartitionSqls(table -> "TRUNCATE TABLE " + table);
+        /* check if a partition table holds no rows of this queue */
+        SQLS_CHECK_QUEUE_EMPTY = buildPartitionSqls(
+                table -> "SELECT 1 AS " + FIELD_COUNT + " FROM " + table + " WHERE " + COL_QUEUE_NAME + "=? LIMIT 1");
+
         super.init();
         return this;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>If partitioned, sizes of all partition tables (except drained ones) are summed up.</p>
      */
     @Override
     protected int queueSize(Connection conn) {
-        return doSize(conn, SQL_COUNT, FIELD_COUNT, getQueueName());
+        int size = 0;
+        for (int partition : getPartitionsForTake(conn)) {
+            size += doSize(conn, SQLS_COUNT[partition], FIELD_COUNT, getQueueName());
+        }
+        return size;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>If partitioned, sizes of all partition tables (except drained ones) are summed up.</p>
      */
     @Override
     protected int ephemeralSize(Connection conn) {
-        return doSize(conn, SQL_COUNT_EPHEMERAL, FIELD_COUNT, getQueueName());
+        int size = 0;
+        for (int partition : getPartitionsForTake(conn)) {
+            size += doSize(conn, SQLS_COUNT_EPHEMERAL[partition], FIELD_COUNT, getQueueName());
+        }
+        return size;
     }
 
     /*----------------------------------------------------------------------*/
@@ -243,39 +663,99 @@ public abstract class BaseLessLockingUniversalSingleStorageJdbcQueue<T extends B
     protected Collection<T> getOrphanMessagesFromEphemeralStorage(Connection conn, long thresholdTimestampMs) {
         Date threshold = new Date(System.currentTimeMillis() - thresholdTimestampMs);
         Map<String, Object> params = MapUtils.createMap(COL_QUEUE_NAME, getQueueName(), COL_TIMESTAMP, threshold);
-        return selectMessages(conn, NPSQL_GET_ORPHAN_MSGS.clause, params);
+        if (NPSQLS_GET_ORPHAN_MSGS.length == 1) {
+            return selectMessages(conn, NPSQLS_GET_ORPHAN_MSGS[0], params);
+        }
+        List<T> result = new ArrayList<>();
+        for (int partition : getPartitionsForTake(conn)) {
+            result.addAll(selectMessages(conn, NPSQLS_GET_ORPHAN_MSGS[partition], params));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If partitioned, drained partition tables are reclaimed after messages have been put.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean doPutToQueue(IQueueMessage<ID, byte[]> msg, PutToQueueCase queueCase) {
+        boolean result = super.doPutToQueue(msg, queueCase);
+        maybeReclaimPartitions();
+        return result;
     }
 
     /**
      * {@inheritDoc}
+     *
+     * <p>If partitioned, drained partition tables are reclaimed after messages have been put.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] doPutAllToQueue(List<IQueueMessage<ID, byte[]>> msgs) {
+        boolean[] result = super.doPutAllToQueue(msgs);
+        maybeReclaimPartitions();
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If partitioned, message is written to the partition selected by
+     * {@link #getPartitionForWrite(IQueueMessage)}.</p>
      */
     @Override
     protected boolean putToQueueStorage(Connection conn, IQueueMessage<ID, byte[]> msg) {
+        int partition = getPartitionForWrite(msg);
         ID qid = msg.getId();
-        boolean isEmptyId = qid == null;
-        if (!isEmptyId) {
-            if (qid instanceof String) {
-                isEmptyId = StringUtils.isBlank(qid.toString());
-            }
-            if (qid instanceof Number) {
-                isEmptyId = ((Number) qid).longValue() == 0;
-            }
+        int numRows = BaseLessLockingUniversalJdbcQueue.isEmptyId(qid) ?
+                executeUpdate(conn, SQLS_PUT_NEW_TO_QUEUE[partition], getQueueName(), msg.getTimestamp(),
+                        msg.getQueueTimestamp(), msg.getNumRequeues(), msg.getData()) :
+                executeUpdate(conn, SQLS_REPUT_TO_QUEUE[partition], getQueueName(), qid, msg.getTimestamp(),
+                        msg.getQueueTimestamp(), msg.getNumRequeues(), msg.getData());
+        return numRows > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages are inserted using JDBC batches (one for new messages, one for messages with pre-set queue id).</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] putAllToQueueStorage(Connection conn, List<IQueueMessage<ID, byte[]>> msgs) {
+        Map<Integer, List<Integer>> partitionIndexes = new LinkedHashMap<>();
+        for (int i = 0; i < msgs.size(); i++) {
+            partitionIndexes.computeIfAbsent(getPartitionForWrite(msgs.get(i)), k -> new ArrayList<>()).add(i);
         }
-        int numRows;
-        if (isEmptyId) {
-            Map<String, Object> params = MapUtils
-                    .createMap(COL_QUEUE_NAME, getQueueName(), COL_EPHEMERAL_ID, 0, COL_ORG_TIMESTAMP,
-                            msg.getTimestamp(), COL_TIMESTAMP, msg.getQueueTimestamp(), COL_NUM_REQUEUES,
-                            msg.getNumRequeues(), COL_CONTENT, msg.getData());
-            numRows = getJdbcHelper().execute(conn, NPSQL_PUT_NEW_TO_QUEUE.clause, params);
-        } else {
-            Map<String, Object> params = MapUtils
-                    .createMap(COL_QUEUE_NAME, getQueueName(), COL_QUEUE_ID, qid, COL_EPHEMERAL_ID, 0,
-                            COL_ORG_TIMESTAMP, msg.getTimestamp(), COL_TIMESTAMP, msg.getQueueTimestamp(),
-                            COL_NUM_REQUEUES, msg.getNumRequeues(), COL_CONTENT, msg.getData());
-            numRows = getJdbcHelper().execute(conn, NPSQL_REPUT_TO_QUEUE.clause, params);
+        boolean[] result = new boolean[msgs.size()];
+        for (Map.Entry<Integer, List<Integer>> entry : partitionIndexes.entrySet()) {
+            int partition = entry.getKey();
+            List<Integer> newIndexes = new ArrayList<>(), reputIndexes = new ArrayList<>();
+            List<Object[]> newParams = new ArrayList<>(), reputParams = new ArrayList<>();
+            for (int i : entry.getValue()) {
+                IQueueMessage<ID, byte[]> msg = msgs.get(i);
+                ID qid = msg.getId();
+                if (BaseLessLockingUniversalJdbcQueue.isEmptyId(qid)) {
+                    newIndexes.add(i);
+                    newParams.add(new Object[] { getQueueName(), msg.getTimestamp(), msg.getQueueTimestamp(),
+                            msg.getNumRequeues(), msg.getData() });
+                } else {
+                    reputIndexes.add(i);
+                    reputParams.add(new Object[] { getQueueName(), qid, msg.getTimestamp(), msg.getQueueTimestamp(),
+                            msg.getNumRequeues(), msg.getData() });
+                }
+            }
+            BaseLessLockingUniversalJdbcQueue.collectBatchResult(result, newIndexes,
+                    executeBatchUpdate(conn, SQLS_PUT_NEW_TO_QUEUE[partition], newParams));
+            BaseLessLockingUniversalJdbcQueue.collectBatchResult(result, reputIndexes,
+                    executeBatchUpdate(conn, SQLS_REPUT_TO_QUEUE[partition], reputParams));
         }
-        return numRows > 0;
+        return result;
     }
 
     /*----------------------------------------------------------------------*/
@@ -287,8 +767,13 @@ public abstract class BaseLessLockingUniversalSingleStorageJdbcQueue<T extends B
      */
     @Override
     protected void _finishWithRetries(Connection conn, IQueueMessage<ID, byte[]> msg, int numRetries, int maxRetries) {
-        Map<String, Object> params = MapUtils.createMap(COL_QUEUE_NAME, getQueueName(), COL_QUEUE_ID, msg.getId());
-        executeWithRetries(numRetries, maxRetries, false, conn, NPSQL_DELETE_MSG.clause, params);
+        for (int partition : getPartitionsForMessage(msg)) {
+            int numRows = executeWithRetries(Operation.FINISH, numRetries, maxRetries, false, conn,
+                    SQLS_DELETE_MSG[partition], getQueueName(), msg.getId());
+            if (numRows > 0) {
+                break;
+            }
+        }
     }
 
     /** There is no overridden implementation of {@link #_queueWithRetries(Connection, IQueueMessage, int, int)} as it has been covered by {@link #putToQueueStorage(Connection, IQueueMessage)} */
@@ -305,10 +790,15 @@ public abstract class BaseLessLockingUniversalSingleStorageJdbcQueue<T extends B
     @Override
     protected boolean _requeueWithRetries(Connection conn, IQueueMessage<ID, byte[]> msg, int numRetries,
             int maxRetries) {
-        Map<String, Object> params = MapUtils
-                .createMap(COL_QUEUE_NAME, getQueueName(), COL_QUEUE_ID, msg.getId(), COL_TIMESTAMP, new Date());
-        int numRows = executeWithRetries(numRetries, maxRetries, false, conn, NPSQL_REQUEUE.clause, params);
-        return numRows > 0;
+        Date now = new Date();
+        for (int partition : getPartitionsForMessage(msg)) {
+            int numRows = executeWithRetries(Operation.REQUEUE, numRetries, maxRetries, false, conn,
+                    SQLS_REQUEUE[partition], now, getQueueName(), msg.getId());
+            if (numRows > 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -323,9 +813,14 @@ public abstract class BaseLessLockingUniversalSingleStorageJdbcQueue<T extends B
     @Override
     protected boolean _requeueSilentWithRetries(Connection conn, IQueueMessage<ID, byte[]> msg, int numRetries,
             int maxRetries) {
-        Map<String, Object> params = MapUtils.createMap(COL_QUEUE_NAME, getQueueName(), COL_QUEUE_ID, msg.getId());
-        int numRows = executeWithRetries(numRetries, maxRetries, false, conn, NPSQL_REQUEUE_SILENT.clause, params);
-        return numRows > 0;
+        for (int partition : getPartitionsForMessage(msg)) {
+            int numRows = executeWithRetries(Operation.REQUEUE_SILENT, numRetries, maxRetries, false, conn,
+                    SQLS_REQUEUE_SILENT[partition], getQueueName(), msg.getId());
+            if (numRows > 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -333,7 +828,7 @@ public abstract class BaseLessLockingUniversalSingleStorageJdbcQueue<T extends B
      *
      * <p>Implementation:</p>
      * <ul>
-     * <li>Get the first available queue message.</li>
+     * <li>Get the first available queue message (partitions are looked up from the oldest to the newest).</li>
      * <li>Generate a unique-id and assign to the message's {@link #COL_EPHEMERAL_ID}.</li>
      * <li>Return the message object.</li>
      * </ul>
@@ -341,21 +836,28 @@ public abstract class BaseLessLockingUniversalSingleStorageJdbcQueue<T extends B
     @Override
     protected T _takeWithRetries(Connection conn, int numRetries, int maxRetries) {
         IJdbcHelper jdbcHelper = getJdbcHelper();
-        return executeWithRetries(numRetries, maxRetries, () -> {
+        int[] partitions = getPartitionsForTake(conn);
+        return executeWithRetries(Operation.TAKE, numRetries, maxRetries, () -> {
             try {
                 jdbcHelper.startTransaction(conn);
                 conn.setTransactionIsolation(getTransactionIsolationLevel());
 
-                Map<String, Object> dbRow = jdbcHelper.executeSelectOne(conn, NPSQL_GET_FIRST_AVAILABLE_MSG.clause,
-                        MapUtils.createMap(COL_QUEUE_NAME, getQueueName()));
-                T msg = dbRow != null ? createMessge(dbRow) : null;
-                if (msg != null) {
-                    long ephemeralId = QueueUtils.IDGEN.generateId64();
-                    Map<String, Object> params = MapUtils
-                            .createMap(COL_QUEUE_NAME, getQueueName(), COL_EPHEMERAL_ID, ephemeralId, COL_QUEUE_ID,
-                                    msg.getId());
-                    int numRows = jdbcHelper.execute(conn, NPSQL_ASSIGN_EPHEMERAL_ID.clause, params);
-                    msg = numRows > 0 ? msg : null;
+                T msg = null;
+                for (int partition : partitions) {
+                    Map<String, Object> dbRow = jdbcHelper
+                            .executeSelectOne(conn, NPSQLS_GET_FIRST_AVAILABLE_MSG[partition],
+                                    MapUtils.createMap(COL_QUEUE_NAME, getQueueName()));
+                    msg = dbRow != null ? createMessge(dbRow) : null;
+                    if (msg != null) {
+                        long ephemeralId = QueueUtils.IDGEN.generateId64();
+                        int numRows = executeUpdate(conn, SQLS_ASSIGN_EPHEMERAL_ID[partition], ephemeralId,
+                                getQueueName(), msg.getId());
+                        msg = numRows > 0 ? msg : null;
+                        if (msg != null) {
+                            rememberPartition(msg, partition);
+                        }
+                        break;
+                    }
                 }
 
                 if (msg == null) {
@@ -0,0 +1,22 @@
+package com.github.ddth.queue.impl.universal;
+
+import com.github.ddth.queue.impl.ClusteredRedisQueue;
+
+/**
+ * Base class for universal clustered Redis queue implementations.
+ *
+ * @param <T>
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public abstract class BaseUniversalClusteredRedisQueue<T extends BaseUniversalQueueMessage<ID>, ID>
+        extends ClusteredRedisQueue<ID, byte[]> {
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public T take() {
+        return (T) super.take();
+    }
+}
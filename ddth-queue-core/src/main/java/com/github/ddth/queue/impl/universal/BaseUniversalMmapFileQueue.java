@@ -0,0 +1,22 @@
+package com.github.ddth.queue.impl.universal;
+
+import com.github.ddth.queue.impl.MmapFileQueue;
+
+/**
+ * Base class for universal memory-mapped file queue implementations.
+ *
+ * @param <T>
+ * @author Thanh Nguyen
+ * @since 1.0.1
+ */
+public abstract class BaseUniversalMmapFileQueue<T extends BaseUniversalQueueMessage<ID>, ID>
+        extends MmapFileQueue<ID, byte[]> {
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public T take() {
+        return (T) super.take();
+    }
+}
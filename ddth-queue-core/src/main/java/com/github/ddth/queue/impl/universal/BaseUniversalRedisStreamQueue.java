@@ -0,0 +1,22 @@
+package com.github.ddth.queue.impl.universal;
+
+import com.github.ddth.queue.impl.RedisStreamQueue;
+
+/**
+ * Base class for universal Redis Stream queue implementations.
+ *
+ * @param <T>
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public abstract class BaseUniversalRedisStreamQueue<T extends BaseUniversalQueueMessage<ID>, ID>
+        extends RedisStreamQueue<ID, byte[]> {
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public T take() {
+        return (T) super.take();
+    }
+}
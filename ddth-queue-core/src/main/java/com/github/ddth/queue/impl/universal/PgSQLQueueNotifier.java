@@ -0,0 +1,255 @@
+package com.github.ddth.queue.impl.universal;
+
+import com.github.ddth.dao.jdbc.IJdbcHelper;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wake up PostgreSQL queue consumers using {@code LISTEN/NOTIFY}.
+ *
+ * <ul>
+ * <li>Producers call {@link #publish(Connection, String)} after putting messages to queue storage; the notification
+ * is sent with {@code pg_notify(channel, key)} on the producer's connection, hence it is delivered when the
+ * producer's transaction commits (PostgreSQL coalesces identical notifications within one transaction).</li>
+ * <li>A dedicated listener thread holds one connection, issues {@code LISTEN channel} and wakes up consumers that are
+ * blocked in {@link #await(String, long, long)} for the notified key.</li>
+ * <li>If the listener connection is broken, it is re-established and all waiting consumers are woken up (they
+ * re-check the queue), so notifications lost meanwhile only cost one extra poll.</li>
+ * <li>One notifier can be shared among many queues: each queue uses its own key (e.g. table name).</li>
+ * </ul>
+ *
+ * <p>
+ * Note: the listener connection is unwrapped to {@link PGConnection}; if a connection pool is used, it must allow
+ * unwrapping to the underlying connection. PostgreSQL JDBC driver is required at runtime.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class PgSQLQueueNotifier implements AutoCloseable {
+    public final static String DEFAULT_CHANNEL = "ddth_queue";
+    public final static int DEFAULT_LISTEN_TIMEOUT_MS = 1000;
+    public final static long DEFAULT_RECONNECT_DELAY_MS = 1000;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(PgSQLQueueNotifier.class);
+
+    private final static class Signal {
+        private long version;
+    }
+
+    private final IJdbcHelper jdbcHelper;
+    private final String channel;
+    private int listenTimeoutMs = DEFAULT_LISTEN_TIMEOUT_MS;
+    private long reconnectDelayMs = DEFAULT_RECONNECT_DELAY_MS;
+    private final ConcurrentMap<String, Signal> signals = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+    private Thread listenerThread;
+
+    public PgSQLQueueNotifier(IJdbcHelper jdbcHelper) {
+        this(jdbcHelper, DEFAULT_CHANNEL);
+    }
+
+    public PgSQLQueueNotifier(IJdbcHelper jdbcHelper, String channel) {
+        if (!channel.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid channel name [" + channel + "].");
+        }
+        this.jdbcHelper = jdbcHelper;
+        this.channel = channel;
+    }
+
+    /**
+     * Name of the {@code LISTEN/NOTIFY} channel.
+     *
+     * @return
+     */
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * Max time (in milliseconds) the listener thread waits for notifications in one round.
+     *
+     * @return
+     */
+    public int getListenTimeoutMs() {
+        return listenTimeoutMs;
+    }
+
+    /**
+     * Max time (in milliseconds) the listener thread waits for notifications in one round.
+     *
+     * @param listenTimeoutMs
+     * @return
+     */
+    public PgSQLQueueNotifier setListenTimeoutMs(int listenTimeoutMs) {
+        this.listenTimeoutMs = listenTimeoutMs;
+        return this;
+    }
+
+    /**
+     * Delay (in milliseconds) before re-establishing a broken listener connection.
+     *
+     * @return
+     */
+    public long getReconnectDelayMs() {
+        return reconnectDelayMs;
+    }
+
+    /**
+     * Delay (in milliseconds) before re-establishing a broken listener connection.
+     *
+     * @param reconnectDelayMs
+     * @return
+     */
+    public PgSQLQueueNotifier setReconnectDelayMs(long reconnectDelayMs) {
+        this.reconnectDelayMs = reconnectDelayMs;
+        return this;
+    }
+
+    /**
+     * Start the listener thread.
+     *
+     * @return
+     */
+    public synchronized PgSQLQueueNotifier init() {
+        if (!running) {
+            running = true;
+            listenerThread = new Thread(this::listenLoop, "pgsql-queue-notifier-" + channel);
+            listenerThread.setDaemon(true);
+            listenerThread.start();
+        }
+        return this;
+    }
+
+    /**
+     * Stop the listener thread and wake up all waiting consumers.
+     */
+    public synchronized void destroy() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            try {
+                listenerThread.join(listenTimeoutMs + reconnectDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            listenerThread = null;
+        }
+        signalAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        destroy();
+    }
+
+    /*----------------------------------------------------------------------*/
+
+    /**
+     * Send a notification for {@code key} on the supplied connection. If the connection is in a transaction, the
+     * notification is delivered when the transaction commits.
+     *
+     * @param conn
+     * @param key
+     */
+    public void publish(Connection conn, String key) {
+        jdbcHelper.executeSelectOne(conn, "SELECT pg_notify(?, ?)", channel, key);
+    }
+
+    /**
+     * Get current version of the signal of {@code key}; pass it to {@link #await(String, long, long)} to wait for the
+     * next notification.
+     *
+     * <p>Consumer pattern: read version, check the queue, if empty then await.</p>
+     *
+     * @param key
+     * @return
+     */
+    public long version(String key) {
+        Signal signal = signals.computeIfAbsent(key, k -> new Signal());
+        synchronized (signal) {
+            return signal.version;
+        }
+    }
+
+    /**
+     * Block until a notification for {@code key} arrives after {@code version} was read, or the wait time elapses.
+     *
+     * @param key
+     * @param version
+     * @param timeoutMs
+     * @return {@code true} if notified, {@code false} if the wait time elapsed
+     * @throws InterruptedException
+     */
+    public boolean await(String key, long version, long timeoutMs) throws InterruptedException {
+        Signal signal = signals.computeIfAbsent(key, k -> new Signal());
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (signal) {
+            while (signal.version == version) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                signal.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    private void signal(String key) {
+        Signal signal = signals.get(key);
+        if (signal != null) {
+            synchronized (signal) {
+                signal.version++;
+                signal.notifyAll();
+            }
+        }
+    }
+
+    private void signalAll() {
+        signals.keySet().forEach(this::signal);
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection conn = jdbcHelper.getConnection()) {
+                conn.setAutoCommit(true);
+                try (Statement stm = conn.createStatement()) {
+                    stm.execute("LISTEN " + channel);
+                }
+                PGConnection pgConn = conn.unwrap(PGConnection.class);
+                /* notifications may have been missed while (re)connecting */
+                signalAll();
+                while (running) {
+                    PGNotification[] notifications = pgConn.getNotifications(listenTimeoutMs);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            signal(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    LOGGER.warn("Listener connection on channel [" + channel + "] failed: " + e.getMessage(), e);
+                    /* wake up consumers so that they re-check the queue while the listener is re-connecting */
+                    signalAll();
+                    try {
+                        Thread.sleep(reconnectDelayMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.github.ddth.queue.impl.universal.idint;
 
 import java.sql.Connection;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import com.github.ddth.commons.utils.MapUtils;
@@ -9,8 +11,10 @@ import com.github.ddth.dao.jdbc.IJdbcHelper;
 import com.github.ddth.dao.jdbc.utils.DefaultNamedParamsFilters;
 import com.github.ddth.dao.jdbc.utils.DefaultNamedParamsSqlBuilders;
 import com.github.ddth.dao.utils.DaoException;
+import com.github.ddth.queue.IQueueMessage;
 import com.github.ddth.queue.impl.universal.UniversalIdIntQueueMessage;
 import com.github.ddth.queue.internal.utils.QueueUtils;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * Same as {@link UniversalJdbcQueue}, but using a "less-locking" algorithm - specific for MySQL,
@@ -22,6 +26,8 @@ import com.github.ddth.queue.internal.utils.QueueUtils;
  */
 public class LessLockingUniversalMySQLQueue extends AbstractLessLockingUniversalJdbcQueue {
     private String SQL_UPDATE_EPHEMERAL_ID_TAKE, SQL_GET_MSG_BY_EPHEPERAL_ID;
+    private String SQL_UPDATE_EPHEMERAL_ID_TAKE_MANY, SQL_GET_MSGS_BY_EPHEPERAL_ID;
+    private String SQL_SELECT_TAKE_SKIP_LOCKED, SQL_ASSIGN_EPHEMERAL_ID_BY_QUEUE_ID;
 
     /**
      * {@inheritDoc}
@@ -43,6 +49,25 @@ public class LessLockingUniversalMySQLQueue extends AbstractLessLockingUniversal
                 .withFilterWhere(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=", "dummy"))
                 .withTableNames(getTableNameEphemeral()).build().clause;
 
+        /* update value of column COL_EPHEMERAL_ID for taking a batch of queue messages off */
+        SQL_UPDATE_EPHEMERAL_ID_TAKE_MANY = MessageFormat
+                .format("UPDATE {0} SET {1}=? WHERE {1}=0" + (getFifo() ? (" ORDER BY " + COL_ORG_TIMESTAMP) : "")
+                        + " LIMIT ?", getTableName(), COL_EPHEMERAL_ID);
+        /* get all queue messages by COL_EPHEMERAL_ID */
+        SQL_GET_MSGS_BY_EPHEPERAL_ID = new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
+                .withFilterWhere(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=", "dummy"))
+                .withSorting(getFifo() ? MapUtils.createMap(COL_ORG_TIMESTAMP, Boolean.FALSE) : null)
+                .withTableNames(getTableNameEphemeral()).build().clause;
+
+        /* lock a batch of queue messages, skipping rows already locked by other takers (MySQL 8+) */
+        SQL_SELECT_TAKE_SKIP_LOCKED = MessageFormat.format(
+                "SELECT {0} FROM {1} WHERE {2}=0" + (getFifo() ? (" ORDER BY " + COL_ORG_TIMESTAMP) : "")
+                        + " LIMIT ? FOR UPDATE SKIP LOCKED", StringUtils.join(COLUMNS_SELECT, ","), getTableName(),
+                COL_EPHEMERAL_ID);
+        /* assign ephemeral-id to a locked message; run as a JDBC batch, the SQL is the same for any batch size */
+        SQL_ASSIGN_EPHEMERAL_ID_BY_QUEUE_ID = MessageFormat
+                .format("UPDATE {0} SET {1}=? WHERE {2}=?", getTableName(), COL_EPHEMERAL_ID, COL_QUEUE_ID);
+
         super.init();
         return this;
     }
@@ -52,17 +77,22 @@ public class LessLockingUniversalMySQLQueue extends AbstractLessLockingUniversal
      *
      * <p>Implementation:</p>
      * <ul>
-     * <li>Generate a unique-id and assign to the message's {@link #COL_EPHEMERAL_ID} using {@code UPDATE...ORDER BY...LIMIT 1}</li>
+     * <li>Generate a unique-id and assign to the message's {@link #COL_EPHEMERAL_ID} using {@code UPDATE...ORDER BY...LIMIT 1}
+     * (or {@code SELECT...FOR UPDATE SKIP LOCKED} followed by {@code UPDATE...WHERE}, if {@link #isSkipLocked()})</li>
      * <li>Get the queue message that has been assigned the ephemeral-id and return it</li>
      * </ul>
      */
     @Override
     protected UniversalIdIntQueueMessage _takeWithRetries(Connection conn, int numRetries, int maxRetries) {
+        if (isSkipLocked()) {
+            List<UniversalIdIntQueueMessage> msgs = _takeManyWithRetries(conn, 1, numRetries, maxRetries);
+            return msgs.isEmpty() ? null : msgs.get(0);
+        }
         IJdbcHelper jdbcHelper = getJdbcHelper();
-        return executeWithRetries(numRetries, maxRetries, () -> {
+        return executeWithRetries(Operation.TAKE, numRetries, maxRetries, () -> {
             try {
                 long ephemeralId = QueueUtils.IDGEN.generateId64();
-                int numRows = jdbcHelper.execute(conn, SQL_UPDATE_EPHEMERAL_ID_TAKE, ephemeralId);
+                int numRows = executeUpdate(conn, SQL_UPDATE_EPHEMERAL_ID_TAKE, ephemeralId);
                 if (numRows > 0) {
                     Map<String, Object> dbRow = jdbcHelper.executeSelectOne(conn, SQL_GET_MSG_BY_EPHEPERAL_ID,
                             MapUtils.createMap(COL_EPHEMERAL_ID, ephemeralId));
@@ -75,4 +105,77 @@ public class LessLockingUniversalMySQLQueue extends AbstractLessLockingUniversal
             }
         });
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Implementation:</p>
+     * <ul>
+     * <li>Generate a unique-id and assign to {@link #COL_EPHEMERAL_ID} of up to {@code maxMessages} messages using {@code UPDATE...ORDER BY...LIMIT n}
+     * (or {@code SELECT...FOR UPDATE SKIP LOCKED} followed by a batch of {@code UPDATE...WHERE}, if {@link #isSkipLocked()})</li>
+     * <li>Get all queue messages that have been assigned the ephemeral-id and return them</li>
+     * </ul>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected List<UniversalIdIntQueueMessage> _takeManyWithRetries(Connection conn, int maxMessages, int numRetries,
+            int maxRetries) {
+        if (isSkipLocked()) {
+            return executeWithRetries(Operation.TAKE_MANY, numRetries, maxRetries,
+                    () -> claimSkipLocked(conn, maxMessages));
+        }
+        IJdbcHelper jdbcHelper = getJdbcHelper();
+        return executeWithRetries(Operation.TAKE_MANY, numRetries, maxRetries, () -> {
+            try {
+                long ephemeralId = QueueUtils.IDGEN.generateId64();
+                int numRows = executeUpdate(conn, SQL_UPDATE_EPHEMERAL_ID_TAKE_MANY, ephemeralId, maxMessages);
+                return numRows > 0 ?
+                        selectMessages(conn, SQL_GET_MSGS_BY_EPHEPERAL_ID,
+                                MapUtils.createMap(COL_EPHEMERAL_ID, ephemeralId)) :
+                        new ArrayList<>();
+            } catch (Exception e) {
+                jdbcHelper.rollbackTransaction(conn);
+                throw e instanceof DaoException ? (DaoException) e : new DaoException(e);
+            }
+        });
+    }
+
+    /**
+     * Claim up to {@code maxMessages} queue messages within one transaction: lock rows with
+     * {@code SELECT...FOR UPDATE SKIP LOCKED}, then assign them a unique ephemeral-id (one JDBC batch).
+     *
+     * @param conn
+     * @param maxMessages
+     * @return
+     * @since 1.0.1
+     */
+    protected List<UniversalIdIntQueueMessage> claimSkipLocked(Connection conn, int maxMessages) {
+        IJdbcHelper jdbcHelper = getJdbcHelper();
+        try {
+            jdbcHelper.startTransaction(conn);
+            conn.setTransactionIsolation(getTransactionIsolationLevel());
+
+            List<UniversalIdIntQueueMessage> result = new ArrayList<>();
+            for (Map<String, Object> dbRow : jdbcHelper.executeSelect(conn, SQL_SELECT_TAKE_SKIP_LOCKED, maxMessages)) {
+                result.add(createMessge(dbRow));
+            }
+            if (result.isEmpty()) {
+                jdbcHelper.rollbackTransaction(conn);
+                return result;
+            }
+
+            long ephemeralId = QueueUtils.IDGEN.generateId64();
+            List<Object[]> paramsList = new ArrayList<>(result.size());
+            for (IQueueMessage<?, ?> msg : result) {
+                paramsList.add(new Object[] { ephemeralId, msg.getId() });
+            }
+            executeBatchUpdate(conn, SQL_ASSIGN_EPHEMERAL_ID_BY_QUEUE_ID, paramsList);
+            jdbcHelper.commitTransaction(conn);
+            return result;
+        } catch (Exception e) {
+            jdbcHelper.rollbackTransaction(conn);
+            throw e instanceof DaoException ? (DaoException) e : new DaoException(e);
+        }
+    }
 }
@@ -13,7 +13,11 @@ import com.github.ddth.queue.impl.JdbcQueueFactory;
 public class LessLockingUniversalSingleStorageMySQLQueueFactory
         extends JdbcQueueFactory<LessLockingUniversalSingleStorageMySQLQueue, Long, byte[]> {
     public final static String SPEC_FIELD_FIFO = "fifo";
+    public final static String SPEC_FIELD_NUM_PARTITIONS = "num_partitions";
+    public final static String SPEC_FIELD_PARTITION_PERIOD_MS = "partition_period_ms";
     private boolean defaultFifo = true;
+    private int defaultNumPartitions = 0;
+    private long defaultPartitionPeriodMs = LessLockingUniversalSingleStorageMySQLQueue.DEFAULT_PARTITION_PERIOD_MS;
 
     /**
      * @return
@@ -39,6 +43,46 @@ public class LessLockingUniversalSingleStorageMySQLQueueFactory
         this.defaultFifo = defaultFifo;
     }
 
+    /**
+     * Number of rotating partition tables, passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public int getDefaultNumPartitions() {
+        return defaultNumPartitions;
+    }
+
+    /**
+     * Number of rotating partition tables, passed to all queues created by this factory.
+     *
+     * @param defaultNumPartitions
+     * @since 1.0.1
+     */
+    public void setDefaultNumPartitions(int defaultNumPartitions) {
+        this.defaultNumPartitions = defaultNumPartitions;
+    }
+
+    /**
+     * Rotation period of partition tables, passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public long getDefaultPartitionPeriodMs() {
+        return defaultPartitionPeriodMs;
+    }
+
+    /**
+     * Rotation period of partition tables, passed to all queues created by this factory.
+     *
+     * @param defaultPartitionPeriodMs
+     * @since 1.0.1
+     */
+    public void setDefaultPartitionPeriodMs(long defaultPartitionPeriodMs) {
+        this.defaultPartitionPeriodMs = defaultPartitionPeriodMs;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -50,6 +94,15 @@ public class LessLockingUniversalSingleStorageMySQLQueueFactory
         if (fifo != null) {
             queue.setFifo(fifo.booleanValue());
         }
+        queue.setNumPartitions(defaultNumPartitions).setPartitionPeriodMs(defaultPartitionPeriodMs);
+        Integer numPartitions = spec.getField(SPEC_FIELD_NUM_PARTITIONS, Integer.class);
+        if (numPartitions != null) {
+            queue.setNumPartitions(numPartitions.intValue());
+        }
+        Long partitionPeriodMs = spec.getField(SPEC_FIELD_PARTITION_PERIOD_MS, Long.class);
+        if (partitionPeriodMs != null) {
+            queue.setPartitionPeriodMs(partitionPeriodMs.longValue());
+        }
         return queue;
     }
 }
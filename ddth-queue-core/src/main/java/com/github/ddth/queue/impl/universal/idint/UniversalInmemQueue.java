@@ -36,4 +36,17 @@ public class UniversalInmemQueue extends BaseUniversalInmemQueue<UniversalIdIntQ
         super.init();
         return this;
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Message ids are {@code long}s, so a {@link LongIdEphemeralStorage} is used to avoid allocating a map node
+     * per in-flight message.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected EphemeralStorage<Long, byte[]> createEphemeralStorage(int initialCapacity) {
+        return new LongIdEphemeralStorage<>(initialCapacity);
+    }
 }
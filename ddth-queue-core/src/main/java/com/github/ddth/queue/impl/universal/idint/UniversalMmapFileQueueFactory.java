@@ -0,0 +1,21 @@
+package com.github.ddth.queue.impl.universal.idint;
+
+import com.github.ddth.queue.QueueSpec;
+import com.github.ddth.queue.impl.MmapFileQueueFactory;
+
+/**
+ * Factory to create {@link UniversalMmapFileQueue} instances.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class UniversalMmapFileQueueFactory extends MmapFileQueueFactory<UniversalMmapFileQueue, Long, byte[]> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected UniversalMmapFileQueue createQueueInstance(final QueueSpec spec) {
+        UniversalMmapFileQueue queue = new UniversalMmapFileQueue();
+        return queue;
+    }
+}
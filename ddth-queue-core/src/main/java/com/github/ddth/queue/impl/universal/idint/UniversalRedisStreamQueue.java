@@ -0,0 +1,43 @@
+package com.github.ddth.queue.impl.universal.idint;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.impl.RedisStreamQueue;
+import com.github.ddth.queue.impl.universal.BaseUniversalRedisStreamQueue;
+import com.github.ddth.queue.impl.universal.UniversalIdIntQueueMessage;
+import com.github.ddth.queue.impl.universal.UniversalIdIntQueueMessageFactory;
+
+/**
+ * Universal Redis Stream implementation of {@link IQueue}.
+ *
+ * <p>
+ * Queue and Take {@link UniversalIdIntQueueMessage}s.
+ * </p>
+ *
+ * <p>
+ * Implementation: see {@link RedisStreamQueue}.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class UniversalRedisStreamQueue extends BaseUniversalRedisStreamQueue<UniversalIdIntQueueMessage, Long> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public UniversalRedisStreamQueue init() throws Exception {
+        if (getMessageFactory() == null) {
+            setMessageFactory(UniversalIdIntQueueMessageFactory.INSTANCE);
+        }
+        super.init();
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected UniversalIdIntQueueMessage deserialize(byte[] msgData) {
+        return deserialize(msgData, UniversalIdIntQueueMessage.class);
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.ddth.queue.impl.universal.idint;
+
+import com.github.ddth.queue.QueueSpec;
+import com.github.ddth.queue.impl.RedisStreamQueueFactory;
+
+/**
+ * Factory to create {@link UniversalRedisStreamQueue} instances.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class UniversalRedisStreamQueueFactory
+        extends RedisStreamQueueFactory<UniversalRedisStreamQueue, Long, byte[]> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected UniversalRedisStreamQueue createQueueInstance(final QueueSpec spec) {
+        UniversalRedisStreamQueue queue = new UniversalRedisStreamQueue();
+        return queue;
+    }
+}
@@ -12,7 +12,9 @@ import com.github.ddth.queue.impl.JdbcQueueFactory;
 public class LessLockingUniversalMySQLQueueFactory
         extends JdbcQueueFactory<LessLockingUniversalMySQLQueue, String, byte[]> {
     public final static String SPEC_FIELD_FIFO = "fifo";
+    public final static String SPEC_FIELD_SKIP_LOCKED = "skip_locked";
     private boolean defaultFifo = true;
+    private boolean defaultSkipLocked = false;
 
     /**
      * @return
@@ -39,6 +41,26 @@ public class LessLockingUniversalMySQLQueueFactory
         this.defaultFifo = defaultFifo;
     }
 
+    /**
+     * Claim messages using {@code SELECT...FOR UPDATE SKIP LOCKED}, passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean getDefaultSkipLocked() {
+        return defaultSkipLocked;
+    }
+
+    /**
+     * Claim messages using {@code SELECT...FOR UPDATE SKIP LOCKED}, passed to all queues created by this factory.
+     *
+     * @param defaultSkipLocked
+     * @since 1.0.1
+     */
+    public void setDefaultSkipLocked(boolean defaultSkipLocked) {
+        this.defaultSkipLocked = defaultSkipLocked;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -50,6 +72,11 @@ public class LessLockingUniversalMySQLQueueFactory
         if (fifo != null) {
             queue.setFifo(fifo.booleanValue());
         }
+        queue.setSkipLocked(defaultSkipLocked);
+        Boolean skipLocked = spec.getField(SPEC_FIELD_SKIP_LOCKED, Boolean.class);
+        if (skipLocked != null) {
+            queue.setSkipLocked(skipLocked.booleanValue());
+        }
         return queue;
     }
 }
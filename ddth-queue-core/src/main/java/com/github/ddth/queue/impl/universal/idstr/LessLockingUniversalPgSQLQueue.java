@@ -2,16 +2,23 @@ package com.github.ddth.queue.impl.universal.idstr;
 
 import java.sql.Connection;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import com.github.ddth.commons.utils.MapUtils;
 import com.github.ddth.dao.jdbc.IJdbcHelper;
 import com.github.ddth.dao.jdbc.utils.DefaultNamedParamsFilters;
 import com.github.ddth.dao.jdbc.utils.DefaultNamedParamsSqlBuilders;
 import com.github.ddth.dao.utils.DaoException;
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.impl.universal.PgSQLQueueNotifier;
 import com.github.ddth.queue.impl.universal.UniversalIdStrQueueMessage;
 import com.github.ddth.queue.impl.universal.idint.UniversalJdbcQueue;
 import com.github.ddth.queue.internal.utils.QueueUtils;
+import com.github.ddth.queue.utils.QueueException;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * Same as {@link UniversalJdbcQueue}, but using a "less-locking" algorithm - specific for PgSQL,
@@ -23,6 +30,71 @@ import com.github.ddth.queue.internal.utils.QueueUtils;
  */
 public class LessLockingUniversalPgSQLQueue extends AbstractLessLockingUniversalJdbcQueue {
     private String SQL_UPDATE_EPHEMERAL_ID_TAKE, SQL_GET_MSG_BY_EPHEPERAL_ID;
+    private String SQL_UPDATE_EPHEMERAL_ID_TAKE_MANY, SQL_GET_MSGS_BY_EPHEPERAL_ID;
+
+    /**
+     * Max time (in milliseconds) a blocked {@link #take(long, TimeUnit)} waits for a notification before re-checking
+     * the queue, in case a notification was missed.
+     *
+     * @since 1.0.1
+     */
+    public final static long NOTIFY_RECHECK_MS = 1000;
+
+    private String notifyChannel;
+    private PgSQLQueueNotifier notifier;
+    private boolean myOwnNotifier = false;
+
+    /**
+     * Name of the {@code LISTEN/NOTIFY} channel used to wake up blocked consumers ({@code null} or empty: disabled).
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getNotifyChannel() {
+        return notifyChannel;
+    }
+
+    /**
+     * Name of the {@code LISTEN/NOTIFY} channel used to wake up blocked consumers ({@code null} or empty: disabled).
+     * If set, a {@link PgSQLQueueNotifier} (with its own listener connection) is created when the queue is initialized.
+     *
+     * <p>Note: must be set before calling {@link #init()}.</p>
+     *
+     * @param notifyChannel
+     * @return
+     * @since 1.0.1
+     */
+    public LessLockingUniversalPgSQLQueue setNotifyChannel(String notifyChannel) {
+        this.notifyChannel = notifyChannel;
+        return this;
+    }
+
+    /**
+     * The notifier used to wake up blocked consumers.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public PgSQLQueueNotifier getNotifier() {
+        return notifier;
+    }
+
+    /**
+     * Use a pre-created (and shared) notifier to wake up blocked consumers. The notifier is not destroyed when this
+     * queue is destroyed.
+     *
+     * @param notifier
+     * @return
+     * @since 1.0.1
+     */
+    public LessLockingUniversalPgSQLQueue setNotifier(PgSQLQueueNotifier notifier) {
+        if (myOwnNotifier && this.notifier != null) {
+            this.notifier.destroy();
+        }
+        this.notifier = notifier;
+        myOwnNotifier = false;
+        return this;
+    }
 
     /**
      * {@inheritDoc}
@@ -35,37 +107,180 @@ public class LessLockingUniversalPgSQLQueue extends AbstractLessLockingUniversal
                 COL_NUM_REQUEUES + " AS " + UniversalIdStrQueueMessage.FIELD_NUM_REQUEUES,
                 COL_CONTENT + " AS " + UniversalIdStrQueueMessage.FIELD_DATA };
 
+        /* with SKIP LOCKED, concurrent takers claim disjoint rows instead of waiting on the same head row */
+        String lockClause = isSkipLocked() ? " FOR UPDATE SKIP LOCKED" : " FOR UPDATE";
+
         /* update value of column COL_EPHEMERAL_ID for taking a queue message off */
-        SQL_UPDATE_EPHEMERAL_ID_TAKE = MessageFormat
-                .format("UPDATE {0} M SET {1}=? FROM (SELECT {2} FROM {0} WHERE {1}=0" + (getFifo() ?
-                                (" ORDER BY {3}") :
-                                "") + " LIMIT 1 FOR UPDATE) S WHERE M.{2}=S.{2}", getTableName(), COL_EPHEMERAL_ID,
-                        COL_QUEUE_ID, COL_ORG_TIMESTAMP);
+        SQL_UPDATE_EPHEMERAL_ID_TAKE = MessageFormat.format(
+                "UPDATE {0} M SET {1}=? FROM (SELECT {2} FROM {0} WHERE {1}=0" + (getFifo() ? " ORDER BY {3}" : "")
+                        + " LIMIT 1" + lockClause + ") S WHERE M.{2}=S.{2}", getTableName(), COL_EPHEMERAL_ID,
+                COL_QUEUE_ID, COL_ORG_TIMESTAMP);
         /* get a queue message by COL_EPHEMERAL_ID */
         SQL_GET_MSG_BY_EPHEPERAL_ID = new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
                 .withFilterWhere(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=", "dummy"))
                 .withTableNames(getTableNameEphemeral()).build().clause;
 
+        /* update value of column COL_EPHEMERAL_ID for taking a batch of queue messages off */
+        SQL_UPDATE_EPHEMERAL_ID_TAKE_MANY = MessageFormat.format(
+                "UPDATE {0} M SET {1}=? FROM (SELECT {2} FROM {0} WHERE {1}=0" + (getFifo() ? " ORDER BY {3}" : "")
+                        + " LIMIT ?" + lockClause + ") S WHERE M.{2}=S.{2}", getTableName(), COL_EPHEMERAL_ID,
+                COL_QUEUE_ID, COL_ORG_TIMESTAMP);
+        /* get all queue messages by COL_EPHEMERAL_ID */
+        SQL_GET_MSGS_BY_EPHEPERAL_ID = new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
+                .withFilterWhere(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=", "dummy"))
+                .withSorting(getFifo() ? MapUtils.createMap(COL_ORG_TIMESTAMP, Boolean.FALSE) : null)
+                .withTableNames(getTableNameEphemeral()).build().clause;
+
         super.init();
+
+        if (notifier == null && !StringUtils.isBlank(notifyChannel)) {
+            notifier = new PgSQLQueueNotifier(getJdbcHelper(), notifyChannel).init();
+            myOwnNotifier = true;
+        }
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void destroy() {
+        try {
+            super.destroy();
+        } finally {
+            if (myOwnNotifier && notifier != null) {
+                notifier.destroy();
+            }
+            notifier = null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If a {@link #getNotifier() notifier} is set, blocked callers are woken up by {@code LISTEN/NOTIFY} instead
+     * of polling; the queue is re-checked at least every {@link #NOTIFY_RECHECK_MS} milliseconds.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    public IQueueMessage<String, byte[]> take(long timeout, TimeUnit unit) throws QueueException {
+        PgSQLQueueNotifier notifier = this.notifier;
+        if (notifier == null) {
+            return super.take(timeout, unit);
+        }
+        String key = getTableName();
+        long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        while (true) {
+            /* read the version before checking the queue, so that a notification arriving in between is not lost */
+            long version = notifier.version(key);
+            IQueueMessage<String, byte[]> msg = take();
+            if (msg != null) {
+                return msg;
+            }
+            long remainingMs = deadline - System.currentTimeMillis();
+            if (remainingMs <= 0) {
+                return null;
+            }
+            try {
+                notifier.await(key, version, Math.min(remainingMs, NOTIFY_RECHECK_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new QueueException(e);
+            }
+        }
+    }
+
+    /*
+     * Errors are not swallowed: a failed statement aborts the enclosing PgSQL transaction, the put must fail with it.
+     */
+    private void publishNotification(Connection conn) {
+        PgSQLQueueNotifier notifier = this.notifier;
+        if (notifier != null) {
+            notifier.publish(conn, getTableName());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Notify blocked consumers if a {@link #getNotifier() notifier} is set.</p>
+     */
+    @Override
+    protected boolean putToQueueStorage(Connection conn, IQueueMessage<String, byte[]> msg) {
+        boolean result = super.putToQueueStorage(conn, msg);
+        if (result) {
+            publishNotification(conn);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Notify blocked consumers (once for the whole batch, if any message was put) if a {@link #getNotifier()
+     * notifier} is set.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected boolean[] putAllToQueueStorage(Connection conn, List<IQueueMessage<String, byte[]>> msgs) {
+        boolean[] result = super.putAllToQueueStorage(conn, msgs);
+        for (boolean put : result) {
+            if (put) {
+                publishNotification(conn);
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Notify blocked consumers if a {@link #getNotifier() notifier} is set.</p>
+     */
+    @Override
+    protected boolean _requeueWithRetries(Connection conn, IQueueMessage<String, byte[]> msg, int numRetries,
+            int maxRetries) {
+        boolean result = super._requeueWithRetries(conn, msg, numRetries, maxRetries);
+        if (result) {
+            publishNotification(conn);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Notify blocked consumers if a {@link #getNotifier() notifier} is set.</p>
+     */
+    @Override
+    protected boolean _requeueSilentWithRetries(Connection conn, IQueueMessage<String, byte[]> msg, int numRetries,
+            int maxRetries) {
+        boolean result = super._requeueSilentWithRetries(conn, msg, numRetries, maxRetries);
+        if (result) {
+            publishNotification(conn);
+        }
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      *
      * <p>Implementation:</p>
      * <ul>
-     * <li>Generate a unique-id and assign to the message's {@link #COL_EPHEMERAL_ID} using {@code UPDATE...FROM (SELECT...ORDER BY...LIMIT 1 FOR UPDATE)}</li>
+     * <li>Generate a unique-id and assign to the message's {@link #COL_EPHEMERAL_ID} using {@code UPDATE...FROM (SELECT...ORDER BY...LIMIT 1 FOR UPDATE [SKIP LOCKED])}</li>
      * <li>Get the queue message that has been assigned the ephemeral-id and return it</li>
      * </ul>
      */
     @Override
     protected UniversalIdStrQueueMessage _takeWithRetries(Connection conn, int numRetries, int maxRetries) {
         IJdbcHelper jdbcHelper = getJdbcHelper();
-        return executeWithRetries(numRetries, maxRetries, () -> {
+        return executeWithRetries(Operation.TAKE, numRetries, maxRetries, () -> {
             try {
                 long ephemeralId = QueueUtils.IDGEN.generateId64();
-                int numRows = jdbcHelper.execute(conn, SQL_UPDATE_EPHEMERAL_ID_TAKE, ephemeralId);
+                int numRows = executeUpdate(conn, SQL_UPDATE_EPHEMERAL_ID_TAKE, ephemeralId);
                 if (numRows > 0) {
                     Map<String, Object> dbRow = jdbcHelper.executeSelectOne(conn, SQL_GET_MSG_BY_EPHEPERAL_ID,
                             MapUtils.createMap(COL_EPHEMERAL_ID, ephemeralId));
@@ -78,4 +293,34 @@ public class LessLockingUniversalPgSQLQueue extends AbstractLessLockingUniversal
             }
         });
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Implementation:</p>
+     * <ul>
+     * <li>Generate a unique-id and assign to {@link #COL_EPHEMERAL_ID} of up to {@code maxMessages} messages using {@code UPDATE...FROM (SELECT...ORDER BY...LIMIT n FOR UPDATE [SKIP LOCKED])}</li>
+     * <li>Get all queue messages that have been assigned the ephemeral-id and return them</li>
+     * </ul>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected List<UniversalIdStrQueueMessage> _takeManyWithRetries(Connection conn, int maxMessages, int numRetries,
+            int maxRetries) {
+        IJdbcHelper jdbcHelper = getJdbcHelper();
+        return executeWithRetries(Operation.TAKE_MANY, numRetries, maxRetries, () -> {
+            try {
+                long ephemeralId = QueueUtils.IDGEN.generateId64();
+                int numRows = executeUpdate(conn, SQL_UPDATE_EPHEMERAL_ID_TAKE_MANY, ephemeralId, maxMessages);
+                return numRows > 0 ?
+                        selectMessages(conn, SQL_GET_MSGS_BY_EPHEPERAL_ID,
+                                MapUtils.createMap(COL_EPHEMERAL_ID, ephemeralId)) :
+                        new ArrayList<>();
+            } catch (Exception e) {
+                jdbcHelper.rollbackTransaction(conn);
+                throw e instanceof DaoException ? (DaoException) e : new DaoException(e);
+            }
+        });
+    }
 }
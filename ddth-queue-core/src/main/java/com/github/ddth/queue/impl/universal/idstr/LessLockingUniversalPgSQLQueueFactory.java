@@ -2,6 +2,7 @@ package com.github.ddth.queue.impl.universal.idstr;
 
 import com.github.ddth.queue.QueueSpec;
 import com.github.ddth.queue.impl.JdbcQueueFactory;
+import org.apache.commons.lang3.StringUtils;
 
 /**
  * Factory to create {@link LessLockingUniversalPgSQLQueue} instances.
@@ -12,7 +13,11 @@ import com.github.ddth.queue.impl.JdbcQueueFactory;
 public class LessLockingUniversalPgSQLQueueFactory
         extends JdbcQueueFactory<LessLockingUniversalPgSQLQueue, String, byte[]> {
     public final static String SPEC_FIELD_FIFO = "fifo";
+    public final static String SPEC_FIELD_SKIP_LOCKED = "skip_locked";
+    public final static String SPEC_FIELD_NOTIFY_CHANNEL = "notify_channel";
     private boolean defaultFifo = true;
+    private boolean defaultSkipLocked = false;
+    private String defaultNotifyChannel;
 
     /**
      * @return
@@ -38,6 +43,48 @@ public class LessLockingUniversalPgSQLQueueFactory
         this.defaultFifo = defaultFifo;
     }
 
+    /**
+     * Claim messages using {@code SELECT...FOR UPDATE SKIP LOCKED}, passed to all queues created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public boolean getDefaultSkipLocked() {
+        return defaultSkipLocked;
+    }
+
+    /**
+     * Claim messages using {@code SELECT...FOR UPDATE SKIP LOCKED}, passed to all queues created by this factory.
+     *
+     * @param defaultSkipLocked
+     * @since 1.0.1
+     */
+    public void setDefaultSkipLocked(boolean defaultSkipLocked) {
+        this.defaultSkipLocked = defaultSkipLocked;
+    }
+
+    /**
+     * {@code LISTEN/NOTIFY} channel to wake up blocked consumers ({@code null}: disabled), passed to all queues
+     * created by this factory.
+     *
+     * @return
+     * @since 1.0.1
+     */
+    public String getDefaultNotifyChannel() {
+        return defaultNotifyChannel;
+    }
+
+    /**
+     * {@code LISTEN/NOTIFY} channel to wake up blocked consumers ({@code null}: disabled), passed to all queues
+     * created by this factory.
+     *
+     * @param defaultNotifyChannel
+     * @since 1.0.1
+     */
+    public void setDefaultNotifyChannel(String defaultNotifyChannel) {
+        this.defaultNotifyChannel = defaultNotifyChannel;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -49,6 +96,16 @@ public class LessLockingUniversalPgSQLQueueFactory
         if (fifo != null) {
             queue.setFifo(fifo.booleanValue());
         }
+        queue.setSkipLocked(defaultSkipLocked);
+        Boolean skipLocked = spec.getField(SPEC_FIELD_SKIP_LOCKED, Boolean.class);
+        if (skipLocked != null) {
+            queue.setSkipLocked(skipLocked.booleanValue());
+        }
+        queue.setNotifyChannel(defaultNotifyChannel);
+        String notifyChannel = spec.getField(SPEC_FIELD_NOTIFY_CHANNEL);
+        if (!StringUtils.isBlank(notifyChannel)) {
+            queue.setNotifyChannel(notifyChannel);
+        }
         return queue;
     }
 }
@@ -2,6 +2,8 @@ package com.github.ddth.queue.impl.universal.idstr;
 
 import java.sql.Connection;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import com.github.ddth.commons.utils.MapUtils;
@@ -20,7 +22,8 @@ import com.github.ddth.queue.internal.utils.QueueUtils;
  * @since 0.6.0
  */
 public class LessLockingUniversalSingleStoragePgSQLQueue extends AbstractLessLockingUniversalSingleStorageJdbcQueue {
-    private String SQL_UPDATE_EPHEMERAL_ID_TAKE, SQL_GET_MSG_BY_EPHEPERAL_ID;
+    private String[] SQLS_UPDATE_EPHEMERAL_ID_TAKE, SQLS_GET_MSG_BY_EPHEPERAL_ID;
+    private String[] SQLS_UPDATE_EPHEMERAL_ID_TAKE_MANY, SQLS_GET_MSGS_BY_EPHEPERAL_ID;
 
     /**
      * {@inheritDoc}
@@ -34,17 +37,35 @@ public class LessLockingUniversalSingleStoragePgSQLQueue extends AbstractLessLoc
                 COL_CONTENT + " AS " + UniversalIdStrQueueMessage.FIELD_DATA };
 
         /* update value of column COL_EPHEMERAL_ID for taking a queue message off */
-        SQL_UPDATE_EPHEMERAL_ID_TAKE = MessageFormat
+        SQLS_UPDATE_EPHEMERAL_ID_TAKE = buildPartitionSqls(table -> MessageFormat
                 .format("UPDATE {0} M SET {1}=? FROM (SELECT {2} FROM {0} WHERE {4}=? AND {1}=0" + (getFifo() ?
                                 (" ORDER BY {3}") :
-                                "") + " LIMIT 1 FOR UPDATE) S WHERE M.{2}=S.{2}", getTableName(), COL_EPHEMERAL_ID,
-                        COL_QUEUE_ID, COL_ORG_TIMESTAMP, COL_QUEUE_NAME);
+                                "") + " LIMIT 1 FOR UPDATE) S WHERE M.{2}=S.{2}", table, COL_EPHEMERAL_ID,
+                        COL_QUEUE_ID, COL_ORG_TIMESTAMP, COL_QUEUE_NAME));
         /* get a queue message by COL_EPHEMERAL_ID */
-        SQL_GET_MSG_BY_EPHEPERAL_ID = new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
-                .withFilterWhere(new DefaultNamedParamsFilters.FilterAnd()
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
-                        .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=", "dummy")))
-                .withTableNames(getTableNameEphemeral()).build().clause;
+        SQLS_GET_MSG_BY_EPHEPERAL_ID = buildPartitionSqls(
+                table -> new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
+                        .withFilterWhere(new DefaultNamedParamsFilters.FilterAnd()
+                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
+                                .addFilter(
+                                        new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=", "dummy")))
+                        .withTableNames(table).build().clause);
+
+        /* update value of column COL_EPHEMERAL_ID for taking a batch of queue messages off */
+        SQLS_UPDATE_EPHEMERAL_ID_TAKE_MANY = buildPartitionSqls(table -> MessageFormat
+                .format("UPDATE {0} M SET {1}=? FROM (SELECT {2} FROM {0} WHERE {4}=? AND {1}=0" + (getFifo() ?
+                                (" ORDER BY {3}") :
+                                "") + " LIMIT ? FOR UPDATE) S WHERE M.{2}=S.{2}", table, COL_EPHEMERAL_ID,
+                        COL_QUEUE_ID, COL_ORG_TIMESTAMP, COL_QUEUE_NAME));
+        /* get all queue messages by COL_EPHEMERAL_ID */
+        SQLS_GET_MSGS_BY_EPHEPERAL_ID = buildPartitionSqls(
+                table -> new DefaultNamedParamsSqlBuilders.SelectBuilder().withColumns(COLUMNS_SELECT)
+                        .withFilterWhere(new DefaultNamedParamsFilters.FilterAnd()
+                                .addFilter(new DefaultNamedParamsFilters.FilterFieldValue(COL_QUEUE_NAME, "=", "dummy"))
+                                .addFilter(
+                                        new DefaultNamedParamsFilters.FilterFieldValue(COL_EPHEMERAL_ID, "=", "dummy")))
+                        .withSorting(getFifo() ? MapUtils.createMap(COL_ORG_TIMESTAMP, Boolean.FALSE) : null)
+                        .withTableNames(table).build().clause);
 
         super.init();
         return this;
@@ -56,20 +77,31 @@ public class LessLockingUniversalSingleStoragePgSQLQueue extends AbstractLessLoc
      * <p>Implementation:</p>
      * <ul>
      * <li>Generate a unique-id and assign to the message's {@link #COL_EPHEMERAL_ID} using {@code UPDATE...FROM (SELECT...ORDER BY...LIMIT 1 FOR UPDATE)}</li>
+     * <li>Partitions (if any) are looked up from the oldest to the newest</li>
      * <li>Get the queue message that has been assigned the ephemeral-id and return it</li>
      * </ul>
      */
     @Override
     protected UniversalIdStrQueueMessage _takeWithRetries(Connection conn, int numRetries, int maxRetries) {
         IJdbcHelper jdbcHelper = getJdbcHelper();
-        return executeWithRetries(numRetries, maxRetries, () -> {
+        int[] partitions = getPartitionsForTake(conn);
+        return executeWithRetries(Operation.TAKE, numRetries, maxRetries, () -> {
             try {
                 long ephemeralId = QueueUtils.IDGEN.generateId64();
-                int numRows = jdbcHelper.execute(conn, SQL_UPDATE_EPHEMERAL_ID_TAKE, ephemeralId, getQueueName());
-                if (numRows > 0) {
-                    Map<String, Object> dbRow = jdbcHelper.executeSelectOne(conn, SQL_GET_MSG_BY_EPHEPERAL_ID,
-                            MapUtils.createMap(COL_QUEUE_NAME, getQueueName(), COL_EPHEMERAL_ID, ephemeralId));
-                    return dbRow != null ? createMessge(dbRow) : null;
+                for (int partition : partitions) {
+                    int numRows = executeUpdate(conn, SQLS_UPDATE_EPHEMERAL_ID_TAKE[partition], ephemeralId,
+                            getQueueName());
+                    if (numRows > 0) {
+                        Map<String, Object> dbRow = jdbcHelper
+                                .executeSelectOne(conn, SQLS_GET_MSG_BY_EPHEPERAL_ID[partition],
+                                        MapUtils.createMap(COL_QUEUE_NAME, getQueueName(), COL_EPHEMERAL_ID,
+                                                ephemeralId));
+                        UniversalIdStrQueueMessage msg = dbRow != null ? createMessge(dbRow) : null;
+                        if (msg != null) {
+                            rememberPartition(msg, partition);
+                        }
+                        return msg;
+                    }
                 }
                 return null;
             } catch (Exception e) {
@@ -78,4 +110,48 @@ public class LessLockingUniversalSingleStoragePgSQLQueue extends AbstractLessLoc
             }
         });
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Implementation:</p>
+     * <ul>
+     * <li>Generate a unique-id and assign to {@link #COL_EPHEMERAL_ID} of up to {@code maxMessages} messages using {@code UPDATE...FROM (SELECT...ORDER BY...LIMIT n FOR UPDATE)}</li>
+     * <li>Partitions (if any) are looked up from the oldest to the newest, until enough messages are taken</li>
+     * <li>Get all queue messages that have been assigned the ephemeral-id and return them</li>
+     * </ul>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected List<UniversalIdStrQueueMessage> _takeManyWithRetries(Connection conn, int maxMessages, int numRetries,
+            int maxRetries) {
+        IJdbcHelper jdbcHelper = getJdbcHelper();
+        int[] partitions = getPartitionsForTake(conn);
+        return executeWithRetries(Operation.TAKE_MANY, numRetries, maxRetries, () -> {
+            try {
+                long ephemeralId = QueueUtils.IDGEN.generateId64();
+                List<UniversalIdStrQueueMessage> result = new ArrayList<>();
+                for (int partition : partitions) {
+                    int numRows = executeUpdate(conn, SQLS_UPDATE_EPHEMERAL_ID_TAKE_MANY[partition], ephemeralId,
+                            getQueueName(), maxMessages - result.size());
+                    if (numRows > 0) {
+                        List<UniversalIdStrQueueMessage> msgs = selectMessages(conn, SQLS_GET_MSGS_BY_EPHEPERAL_ID[partition],
+                                MapUtils.createMap(COL_QUEUE_NAME, getQueueName(), COL_EPHEMERAL_ID, ephemeralId));
+                        for (UniversalIdStrQueueMessage msg : msgs) {
+                            rememberPartition(msg, partition);
+                        }
+                        result.addAll(msgs);
+                        if (result.size() >= maxMessages) {
+                            break;
+                        }
+                    }
+                }
+                return result;
+            } catch (Exception e) {
+                jdbcHelper.rollbackTransaction(conn);
+                throw e instanceof DaoException ? (DaoException) e : new DaoException(e);
+            }
+        });
+    }
 }
@@ -0,0 +1,22 @@
+package com.github.ddth.queue.impl.universal.idstr;
+
+import com.github.ddth.queue.QueueSpec;
+import com.github.ddth.queue.impl.ClusteredRedisQueueFactory;
+
+/**
+ * Factory to create {@link UniversalClusteredRedisQueue} instances.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class UniversalClusteredRedisQueueFactory
+        extends ClusteredRedisQueueFactory<UniversalClusteredRedisQueue, String, byte[]> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected UniversalClusteredRedisQueue createQueueInstance(final QueueSpec spec) {
+        UniversalClusteredRedisQueue queue = new UniversalClusteredRedisQueue();
+        return queue;
+    }
+}
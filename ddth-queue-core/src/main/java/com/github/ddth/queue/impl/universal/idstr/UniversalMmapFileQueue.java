@@ -0,0 +1,43 @@
+package com.github.ddth.queue.impl.universal.idstr;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.impl.MmapFileQueue;
+import com.github.ddth.queue.impl.universal.BaseUniversalMmapFileQueue;
+import com.github.ddth.queue.impl.universal.UniversalIdStrQueueMessage;
+import com.github.ddth.queue.impl.universal.UniversalIdStrQueueMessageFactory;
+
+/**
+ * Universal memory-mapped file implementation of {@link IQueue}.
+ *
+ * <p>
+ * Queue and Take {@link UniversalIdStrQueueMessage}s.
+ * </p>
+ *
+ * <p>
+ * Implementation: see {@link MmapFileQueue}.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class UniversalMmapFileQueue extends BaseUniversalMmapFileQueue<UniversalIdStrQueueMessage, String> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public UniversalMmapFileQueue init() throws Exception {
+        if (getMessageFactory() == null) {
+            setMessageFactory(UniversalIdStrQueueMessageFactory.INSTANCE);
+        }
+        super.init();
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected UniversalIdStrQueueMessage deserialize(byte[] msgData) {
+        return deserialize(msgData, UniversalIdStrQueueMessage.class);
+    }
+}
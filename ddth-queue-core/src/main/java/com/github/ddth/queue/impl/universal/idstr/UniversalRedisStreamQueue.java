@@ -0,0 +1,43 @@
+package com.github.ddth.queue.impl.universal.idstr;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.impl.RedisStreamQueue;
+import com.github.ddth.queue.impl.universal.BaseUniversalRedisStreamQueue;
+import com.github.ddth.queue.impl.universal.UniversalIdStrQueueMessage;
+import com.github.ddth.queue.impl.universal.UniversalIdStrQueueMessageFactory;
+
+/**
+ * Universal Redis Stream implementation of {@link IQueue}.
+ *
+ * <p>
+ * Queue and Take {@link UniversalIdStrQueueMessage}s.
+ * </p>
+ *
+ * <p>
+ * Implementation: see {@link RedisStreamQueue}.
+ * </p>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class UniversalRedisStreamQueue extends BaseUniversalRedisStreamQueue<UniversalIdStrQueueMessage, String> {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public UniversalRedisStreamQueue init() throws Exception {
+        if (getMessageFactory() == null) {
+            setMessageFactory(UniversalIdStrQueueMessageFactory.INSTANCE);
+        }
+        super.init();
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected UniversalIdStrQueueMessage deserialize(byte[] msgData) {
+        return deserialize(msgData, UniversalIdStrQueueMessage.class);
+    }
+}
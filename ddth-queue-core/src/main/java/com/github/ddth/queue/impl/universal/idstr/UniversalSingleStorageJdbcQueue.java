@@ -87,6 +87,21 @@ public class UniversalSingleStorageJdbcQueue extends BaseUniversalJdbcQueue<Univ
     private String SQL_PUT_NEW_TO_QUEUE, SQL_REPUT_TO_QUEUE, SQL_PUT_TO_EPHEMERAL;
     private String SQL_REMOVE_FROM_QUEUE, SQL_REMOVE_FROM_EPHEMERAL;
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages from all queues share one storage, key format: {@code <table-name>:<queue-name>:queue} or
+     * {@code <table-name>:<queue-name>:ephemeral}.</p>
+     *
+     * @since 1.0.1
+     */
+    @Override
+    protected String getSizeCounterKey(boolean ephemeral) {
+        return ephemeral ?
+                getTableNameEphemeral() + ":" + getQueueName() + ":ephemeral" :
+                getTableName() + ":" + getQueueName() + ":queue";
+    }
+
     /**
      * {@inheritDoc}
      */
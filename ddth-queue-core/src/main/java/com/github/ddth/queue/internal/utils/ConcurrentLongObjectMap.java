@@ -0,0 +1,273 @@
+package com.github.ddth.queue.internal.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A concurrent map with primitive {@code long} keys.
+ *
+ * <ul>
+ * <li>Keys are never boxed and entries are stored in open-addressing (linear probing) tables, so {@code put} and
+ * {@code remove} do not allocate (except when a table grows).</li>
+ * <li>The map is split into segments by key hash; each segment has its own lock, so threads working on different
+ * keys rarely contend.</li>
+ * <li>Removal uses backward-shift deletion, no tombstone is left behind.</li>
+ * <li>{@code null} values are not permitted.</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class ConcurrentLongObjectMap<V> {
+    private final static int DEFAULT_NUM_SEGMENTS = 32;
+    private final static int MIN_SEGMENT_CAPACITY = 8;
+
+    private final static class Segment<V> {
+        private long[] keys;
+        private Object[] values;
+        private int mask;
+        private volatile int size;
+
+        Segment(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(long key, long hash) {
+            for (int i = (int) hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(long key, long hash, V value, boolean onlyIfAbsent) {
+            int i = (int) hash & mask;
+            for (; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    V old = (V) values[i];
+                    if (!onlyIfAbsent) {
+                        values[i] = value;
+                    }
+                    return old;
+                }
+            }
+            keys[i] = key;
+            values[i] = value;
+            /* keep load factor <= 0.5 */
+            if (++size > (mask + 1) >> 1) {
+                grow();
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(long key, long hash) {
+            for (int i = (int) hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    V old = (V) values[i];
+                    shiftBack(i);
+                    size--;
+                    return old;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Backward-shift deletion: move following entries of the probe sequence into the gap until an entry that
+         * is already at its ideal position (or an empty slot) is found.
+         */
+        private void shiftBack(int gap) {
+            for (int i = (gap + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+                int ideal = (int) hash(keys[i]) & mask;
+                if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    gap = i;
+                }
+            }
+            values[gap] = null;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            int capacity = oldKeys.length << 1;
+            keys = new long[capacity];
+            values = new Object[capacity];
+            mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = (int) hash(oldKeys[j]) & mask;
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void snapshot(List<V> target) {
+            for (Object value : values) {
+                if (value != null) {
+                    target.add((V) value);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = null;
+            }
+            size = 0;
+        }
+    }
+
+    private static long hash(long key) {
+        /* MurmurHash3's 64-bit finalizer */
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int nextPowerOf2(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+
+    public ConcurrentLongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity expected number of entries
+     */
+    public ConcurrentLongObjectMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_NUM_SEGMENTS);
+    }
+
+    /**
+     * @param initialCapacity expected number of entries
+     * @param numSegments     number of segments (rounded up to power of 2)
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongObjectMap(int initialCapacity, int numSegments) {
+        numSegments = nextPowerOf2(Math.max(1, numSegments));
+        int segmentCapacity = Math.max(MIN_SEGMENT_CAPACITY,
+                nextPowerOf2(Math.max(0, initialCapacity) * 2 / numSegments));
+        segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment<>(segmentCapacity);
+        }
+        segmentShift = 64 - Integer.numberOfTrailingZeros(numSegments);
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        /* segment is selected by the high bits, slot inside segment by the low bits */
+        return segmentShift >= 64 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    /**
+     * Get value associated with a key.
+     *
+     * @param key
+     * @return the value, or {@code null} if not found
+     */
+    public V get(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    /**
+     * Associate a value with a key.
+     *
+     * @param key
+     * @param value
+     * @return the previous value, or {@code null} if not found
+     */
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        long hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, false);
+    }
+
+    /**
+     * Associate a value with a key if the key is not already associated with a value.
+     *
+     * @param key
+     * @param value
+     * @return the current value, or {@code null} if not found (and the new value was put)
+     */
+    public V putIfAbsent(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        long hash = hash(key);
+        return segmentFor(hash).put(key, hash, value, true);
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param key
+     * @return the removed value, or {@code null} if not found
+     */
+    public V remove(long key) {
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, hash);
+    }
+
+    /**
+     * Number of entries.
+     *
+     * <p>Note: the result is a snapshot and may be inaccurate under concurrent modifications.</p>
+     *
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * Perform an action on each value. Values are copied segment by segment before the action is performed, so the
+     * action may safely modify this map.
+     *
+     * @param action
+     */
+    public void forEachValue(Consumer<? super V> action) {
+        List<V> snapshot = new ArrayList<>();
+        for (Segment<V> segment : segments) {
+            snapshot.clear();
+            segment.snapshot(snapshot);
+            snapshot.forEach(action);
+        }
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            segment.clear();
+        }
+    }
+}
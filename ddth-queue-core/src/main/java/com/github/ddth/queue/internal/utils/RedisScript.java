@@ -0,0 +1,144 @@
+package com.github.ddth.queue.internal.utils;
+
+import redis.clients.jedis.BinaryJedis;
+import redis.clients.jedis.BinaryJedisCluster;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A LUA script executed via {@code EVALSHA}.
+ *
+ * <ul>
+ * <li>The script's SHA1 digest is calculated once, locally; the script body is sent to Redis server only when it is
+ * loaded (see {@link #load(BinaryJedis)}) or when the server does not know the script.</li>
+ * <li>If the server replies with a {@code NOSCRIPT} error (e.g. script cache has been flushed, or after a fail-over
+ * to a replica), the script is executed via {@code EVAL}, which also caches it on the server.</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class RedisScript {
+    private final static char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Calculate SHA1 digest of a script, in the format used by Redis (lower-case hex string).
+     *
+     * @param script
+     * @return
+     */
+    public static String sha1Hex(byte[] script) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(script);
+            char[] result = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                result[i * 2] = HEX[(digest[i] >> 4) & 0x0F];
+                result[i * 2 + 1] = HEX[digest[i] & 0x0F];
+            }
+            return new String(result);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final String script;
+    private final byte[] scriptAsBytes;
+    private final byte[] sha1;
+
+    public RedisScript(String script) {
+        this.script = script;
+        this.scriptAsBytes = script.getBytes(StandardCharsets.UTF_8);
+        this.sha1 = sha1Hex(scriptAsBytes).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The script body.
+     *
+     * @return
+     */
+    public String getScript() {
+        return script;
+    }
+
+    /**
+     * SHA1 digest of the script (lower-case hex string).
+     *
+     * @return
+     */
+    public String getSha1() {
+        return new String(sha1, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Load the script into Redis server's script cache ({@code SCRIPT LOAD}).
+     *
+     * @param jedis
+     */
+    public void load(BinaryJedis jedis) {
+        jedis.scriptLoad(scriptAsBytes);
+    }
+
+    /**
+     * Load the script into the script cache of the Redis Cluster node that serves {@code sampleKey}.
+     *
+     * @param jedisCluster
+     * @param sampleKey
+     */
+    public void load(BinaryJedisCluster jedisCluster, byte[] sampleKey) {
+        jedisCluster.scriptLoad(scriptAsBytes, sampleKey);
+    }
+
+    /**
+     * Whether the exception is a {@code NOSCRIPT} error.
+     *
+     * @param e
+     * @return
+     */
+    public static boolean isNoScriptError(JedisDataException e) {
+        String msg = e.getMessage();
+        return msg != null && msg.startsWith("NOSCRIPT");
+    }
+
+    /**
+     * Execute the script via {@code EVALSHA}, falling back to {@code EVAL} if Redis server does not know the script.
+     *
+     * @param jedis
+     * @param keyCount
+     * @param params
+     * @return
+     */
+    public Object eval(BinaryJedis jedis, int keyCount, byte[]... params) {
+        try {
+            return jedis.evalsha(sha1, keyCount, params);
+        } catch (JedisDataException e) {
+            if (!isNoScriptError(e)) {
+                throw e;
+            }
+            /* EVAL executes the script and caches it, subsequent calls will go through EVALSHA again */
+            return jedis.eval(scriptAsBytes, keyCount, params);
+        }
+    }
+
+    /**
+     * Execute the script on a Redis Cluster via {@code EVALSHA}, falling back to {@code EVAL} if the node does not
+     * know the script. The command is routed by the first key, all keys must belong to the same hash slot.
+     *
+     * @param jedisCluster
+     * @param keyCount
+     * @param params
+     * @return
+     */
+    public Object eval(BinaryJedisCluster jedisCluster, int keyCount, byte[]... params) {
+        try {
+            return jedisCluster.evalsha(sha1, keyCount, params);
+        } catch (JedisDataException e) {
+            if (!isNoScriptError(e)) {
+                throw e;
+            }
+            return jedisCluster.eval(scriptAsBytes, keyCount, params);
+        }
+    }
+}
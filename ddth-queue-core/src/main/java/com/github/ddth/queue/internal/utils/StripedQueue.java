@@ -0,0 +1,183 @@
+package com.github.ddth.queue.internal.utils;
+
+import java.util.AbstractQueue;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A concurrent, optionally bounded, {@link java.util.Queue} split into a number of stripes.
+ *
+ * <ul>
+ * <li>Each stripe is a lock-free {@link ConcurrentLinkedQueue} with its own element counter.</li>
+ * <li>Each thread has a "home" stripe: {@link #offer(Object)} puts to the home stripe and {@link #poll()} takes from
+ * the home stripe first; if the home stripe is full (or empty), other stripes are tried in turn (work stealing).</li>
+ * <li>If bounded, capacity is split evenly among stripes, so the total number of elements never exceeds the
+ * boundary.</li>
+ * <li>Elements are FIFO within a stripe, but there is no global ordering across stripes.</li>
+ * </ul>
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class StripedQueue<E> extends AbstractQueue<E> {
+    /* counters are spread out to avoid false sharing between stripes */
+    private final static int COUNTER_PADDING = 16;
+
+    private final ConcurrentLinkedQueue<E>[] stripes;
+    private final int[] capacities;
+    private final AtomicIntegerArray counters;
+
+    /**
+     * @param numStripes number of stripes
+     * @param boundary   max number of elements, a value less than {@code 1} mean "no boundary"
+     */
+    @SuppressWarnings("unchecked")
+    public StripedQueue(int numStripes, int boundary) {
+        if (numStripes < 1) {
+            throw new IllegalArgumentException("Number of stripes must be positive.");
+        }
+        if (boundary > 0 && numStripes > boundary) {
+            numStripes = boundary;
+        }
+        stripes = new ConcurrentLinkedQueue[numStripes];
+        capacities = new int[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            stripes[i] = new ConcurrentLinkedQueue<>();
+            capacities[i] = boundary > 0 ? boundary / numStripes + (i < boundary % numStripes ? 1 : 0) : 0;
+        }
+        counters = new AtomicIntegerArray(numStripes * COUNTER_PADDING);
+    }
+
+    /**
+     * Number of stripes.
+     *
+     * @return
+     */
+    public int getNumStripes() {
+        return stripes.length;
+    }
+
+    private int homeStripe() {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % stripes.length);
+    }
+
+    private boolean tryReserve(int stripe) {
+        int index = stripe * COUNTER_PADDING;
+        int capacity = capacities[stripe];
+        if (capacity <= 0) {
+            counters.incrementAndGet(index);
+            return true;
+        }
+        while (true) {
+            int current = counters.get(index);
+            if (current >= capacity) {
+                return false;
+            }
+            if (counters.compareAndSet(index, current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        int n = stripes.length;
+        int home = homeStripe();
+        for (int i = 0; i < n; i++) {
+            int stripe = (home + i) % n;
+            if (tryReserve(stripe)) {
+                stripes[stripe].offer(e);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public E poll() {
+        int n = stripes.length;
+        int home = homeStripe();
+        for (int i = 0; i < n; i++) {
+            int stripe = (home + i) % n;
+            if (counters.get(stripe * COUNTER_PADDING) > 0) {
+                E e = stripes[stripe].poll();
+                if (e != null) {
+                    counters.decrementAndGet(stripe * COUNTER_PADDING);
+                    return e;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public E peek() {
+        int n = stripes.length;
+        int home = homeStripe();
+        for (int i = 0; i < n; i++) {
+            E e = stripes[(home + i) % n].peek();
+            if (e != null) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Note: the result is a snapshot and may be inaccurate under concurrent modifications.</p>
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            size += counters.get(i * COUNTER_PADDING);
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Note: the returned iterator is weakly consistent and does not support {@link Iterator#remove()}.</p>
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int stripe = 0;
+            private Iterator<E> current = stripes.length > 0 ? stripes[0].iterator() : Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && stripe + 1 < stripes.length) {
+                    current = stripes[++stripe].iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.ddth.queue.qnd.disruptor;
+
+import com.github.ddth.queue.impl.universal.UniversalIdIntQueueMessage;
+import com.github.ddth.queue.impl.universal.idint.UniversalDisruptorQueue;
+import com.github.ddth.queue.utils.QueueException;
+
+import java.text.NumberFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares throughput of {@link UniversalDisruptorQueue} in default (lock-guarded) and lock-free modes with multiple
+ * producers and consumers.
+ */
+public class QndDisruptorQueueLockFree {
+    private final static int NUM_ITEMS = 4 * 1024 * 1024;
+    private final static int RING_SIZE = 64 * 1024;
+
+    static long run(boolean lockFree, int numProducers, int numConsumers) throws Exception {
+        try (UniversalDisruptorQueue queue = new UniversalDisruptorQueue(RING_SIZE)) {
+            queue.setLockFree(lockFree).setEphemeralDisabled(true);
+            queue.init();
+
+            final int numItemsPerProducer = NUM_ITEMS / numProducers;
+            final long numItems = (long) numItemsPerProducer * numProducers;
+            final AtomicLong numTaken = new AtomicLong();
+            Thread[] producers = new Thread[numProducers];
+            for (int i = 0; i < numProducers; i++) {
+                producers[i] = new Thread(() -> {
+                    for (int j = 0; j < numItemsPerProducer; ) {
+                        try {
+                            queue.queue(UniversalIdIntQueueMessage.newInstance());
+                            j++;
+                        } catch (QueueException.QueueIsFull e) {
+                            Thread.yield();
+                        }
+                    }
+                });
+            }
+            Thread[] consumers = new Thread[numConsumers];
+            for (int i = 0; i < numConsumers; i++) {
+                consumers[i] = new Thread(() -> {
+                    while (numTaken.get() < numItems) {
+                        if (queue.take() != null) {
+                            numTaken.incrementAndGet();
+                        } else {
+                            Thread.yield();
+                        }
+                    }
+                });
+            }
+
+            long t = System.currentTimeMillis();
+            for (Thread consumer : consumers) {
+                consumer.start();
+            }
+            for (Thread producer : producers) {
+                producer.start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            for (Thread consumer : consumers) {
+                consumer.join();
+            }
+            long d = System.currentTimeMillis() - t;
+            System.out.println((lockFree ? "Lock-free " : "Lock-guarded") + " / " + numProducers + "P" + numConsumers
+                    + "C / Items: " + NumberFormat.getInstance().format(numItems) + " / Duration: " + d
+                    + "ms / Speed: " + NumberFormat.getInstance().format(numItems * 1000L / Math.max(1, d))
+                    + " items/sec");
+            return d;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[][] configs = { { 1, 1 }, { 4, 4 }, { 16, 4 }, { 16, 16 } };
+        /* warm-up */
+        run(false, 4, 4);
+        run(true, 4, 4);
+        for (int[] config : configs) {
+            run(false, config[0], config[1]);
+            run(true, config[0], config[1]);
+        }
+    }
+}
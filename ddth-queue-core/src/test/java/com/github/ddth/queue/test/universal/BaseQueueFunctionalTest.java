@@ -1,8 +1,10 @@
 package com.github.ddth.queue.test.universal;
 
 import com.github.ddth.commons.utils.IdGenerator;
+import com.github.ddth.queue.IAsyncQueue;
 import com.github.ddth.queue.IQueue;
 import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.OrphanMessagesPage;
 import com.github.ddth.queue.impl.AbstractEphemeralSupportQueue;
 import com.github.ddth.queue.impl.AbstractQueue;
 import com.github.ddth.queue.utils.QueueException;
@@ -11,7 +13,12 @@ import org.junit.After;
 import org.junit.Before;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public abstract class BaseQueueFunctionalTest<I> extends TestCase {
     protected static IdGenerator idGen = IdGenerator.getInstance(IdGenerator.getMacAddr());
@@ -105,6 +112,158 @@ public abstract class BaseQueueFunctionalTest<I> extends TestCase {
         }
     }
 
+    /**
+     * Queue a batch of messages:
+     *
+     * <pre>
+     * - All messages are queued successfully
+     * - Queue size = number of messages (or not supported)
+     * - Ephemeral size = 0 (or not supported)
+     * - All messages can be taken back
+     * </pre>
+     */
+    @org.junit.Test
+    public void testQueueAll() {
+        if (queue == null) {
+            return;
+        }
+
+        final int NUM_MSGS = 3;
+        List<IQueueMessage<I, byte[]>> msgs = new ArrayList<>();
+        for (int i = 0; i < NUM_MSGS; i++) {
+            String content = idGen.generateId128Ascii();
+            msgs.add(queue.createMessage(content.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        boolean[] result = queue.queueAll(msgs);
+        assertEquals(NUM_MSGS, result.length);
+        for (boolean r : result) {
+            assertTrue(r);
+        }
+        int queueSize = queue.queueSize();
+        assertTrue(queueSize == NUM_MSGS || queueSize == IQueue.SIZE_NOT_SUPPORTED);
+        int ephemeralSize = queue.ephemeralSize();
+        assertTrue(ephemeralSize == 0 || ephemeralSize == IQueue.SIZE_NOT_SUPPORTED);
+
+        Set<I> ids = new HashSet<>();
+        msgs.forEach(msg -> ids.add(msg.getId()));
+        for (int i = 0; i < NUM_MSGS; i++) {
+            IQueueMessage<I, byte[]> msg = queue.take();
+            assertNotNull(msg);
+            assertTrue(ids.remove(msg.getId()));
+            queue.finish(msg);
+        }
+        assertTrue(ids.isEmpty());
+    }
+
+    /**
+     * Take a batch of messages:
+     *
+     * <pre>
+     * - Each batch never exceeds the ephemeral storage's bound (if any)
+     * - All queued messages can be taken back, each message exactly once
+     * - Take from an empty queue returns an empty batch
+     * </pre>
+     */
+    @org.junit.Test
+    public void testTakeMany() {
+        if (queue == null) {
+            return;
+        }
+
+        final int NUM_MSGS = EPHEMERAL_MAX_SIZE + 1;
+        Set<I> ids = new HashSet<>();
+        for (int i = 0; i < NUM_MSGS; i++) {
+            String content = idGen.generateId128Ascii();
+            IQueueMessage<I, byte[]> msg = queue.createMessage(content.getBytes(StandardCharsets.UTF_8));
+            assertTrue(queue.queue(msg));
+            ids.add(msg.getId());
+        }
+
+        int maxBatchSize = NUM_MSGS;
+        if (queue instanceof AbstractEphemeralSupportQueue) {
+            AbstractEphemeralSupportQueue<I, byte[]> q = (AbstractEphemeralSupportQueue<I, byte[]>) queue;
+            if (!q.isEphemeralDisabled() && q.getEphemeralMaxSize() > 0) {
+                maxBatchSize = q.getEphemeralMaxSize();
+            }
+        }
+        for (int i = 0; i < NUM_MSGS && !ids.isEmpty(); i++) {
+            Collection<IQueueMessage<I, byte[]>> msgs = queue.take(NUM_MSGS);
+            assertNotNull(msgs);
+            assertTrue(msgs.size() <= maxBatchSize);
+            for (IQueueMessage<I, byte[]> msg : msgs) {
+                assertTrue(ids.remove(msg.getId()));
+                queue.finish(msg);
+            }
+        }
+        assertTrue(ids.isEmpty());
+        assertTrue(queue.take(NUM_MSGS).isEmpty());
+    }
+
+    /**
+     * Take with timeout:
+     *
+     * <pre>
+     * - Take from an empty queue returns null after the wait time elapses
+     * - A blocked taker receives a message queued by another thread
+     * </pre>
+     */
+    @org.junit.Test
+    public void testTakeWithTimeout() throws Exception {
+        if (queue == null) {
+            return;
+        }
+
+        assertNull(queue.take(100, TimeUnit.MILLISECONDS));
+
+        String content = idGen.generateId128Ascii();
+        IQueueMessage<I, byte[]> msg1 = queue.createMessage(content.getBytes(StandardCharsets.UTF_8));
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+            }
+            queue.queue(msg1);
+        });
+        producer.start();
+        IQueueMessage<I, byte[]> msg2 = queue.take(10, TimeUnit.SECONDS);
+        producer.join();
+        assertNotNull(msg2);
+        assertEquals(msg1.getId(), msg2.getId());
+        assertEquals(content, new String((byte[]) msg2.getData(), StandardCharsets.UTF_8));
+        queue.finish(msg2);
+    }
+
+    /**
+     * Asynchronous APIs:
+     *
+     * <pre>
+     * - Message queued via queueAsync can be taken via takeAsync
+     * - finishAsync completes normally
+     * </pre>
+     */
+    @org.junit.Test
+    public void testQueueAsync() throws Exception {
+        if (!(queue instanceof IAsyncQueue)) {
+            return;
+        }
+        IAsyncQueue<I, byte[]> asyncQueue = (IAsyncQueue<I, byte[]>) queue;
+
+        String content = idGen.generateId128Ascii();
+        IQueueMessage<I, byte[]> msg1 = queue.createMessage(content.getBytes(StandardCharsets.UTF_8));
+        assertTrue(asyncQueue.queueAsync(msg1).get(10, TimeUnit.SECONDS));
+
+        IQueueMessage<I, byte[]> msg2 = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (msg2 == null && System.currentTimeMillis() < deadline) {
+            msg2 = asyncQueue.takeAsync().get(10, TimeUnit.SECONDS);
+        }
+        assertNotNull(msg2);
+        assertEquals(msg1.getId(), msg2.getId());
+        assertEquals(content, new String((byte[]) msg2.getData(), StandardCharsets.UTF_8));
+        asyncQueue.finishAsync(msg2).get(10, TimeUnit.SECONDS);
+    }
+
     /**
      * 1. Queue one message:
      *
@@ -169,6 +328,83 @@ public abstract class BaseQueueFunctionalTest<I> extends TestCase {
         }
     }
 
+    /**
+     * Queue and take two messages, then finish both with one call:
+     *
+     * <pre>
+     * - Queue size = 0 (or not supported)
+     * - Ephemeral size = 0 (or not supported)
+     * </pre>
+     */
+    @org.junit.Test
+    public void testFinishAll() throws Exception {
+        if (queue == null) {
+            return;
+        }
+
+        List<IQueueMessage<I, byte[]>> taken = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            assertTrue(queue.queue(queue.createMessage(idGen.generateId128Ascii().getBytes(StandardCharsets.UTF_8))));
+        }
+        for (int i = 0; i < 2; i++) {
+            IQueueMessage<I, byte[]> msg = queue.take();
+            assertNotNull(msg);
+            taken.add(msg);
+        }
+        queue.finishAll(taken);
+        int queueSize = queue.queueSize();
+        assertTrue(queueSize == 0 || queueSize == IQueue.SIZE_NOT_SUPPORTED);
+        int ephemeralSize = queue.ephemeralSize();
+        assertTrue(ephemeralSize == 0 || ephemeralSize == IQueue.SIZE_NOT_SUPPORTED);
+    }
+
+    /**
+     * Queue and take two messages, then fetch orphan messages one page at a time:
+     *
+     * <pre>
+     * - Each page contains 1 item, last page has no continuation token
+     * - Both messages are returned, each exactly once
+     * </pre>
+     */
+    @org.junit.Test
+    public void testOrphanMessagesPaging() throws Exception {
+        if (queue == null) {
+            return;
+        }
+
+        Set<I> ids = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            IQueueMessage<I, byte[]> msg = queue
+                    .createMessage(idGen.generateId128Ascii().getBytes(StandardCharsets.UTF_8));
+            assertTrue(queue.queue(msg));
+            ids.add(msg.getId());
+            Thread.sleep(5);
+        }
+        for (int i = 0; i < 2; i++) {
+            assertNotNull(queue.take());
+        }
+        if (queue.ephemeralSize() < 0) {
+            return;
+        }
+
+        /* negative threshold: every message in ephemeral storage counts as orphan, no need to wait */
+        Set<I> found = new HashSet<>();
+        String token = null;
+        int numPages = 0;
+        do {
+            OrphanMessagesPage<I, byte[]> page = queue.getOrphanMessages(-1000, 1, token);
+            assertNotNull(page);
+            assertTrue(page.getMessages().size() <= 1);
+            for (IQueueMessage<I, byte[]> msg : page.getMessages()) {
+                assertTrue(found.add(msg.getId()));
+            }
+            token = page.getContinuationToken();
+            numPages++;
+        } while (token != null && numPages < 10);
+        assertNull(token);
+        assertEquals(ids, found);
+    }
+
     /**
      * 1. Queue one message:
      *
@@ -13,7 +13,8 @@ import org.junit.runners.Suite;
         TestDisruptorQueueXLargeBoundEphemeralSize.class,
         TestDisruptorQueueXLargeEphemeralDisabled.class, TestDisruptorQueueXSmall.class,
         TestDisruptorQueueXSmallBoundEphemeralSize.class,
-        TestDisruptorQueueXSmallEphemeralDisabled.class })
+        TestDisruptorQueueXSmallEphemeralDisabled.class, TestDisruptorQueueLockFree.class,
+        TestDisruptorQueueLargeLockFree.class })
 
 /*
  * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.disruptor.MySuiteTest
@@ -0,0 +1,37 @@
+package com.github.ddth.queue.test.universal.idint.disruptor;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.impl.DisruptorQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalDisruptorQueue;
+import com.github.ddth.queue.test.universal.BaseQueueMultiThreadsTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests queue with large ring size (lock-free mode).
+ */
+public class TestDisruptorQueueLargeLockFree extends BaseQueueMultiThreadsTest<Long> {
+    public TestDisruptorQueueLargeLockFree(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestDisruptorQueueLargeLockFree.class);
+    }
+
+    @Override
+    protected IQueue<Long, byte[]> initQueueInstance() throws Exception {
+        if (System.getProperty("skipTestsDisruptor") != null) {
+            return null;
+        }
+        int ringSize = 8192;
+        DisruptorQueue<Long, byte[]> queue = new UniversalDisruptorQueue();
+        queue.setLockFree(true).setRingSize(ringSize).setEphemeralDisabled(false).init();
+        return queue;
+    }
+
+    protected int numTestMessages() {
+        return 10 * 1024 * 1024;
+    }
+}
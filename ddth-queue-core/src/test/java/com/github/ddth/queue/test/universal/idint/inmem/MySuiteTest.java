@@ -19,9 +19,14 @@ import org.junit.runners.Suite;
     TestInmemQueueBoundXSmall.class,
     TestInmemQueueBoundXSmallBoundEphemeralSize.class,
     TestInmemQueueBoundXSmallEphemeralDisabled.class,
+    TestInmemQueueConsumerEngine.class,
+    TestInmemQueueStriped.class,
+    TestInmemQueueStripedBoundSmall.class,
     TestInmemQueueUnbound.class,
     TestInmemQueueUnboundBoundEphemeralSize.class,
-    TestInmemQueueUnboundEphemeralDisabled.class
+    TestInmemQueueUnboundEphemeralDisabled.class,
+
+    TestConcurrentLongObjectMap.class
 })
 
 /*
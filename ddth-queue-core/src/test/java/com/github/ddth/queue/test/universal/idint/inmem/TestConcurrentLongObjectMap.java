@@ -0,0 +1,238 @@
+package com.github.ddth.queue.test.universal.idint.inmem;
+
+import com.github.ddth.queue.internal.utils.ConcurrentLongObjectMap;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.inmem.TestConcurrentLongObjectMap
+ */
+
+public class TestConcurrentLongObjectMap extends TestCase {
+    public TestConcurrentLongObjectMap(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestConcurrentLongObjectMap.class);
+    }
+
+    /* capacity of the (only) segment of a map created with initial capacity 0 and 1 segment */
+    private final static int MIN_CAPACITY = 8;
+
+    /**
+     * Same hash as {@link ConcurrentLongObjectMap} (MurmurHash3's 64-bit finalizer), to build collision chains.
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Find keys whose ideal slot in a table of {@link #MIN_CAPACITY} slots is {@code slot}.
+     */
+    private static List<Long> keysForSlot(int slot, int numKeys, long from) {
+        List<Long> keys = new ArrayList<>();
+        for (long key = from; keys.size() < numKeys; key++) {
+            if (((int) hash(key) & (MIN_CAPACITY - 1)) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static ConcurrentLongObjectMap<String> newSmallMap() {
+        return new ConcurrentLongObjectMap<>(0, 1);
+    }
+
+    /**
+     * Chain {@code 7, 0, 1, 2}: three keys collide on the last slot and wrap around the table end, a fourth key
+     * whose ideal slot is {@code 0} is pushed to slot {@code 2}.
+     */
+    @org.junit.Test
+    public void testChainWrapAround() {
+        List<Long> last = keysForSlot(MIN_CAPACITY - 1, 3, 0);
+        long first = keysForSlot(0, 1, 0).get(0);
+        ConcurrentLongObjectMap<String> map = newSmallMap();
+        for (long key : last) {
+            assertNull(map.put(key, "v" + key));
+        }
+        assertNull(map.put(first, "v" + first));
+        assertEquals(4, map.size());
+        for (long key : last) {
+            assertEquals("v" + key, map.get(key));
+        }
+        assertEquals("v" + first, map.get(first));
+        assertNull(map.get(keysForSlot(MIN_CAPACITY - 1, 4, 0).get(3)));
+        assertNull(map.get(keysForSlot(0, 2, 0).get(1)));
+
+        assertEquals("v" + last.get(2), map.put(last.get(2), "w"));
+        assertEquals("w", map.putIfAbsent(last.get(2), "x"));
+        assertEquals("w", map.get(last.get(2)));
+        assertEquals(4, map.size());
+    }
+
+    /**
+     * Remove entries in the middle of a wrapped chain: entries after the gap must still be found, and the freed slot
+     * must be reusable.
+     */
+    @org.junit.Test
+    public void testRemoveInMiddleOfChain() {
+        List<Long> last = keysForSlot(MIN_CAPACITY - 1, 3, 0);
+        long first = keysForSlot(0, 1, 0).get(0);
+        ConcurrentLongObjectMap<String> map = newSmallMap();
+        for (long key : last) {
+            map.put(key, "v" + key);
+        }
+        map.put(first, "v" + first);
+
+        /* slot 0, in the middle of the chain, after the wrap */
+        assertEquals("v" + last.get(1), map.remove(last.get(1)));
+        assertNull(map.get(last.get(1)));
+        assertNull(map.remove(last.get(1)));
+        assertEquals("v" + last.get(0), map.get(last.get(0)));
+        assertEquals("v" + last.get(2), map.get(last.get(2)));
+        assertEquals("v" + first, map.get(first));
+        assertEquals(3, map.size());
+
+        /* slot 7, head of the chain, before the wrap */
+        assertEquals("v" + last.get(0), map.remove(last.get(0)));
+        assertEquals("v" + last.get(2), map.get(last.get(2)));
+        assertEquals("v" + first, map.get(first));
+        assertEquals(2, map.size());
+
+        /* re-insert removed keys: chain is rebuilt, nothing is duplicated */
+        assertNull(map.put(last.get(1), "y"));
+        assertNull(map.putIfAbsent(last.get(0), "z"));
+        assertEquals("y", map.get(last.get(1)));
+        assertEquals("z", map.get(last.get(0)));
+        assertEquals(4, map.size());
+        for (long key : new long[] { last.get(0), last.get(1), last.get(2), first }) {
+            assertNotNull(map.remove(key));
+            assertNull(map.get(key));
+        }
+        assertEquals(0, map.size());
+    }
+
+    /**
+     * Random operations on a few colliding keys, checked against {@link HashMap}. Maps are small and short-lived, so
+     * chains often wrap around the table end and removals often happen in the middle of chains.
+     */
+    @org.junit.Test
+    public void testRandomOpsAgainstHashMap() {
+        Random random = new Random(1981);
+        for (int round = 0; round < 500; round++) {
+            ConcurrentLongObjectMap<String> map = newSmallMap();
+            Map<Long, String> expected = new HashMap<>();
+            for (int op = 0; op < 200; op++) {
+                long key = random.nextInt(12);
+                String value = "v" + op;
+                switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.put(key, value), map.put(key, value));
+                    break;
+                case 1:
+                    assertEquals(expected.putIfAbsent(key, value), map.putIfAbsent(key, value));
+                    break;
+                case 2:
+                    assertEquals(expected.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(expected.get(key), map.get(key));
+                }
+                assertEquals(expected.size(), map.size());
+            }
+            for (long key = 0; key < 12; key++) {
+                assertEquals(expected.get(key), map.get(key));
+            }
+        }
+    }
+
+    private void doTestConcurrentResize(ConcurrentLongObjectMap<String> map) throws Exception {
+        final int numWriters = 8, numKeysPerWriter = 20000, numStableKeys = 100;
+        for (long key = 1; key <= numStableKeys; key++) {
+            map.put(-key, "s" + key);
+        }
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicLong misses = new AtomicLong();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                for (long key = 1; key <= numStableKeys; key++) {
+                    if (!("s" + key).equals(map.get(-key))) {
+                        misses.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < numWriters; t++) {
+            final long base = t * 1_000_000L;
+            Thread writer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < numKeysPerWriter; i++) {
+                    map.put(base + i, "v" + (base + i));
+                    /* remove while other threads are growing the table */
+                    if (i % 2 == 1) {
+                        map.remove(base + i - 1);
+                    }
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, misses.get());
+        assertEquals(numStableKeys + numWriters * numKeysPerWriter / 2, map.size());
+        for (int t = 0; t < numWriters; t++) {
+            long base = t * 1_000_000L;
+            for (int i = 0; i < numKeysPerWriter; i++) {
+                assertEquals(i % 2 == 1 ? "v" + (base + i) : null, map.get(base + i));
+            }
+        }
+        List<String> values = new ArrayList<>();
+        map.forEachValue(values::add);
+        assertEquals(map.size(), values.size());
+    }
+
+    /**
+     * Concurrent put/remove while a single segment grows from its minimum capacity.
+     */
+    @org.junit.Test
+    public void testConcurrentResizeSingleSegment() throws Exception {
+        doTestConcurrentResize(newSmallMap());
+    }
+
+    /**
+     * Concurrent put/remove while all segments grow from their minimum capacity.
+     */
+    @org.junit.Test
+    public void testConcurrentResize() throws Exception {
+        doTestConcurrentResize(new ConcurrentLongObjectMap<>(0));
+    }
+}
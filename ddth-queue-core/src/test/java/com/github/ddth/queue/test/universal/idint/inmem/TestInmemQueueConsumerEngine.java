@@ -0,0 +1,129 @@
+package com.github.ddth.queue.test.universal.idint.inmem;
+
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.impl.InmemQueue;
+import com.github.ddth.queue.impl.QueueConsumerEngine;
+import com.github.ddth.queue.impl.universal.idint.UniversalInmemQueue;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.junit.After;
+import org.junit.Before;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests {@link QueueConsumerEngine} on top of an in-memory queue.
+ */
+public class TestInmemQueueConsumerEngine extends TestCase {
+    public TestInmemQueueConsumerEngine(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestInmemQueueConsumerEngine.class);
+    }
+
+    private InmemQueue<Long, byte[]> queue;
+    private QueueConsumerEngine<Long, byte[]> engine;
+
+    @Before
+    public void setUp() throws Exception {
+        if (System.getProperty("skipTestsInmem") != null) {
+            return;
+        }
+        queue = new UniversalInmemQueue();
+        queue.setBoundary(-1).setEphemeralDisabled(false).setEphemeralMaxSize(16).init();
+    }
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.destroy();
+        }
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
+    private static boolean waitFor(java.util.function.BooleanSupplier condition, long timeoutMs)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return condition.getAsBoolean();
+    }
+
+    @org.junit.Test
+    public void testConsumeAll() throws Exception {
+        if (queue == null) {
+            return;
+        }
+        final int numMsgs = 1000;
+        Set<String> received = ConcurrentHashMap.newKeySet();
+        engine = new QueueConsumerEngine<>(queue, msg -> {
+            received.add(new String(msg.getData(), StandardCharsets.UTF_8));
+            return true;
+        });
+        engine.setNumWorkers(4).setPrefetchSize(8).init();
+        assertEquals(16, engine.getEffectiveMaxInFlight());
+        for (int i = 0; i < numMsgs; i++) {
+            queue.queue(queue.createMessage(String.valueOf(i).getBytes(StandardCharsets.UTF_8)));
+        }
+        assertTrue(waitFor(() -> received.size() == numMsgs, 10000));
+        assertTrue(waitFor(() -> engine.getNumFinished() == numMsgs, 1000));
+        assertEquals(0, queue.queueSize());
+        assertEquals(0, queue.ephemeralSize());
+        assertEquals(0, engine.getNumRequeued());
+    }
+
+    @org.junit.Test
+    public void testRetryThenDrop() throws Exception {
+        if (queue == null) {
+            return;
+        }
+        AtomicInteger numCalls = new AtomicInteger();
+        engine = new QueueConsumerEngine<Long, byte[]>() {
+            @Override
+            protected void onMessageDropped(IQueueMessage<Long, byte[]> msg) {
+                // suppress warning log
+            }
+        };
+        engine.setQueue(queue).setMessageHandler(msg -> {
+            numCalls.incrementAndGet();
+            throw new RuntimeException("Simulated failure");
+        }).setMaxRetries(2).setNumWorkers(2).init();
+        queue.queue(queue.createMessage("failure".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(waitFor(() -> engine.getNumDropped() == 1, 10000));
+        assertEquals(3, numCalls.get());
+        assertEquals(2, engine.getNumRequeued());
+        assertEquals(3, engine.getNumErrors());
+        assertEquals(0, queue.queueSize());
+        assertEquals(0, queue.ephemeralSize());
+    }
+
+    @org.junit.Test
+    public void testGracefulShutdown() throws Exception {
+        if (queue == null) {
+            return;
+        }
+        engine = new QueueConsumerEngine<>(queue, msg -> {
+            Thread.sleep(5);
+            return true;
+        });
+        engine.setNumWorkers(2).setPrefetchSize(4).init();
+        for (int i = 0; i < 200; i++) {
+            queue.queue(queue.createMessage(String.valueOf(i).getBytes(StandardCharsets.UTF_8)));
+        }
+        Thread.sleep(50);
+        engine.destroy();
+        assertFalse(engine.isRunning());
+        assertEquals(0, engine.getNumInFlight());
+        assertEquals(0, queue.ephemeralSize());
+        assertEquals(200, engine.getNumFinished() + queue.queueSize());
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.ddth.queue.test.universal.idint.inmem;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.impl.InmemQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalInmemQueue;
+import com.github.ddth.queue.test.universal.BaseQueueMultiThreadsTest;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests striped bounded queue with small boundary.
+ */
+public class TestInmemQueueStripedBoundSmall extends BaseQueueMultiThreadsTest<Long> {
+    public TestInmemQueueStripedBoundSmall(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestInmemQueueStripedBoundSmall.class);
+    }
+
+    @Override
+    protected IQueue<Long, byte[]> initQueueInstance() throws Exception {
+        if (System.getProperty("skipTestsInmem") != null) {
+            return null;
+        }
+        int size = 128;
+        InmemQueue<Long, byte[]> queue = new UniversalInmemQueue();
+        queue.setNumStripes(8).setBoundary(size).setEphemeralDisabled(false).init();
+        return queue;
+    }
+
+}
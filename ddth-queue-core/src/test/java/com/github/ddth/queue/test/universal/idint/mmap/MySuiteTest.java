@@ -0,0 +1,19 @@
+package com.github.ddth.queue.test.universal.idint.mmap;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+
+@Suite.SuiteClasses({ 
+    TestMmapFileQueue.class,
+    TestMmapFileQueueMT.class,
+    TestMmapFileQueueRecovery.class
+})
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.mmap.MySuiteTest
+ */
+
+public class MySuiteTest {
+}
@@ -0,0 +1,45 @@
+package com.github.ddth.queue.test.universal.idint.mmap;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.impl.MmapFileQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalMmapFileQueue;
+import com.github.ddth.queue.test.universal.BaseQueueFunctionalTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.mmap.TestMmapFileQueue
+ */
+
+public class TestMmapFileQueue extends BaseQueueFunctionalTest<Long> {
+    public TestMmapFileQueue(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestMmapFileQueue.class);
+    }
+
+    protected IQueue<Long, byte[]> initQueueInstance(int ephemeralMaxSize) throws Exception {
+        if (System.getProperty("skipTestsMmap") != null) {
+            return null;
+        }
+        File tempDir = FileUtils.getTempDirectory();
+        File testDir = new File(tempDir, String.valueOf(System.currentTimeMillis()));
+        MmapFileQueue<Long, byte[]> queue = new UniversalMmapFileQueue() {
+            public void destroy() {
+                try {
+                    super.destroy();
+                } finally {
+                    FileUtils.deleteQuietly(testDir);
+                }
+            }
+        };
+        queue.setStorageDir(testDir.getAbsolutePath()).setEphemeralDisabled(false).setEphemeralMaxSize(ephemeralMaxSize)
+                .init();
+        return queue;
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.ddth.queue.test.universal.idint.mmap;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.impl.MmapFileQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalMmapFileQueue;
+import com.github.ddth.queue.test.universal.BaseQueueMultiThreadsTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.mmap.TestMmapFileQueueMT
+ */
+
+public class TestMmapFileQueueMT extends BaseQueueMultiThreadsTest<Long> {
+    public TestMmapFileQueueMT(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestMmapFileQueueMT.class);
+    }
+
+    @Override
+    protected IQueue<Long, byte[]> initQueueInstance() throws Exception {
+        if (System.getProperty("skipTestsMmap") != null) {
+            return null;
+        }
+        File tempDir = FileUtils.getTempDirectory();
+        File testDir = new File(tempDir, String.valueOf(System.currentTimeMillis()));
+        MmapFileQueue<Long, byte[]> queue = new UniversalMmapFileQueue() {
+            public void destroy() {
+                try {
+                    super.destroy();
+                } finally {
+                    FileUtils.deleteQuietly(testDir);
+                }
+            }
+        };
+        queue.setSegmentSize(1024 * 1024).setStorageDir(testDir.getAbsolutePath()).setEphemeralDisabled(false).init();
+        return queue;
+    }
+
+    protected int numTestMessages() {
+        return 512 * 1024;
+    }
+}
@@ -0,0 +1,293 @@
+package com.github.ddth.queue.test.universal.idint.mmap;
+
+import com.github.ddth.commons.utils.IdGenerator;
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.impl.MmapFileQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalMmapFileQueue;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.mmap.TestMmapFileQueueRecovery
+ */
+
+public class TestMmapFileQueueRecovery extends TestCase {
+    public TestMmapFileQueueRecovery(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestMmapFileQueueRecovery.class);
+    }
+
+    private final static IdGenerator idGen = IdGenerator.getInstance(IdGenerator.getMacAddr());
+
+    /* tiny segments, so that a few messages fill a segment */
+    private final static int SEGMENT_SIZE = 1024;
+
+    private File testDir;
+    private MmapFileQueue<Long, byte[]> queue;
+
+    @Before
+    public void setUp() {
+        testDir = new File(FileUtils.getTempDirectory(), "mmap-" + System.currentTimeMillis());
+    }
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.destroy();
+        }
+        FileUtils.deleteQuietly(testDir);
+    }
+
+    private MmapFileQueue<Long, byte[]> openQueue() throws Exception {
+        if (queue != null) {
+            queue.destroy();
+        }
+        queue = new UniversalMmapFileQueue();
+        queue.setStorageDir(testDir.getAbsolutePath()).setSegmentSize(SEGMENT_SIZE).setEphemeralDisabled(false)
+                .init();
+        return queue;
+    }
+
+    private List<String> queueMessages(int numMsgs, int contentSize) {
+        List<String> contents = new ArrayList<>();
+        for (int i = 0; i < numMsgs; i++) {
+            StringBuilder sb = new StringBuilder(idGen.generateId128Ascii());
+            while (sb.length() < contentSize) {
+                sb.append(idGen.generateId128Ascii());
+            }
+            String content = sb.toString();
+            assertTrue(queue.queue(queue.createMessage(content.getBytes(StandardCharsets.UTF_8))));
+            contents.add(content);
+        }
+        return contents;
+    }
+
+    private List<IQueueMessage<Long, byte[]>> takeMessages(int numMsgs) {
+        List<IQueueMessage<Long, byte[]>> result = new ArrayList<>();
+        for (int i = 0; i < numMsgs; i++) {
+            IQueueMessage<Long, byte[]> msg = queue.take();
+            assertNotNull(msg);
+            result.add(msg);
+        }
+        return result;
+    }
+
+    private static String content(IQueueMessage<Long, byte[]> msg) {
+        return new String(msg.getData(), StandardCharsets.UTF_8);
+    }
+
+    private int numSegmentFiles() {
+        String[] names = testDir.list((dir, name) -> name.startsWith("segment-"));
+        return names != null ? names.length : 0;
+    }
+
+    /**
+     * Messages span many segments: they are taken back in order, and consumed segments are deleted.
+     */
+    @org.junit.Test
+    public void testSegmentRollover() throws Exception {
+        openQueue();
+        List<String> contents = queueMessages(100, 100);
+        assertEquals(100, queue.queueSize());
+        assertTrue(numSegmentFiles() > 10);
+
+        for (IQueueMessage<Long, byte[]> msg : takeMessages(100)) {
+            assertEquals(contents.remove(0), content(msg));
+            queue.finish(msg);
+        }
+        assertNull(queue.take());
+        assertEquals(0, queue.queueSize());
+        assertEquals(0, queue.ephemeralSize());
+        assertTrue(numSegmentFiles() <= 2);
+    }
+
+    /**
+     * A message larger than the segment size is written to a segment of its own, in order with smaller messages;
+     * it is read back intact, also after re-initialization.
+     */
+    @org.junit.Test
+    public void testOversizeRecord() throws Exception {
+        openQueue();
+        List<String> contents = new ArrayList<>();
+        contents.addAll(queueMessages(3, 50));
+        contents.addAll(queueMessages(1, SEGMENT_SIZE * 8));
+        contents.addAll(queueMessages(3, 50));
+        assertEquals(7, queue.queueSize());
+
+        IQueueMessage<Long, byte[]> msg = queue.take();
+        assertEquals(contents.remove(0), content(msg));
+        queue.finish(msg);
+
+        openQueue();
+        assertEquals(6, queue.queueSize());
+        for (IQueueMessage<Long, byte[]> m : takeMessages(6)) {
+            assertEquals(contents.remove(0), content(m));
+            queue.finish(m);
+        }
+        assertNull(queue.take());
+    }
+
+    /**
+     * The read cursor survives re-initialization: taken messages are not taken again, remaining ones are taken in
+     * order, and new messages are appended after them.
+     */
+    @org.junit.Test
+    public void testCursorRecovery() throws Exception {
+        openQueue();
+        List<String> contents = queueMessages(50, 100);
+        for (IQueueMessage<Long, byte[]> msg : takeMessages(20)) {
+            assertEquals(contents.remove(0), content(msg));
+            queue.finish(msg);
+        }
+
+        openQueue();
+        assertEquals(30, queue.queueSize());
+        assertEquals(0, queue.ephemeralSize());
+        contents.addAll(queueMessages(10, 100));
+        assertEquals(40, queue.queueSize());
+
+        openQueue();
+        assertEquals(40, queue.queueSize());
+        Collection<IQueueMessage<Long, byte[]>> msgs = queue.take(40);
+        assertEquals(40, msgs.size());
+        for (IQueueMessage<Long, byte[]> msg : msgs) {
+            assertEquals(contents.remove(0), content(msg));
+            queue.finish(msg);
+        }
+        assertNull(queue.take());
+        assertTrue(numSegmentFiles() <= 2);
+    }
+
+    /**
+     * A cursor torn by a crash (checksum mismatch) is ignored: the previous cursor is used, the last taken message is
+     * taken again.
+     */
+    @org.junit.Test
+    public void testTornCursor() throws Exception {
+        openQueue();
+        List<String> contents = queueMessages(10, 50);
+        for (IQueueMessage<Long, byte[]> msg : takeMessages(3)) {
+            queue.finish(msg);
+        }
+        queue.destroy();
+        queue = null;
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(testDir, "cursor.dat"), "rw")) {
+            /* two 32-byte slots <sequence><segment index><position><checksum>: corrupt the latest one */
+            long sequence0 = file.readLong();
+            file.seek(32);
+            long sequence1 = file.readLong();
+            file.seek((sequence0 > sequence1 ? 0 : 32) + 16);
+            file.writeLong(12345);
+        }
+
+        openQueue();
+        assertEquals(8, queue.queueSize());
+        IQueueMessage<Long, byte[]> msg = queue.take();
+        assertEquals(contents.get(2), content(msg));
+        queue.finish(msg);
+
+        openQueue();
+        assertEquals(7, queue.queueSize());
+        msg = queue.take();
+        assertEquals(contents.get(3), content(msg));
+    }
+
+    /**
+     * Messages taken but not finished are restored to ephemeral storage by replaying the journal.
+     */
+    @org.junit.Test
+    public void testEphemeralJournalReplay() throws Exception {
+        openQueue();
+        queueMessages(10, 50);
+        Set<Long> unfinished = new HashSet<>();
+        int i = 0;
+        for (IQueueMessage<Long, byte[]> msg : takeMessages(10)) {
+            if (i++ % 3 == 0) {
+                queue.finish(msg);
+            } else {
+                unfinished.add(msg.getId());
+            }
+        }
+        assertEquals(unfinished.size(), queue.ephemeralSize());
+
+        openQueue();
+        assertEquals(0, queue.queueSize());
+        assertEquals(unfinished.size(), queue.ephemeralSize());
+        Set<Long> orphans = new HashSet<>();
+        for (IQueueMessage<Long, byte[]> msg : queue.getOrphanMessages(-1000)) {
+            orphans.add(msg.getId());
+        }
+        assertEquals(unfinished, orphans);
+
+        /* re-queue one orphan, finish the others */
+        IQueueMessage<Long, byte[]> requeued = null;
+        for (IQueueMessage<Long, byte[]> msg : queue.getOrphanMessages(-1000)) {
+            if (requeued == null) {
+                requeued = msg;
+                queue.requeue(msg);
+            } else {
+                queue.finish(msg);
+            }
+        }
+
+        openQueue();
+        assertEquals(1, queue.queueSize());
+        assertEquals(0, queue.ephemeralSize());
+        IQueueMessage<Long, byte[]> msg = queue.take();
+        assertNotNull(msg);
+        assertEquals(requeued.getId(), msg.getId());
+        assertTrue(Arrays.equals(requeued.getData(), msg.getData()));
+    }
+
+    /**
+     * The journal is rewritten (and shrinks) once most of its records are obsolete; the rewritten journal replays to
+     * the same ephemeral storage.
+     */
+    @org.junit.Test
+    public void testEphemeralJournalRewrite() throws Exception {
+        openQueue();
+        int numMsgs = 1500, numUnfinished = 10;
+        queueMessages(numMsgs, 20);
+        List<IQueueMessage<Long, byte[]>> msgs = new ArrayList<>(queue.take(numMsgs));
+        assertEquals(numMsgs, msgs.size());
+        File journal = new File(testDir, "ephemeral.dat");
+        long journalSize = journal.length();
+
+        Set<Long> unfinished = new HashSet<>();
+        for (IQueueMessage<Long, byte[]> msg : msgs) {
+            if (unfinished.size() < numUnfinished) {
+                unfinished.add(msg.getId());
+            } else {
+                queue.finish(msg);
+            }
+        }
+        assertEquals(numUnfinished, queue.ephemeralSize());
+        assertTrue(journal.length() < journalSize / 2);
+
+        openQueue();
+        assertEquals(numUnfinished, queue.ephemeralSize());
+        Set<Long> orphans = new HashSet<>();
+        for (IQueueMessage<Long, byte[]> msg : queue.getOrphanMessages(-1000)) {
+            orphans.add(msg.getId());
+        }
+        assertEquals(unfinished, orphans);
+    }
+}
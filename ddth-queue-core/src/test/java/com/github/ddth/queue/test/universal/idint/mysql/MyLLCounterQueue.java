@@ -0,0 +1,45 @@
+package com.github.ddth.queue.test.universal.idint.mysql;
+
+import com.github.ddth.dao.jdbc.IJdbcHelper;
+import com.github.ddth.queue.impl.JdbcSizingStrategy;
+
+import java.text.MessageFormat;
+
+/**
+ * Less-locking queue whose sizes are read from a trigger-maintained counter table.
+ */
+public class MyLLCounterQueue extends MyLLQueue {
+    private final static String COUNTER_TABLE = "queue_size_counter";
+
+    public MyLLCounterQueue() {
+        setSizingStrategy(new JdbcSizingStrategy.CounterTable(COUNTER_TABLE));
+    }
+
+    public MyLLCounterQueue init() throws Exception {
+        super.init();
+        {
+            IJdbcHelper jdbcHelper = getJdbcHelper();
+            String t = getTableName();
+            jdbcHelper.execute("CREATE TABLE IF NOT EXISTS " + COUNTER_TABLE + "(\n"
+                    + "    counter_key     VARCHAR(255)    NOT NULL,\n"
+                    + "    slot            INT             NOT NULL,\n"
+                    + "        PRIMARY KEY (counter_key, slot),\n"
+                    + "    num_entries     BIGINT          NOT NULL DEFAULT 0\n"
+                    + ") ENGINE=InnoDB DEFAULT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci");
+            jdbcHelper.execute("DELETE FROM " + COUNTER_TABLE + " WHERE counter_key LIKE ?", t + ":%");
+            String keyNew = "IF(NEW.ephemeral_id=0, '" + t + ":queue', '" + t + ":ephemeral')";
+            String keyOld = "IF(OLD.ephemeral_id=0, '" + t + ":queue', '" + t + ":ephemeral')";
+            String upsert = "INSERT INTO " + COUNTER_TABLE + " (counter_key, slot, num_entries) VALUES ({0}, "
+                    + "FLOOR(RAND()*16), {1}) ON DUPLICATE KEY UPDATE num_entries=num_entries+({1});";
+            jdbcHelper.execute("CREATE TRIGGER " + t + "_size_counter_ins AFTER INSERT ON " + t
+                    + " FOR EACH ROW BEGIN " + MessageFormat.format(upsert, keyNew, "1") + " END");
+            jdbcHelper.execute("CREATE TRIGGER " + t + "_size_counter_upd AFTER UPDATE ON " + t
+                    + " FOR EACH ROW BEGIN IF (OLD.ephemeral_id=0)<>(NEW.ephemeral_id=0) THEN "
+                    + MessageFormat.format(upsert, keyOld, "-1") + " "
+                    + MessageFormat.format(upsert, keyNew, "1") + " END IF; END");
+            jdbcHelper.execute("CREATE TRIGGER " + t + "_size_counter_del AFTER DELETE ON " + t
+                    + " FOR EACH ROW BEGIN " + MessageFormat.format(upsert, keyOld, "-1") + " END");
+        }
+        return this;
+    }
+}
@@ -8,24 +8,43 @@ public class MyLLSSQueue extends LessLockingUniversalSingleStorageMySQLQueue {
         super.init();
         {
             IJdbcHelper jdbcHelper = getJdbcHelper();
-            jdbcHelper.execute("DROP TABLE IF EXISTS " + getTableName());
-            jdbcHelper.execute("CREATE TABLE " + getTableName() + "(\n"
-                    + "    queue_name                  VARCHAR(64)         NOT NULL            COMMENT \"Queue's name, messages of multiple queues can be store in same db table\",\n"
-                    + "        INDEX (queue_name),\n"
-                    + "    queue_id                    BIGINT              AUTO_INCREMENT,\n"
-                    + "        PRIMARY KEY (queue_id),\n"
-                    + "    ephemeral_id                BIGINT              NOT NULL DEFAULT 0,\n"
-                    + "    msg_org_timestamp           DATETIME            NOT NULL            COMMENT \"Message's original timestamp; when requeued original timestamp will not be changed\",\n"
-                    + "    msg_timestamp               DATETIME            NOT NULL            COMMENT \"Message's queue timestamp\",\n"
-                    + "    msg_num_requeues            INT                 NOT NULL DEFAULT 0  COMMENT \"How many times message has been requeued\",\n"
-                    + "    msg_content                 BLOB                                    COMMENT \"Message's content\"\n"
-                    + ") ENGINE=InnoDB DEFAULT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci");
+            /* partitions share one sequence: AUTO_INCREMENT is per table and reset by TRUNCATE */
+            String seqTableName = getTableName() + "_seq";
+            if (isPartitioned()) {
+                jdbcHelper.execute("DROP TABLE IF EXISTS " + seqTableName);
+                jdbcHelper.execute("CREATE TABLE " + seqTableName + " (id BIGINT NOT NULL) ENGINE=InnoDB");
+                jdbcHelper.execute("INSERT INTO " + seqTableName + " (id) VALUES (0)");
+            }
+            for (int i = 0, n = Math.max(getNumPartitions(), 1); i < n; i++) {
+                String tableName = getPartitionTableName(i);
+                jdbcHelper.execute("DROP TABLE IF EXISTS " + tableName);
+                jdbcHelper.execute("CREATE TABLE " + tableName + "(\n"
+                        + "    queue_name                  VARCHAR(64)         NOT NULL            COMMENT \"Queue's name, messages of multiple queues can be store in same db table\",\n"
+                        + "        INDEX (queue_name),\n"
+                        + (isPartitioned() ?
+                        "    queue_id                    BIGINT              NOT NULL DEFAULT 0,\n" :
+                        "    queue_id                    BIGINT              AUTO_INCREMENT,\n")
+                        + "        PRIMARY KEY (queue_id),\n"
+                        + "    ephemeral_id                BIGINT              NOT NULL DEFAULT 0,\n"
+                        + "    msg_org_timestamp           DATETIME            NOT NULL            COMMENT \"Message's original timestamp; when requeued original timestamp will not be changed\",\n"
+                        + "    msg_timestamp               DATETIME            NOT NULL            COMMENT \"Message's queue timestamp\",\n"
+                        + "    msg_num_requeues            INT                 NOT NULL DEFAULT 0  COMMENT \"How many times message has been requeued\",\n"
+                        + "    msg_content                 BLOB                                    COMMENT \"Message's content\"\n"
+                        + ") ENGINE=InnoDB DEFAULT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci");
+                if (isPartitioned()) {
+                    jdbcHelper.execute("CREATE TRIGGER " + tableName + "_queue_id BEFORE INSERT ON " + tableName
+                            + " FOR EACH ROW BEGIN IF NEW.queue_id = 0 THEN UPDATE " + seqTableName
+                            + " SET id = LAST_INSERT_ID(id + 1); SET NEW.queue_id = LAST_INSERT_ID(); END IF; END");
+                }
+            }
         }
         return this;
     }
 
     public void flush() {
         IJdbcHelper jdbcHelper = getJdbcHelper();
-        jdbcHelper.execute("DELETE FROM " + getTableName());
+        for (int i = 0, n = Math.max(getNumPartitions(), 1); i < n; i++) {
+            jdbcHelper.execute("DELETE FROM " + getPartitionTableName(i));
+        }
     }
 }
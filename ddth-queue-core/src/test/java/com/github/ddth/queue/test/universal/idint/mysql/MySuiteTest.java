@@ -10,11 +10,15 @@ import org.junit.runners.Suite;
     TestMySQLLLQueueLong.class,
     TestMySQLLLQueueLongBoundEphemeralSize.class,
     TestMySQLLLQueueLongEphemeralDisabled.class,
+    TestMySQLLLQueueSkipLocked.class,
+    TestMySQLLLQueueMTSkipLocked.class,
+    TestMySQLLLQueueCounterTable.class,
 
     TestMySQLLLSingleStorageQueue.class,
     TestMySQLLLSingleStorageQueueLong.class,
     TestMySQLLLSingleStorageQueueLongBoundEphemeralSize.class,
     TestMySQLLLSingleStorageQueueLongEphemeralDisabled.class,
+    TestMySQLLLSingleStorageQueuePartitioned.class,
 
     TestMySQLQueue.class,
     TestMySQLQueueLong.class,
@@ -32,7 +36,9 @@ import org.junit.runners.Suite;
 
     TestMySQLSingleStorageQueueMT.class,
     TestMySQLSingleStorageQueueMTBoundEphemeralSize.class,
-    TestMySQLSingleStorageQueueMTEphemeralDisabled.class
+    TestMySQLSingleStorageQueueMTEphemeralDisabled.class,
+
+    TestJdbcRetryPolicy.class
 })
 
 /*
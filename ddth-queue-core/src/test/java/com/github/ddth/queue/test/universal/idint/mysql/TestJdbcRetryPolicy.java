@@ -0,0 +1,108 @@
+package com.github.ddth.queue.test.universal.idint.mysql;
+
+import com.github.ddth.dao.utils.DaoException;
+import com.github.ddth.queue.impl.JdbcRetryPolicy;
+import com.github.ddth.queue.utils.QueueException;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.sql.SQLException;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.mysql.TestJdbcRetryPolicy
+ */
+
+public class TestJdbcRetryPolicy extends TestCase {
+    public TestJdbcRetryPolicy(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestJdbcRetryPolicy.class);
+    }
+
+    private static long maxBackoff(JdbcRetryPolicy policy, int retryNumber) {
+        long max = 0;
+        for (int i = 0; i < 2000; i++) {
+            long delay = policy.backoffMs(retryNumber);
+            assertTrue(delay >= 0);
+            max = Math.max(max, delay);
+        }
+        return max;
+    }
+
+    /**
+     * Upper bound of the back-off delay doubles with each retry, up to max-delay.
+     */
+    @org.junit.Test
+    public void testBackoffGrowth() {
+        JdbcRetryPolicy policy = new JdbcRetryPolicy(10, 1000, 0);
+        long cap = 10;
+        for (int retryNumber = 1; retryNumber <= 10; retryNumber++) {
+            long max = maxBackoff(policy, retryNumber);
+            assertTrue(max <= cap);
+            assertTrue(max >= cap / 2);
+            cap = Math.min(1000, cap * 2);
+        }
+        long max = maxBackoff(policy, Integer.MAX_VALUE);
+        assertTrue(max <= 1000);
+        assertTrue(max >= 500);
+    }
+
+    @org.junit.Test
+    public void testNoBackoff() {
+        for (int retryNumber = 1; retryNumber <= 10; retryNumber++) {
+            assertEquals(0, JdbcRetryPolicy.NO_BACKOFF.backoffMs(retryNumber));
+            assertEquals(0, JdbcRetryPolicy.NO_BACKOFF.delayMs(retryNumber, 0));
+        }
+        assertTrue(JdbcRetryPolicy.NO_BACKOFF.canRetry(0, 3, Long.MAX_VALUE / 2));
+        assertEquals(Long.MAX_VALUE, JdbcRetryPolicy.NO_BACKOFF.remainingMs(Long.MAX_VALUE / 2));
+    }
+
+    /**
+     * Retries stop at max-retries and at the deadline; delays never go past the deadline.
+     */
+    @org.junit.Test
+    public void testDeadline() {
+        JdbcRetryPolicy policy = new JdbcRetryPolicy(1000, 1000, 100);
+        assertTrue(policy.canRetry(0, 3, 0));
+        assertTrue(policy.canRetry(3, 3, 99));
+        assertFalse(policy.canRetry(4, 3, 0));
+        assertFalse(policy.canRetry(0, 3, 100));
+
+        assertEquals(70, policy.remainingMs(30));
+        assertEquals(0, policy.remainingMs(100));
+        assertEquals(0, policy.remainingMs(150));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(policy.delayMs(5, 95) <= 5);
+            assertTrue(policy.delayMs(1, 30) <= 70);
+        }
+        assertEquals(0, policy.delayMs(1, 100));
+        assertEquals(0, policy.delayMs(1, 150));
+    }
+
+    /**
+     * Only lock contention failures are retried, wherever they are in the cause chain.
+     */
+    @org.junit.Test
+    public void testRetryable() {
+        JdbcRetryPolicy policy = new JdbcRetryPolicy();
+        assertTrue(policy.isRetryable(new ConcurrencyFailureException("concurrency")));
+        assertTrue(policy.isRetryable(new DaoException(new DeadlockLoserDataAccessException("deadlock", null))));
+        assertTrue(policy.isRetryable(new DaoException(new CannotAcquireLockException("lock wait timeout"))));
+        assertTrue(policy.isRetryable(
+                new QueueException(new DaoException(new DeadlockLoserDataAccessException("deadlock", null)))));
+
+        assertFalse(policy.isRetryable(null));
+        assertFalse(policy.isRetryable(new QueueException("error")));
+        assertFalse(policy.isRetryable(new DaoException(new DuplicateKeyException("duplicated key"))));
+        assertFalse(policy.isRetryable(new DaoException(new DataIntegrityViolationException("integrity"))));
+        assertFalse(policy.isRetryable(new DaoException(new SQLException("syntax error", "42000", 1064))));
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.ddth.queue.test.universal.idint.mysql;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.test.universal.BaseQueueFunctionalTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import java.sql.SQLException;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.mysql.TestMySQLLLQueueSkipLocked -DenableTestsMySql=true
+ */
+
+/**
+ * Test queue functionality.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class TestMySQLLLQueueSkipLocked extends BaseQueueFunctionalTest<Long> {
+    public TestMySQLLLQueueSkipLocked(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestMySQLLLQueueSkipLocked.class);
+    }
+
+    protected IQueue<Long, byte[]> initQueueInstance(int ephemeralMaxSize) throws Exception {
+        if (System.getProperty("enableTestsMySql") == null && System.getProperty("enableTestsMySQL") == null) {
+            return null;
+        }
+        String mysqlHost = System.getProperty("db.host", "localhost");
+        String mysqlPort = System.getProperty("db.port", "3306");
+        String mysqlDb = System.getProperty("db.db", "test");
+        String mysqlUser = System.getProperty("db.user", "test");
+        String mysqlPassword = System.getProperty("db.password", "test");
+        String tableQueue = System.getProperty("table.queue", "queuell");
+
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("com.mysql.jdbc.Driver");
+        dataSource.setUrl("jdbc:mysql://" + mysqlHost + ":" + mysqlPort + "/" + mysqlDb
+                + "?autoReconnect=true&useUnicode=true&characterEncoding=UTF-8");
+        dataSource.setUsername(mysqlUser);
+        dataSource.setPassword(mysqlPassword);
+
+        MyLLQueue queue = new MyLLQueue() {
+            public void destroy() {
+                try {
+                    super.destroy();
+                } finally {
+                    try {
+                        dataSource.close();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        };
+        queue.setSkipLocked(true);
+        queue.setDataSource(dataSource).setTableName(tableQueue).setEphemeralDisabled(false)
+                .setEphemeralMaxSize(ephemeralMaxSize).setQueueName(this.getClass().getSimpleName()).init();
+        queue.flush();
+
+        return queue;
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.ddth.queue.test.universal.idint.pgsql;
+
+import com.github.ddth.dao.jdbc.IJdbcHelper;
+import com.github.ddth.queue.impl.universal.idint.LessLockingUniversalPgSQLQueue;
+
+public class MyLLQueue extends LessLockingUniversalPgSQLQueue {
+    public MyLLQueue init() throws Exception {
+        super.init();
+        {
+            IJdbcHelper jdbcHelper = getJdbcHelper();
+            jdbcHelper.execute("DROP TABLE IF EXISTS " + getTableName());
+            jdbcHelper.execute("CREATE TABLE " + getTableName() + "(\n"
+                    + "    queue_id                    BIGSERIAL,\n"
+                    + "        PRIMARY KEY (queue_id),\n"
+                    + "    ephemeral_id                BIGINT              NOT NULL DEFAULT 0,\n"
+                    + "    msg_org_timestamp           TIMESTAMP           NOT NULL,\n"
+                    + "    msg_timestamp               TIMESTAMP           NOT NULL,\n"
+                    + "    msg_num_requeues            INT                 NOT NULL DEFAULT 0,\n"
+                    + "    msg_content                 BYTEA\n"
+                    + ")");
+            jdbcHelper.execute("CREATE INDEX " + getTableName() + "_ephemeral_id ON " + getTableName()
+                    + "(ephemeral_id)");
+            jdbcHelper.execute("CREATE INDEX " + getTableName() + "_msg_timestamp ON " + getTableName()
+                    + "(msg_timestamp)");
+        }
+        return this;
+    }
+
+    public void flush() {
+        IJdbcHelper jdbcHelper = getJdbcHelper();
+        jdbcHelper.execute("DELETE FROM " + getTableName());
+    }
+}
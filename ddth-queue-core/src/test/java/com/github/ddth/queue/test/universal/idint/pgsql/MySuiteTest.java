@@ -0,0 +1,17 @@
+package com.github.ddth.queue.test.universal.idint.pgsql;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+
+@Suite.SuiteClasses({ 
+    TestPgSQLLLQueueNotify.class
+})
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.pgsql.MySuiteTest -DenableTestsPgSql=true
+ */
+
+public class MySuiteTest {
+}
@@ -0,0 +1,68 @@
+package com.github.ddth.queue.test.universal.idint.pgsql;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.test.universal.BaseQueueFunctionalTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import java.sql.SQLException;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.pgsql.TestPgSQLLLQueueNotify -DenableTestsPgSql=true
+ */
+
+/**
+ * Test queue functionality, consumers are woken up by {@code LISTEN/NOTIFY}.
+ *
+ * @author Thanh Nguyen <btnguyen2k@gmail.com>
+ * @since 1.0.1
+ */
+public class TestPgSQLLLQueueNotify extends BaseQueueFunctionalTest<Long> {
+    public TestPgSQLLLQueueNotify(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestPgSQLLLQueueNotify.class);
+    }
+
+    protected IQueue<Long, byte[]> initQueueInstance(int ephemeralMaxSize) throws Exception {
+        if (System.getProperty("enableTestsPgSql") == null && System.getProperty("enableTestsPgSQL") == null) {
+            return null;
+        }
+        String pgsqlHost = System.getProperty("db.host", "localhost");
+        String pgsqlPort = System.getProperty("db.port", "5432");
+        String pgsqlDb = System.getProperty("db.db", "test");
+        String pgsqlUser = System.getProperty("db.user", "test");
+        String pgsqlPassword = System.getProperty("db.password", "test");
+        String tableQueue = System.getProperty("table.queue", "queuell");
+
+        BasicDataSource dataSource = new BasicDataSource();
+        dataSource.setDriverClassName("org.postgresql.Driver");
+        dataSource.setUrl("jdbc:postgresql://" + pgsqlHost + ":" + pgsqlPort + "/" + pgsqlDb);
+        dataSource.setUsername(pgsqlUser);
+        dataSource.setPassword(pgsqlPassword);
+        dataSource.setAccessToUnderlyingConnectionAllowed(true);
+
+        MyLLQueue queue = new MyLLQueue() {
+            public void destroy() {
+                try {
+                    super.destroy();
+                } finally {
+                    try {
+                        dataSource.close();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        };
+        queue.setNotifyChannel("ddth_queue_test");
+        queue.setDataSource(dataSource).setTableName(tableQueue).setEphemeralDisabled(false)
+                .setEphemeralMaxSize(ephemeralMaxSize).setQueueName(this.getClass().getSimpleName()).init();
+        queue.flush();
+
+        return queue;
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.ddth.queue.test.universal.idint.redis;
+
+import com.github.ddth.queue.impl.universal.idint.UniversalClusteredRedisQueue;
+import redis.clients.jedis.JedisCluster;
+
+public class MyClusteredQueue extends UniversalClusteredRedisQueue {
+    public void flush() {
+        JedisCluster jedisCluster = getJedisCluster();
+        for (int i = 0; i < getNumPartitions(); i++) {
+            jedisCluster.del(getRedisHashNameAsBytes(i));
+            jedisCluster.del(getRedisListNameAsBytes(i));
+            jedisCluster.del(getRedisSortedSetNameAsBytes(i));
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.ddth.queue.test.universal.idint.redis;
+
+import com.github.ddth.queue.impl.universal.idint.UniversalRedisStreamQueue;
+import redis.clients.jedis.Jedis;
+
+public class MyStreamQueue extends UniversalRedisStreamQueue {
+    public void flush() {
+        try (Jedis jedis = getJedisConnector().getJedis()) {
+            jedis.flushAll();
+        }
+    }
+}
@@ -12,7 +12,11 @@ import org.junit.runners.Suite;
     TestRedisQueueLongEphemeralDisabled.class,
     TestRedisQueueMT.class,
     TestRedisQueueMTBoundEphemeralSize.class,
-    TestRedisQueueMTEphemeralDisabled.class
+    TestRedisQueueMTEphemeralDisabled.class,
+    TestRedisStreamQueue.class,
+    TestRedisStreamQueueMT.class,
+    TestClusteredRedisQueue.class,
+    TestClusteredRedisQueueMT.class
 })
 
 /*
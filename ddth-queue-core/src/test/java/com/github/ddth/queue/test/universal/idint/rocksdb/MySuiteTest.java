@@ -10,7 +10,10 @@ import org.junit.runners.Suite;
     TestRocksDbQueueLong.class,
     TestRocksDbQueueLongEphemeralDisabled.class,
     TestRocksDbQueueMT.class,
-    TestRocksDbQueueMTEphemeralDisabled.class
+    TestRocksDbQueueMTGroupCommit.class,
+    TestRocksDbQueueMTCompaction.class,
+    TestRocksDbQueueMTEphemeralDisabled.class,
+    TestRocksDbQueueSizes.class
 })
 
 /*
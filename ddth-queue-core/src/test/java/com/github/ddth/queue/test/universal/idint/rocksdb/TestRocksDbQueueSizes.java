@@ -0,0 +1,173 @@
+package com.github.ddth.queue.test.universal.idint.rocksdb;
+
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.impl.RocksDbQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalRocksDbQueue;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.rocksdb.TestRocksDbQueueSizes -DenableTestsRocksDb=true
+ */
+
+public class TestRocksDbQueueSizes extends TestCase {
+    public TestRocksDbQueueSizes(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestRocksDbQueueSizes.class);
+    }
+
+    private File testDir;
+    private RocksDbQueue<Long, byte[]> queue;
+
+    private RocksDbQueue<Long, byte[]> openQueue() {
+        RocksDbQueue<Long, byte[]> queue = new UniversalRocksDbQueue();
+        queue.setStorageDir(testDir.getAbsolutePath()).setEphemeralDisabled(false).init();
+        return queue;
+    }
+
+    /**
+     * Destroy the queue and open a new instance on the same storage directory.
+     */
+    private void restart() {
+        queue.destroy();
+        queue = openQueue();
+    }
+
+    @Before
+    public void setUp() {
+        if (System.getProperty("enableTestsRocksDb") == null && System.getProperty("enableTestsRocksDB") == null) {
+            return;
+        }
+        testDir = new File(FileUtils.getTempDirectory(), String.valueOf(System.currentTimeMillis()));
+        queue = openQueue();
+    }
+
+    @After
+    public void tearDown() {
+        if (queue != null) {
+            queue.destroy();
+        }
+        if (testDir != null) {
+            FileUtils.deleteQuietly(testDir);
+        }
+    }
+
+    private void queueMessages(int numMsgs) {
+        for (int i = 0; i < numMsgs; i++) {
+            assertTrue(queue.queue(queue.createMessage(String.valueOf(i).getBytes(StandardCharsets.UTF_8))));
+        }
+    }
+
+    /**
+     * Sizes are exact after a restart: taken messages are not counted in queue storage, unfinished ones are counted
+     * in ephemeral storage.
+     */
+    @org.junit.Test
+    public void testSizesAcrossRestart() {
+        if (queue == null) {
+            return;
+        }
+        queueMessages(100);
+        List<IQueueMessage<Long, byte[]>> taken = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            taken.add(queue.take());
+        }
+        for (int i = 0; i < 10; i++) {
+            queue.finish(taken.get(i));
+        }
+        assertEquals(70, queue.queueSize());
+        assertEquals(20, queue.ephemeralSize());
+
+        restart();
+        assertEquals(70, queue.queueSize());
+        assertEquals(20, queue.ephemeralSize());
+        assertEquals("30", new String(queue.take().getData(), StandardCharsets.UTF_8));
+        assertEquals(69, queue.queueSize());
+        assertEquals(21, queue.ephemeralSize());
+
+        Collection<IQueueMessage<Long, byte[]>> rest = queue.take(1000);
+        assertEquals(69, rest.size());
+        assertEquals(0, queue.queueSize());
+        assertEquals(90, queue.ephemeralSize());
+        assertNull(queue.take());
+
+        restart();
+        assertEquals(0, queue.queueSize());
+        assertEquals(90, queue.ephemeralSize());
+        queueMessages(5);
+        assertEquals(5, queue.queueSize());
+    }
+
+    /**
+     * Sizes are exact once concurrent takers are done, and stay exact after a restart.
+     */
+    @org.junit.Test
+    public void testSizesUnderConcurrentTakes() throws Exception {
+        if (queue == null) {
+            return;
+        }
+        final int numMsgs = 10000, numThreads = 8;
+        queueMessages(numMsgs);
+        Queue<IQueueMessage<Long, byte[]>> taken = new ConcurrentLinkedQueue<>();
+        AtomicInteger finished = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            final boolean batch = t % 2 == 0;
+            Thread thread = new Thread(() -> {
+                while (true) {
+                    if (batch) {
+                        Collection<IQueueMessage<Long, byte[]>> msgs = queue.take(7);
+                        if (msgs.isEmpty()) {
+                            break;
+                        }
+                        taken.addAll(msgs);
+                    } else {
+                        IQueueMessage<Long, byte[]> msg = queue.take();
+                        if (msg == null) {
+                            break;
+                        }
+                        /* finish half of the messages while other threads are still taking */
+                        if (msg.getId() % 2 == 0) {
+                            queue.finish(msg);
+                            finished.incrementAndGet();
+                        } else {
+                            taken.add(msg);
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(numMsgs, taken.size() + finished.get());
+        assertEquals(0, queue.queueSize());
+        assertEquals(taken.size(), queue.ephemeralSize());
+
+        restart();
+        assertEquals(0, queue.queueSize());
+        assertEquals(taken.size(), queue.ephemeralSize());
+        for (IQueueMessage<Long, byte[]> msg : taken) {
+            queue.finish(msg);
+        }
+        assertEquals(0, queue.ephemeralSize());
+    }
+}
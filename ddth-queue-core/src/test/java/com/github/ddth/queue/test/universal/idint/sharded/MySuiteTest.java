@@ -0,0 +1,18 @@
+package com.github.ddth.queue.test.universal.idint.sharded;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+
+@Suite.SuiteClasses({ 
+    TestShardedQueue.class,
+    TestShardedQueueMT.class
+})
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.sharded.MySuiteTest
+ */
+
+public class MySuiteTest {
+}
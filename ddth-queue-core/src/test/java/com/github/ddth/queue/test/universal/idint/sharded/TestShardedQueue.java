@@ -0,0 +1,45 @@
+package com.github.ddth.queue.test.universal.idint.sharded;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.QueueSpec;
+import com.github.ddth.queue.impl.ShardedQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalInmemQueueFactory;
+import com.github.ddth.queue.test.universal.BaseQueueFunctionalTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.sharded.TestShardedQueue
+ */
+
+public class TestShardedQueue extends BaseQueueFunctionalTest<Long> {
+    public TestShardedQueue(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestShardedQueue.class);
+    }
+
+    protected IQueue<Long, byte[]> initQueueInstance(int ephemeralMaxSize) throws Exception {
+        if (System.getProperty("skipTestsSharded") != null) {
+            return null;
+        }
+        UniversalInmemQueueFactory factory = new UniversalInmemQueueFactory();
+        factory.init();
+        ShardedQueue<Long, byte[]> queue = new ShardedQueue<Long, byte[]>() {
+            public void destroy() {
+                try {
+                    super.destroy();
+                } finally {
+                    factory.destroy();
+                }
+            }
+        };
+        queue.setQueueFactory(factory).setShardSpecs(
+                new QueueSpec("shard-0", false, QueueSpec.NO_BOUNDARY, ephemeralMaxSize),
+                new QueueSpec("shard-1", false, QueueSpec.NO_BOUNDARY, ephemeralMaxSize),
+                new QueueSpec("shard-2", false, QueueSpec.NO_BOUNDARY, ephemeralMaxSize)).init();
+        return queue;
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.ddth.queue.test.universal.idint.sharded;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.QueueSpec;
+import com.github.ddth.queue.impl.ShardedQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalInmemQueueFactory;
+import com.github.ddth.queue.test.universal.BaseQueueMultiThreadsTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.sharded.TestShardedQueueMT
+ */
+
+public class TestShardedQueueMT extends BaseQueueMultiThreadsTest<Long> {
+    public TestShardedQueueMT(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestShardedQueueMT.class);
+    }
+
+    @Override
+    protected IQueue<Long, byte[]> initQueueInstance() throws Exception {
+        if (System.getProperty("skipTestsSharded") != null) {
+            return null;
+        }
+        UniversalInmemQueueFactory factory = new UniversalInmemQueueFactory();
+        factory.init();
+        ShardedQueue<Long, byte[]> queue = new ShardedQueue<Long, byte[]>() {
+            public void destroy() {
+                try {
+                    super.destroy();
+                } finally {
+                    factory.destroy();
+                }
+            }
+        };
+        queue.setQueueFactory(factory)
+                .setShardSpecs(new QueueSpec("shard-0", false), new QueueSpec("shard-1", false),
+                        new QueueSpec("shard-2", false), new QueueSpec("shard-3", false)).init();
+        return queue;
+    }
+}
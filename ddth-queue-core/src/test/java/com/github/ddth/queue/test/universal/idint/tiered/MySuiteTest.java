@@ -0,0 +1,19 @@
+package com.github.ddth.queue.test.universal.idint.tiered;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+@RunWith(Suite.class)
+
+@Suite.SuiteClasses({ 
+    TestTieredQueue.class,
+    TestTieredQueueMT.class,
+    TestTieredQueueRequeueOverflow.class
+})
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.tiered.MySuiteTest
+ */
+
+public class MySuiteTest {
+}
@@ -0,0 +1,61 @@
+package com.github.ddth.queue.test.universal.idint.tiered;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.impl.InmemQueue;
+import com.github.ddth.queue.impl.MmapFileQueue;
+import com.github.ddth.queue.impl.TieredQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalInmemQueue;
+import com.github.ddth.queue.impl.universal.idint.UniversalMmapFileQueue;
+import com.github.ddth.queue.test.universal.BaseQueueMultiThreadsTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.tiered.TestTieredQueueMT
+ */
+
+public class TestTieredQueueMT extends BaseQueueMultiThreadsTest<Long> {
+    public TestTieredQueueMT(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestTieredQueueMT.class);
+    }
+
+    @Override
+    protected IQueue<Long, byte[]> initQueueInstance() throws Exception {
+        if (System.getProperty("skipTestsTiered") != null) {
+            return null;
+        }
+        File tempDir = FileUtils.getTempDirectory();
+        File testDir = new File(tempDir, String.valueOf(System.currentTimeMillis()));
+        InmemQueue<Long, byte[]> memoryQueue = new UniversalInmemQueue();
+        memoryQueue.setEphemeralDisabled(false);
+        memoryQueue.init();
+        MmapFileQueue<Long, byte[]> persistentQueue = new UniversalMmapFileQueue();
+        persistentQueue.setStorageDir(testDir.getAbsolutePath()).setEphemeralDisabled(false);
+        persistentQueue.init();
+        TieredQueue<Long, byte[]> queue = new TieredQueue<Long, byte[]>() {
+            public void destroy() {
+                try {
+                    super.destroy();
+                } finally {
+                    memoryQueue.destroy();
+                    persistentQueue.destroy();
+                    FileUtils.deleteQuietly(testDir);
+                }
+            }
+        };
+        queue.setMemoryQueue(memoryQueue).setPersistentQueue(persistentQueue).setBoundary(1000).setRefillBatchSize(100)
+                .init();
+        return queue;
+    }
+
+    protected int numTestMessages() {
+        return 512 * 1024;
+    }
+}
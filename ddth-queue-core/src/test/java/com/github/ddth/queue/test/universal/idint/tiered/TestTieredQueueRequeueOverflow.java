@@ -0,0 +1,161 @@
+package com.github.ddth.queue.test.universal.idint.tiered;
+
+import com.github.ddth.queue.IQueueMessage;
+import com.github.ddth.queue.impl.InmemQueue;
+import com.github.ddth.queue.impl.TieredQueue;
+import com.github.ddth.queue.impl.universal.UniversalIdIntQueueMessage;
+import com.github.ddth.queue.impl.universal.idint.UniversalInmemQueue;
+import com.github.ddth.queue.utils.QueueException;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.junit.After;
+import org.junit.Before;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idint.tiered.TestTieredQueueRequeueOverflow
+ */
+
+public class TestTieredQueueRequeueOverflow extends TestCase {
+    public TestTieredQueueRequeueOverflow(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestTieredQueueRequeueOverflow.class);
+    }
+
+    /**
+     * Persistent queue that, like less-locking JDBC queues, only re-queues messages it has handed out.
+     */
+    private static class StrictRequeueInmemQueue extends UniversalInmemQueue {
+        private final Set<Long> taken = ConcurrentHashMap.newKeySet();
+
+        @Override
+        protected boolean doPutToQueue(IQueueMessage<Long, byte[]> msg, PutToQueueCase queueCase)
+                throws QueueException.QueueIsFull {
+            if (queueCase != null && queueCase != PutToQueueCase.NEW && !taken.remove(msg.getId())) {
+                return false;
+            }
+            return super.doPutToQueue(msg, queueCase);
+        }
+
+        @Override
+        public UniversalIdIntQueueMessage take() {
+            UniversalIdIntQueueMessage msg = super.take();
+            if (msg != null) {
+                taken.add(msg.getId());
+            }
+            return msg;
+        }
+
+        @Override
+        public Collection<IQueueMessage<Long, byte[]>> take(int maxMessages) throws QueueException.EphemeralIsFull {
+            Collection<IQueueMessage<Long, byte[]>> msgs = super.take(maxMessages);
+            for (IQueueMessage<Long, byte[]> msg : msgs) {
+                taken.add(msg.getId());
+            }
+            return msgs;
+        }
+
+        @Override
+        public void finish(IQueueMessage<Long, byte[]> msg) {
+            taken.remove(msg.getId());
+            super.finish(msg);
+        }
+    }
+
+    private InmemQueue<Long, byte[]> memoryQueue;
+    private StrictRequeueInmemQueue persistentQueue;
+    private TieredQueue<Long, byte[]> queue;
+
+    @Before
+    public void setUp() throws Exception {
+        memoryQueue = new UniversalInmemQueue();
+        memoryQueue.setEphemeralDisabled(false).init();
+        persistentQueue = new StrictRequeueInmemQueue();
+        persistentQueue.setEphemeralDisabled(false).init();
+        queue = new TieredQueue<>();
+        queue.setMemoryQueue(memoryQueue).setPersistentQueue(persistentQueue).setBoundary(2).setRefillBatchSize(2)
+                .init();
+    }
+
+    @After
+    public void tearDown() {
+        queue.destroy();
+        memoryQueue.destroy();
+        persistentQueue.destroy();
+    }
+
+    private IQueueMessage<Long, byte[]> createMessage(String content) {
+        return queue.createMessage(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String content(IQueueMessage<Long, byte[]> msg) {
+        return new String(msg.getData(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A message re-queued while the memory queue is full spills over to the persistent queue, which never handed it
+     * out: it is not lost, and keeps its re-queue count.
+     */
+    @org.junit.Test
+    public void testRequeueOverflow() throws Exception {
+        assertTrue(queue.queue(createMessage("a")));
+        assertTrue(queue.queue(createMessage("b")));
+        IQueueMessage<Long, byte[]> msgA = queue.take();
+        assertEquals("a", content(msgA));
+        assertTrue(queue.queue(createMessage("c")));
+        assertEquals(2, memoryQueue.queueSize());
+
+        assertTrue(queue.requeue(msgA));
+        assertEquals(1, persistentQueue.queueSize());
+        assertEquals(0, queue.ephemeralSize());
+        assertEquals(3, queue.queueSize());
+
+        for (String expected : new String[] { "b", "c", "a" }) {
+            IQueueMessage<Long, byte[]> msg = queue.take();
+            assertNotNull(msg);
+            assertEquals(expected, content(msg));
+            if ("a".equals(expected)) {
+                assertEquals(1, msg.getNumRequeues());
+            }
+            queue.finish(msg);
+        }
+        assertNull(queue.take());
+        assertEquals(0, queue.queueSize());
+        assertEquals(0, queue.ephemeralSize());
+        assertEquals(0, persistentQueue.ephemeralSize());
+    }
+
+    /**
+     * Same as {@link #testRequeueOverflow()}, with silent re-queue: the re-queue count is kept as-is.
+     */
+    @org.junit.Test
+    public void testRequeueSilentOverflow() throws Exception {
+        assertTrue(queue.queue(createMessage("a")));
+        assertTrue(queue.queue(createMessage("b")));
+        IQueueMessage<Long, byte[]> msgA = queue.take();
+        assertTrue(queue.queue(createMessage("c")));
+
+        assertTrue(queue.requeueSilent(msgA));
+        assertEquals(1, persistentQueue.queueSize());
+        assertEquals(0, queue.ephemeralSize());
+
+        queue.finish(queue.take());
+        queue.finish(queue.take());
+        IQueueMessage<Long, byte[]> msg = queue.take();
+        assertNotNull(msg);
+        assertEquals(msgA.getId(), msg.getId());
+        assertEquals("a", content(msg));
+        assertEquals(0, msg.getNumRequeues());
+        assertEquals(msgA.getQueueTimestamp(), msg.getQueueTimestamp());
+        queue.finish(msg);
+        assertNull(queue.take());
+    }
+}
@@ -10,6 +10,9 @@ import org.junit.runners.Suite;
         TestMySQLLLQueueLong.class,
         TestMySQLLLQueueLongBoundEphemeralSize.class,
         TestMySQLLLQueueLongEphemeralDisabled.class,
+    TestMySQLLLQueueSkipLocked.class,
+    TestMySQLLLQueueMTSkipLocked.class,
+    TestMySQLLLQueueCounterTable.class,
 
         TestMySQLLLSingleStorageQueue.class,
         TestMySQLLLSingleStorageQueueLong.class,
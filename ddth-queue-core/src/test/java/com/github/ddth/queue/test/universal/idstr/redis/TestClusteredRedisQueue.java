@@ -0,0 +1,33 @@
+package com.github.ddth.queue.test.universal.idstr.redis;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.test.universal.BaseQueueFunctionalTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idstr.redis.TestClusteredRedisQueue -DenableTestsRedisCluster=true
+ */
+
+public class TestClusteredRedisQueue extends BaseQueueFunctionalTest<String> {
+    public TestClusteredRedisQueue(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestClusteredRedisQueue.class);
+    }
+
+    protected IQueue<String, byte[]> initQueueInstance(int ephemeralMaxSize) throws Exception {
+        if (System.getProperty("enableTestsRedisCluster") == null) {
+            return null;
+        }
+        String redisHostsAndPorts = System.getProperty("redis.cluster.hostsAndPorts", "localhost:7000");
+
+        MyClusteredQueue queue = new MyClusteredQueue();
+        queue.setRedisHostsAndPorts(redisHostsAndPorts).setNumPartitions(4).setEphemeralDisabled(false)
+                .setEphemeralMaxSize(ephemeralMaxSize).init();
+        queue.flush();
+        return queue;
+    }
+}
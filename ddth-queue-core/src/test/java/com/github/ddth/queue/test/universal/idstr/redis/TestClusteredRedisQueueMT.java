@@ -0,0 +1,37 @@
+package com.github.ddth.queue.test.universal.idstr.redis;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.test.universal.BaseQueueMultiThreadsTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idstr.redis.TestClusteredRedisQueueMT -DenableTestsRedisCluster=true
+ */
+
+public class TestClusteredRedisQueueMT extends BaseQueueMultiThreadsTest<String> {
+    public TestClusteredRedisQueueMT(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestClusteredRedisQueueMT.class);
+    }
+
+    @Override
+    protected IQueue<String, byte[]> initQueueInstance() throws Exception {
+        if (System.getProperty("enableTestsRedisCluster") == null) {
+            return null;
+        }
+        String redisHostsAndPorts = System.getProperty("redis.cluster.hostsAndPorts", "localhost:7000");
+
+        MyClusteredQueue queue = new MyClusteredQueue();
+        queue.setRedisHostsAndPorts(redisHostsAndPorts).setNumPartitions(4).setEphemeralDisabled(false).init();
+        queue.flush();
+        return queue;
+    }
+
+    protected int numTestMessages() {
+        return 16 * 1024;
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.ddth.queue.test.universal.idstr.redis;
+
+import com.github.ddth.queue.IQueue;
+import com.github.ddth.queue.test.universal.BaseQueueMultiThreadsTest;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/*
+ * mvn test -DskipTests=false -Dtest=com.github.ddth.queue.test.universal.idstr.redis.TestRedisStreamQueueMT -DenableTestsRedis=true
+ */
+
+public class TestRedisStreamQueueMT extends BaseQueueMultiThreadsTest<String> {
+    public TestRedisStreamQueueMT(String testName) {
+        super(testName);
+    }
+
+    public static Test suite() {
+        return new TestSuite(TestRedisStreamQueueMT.class);
+    }
+
+    @Override
+    protected IQueue<String, byte[]> initQueueInstance() throws Exception {
+        if (System.getProperty("enableTestsRedis") == null) {
+            return null;
+        }
+        String redisHost = System.getProperty("redis.host", "localhost");
+        String redisPort = System.getProperty("redis.port", "6379");
+
+        MyStreamQueue queue = new MyStreamQueue();
+        queue.setRedisHostAndPort(redisHost + ":" + redisPort).setEphemeralDisabled(false).init();
+        queue.flush();
+        return queue;
+    }
+
+    protected int numTestMessages() {
+        return 16 * 1024;
+    }
+}
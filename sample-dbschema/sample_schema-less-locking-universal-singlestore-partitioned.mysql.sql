@@ -0,0 +1,53 @@
+-- Sample table schema for less-locking universal, single-store MySQL queue with 3 rotating partitions
+-- (queue.setNumPartitions(3)): tables queuellss_0, queuellss_1 and queuellss_2.
+-- queue_id must be unique across partitions, hence all partitions take ids from one shared single-row sequence table
+-- (AUTO_INCREMENT is per table and reset by TRUNCATE, so it can not be used).
+
+DROP TABLE IF EXISTS queuellss_0;
+DROP TABLE IF EXISTS queuellss_1;
+DROP TABLE IF EXISTS queuellss_2;
+DROP TABLE IF EXISTS queuellss_seq;
+CREATE TABLE queuellss_seq (
+    id                          BIGINT              NOT NULL
+) ENGINE=InnoDB;
+INSERT INTO queuellss_seq (id) VALUES (0);
+
+CREATE TABLE queuellss_0 (
+    queue_name                  VARCHAR(64)         NOT NULL            COMMENT "Queue's name, messages of multiple queues can be store in same db table",
+        INDEX (queue_name),
+    queue_id                    BIGINT              NOT NULL DEFAULT 0  COMMENT "Assigned from queuellss_seq if not set",
+        PRIMARY KEY (queue_id),
+    ephemeral_id                BIGINT              NOT NULL DEFAULT 0,
+        INDEX (ephemeral_id),
+    msg_org_timestamp           DATETIME            NOT NULL            COMMENT "Message's original timestamp; when requeued original timestamp will not be changed",
+    msg_timestamp               DATETIME            NOT NULL            COMMENT "Message's queue timestamp",
+        INDEX (msg_timestamp),
+    msg_num_requeues            INT                 NOT NULL DEFAULT 0  COMMENT "How many times message has been requeued",
+    msg_content                 BLOB                                    COMMENT "Message's content"
+) ENGINE=InnoDB DEFAULT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+CREATE TABLE queuellss_1 LIKE queuellss_0;
+CREATE TABLE queuellss_2 LIKE queuellss_0;
+
+DELIMITER //
+CREATE TRIGGER queuellss_0_queue_id BEFORE INSERT ON queuellss_0 FOR EACH ROW
+BEGIN
+    IF NEW.queue_id = 0 THEN
+        UPDATE queuellss_seq SET id = LAST_INSERT_ID(id + 1);
+        SET NEW.queue_id = LAST_INSERT_ID();
+    END IF;
+END//
+CREATE TRIGGER queuellss_1_queue_id BEFORE INSERT ON queuellss_1 FOR EACH ROW
+BEGIN
+    IF NEW.queue_id = 0 THEN
+        UPDATE queuellss_seq SET id = LAST_INSERT_ID(id + 1);
+        SET NEW.queue_id = LAST_INSERT_ID();
+    END IF;
+END//
+CREATE TRIGGER queuellss_2_queue_id BEFORE INSERT ON queuellss_2 FOR EACH ROW
+BEGIN
+    IF NEW.queue_id = 0 THEN
+        UPDATE queuellss_seq SET id = LAST_INSERT_ID(id + 1);
+        SET NEW.queue_id = LAST_INSERT_ID();
+    END IF;
+END//
+DELIMITER ;
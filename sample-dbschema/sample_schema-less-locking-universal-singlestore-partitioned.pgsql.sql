@@ -0,0 +1,29 @@
+-- Sample table schema for less-locking universal, single-store PgSQL queue with 3 rotating partitions
+-- (queue.setNumPartitions(3)): tables queuellss_0, queuellss_1 and queuellss_2.
+-- queue_id must be unique across partitions, hence all partitions share one sequence.
+
+--CREATE USER test PASSWORD 'test';
+--CREATE DATABASE temp OWNER='test' TEMPLATE='template0';
+
+DROP TABLE IF EXISTS queuellss_0;
+DROP TABLE IF EXISTS queuellss_1;
+DROP TABLE IF EXISTS queuellss_2;
+DROP SEQUENCE IF EXISTS queuellss_queue_id_seq;
+CREATE SEQUENCE queuellss_queue_id_seq;
+
+CREATE TABLE queuellss_0 (
+    queue_name                  VARCHAR(64)         NOT NULL,
+    queue_id                    BIGINT              NOT NULL DEFAULT nextval('queuellss_queue_id_seq'),
+        PRIMARY KEY (queue_id),
+    ephemeral_id                BIGINT              NOT NULL DEFAULT 0,
+    msg_org_timestamp           TIMESTAMP           NOT NULL,
+    msg_timestamp               TIMESTAMP           NOT NULL,
+    msg_num_requeues            INT                 NOT NULL DEFAULT 0,
+    msg_content                 BYTEA
+);
+CREATE INDEX queuellss_0_queue_name ON queuellss_0(queue_name);
+CREATE INDEX queuellss_0_ephemeral_id ON queuellss_0(ephemeral_id);
+CREATE INDEX queuellss_0_msg_timestamp ON queuellss_0(msg_timestamp);
+
+CREATE TABLE queuellss_1 (LIKE queuellss_0 INCLUDING ALL);
+CREATE TABLE queuellss_2 (LIKE queuellss_0 INCLUDING ALL);
@@ -0,0 +1,49 @@
+-- Sample counter table & triggers for JdbcSizingStrategy.CounterTable (MySQL)
+-- Triggers below maintain counters for the less-locking universal queue table "queuell"
+-- (see sample_schema-less-locking-universal.mysql.sql); counter keys are "<table>:queue" and "<table>:ephemeral".
+-- Updates are spread over 16 slots to avoid hot-row contention; size = SUM(num_entries) of all slots.
+
+DROP TABLE IF EXISTS queue_size_counter;
+CREATE TABLE queue_size_counter (
+    counter_key                 VARCHAR(255)        NOT NULL,
+    slot                        INT                 NOT NULL,
+        PRIMARY KEY (counter_key, slot),
+    num_entries                 BIGINT              NOT NULL DEFAULT 0
+) ENGINE=InnoDB DEFAULT CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+
+DROP TRIGGER IF EXISTS queuell_size_counter_ins;
+DROP TRIGGER IF EXISTS queuell_size_counter_upd;
+DROP TRIGGER IF EXISTS queuell_size_counter_del;
+
+DELIMITER //
+CREATE TRIGGER queuell_size_counter_ins AFTER INSERT ON queuell FOR EACH ROW
+BEGIN
+    INSERT INTO queue_size_counter (counter_key, slot, num_entries)
+        VALUES (IF(NEW.ephemeral_id=0, 'queuell:queue', 'queuell:ephemeral'), FLOOR(RAND()*16), 1)
+        ON DUPLICATE KEY UPDATE num_entries=num_entries+1;
+END//
+
+CREATE TRIGGER queuell_size_counter_upd AFTER UPDATE ON queuell FOR EACH ROW
+BEGIN
+    IF (OLD.ephemeral_id=0)<>(NEW.ephemeral_id=0) THEN
+        INSERT INTO queue_size_counter (counter_key, slot, num_entries)
+            VALUES (IF(OLD.ephemeral_id=0, 'queuell:queue', 'queuell:ephemeral'), FLOOR(RAND()*16), -1)
+            ON DUPLICATE KEY UPDATE num_entries=num_entries-1;
+        INSERT INTO queue_size_counter (counter_key, slot, num_entries)
+            VALUES (IF(NEW.ephemeral_id=0, 'queuell:queue', 'queuell:ephemeral'), FLOOR(RAND()*16), 1)
+            ON DUPLICATE KEY UPDATE num_entries=num_entries+1;
+    END IF;
+END//
+
+CREATE TRIGGER queuell_size_counter_del AFTER DELETE ON queuell FOR EACH ROW
+BEGIN
+    INSERT INTO queue_size_counter (counter_key, slot, num_entries)
+        VALUES (IF(OLD.ephemeral_id=0, 'queuell:queue', 'queuell:ephemeral'), FLOOR(RAND()*16), -1)
+        ON DUPLICATE KEY UPDATE num_entries=num_entries-1;
+END//
+DELIMITER ;
+
+-- Seed counters if the queue table already has data
+-- INSERT INTO queue_size_counter (counter_key, slot, num_entries)
+--     SELECT IF(ephemeral_id=0, 'queuell:queue', 'queuell:ephemeral'), 0, COUNT(*) FROM queuell
+--     GROUP BY ephemeral_id=0;
@@ -0,0 +1,43 @@
+-- Sample counter table & triggers for JdbcSizingStrategy.CounterTable (PgSQL)
+-- Triggers below maintain counters for the less-locking universal queue table "queuell"
+-- (see sample_schema-less-locking-universal.pgsql.sql); counter keys are "<table>:queue" and "<table>:ephemeral".
+-- Updates are spread over 16 slots to avoid hot-row contention; size = SUM(num_entries) of all slots.
+
+DROP TABLE IF EXISTS queue_size_counter;
+CREATE TABLE queue_size_counter (
+    counter_key                 VARCHAR(255)        NOT NULL,
+    slot                        INT                 NOT NULL,
+        PRIMARY KEY (counter_key, slot),
+    num_entries                 BIGINT              NOT NULL DEFAULT 0
+);
+
+CREATE OR REPLACE FUNCTION queue_size_counter_add(k VARCHAR, delta BIGINT) RETURNS VOID AS $$
+BEGIN
+    INSERT INTO queue_size_counter (counter_key, slot, num_entries) VALUES (k, floor(random()*16), delta)
+        ON CONFLICT (counter_key, slot) DO UPDATE SET num_entries=queue_size_counter.num_entries+delta;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION queuell_size_counter() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP='UPDATE' AND (OLD.ephemeral_id=0)=(NEW.ephemeral_id=0) THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM queue_size_counter_add(TG_TABLE_NAME || CASE WHEN OLD.ephemeral_id=0 THEN ':queue' ELSE ':ephemeral' END, -1);
+    END IF;
+    IF TG_OP IN ('UPDATE', 'INSERT') THEN
+        PERFORM queue_size_counter_add(TG_TABLE_NAME || CASE WHEN NEW.ephemeral_id=0 THEN ':queue' ELSE ':ephemeral' END, 1);
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS queuell_size_counter ON queuell;
+CREATE TRIGGER queuell_size_counter AFTER INSERT OR DELETE OR UPDATE OF ephemeral_id ON queuell
+    FOR EACH ROW EXECUTE PROCEDURE queuell_size_counter();
+
+-- Seed counters if the queue table already has data
+-- INSERT INTO queue_size_counter (counter_key, slot, num_entries)
+--     SELECT 'queuell' || CASE WHEN ephemeral_id=0 THEN ':queue' ELSE ':ephemeral' END, 0, COUNT(*) FROM queuell
+--     GROUP BY ephemeral_id=0;